@@ -48,6 +48,18 @@ public class Parameters {
          * Bidirectional A*
          */
         public static final String ASTAR_BI = "astarbi";
+        /**
+         * Bidirectional Dijkstra based on primitive arrays that are reused per thread (not for CH, only node based)
+         */
+        public static final String DIJKSTRA_BI_NATIVE = "dijkstrabi_native";
+        /**
+         * Bidirectional A* based on primitive arrays that are reused per thread (not for CH, only node based)
+         */
+        public static final String ASTAR_BI_NATIVE = "astarbi_native";
+        /**
+         * Round based public transit routing (only for GTFS, only for departure time queries)
+         */
+        public static final String RAPTOR = "raptor";
         /**
          * alternative route algorithm (not yet for CH)
          */
@@ -94,6 +106,22 @@ public class Parameters {
         public static final String EDGE_BASED = "edge_based";
         public static final String MAX_VISITED_NODES = "max_visited_nodes";
         public static final String INIT_MAX_VISITED_NODES = ROUTING_INIT_PREFIX + "max_visited_nodes";
+        /**
+         * the number of threads shared by all requests to calculate the legs between via points concurrently
+         */
+        public static final String INIT_LEG_THREADS = ROUTING_INIT_PREFIX + "leg_threads";
+        /**
+         * the number of threads shared by all batches of routes
+         */
+        public static final String INIT_BATCH_THREADS = ROUTING_INIT_PREFIX + "batch_threads";
+        /**
+         * the maximum number of cached route responses, 0 disables the cache
+         */
+        public static final String INIT_CACHE_SIZE = ROUTING_INIT_PREFIX + "cache_size";
+        /**
+         * the time in seconds a cached route response is returned
+         */
+        public static final String INIT_CACHE_TTL = ROUTING_INIT_PREFIX + "cache_ttl";
         /**
          * if true the response will contain turn instructions
          */
@@ -202,6 +230,7 @@ public class Parameters {
 
     public static final class PT {
         public static final String EARLIEST_DEPARTURE_TIME = "pt.earliest_departure_time";
+        public static final String LATEST_DEPARTURE_TIME = "pt.latest_departure_time";
         public static final String PROFILE_QUERY = "pt.profile";
         public static final String ARRIVE_BY = "pt.arrive_by";
         public static final String IGNORE_TRANSFERS = "pt.ignore_transfers";
@@ -0,0 +1,144 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.reader.osm.GraphHopperOSM;
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.HintsMap;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Imports the bundled Andorra extract once per fork with CH and LM enabled for car and fastest. A different OSM
+ * file can be specified via -Dgraphhopper.benchmark.osm=some.osm.pbf. The graph is always imported from scratch
+ * into a temporary folder so that the results reflect the current state of the import and the preparations.
+ */
+@State(Scope.Benchmark)
+public class AndorraState {
+    static final String VEHICLE = "car";
+    static final String WEIGHTING = "fastest";
+
+    GraphHopper hopper;
+    FlagEncoder encoder;
+    PrepareContractionHierarchies pch;
+    CHGraph chGraph;
+    private File location;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        location = Files.createTempDirectory("graphhopper-benchmark").toFile();
+        hopper = new GraphHopperOSM().
+                setDataReaderFile(findOSMFile()).
+                setGraphHopperLocation(location.getAbsolutePath()).
+                setEncodingManager(new EncodingManager(VEHICLE)).
+                setStoreOnFlush(false);
+        hopper.getCHFactoryDecorator().setDisablingAllowed(true);
+        hopper.getLMFactoryDecorator().setEnabled(true).setDisablingAllowed(true).addWeighting(WEIGHTING);
+        hopper.importOrLoad();
+
+        encoder = hopper.getEncodingManager().getEncoder(VEHICLE);
+        // with CH not disabled the LM decorator returns the CH factory
+        RoutingAlgorithmFactory factory = hopper.getAlgorithmFactory(createHints());
+        if (!(factory instanceof PrepareContractionHierarchies))
+            throw new IllegalStateException("Expected CH factory but was " + factory);
+        pch = (PrepareContractionHierarchies) factory;
+        chGraph = hopper.getGraphHopperStorage().getGraph(CHGraph.class, pch.getWeighting());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        hopper.close();
+        Helper.removeDir(location);
+    }
+
+    private static String findOSMFile() {
+        String osmFile = System.getProperty("graphhopper.benchmark.osm");
+        if (!Helper.isEmpty(osmFile))
+            return osmFile;
+
+        // the benchmarks are usually started from the root or from the benchmark folder
+        for (String candidate : new String[]{"core/files/andorra.osm.pbf", "../core/files/andorra.osm.pbf"}) {
+            if (new File(candidate).exists())
+                return candidate;
+        }
+        throw new IllegalStateException("Cannot find andorra.osm.pbf, specify it via -Dgraphhopper.benchmark.osm");
+    }
+
+    HintsMap createHints() {
+        return new HintsMap().setVehicle(VEHICLE).setWeighting(WEIGHTING);
+    }
+
+    GraphHopperStorage getGraph() {
+        return hopper.getGraphHopperStorage();
+    }
+
+    /**
+     * @return random points within the bounds of the graph, always the same ones for the same seed
+     */
+    GHPoint[] createRandomPoints(int count, long seed) {
+        BBox bbox = getGraph().getBounds();
+        Random rand = new Random(seed);
+        GHPoint[] points = new GHPoint[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = new GHPoint(bbox.minLat + rand.nextDouble() * (bbox.maxLat - bbox.minLat),
+                    bbox.minLon + rand.nextDouble() * (bbox.maxLon - bbox.minLon));
+        }
+        return points;
+    }
+
+    /**
+     * @return pairs of random nodes of the base graph that are connected, so that every benchmarked query finds
+     * a route
+     */
+    int[][] createRandomRoutes(int count, long seed) {
+        int nodes = getGraph().getNodes();
+        Random rand = new Random(seed);
+        AlgorithmOptions opts = AlgorithmOptions.start().algorithm(Parameters.Algorithms.DIJKSTRA_BI).
+                weighting(pch.getWeighting()).traversalMode(TraversalMode.NODE_BASED).build();
+        int[][] routes = new int[count][];
+        int tries = 0;
+        for (int i = 0; i < count; ) {
+            if (++tries > count * 100)
+                throw new IllegalStateException("Cannot find " + count + " connected node pairs in " + tries + " tries");
+
+            int from = rand.nextInt(nodes);
+            int to = rand.nextInt(nodes);
+            Path path = pch.createAlgo(chGraph, opts).calcPath(from, to);
+            if (path.isFound() && from != to)
+                routes[i++] = new int[]{from, to};
+        }
+        return routes;
+    }
+}
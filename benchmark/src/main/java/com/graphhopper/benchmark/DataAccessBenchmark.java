@@ -0,0 +1,128 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.Helper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares getInt and setInt of the DataAccess implementations for sequential and random positions. This does
+ * not need the OSM graph.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DataAccessBenchmark {
+    // 32MB, i.e. several segments
+    private static final int INTS = 8 * 1024 * 1024;
+    private static final int OPERATIONS = 1024 * 1024;
+
+    @Param({"RAM", "RAM_INT", "RAM_DIRECT", "MMAP"})
+    public String type;
+
+    private File location;
+    private Directory dir;
+    private DataAccess da;
+    private long[] randomPositions;
+
+    @Setup
+    public void setUp() throws IOException {
+        location = Files.createTempDirectory("graphhopper-benchmark").toFile();
+        dir = new GHDirectory(location.getAbsolutePath(), getDAType(type)).create();
+        da = dir.find("benchmark").create(4L * INTS);
+        for (int i = 0; i < INTS; i++) {
+            da.setInt(4L * i, i);
+        }
+
+        Random rand = new Random(123);
+        randomPositions = new long[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            randomPositions[i] = 4L * rand.nextInt(INTS);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dir.clear();
+        Helper.removeDir(location);
+    }
+
+    private static DAType getDAType(String type) {
+        switch (type) {
+            case "RAM":
+                return DAType.RAM;
+            case "RAM_INT":
+                return DAType.RAM_INT;
+            case "RAM_DIRECT":
+                return DAType.RAM_DIRECT;
+            case "MMAP":
+                return DAType.MMAP;
+            default:
+                throw new IllegalArgumentException("DataAccess type not supported: " + type);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int sequentialGet() {
+        int sum = 0;
+        for (long pos = 0; pos < 4L * OPERATIONS; pos += 4) {
+            sum += da.getInt(pos);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int randomGet() {
+        int sum = 0;
+        for (long pos : randomPositions) {
+            sum += da.getInt(pos);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void sequentialSet() {
+        for (int i = 0; i < OPERATIONS; i++) {
+            da.setInt(4L * i, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void randomSet() {
+        for (int i = 0; i < OPERATIONS; i++) {
+            da.setInt(randomPositions[i], i);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the iteration over all edges of every node via BaseGraph.EdgeIterable.next. The nodes are visited
+ * in the order of their ids, which is close to the order in memory, and in random order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EdgeIteratorBenchmark {
+    private EdgeExplorer explorer;
+    private int[] randomNodes;
+
+    @Setup
+    public void setUp(AndorraState andorra) {
+        Graph graph = andorra.getGraph();
+        explorer = graph.createEdgeExplorer();
+        randomNodes = new int[graph.getNodes()];
+        for (int i = 0; i < randomNodes.length; i++) {
+            randomNodes[i] = i;
+        }
+        Random rand = new Random(123);
+        for (int i = randomNodes.length - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int tmp = randomNodes[i];
+            randomNodes[i] = randomNodes[j];
+            randomNodes[j] = tmp;
+        }
+    }
+
+    @Benchmark
+    public long sequentialNodes() {
+        long sum = 0;
+        for (int node = 0; node < randomNodes.length; node++) {
+            sum += iterate(node);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long randomNodes() {
+        long sum = 0;
+        for (int node : randomNodes) {
+            sum += iterate(node);
+        }
+        return sum;
+    }
+
+    private long iterate(int node) {
+        long sum = 0;
+        EdgeIterator iter = explorer.setBaseNode(node);
+        while (iter.next()) {
+            sum += iter.getAdjNode();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.Translation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Path.calcInstructions for CH paths of random routes, i.e. without the time of the route query itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class InstructionsBenchmark {
+    private static final int ROUTES = 100;
+
+    private Path[] paths;
+    private Translation translation;
+
+    @Setup
+    public void setUp(AndorraState andorra) {
+        AlgorithmOptions opts = AlgorithmOptions.start().algorithm(Parameters.Algorithms.DIJKSTRA_BI).
+                weighting(andorra.pch.getWeighting()).traversalMode(TraversalMode.NODE_BASED).build();
+        int[][] routes = andorra.createRandomRoutes(ROUTES, 789);
+        paths = new Path[ROUTES];
+        for (int i = 0; i < ROUTES; i++) {
+            paths[i] = andorra.pch.createAlgo(andorra.chGraph, opts).calcPath(routes[i][0], routes[i][1]);
+        }
+        translation = andorra.hopper.getTranslationMap().getWithFallBack(Locale.US);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROUTES)
+    public int calcInstructions() {
+        int sum = 0;
+        for (Path path : paths) {
+            sum += path.calcInstructions(translation).size();
+        }
+        return sum;
+    }
+}
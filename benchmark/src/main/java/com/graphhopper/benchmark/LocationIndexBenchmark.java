@@ -0,0 +1,60 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.shapes.GHPoint;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures LocationIndexTree.findClosest for random points within the bounds of the graph.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class LocationIndexBenchmark {
+    private static final int POINTS = 1000;
+
+    private LocationIndex index;
+    private EdgeFilter edgeFilter;
+    private GHPoint[] points;
+
+    @Setup
+    public void setUp(AndorraState andorra) {
+        index = andorra.hopper.getLocationIndex();
+        edgeFilter = DefaultEdgeFilter.allEdges(andorra.encoder);
+        points = andorra.createRandomPoints(POINTS, 123);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public int findClosest() {
+        int sum = 0;
+        for (GHPoint point : points) {
+            sum += index.findClosest(point.lat, point.lon, edgeFilter).getClosestNode();
+        }
+        return sum;
+    }
+}
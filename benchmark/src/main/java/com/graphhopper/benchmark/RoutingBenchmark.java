@@ -0,0 +1,133 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmark;
+
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
+import com.graphhopper.routing.lm.LMAlgoFactoryDecorator;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.HintsMap;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.shapes.GHPoint;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the point to point queries: DijkstraBidirectionCH on the CHGraph, AStarBidirection with the
+ * LMApproximator on the base graph and the QueryGraph.lookup that is necessary before every query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+    private static final int ROUTES = 100;
+
+    private int[][] routes;
+    private RoutingAlgorithmFactory chFactory;
+    private CHGraph chGraph;
+    private AlgorithmOptions chOpts;
+    private RoutingAlgorithmFactory lmFactory;
+    private Graph graph;
+    private AlgorithmOptions lmOpts;
+    private LocationIndex index;
+    private EdgeFilter edgeFilter;
+    private GHPoint[] points;
+
+    @Setup
+    public void setUp(AndorraState andorra) {
+        routes = andorra.createRandomRoutes(ROUTES, 123);
+
+        chFactory = andorra.pch;
+        chGraph = andorra.chGraph;
+        chOpts = AlgorithmOptions.start().algorithm(Parameters.Algorithms.DIJKSTRA_BI).
+                weighting(andorra.pch.getWeighting()).traversalMode(TraversalMode.NODE_BASED).build();
+
+        HintsMap lmHints = andorra.createHints().put(Parameters.CH.DISABLE, true);
+        lmFactory = andorra.hopper.getAlgorithmFactory(lmHints);
+        if (!(lmFactory instanceof LMAlgoFactoryDecorator.LMRAFactory))
+            throw new IllegalStateException("Expected LM factory but was " + lmFactory);
+        graph = andorra.getGraph();
+        Weighting lmWeighting = andorra.hopper.createWeighting(lmHints, andorra.encoder, graph);
+        lmOpts = AlgorithmOptions.start().algorithm(Parameters.Algorithms.ASTAR_BI).
+                weighting(lmWeighting).traversalMode(TraversalMode.NODE_BASED).hints(lmHints).build();
+
+        index = andorra.hopper.getLocationIndex();
+        edgeFilter = DefaultEdgeFilter.allEdges(andorra.encoder);
+        // only keep the points that can be snapped, lookup would fail for the others
+        List<GHPoint> validPoints = new ArrayList<>();
+        for (GHPoint point : andorra.createRandomPoints(2 * ROUTES * 2, 456)) {
+            if (validPoints.size() < 2 * ROUTES && index.findClosest(point.lat, point.lon, edgeFilter).isValid())
+                validPoints.add(point);
+        }
+        if (validPoints.size() < 2 * ROUTES)
+            throw new IllegalStateException("Not enough points can be snapped: " + validPoints.size());
+        points = validPoints.toArray(new GHPoint[validPoints.size()]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROUTES)
+    public double dijkstraBidirectionCH() {
+        double sum = 0;
+        for (int[] route : routes) {
+            sum += chFactory.createAlgo(chGraph, chOpts).calcPath(route[0], route[1]).getWeight();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROUTES)
+    public double astarBidirectionLM() {
+        double sum = 0;
+        for (int[] route : routes) {
+            sum += lmFactory.createAlgo(graph, lmOpts).calcPath(route[0], route[1]).getWeight();
+        }
+        return sum;
+    }
+
+    /**
+     * The lookup changes the QueryResults, so they have to be created for every lookup. The time for the two
+     * findClosest calls can be taken from the LocationIndexBenchmark.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROUTES)
+    public int queryGraphLookup() {
+        int sum = 0;
+        for (int i = 0; i < points.length; i += 2) {
+            QueryResult fromRes = index.findClosest(points[i].lat, points[i].lon, edgeFilter);
+            QueryResult toRes = index.findClosest(points[i + 1].lat, points[i + 1].lon, edgeFilter);
+            QueryGraph queryGraph = new QueryGraph(chGraph);
+            queryGraph.lookup(fromRes, toRes);
+            sum += queryGraph.getNodes();
+        }
+        return sum;
+    }
+}
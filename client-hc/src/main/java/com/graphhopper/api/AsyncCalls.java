@@ -0,0 +1,83 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.api;
+
+import okhttp3.*;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes the calls of the clients with the asynchronous API of OkHttp. The calls wait in the queue of the
+ * dispatcher of the OkHttpClient instead of blocking a thread of the caller, and the response is read in a thread of
+ * the dispatcher.
+ */
+class AsyncCalls {
+    interface BodyReader<T> {
+        T read(ResponseBody body) throws IOException;
+    }
+
+    /**
+     * @return a future which completes with the result of the reader or with the exception of the call or the reader.
+     * Cancelling the future cancels the call.
+     */
+    static <T> CompletableFuture<T> enqueue(OkHttpClient client, Request request, final BodyReader<T> reader) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final Call call = client.newCall(request);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException ex) {
+                future.completeExceptionally(ex);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    future.complete(reader.read(body));
+                } catch (Exception ex) {
+                    future.completeExceptionally(ex);
+                }
+            }
+        });
+        future.whenComplete((result, ex) -> {
+            if (future.isCancelled())
+                call.cancel();
+        });
+        return future;
+    }
+
+    /**
+     * Creates a client which executes up to the specified number of asynchronous calls at the same time, the
+     * other calls are queued. The connections to a host are kept open for the next calls up to the number of
+     * concurrent calls per host, so the calls do not need a new connection.
+     */
+    static OkHttpClient withMaxRequests(OkHttpClient client, int maxRequests, int maxRequestsPerHost) {
+        if (maxRequests < 1 || maxRequestsPerHost < 1)
+            throw new IllegalArgumentException("The maximum number of concurrent requests has to be positive but was "
+                    + maxRequests + " and " + maxRequestsPerHost + " per host");
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        return client.newBuilder().
+                dispatcher(dispatcher).
+                connectionPool(new ConnectionPool(maxRequestsPerHost, 5, TimeUnit.MINUTES)).
+                build();
+    }
+}
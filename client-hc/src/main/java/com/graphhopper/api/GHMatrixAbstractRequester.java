@@ -11,6 +11,7 @@ import okhttp3.ResponseBody;
 import java.io.IOException;
 import java.net.URLEncoder;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import static com.graphhopper.api.GraphHopperMatrixWeb.*;
@@ -50,11 +51,27 @@ public abstract class GHMatrixAbstractRequester {
 
     public abstract MatrixResponse route(GHMRequest request);
 
+    /**
+     * Calculates the matrix like {@link #route} but without blocking the calling thread.
+     *
+     * @return a future which completes with the response or with the exception of the requests
+     */
+    public abstract CompletableFuture<MatrixResponse> routeAsync(GHMRequest request);
+
     public GHMatrixAbstractRequester setDownloader(OkHttpClient downloader) {
         this.downloader = downloader;
         return this;
     }
 
+    /**
+     * Limits the number of requests of routeAsync which are executed at the same time, further requests are
+     * queued. The default is 64 requests and 5 per host.
+     */
+    public GHMatrixAbstractRequester setMaxRequests(int maxRequests, int maxRequestsPerHost) {
+        this.downloader = AsyncCalls.withMaxRequests(downloader, maxRequests, maxRequestsPerHost);
+        return this;
+    }
+
     public OkHttpClient getDownloader() {
         return downloader;
     }
@@ -81,6 +98,16 @@ public abstract class GHMatrixAbstractRequester {
         }
     }
 
+    protected CompletableFuture<String> getJsonAsync(String url) {
+        Request okRequest = new Request.Builder().url(url).build();
+        return AsyncCalls.enqueue(downloader, okRequest, ResponseBody::string);
+    }
+
+    protected CompletableFuture<String> postJsonAsync(String url, JsonNode data) {
+        Request okRequest = new Request.Builder().url(url).post(RequestBody.create(MT_JSON, data.toString())).build();
+        return AsyncCalls.enqueue(downloader, okRequest, ResponseBody::string);
+    }
+
     protected JsonNode toJSON(String url, String str) {
         try {
             return objectMapper.readTree(str);
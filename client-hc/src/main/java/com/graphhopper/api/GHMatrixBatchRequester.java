@@ -14,14 +14,25 @@ import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Peter Karich
  */
 public class GHMatrixBatchRequester extends GHMatrixAbstractRequester {
+    // only schedules the requests for the solution, which are then executed by the dispatcher of the OkHttpClient
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gh-matrix-batch-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
     final JsonNodeFactory factory = JsonNodeFactory.instance;
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private int maxIterations = 100;
+    private long minSleepAfterGET = 100;
     private long sleepAfterGET = 1000;
 
     public GHMatrixBatchRequester() {
@@ -45,22 +56,127 @@ public class GHMatrixBatchRequester extends GHMatrixAbstractRequester {
     }
 
     /**
-     * Internal parameter. Increase only if you have very large matrices.
+     * Internal parameter. The maximum time between two requests for the solution. The time starts with the
+     * minimum time and doubles with every request, so small matrices are returned fast and large matrices are not
+     * requested too often. Increase only if you have very large matrices.
      */
     public GHMatrixBatchRequester setSleepAfterGET(long sleepAfterGETMillis) {
         this.sleepAfterGET = sleepAfterGETMillis;
         return this;
     }
 
+    /**
+     * Internal parameter. The time before the first request for the solution.
+     */
+    public GHMatrixBatchRequester setMinSleepAfterGET(long minSleepAfterGETMillis) {
+        this.minSleepAfterGET = minSleepAfterGETMillis;
+        return this;
+    }
+
     @Override
     public MatrixResponse route(GHMRequest ghRequest) {
-        ObjectNode requestJson = factory.objectNode();
+        List<String> outArraysList = getOutArrays(ghRequest);
+        ObjectNode requestJson = createRequestJson(ghRequest, outArraysList);
+        MatrixResponse matrixResponse = createResponse(ghRequest, outArraysList);
+        String postUrl = buildURLNoHints("/calculate", ghRequest);
+
+        try {
+            String id = readJobId(ghRequest, postUrl, requestJson, postJson(postUrl, requestJson), matrixResponse);
+            if (id == null)
+                return matrixResponse;
+
+            String getUrl = buildURLNoHints("/solution/" + id, ghRequest);
+            long sleep = Math.min(minSleepAfterGET, sleepAfterGET);
+            int i = 0;
+            for (; i < maxIterations; i++) {
+                // SLEEP a bit and GET solution
+                if (sleep > 0) {
+                    Thread.sleep(sleep);
+                }
+                sleep = Math.min(2 * sleep, sleepAfterGET);
+
+                String getResponseStr;
+                try {
+                    getResponseStr = getJson(getUrl);
+                } catch (SocketTimeoutException ex) {
+                    // if timeout exception try once again:
+                    getResponseStr = getJson(getUrl);
+                }
+
+                if (readSolution(ghRequest, i, getUrl, getResponseStr, outArraysList, matrixResponse))
+                    break;
+            }
+
+            if (i >= maxIterations) {
+                throw createMaxIterationsException();
+            }
+
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        return matrixResponse;
+    }
 
+    /**
+     * Calculates the matrix like {@link #route} but waits for the solution without blocking a thread. The requests
+     * for the solution are scheduled with the same increasing delays.
+     */
+    @Override
+    public CompletableFuture<MatrixResponse> routeAsync(final GHMRequest ghRequest) {
+        final List<String> outArraysList = getOutArrays(ghRequest);
+        final ObjectNode requestJson = createRequestJson(ghRequest, outArraysList);
+        final MatrixResponse matrixResponse = createResponse(ghRequest, outArraysList);
+        final String postUrl = buildURLNoHints("/calculate", ghRequest);
+        return postJsonAsync(postUrl, requestJson).thenCompose(postResponseStr -> {
+            String id = readJobId(ghRequest, postUrl, requestJson, postResponseStr, matrixResponse);
+            CompletableFuture<MatrixResponse> future = new CompletableFuture<>();
+            if (id == null)
+                future.complete(matrixResponse);
+            else
+                pollSolution(ghRequest, buildURLNoHints("/solution/" + id, ghRequest), outArraysList, matrixResponse,
+                        0, Math.min(minSleepAfterGET, sleepAfterGET), future);
+            return future;
+        });
+    }
+
+    private void pollSolution(final GHMRequest ghRequest, final String getUrl, final List<String> outArraysList,
+                              final MatrixResponse matrixResponse, final int iteration, final long sleep,
+                              final CompletableFuture<MatrixResponse> future) {
+        if (iteration >= maxIterations) {
+            future.completeExceptionally(createMaxIterationsException());
+            return;
+        }
+
+        SCHEDULER.schedule(() -> getJsonAsync(getUrl).whenComplete((getResponseStr, ex) -> {
+            if (ex != null) {
+                future.completeExceptionally(ex);
+                return;
+            }
+            try {
+                if (readSolution(ghRequest, iteration, getUrl, getResponseStr, outArraysList, matrixResponse))
+                    future.complete(matrixResponse);
+                else
+                    pollSolution(ghRequest, getUrl, outArraysList, matrixResponse, iteration + 1,
+                            Math.min(2 * sleep, sleepAfterGET), future);
+            } catch (RuntimeException rex) {
+                future.completeExceptionally(rex);
+            }
+        }), sleep, TimeUnit.MILLISECONDS);
+    }
+
+    private List<String> getOutArrays(GHMRequest ghRequest) {
         List<String> outArraysList = new ArrayList<>(ghRequest.getOutArrays());
         if (outArraysList.isEmpty()) {
             outArraysList.add("weights");
         }
+        return outArraysList;
+    }
 
+    private ObjectNode createRequestJson(GHMRequest ghRequest, List<String> outArraysList) {
+        ObjectNode requestJson = factory.objectNode();
         ArrayNode outArrayListJson = factory.arrayNode();
         for (String str : outArraysList) {
             outArrayListJson.add(str);
@@ -91,88 +207,73 @@ public class GHMatrixBatchRequester extends GHMatrixAbstractRequester {
             String hint = hintsMap.get(hintKey);
             requestJson.put(hintKey, hint);
         }
+        return requestJson;
+    }
 
+    private MatrixResponse createResponse(GHMRequest ghRequest, List<String> outArraysList) {
         boolean withTimes = outArraysList.contains("times");
         boolean withDistances = outArraysList.contains("distances");
         boolean withWeights = outArraysList.contains("weights");
-        final MatrixResponse matrixResponse = new MatrixResponse(
+        return new MatrixResponse(
                 ghRequest.getFromPoints().size(),
                 ghRequest.getToPoints().size(), withTimes, withDistances, withWeights);
+    }
 
-        String postUrl = buildURLNoHints("/calculate", ghRequest);
-
-        try {
-            String postResponseStr = postJson(postUrl, requestJson);
-            boolean debug = ghRequest.getHints().getBool("debug", false);
-            if (debug) {
-                logger.info("POST URL:" + postUrl + ", request:" + requestJson + ", response: " + postResponseStr);
-            }
-
-            JsonNode responseJson = toJSON(postUrl, postResponseStr);
-            if (responseJson.has("message")) {
-                matrixResponse.addErrors(readErrors(responseJson));
-                return matrixResponse;
-            }
-            if (!responseJson.has("job_id")) {
-                throw new IllegalStateException("Response should contain job_id but was "
-                        + postResponseStr + ", json:" + requestJson + ",url:" + postUrl);
-            }
-
-            final String id = responseJson.get("job_id").asText();
-            int i = 0;
-            for (; i < maxIterations; i++) {
-                // SLEEP a bit and GET solution
-                if (sleepAfterGET > 0) {
-                    Thread.sleep(sleepAfterGET);
-                }
-                String getUrl = buildURLNoHints("/solution/" + id, ghRequest);
-
-                String getResponseStr;
-                try {
-                    getResponseStr = getJson(getUrl);
-                } catch (SocketTimeoutException ex) {
-                    // if timeout exception try once again:
-                    getResponseStr = getJson(getUrl);
-                }
-
-                JsonNode getResponseJson = toJSON(getUrl, getResponseStr);
-                if (debug) {
-                    logger.info(i + " GET URL:" + getUrl + ", response: " + getResponseStr);
-                }
-                matrixResponse.addErrors(readErrors(getResponseJson));
-                if (matrixResponse.hasErrors()) {
-                    break;
-                }
-                String status = getResponseJson.get("status").asText();
-
-                if ("processing".equals(status) || "waiting".equals(status)) {
-                    continue;
-                }
+    /**
+     * @return the id of the job or null if the response contains errors, which are added to the matrix response
+     */
+    private String readJobId(GHMRequest ghRequest, String postUrl, JsonNode requestJson, String postResponseStr,
+                             MatrixResponse matrixResponse) {
+        if (ghRequest.getHints().getBool("debug", false)) {
+            logger.info("POST URL:" + postUrl + ", request:" + requestJson + ", response: " + postResponseStr);
+        }
 
-                if ("finished".equals(status)) {
-                    JsonNode solution = getResponseJson.get("solution");
-                    matrixResponse.addErrors(readUsableEntityError(outArraysList, solution));
-                    if (!matrixResponse.hasErrors())
-                        fillResponseFromJson(matrixResponse, solution);
+        JsonNode responseJson = toJSON(postUrl, postResponseStr);
+        if (responseJson.has("message")) {
+            matrixResponse.addErrors(readErrors(responseJson));
+            return null;
+        }
+        if (!responseJson.has("job_id")) {
+            throw new IllegalStateException("Response should contain job_id but was "
+                    + postResponseStr + ", json:" + requestJson + ",url:" + postUrl);
+        }
+        return responseJson.get("job_id").asText();
+    }
 
-                    break;
-                }
+    /**
+     * @return true if the solution or an error was read, false if the job is not finished yet
+     */
+    private boolean readSolution(GHMRequest ghRequest, int iteration, String getUrl, String getResponseStr,
+                                 List<String> outArraysList, MatrixResponse matrixResponse) {
+        JsonNode getResponseJson = toJSON(getUrl, getResponseStr);
+        if (ghRequest.getHints().getBool("debug", false)) {
+            logger.info(iteration + " GET URL:" + getUrl + ", response: " + getResponseStr);
+        }
+        matrixResponse.addErrors(readErrors(getResponseJson));
+        if (matrixResponse.hasErrors()) {
+            return true;
+        }
+        String status = getResponseJson.get("status").asText();
 
-                matrixResponse.addError(new RuntimeException("Status not supported: " + status + " - illegal JSON format?"));
-                break;
-            }
+        if ("processing".equals(status) || "waiting".equals(status)) {
+            return false;
+        }
 
-            if (i >= maxIterations) {
-                throw new IllegalStateException("Maximum number of iterations reached " + maxIterations + ", increasing should only be necessary for big matrices. For smaller ones this is a bug, please contact us");
-            }
+        if ("finished".equals(status)) {
+            JsonNode solution = getResponseJson.get("solution");
+            matrixResponse.addErrors(readUsableEntityError(outArraysList, solution));
+            if (!matrixResponse.hasErrors())
+                fillResponseFromJson(matrixResponse, solution);
 
-        } catch (InterruptedException ex) {
-            throw new RuntimeException(ex);
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
+            return true;
         }
 
-        return matrixResponse;
+        matrixResponse.addError(new RuntimeException("Status not supported: " + status + " - illegal JSON format?"));
+        return true;
+    }
+
+    private IllegalStateException createMaxIterationsException() {
+        return new IllegalStateException("Maximum number of iterations reached " + maxIterations + ", increasing should only be necessary for big matrices. For smaller ones this is a bug, please contact us");
     }
 
     private final ArrayNode createStringList(List<String> list) {
@@ -8,6 +8,7 @@ import okhttp3.OkHttpClient;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -44,6 +45,37 @@ public class GHMatrixSyncRequester extends GHMatrixAbstractRequester {
 
     @Override
     public MatrixResponse route(GHMRequest ghRequest) {
+        List<String> outArraysList = getOutArrays(ghRequest);
+        String url = createURL(ghRequest, outArraysList);
+        try {
+            return readResponse(ghRequest, outArraysList, getJson(url));
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public CompletableFuture<MatrixResponse> routeAsync(final GHMRequest ghRequest) {
+        final List<String> outArraysList = getOutArrays(ghRequest);
+        String url = createURL(ghRequest, outArraysList);
+        return getJsonAsync(url).thenApply(str -> {
+            try {
+                return readResponse(ghRequest, outArraysList, str);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+    }
+
+    private List<String> getOutArrays(GHMRequest ghRequest) {
+        List<String> outArraysList = new ArrayList<>(ghRequest.getOutArrays());
+        if (outArraysList.isEmpty()) {
+            outArraysList.add("weights");
+        }
+        return outArraysList;
+    }
+
+    private String createURL(GHMRequest ghRequest, List<String> outArraysList) {
         StringBuilder pointHintsStr = new StringBuilder();
 
         String pointsStr;
@@ -72,11 +104,6 @@ public class GHMatrixSyncRequester extends GHMatrixAbstractRequester {
         }
 
         String outArrayStr = "";
-        List<String> outArraysList = new ArrayList<>(ghRequest.getOutArrays());
-        if (outArraysList.isEmpty()) {
-            outArraysList.add("weights");
-        }
-
         for (String type : outArraysList) {
             if (!type.isEmpty()) {
                 outArrayStr += "&";
@@ -87,7 +114,10 @@ public class GHMatrixSyncRequester extends GHMatrixAbstractRequester {
 
         String url = buildURL("", ghRequest);
         url += "&" + pointsStr + "&" + pointHintsStr + "&" + outArrayStr + "&vehicle=" + ghRequest.getVehicle();
+        return url;
+    }
 
+    private MatrixResponse readResponse(GHMRequest ghRequest, List<String> outArraysList, String str) throws IOException {
         boolean withTimes = outArraysList.contains("times");
         boolean withDistances = outArraysList.contains("distances");
         boolean withWeights = outArraysList.contains("weights");
@@ -95,22 +125,16 @@ public class GHMatrixSyncRequester extends GHMatrixAbstractRequester {
                 ghRequest.getFromPoints().size(),
                 ghRequest.getToPoints().size(), withTimes, withDistances, withWeights);
 
-        try {
-            String str = getJson(url);
-            JsonNode getResponseJson = objectMapper.reader().readTree(str);
-
-            matrixResponse.addErrors(readErrors(getResponseJson));
-            if (!matrixResponse.hasErrors()) {
-                matrixResponse.addErrors(readUsableEntityError(outArraysList, getResponseJson));
-            }
-
-            if (!matrixResponse.hasErrors())
-                fillResponseFromJson(matrixResponse, getResponseJson);
+        JsonNode getResponseJson = objectMapper.reader().readTree(str);
 
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
+        matrixResponse.addErrors(readErrors(getResponseJson));
+        if (!matrixResponse.hasErrors()) {
+            matrixResponse.addErrors(readUsableEntityError(outArraysList, getResponseJson));
         }
 
+        if (!matrixResponse.hasErrors())
+            fillResponseFromJson(matrixResponse, getResponseJson);
+
         return matrixResponse;
     }
 
@@ -7,6 +7,7 @@ import com.graphhopper.util.shapes.GHPoint;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Peter Karich
@@ -28,11 +29,45 @@ public class GoogleMatrixSyncRequester extends GHMatrixAbstractRequester {
 
     @Override
     public MatrixResponse route(GHMRequest ghRequest) {
+        MatrixResponse matrixResponse = createResponse(ghRequest);
+        String url = createURL(ghRequest);
+        try {
+            fillResponseFromJson(matrixResponse, getJson(url));
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        return matrixResponse;
+    }
+
+    @Override
+    public CompletableFuture<MatrixResponse> routeAsync(GHMRequest ghRequest) {
+        final MatrixResponse matrixResponse = createResponse(ghRequest);
+        String url = createURL(ghRequest);
+        return getJsonAsync(url).thenApply(str -> {
+            try {
+                fillResponseFromJson(matrixResponse, str);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+            return matrixResponse;
+        });
+    }
+
+    private String createURL(GHMRequest ghRequest) {
         String pointsStr;
 
         pointsStr = createGoogleQuery(ghRequest.getFromPoints(), "origins");
         pointsStr += "&" + createGoogleQuery(ghRequest.getToPoints(), "destinations");
 
+        // do not do the mapping here!
+        // bicycling -> bike, car -> car, walking -> foot
+        //
+        String url = buildURL("", ghRequest);
+        url += "&" + pointsStr + "&mode=" + ghRequest.getVehicle();
+        return url;
+    }
+
+    private MatrixResponse createResponse(GHMRequest ghRequest) {
         List<String> outArraysList = new ArrayList<>(ghRequest.getOutArrays());
         if (outArraysList.isEmpty()) {
             // different default as google does not support weights
@@ -40,12 +75,6 @@ public class GoogleMatrixSyncRequester extends GHMatrixAbstractRequester {
             outArraysList.add("times");
         }
 
-        // do not do the mapping here!
-        // bicycling -> bike, car -> car, walking -> foot
-        //
-        String url = buildURL("", ghRequest);
-        url += "&" + pointsStr + "&mode=" + ghRequest.getVehicle();
-
         boolean withTimes = outArraysList.contains("times");
         boolean withDistances = outArraysList.contains("distances");
         boolean withWeights = outArraysList.contains("weights");
@@ -53,20 +82,9 @@ public class GoogleMatrixSyncRequester extends GHMatrixAbstractRequester {
             throw new UnsupportedOperationException("Google Matrix API does not include weights");
         }
 
-        MatrixResponse matrixResponse = new MatrixResponse(
+        return new MatrixResponse(
                 ghRequest.getFromPoints().size(),
                 ghRequest.getToPoints().size(), withTimes, withDistances, false);
-
-        try {
-            String str = getJson(url);
-            JsonNode getResponseJson = objectMapper.reader().readTree(str);
-            fillResponseFromJson(matrixResponse, getResponseJson);
-
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
-        }
-
-        return matrixResponse;
     }
 
     private String createGoogleQuery(List<GHPoint> list, String pointName) {
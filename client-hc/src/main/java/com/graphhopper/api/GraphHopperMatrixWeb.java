@@ -3,6 +3,8 @@ package com.graphhopper.api;
 import com.graphhopper.util.Helper;
 import okhttp3.MediaType;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  *
  * @author Peter Karich
@@ -43,4 +45,15 @@ public class GraphHopperMatrixWeb {
 
         return requester.route(request);
     }
+
+    /**
+     * Calculates the matrix like {@link #route} but without blocking the calling thread.
+     */
+    public CompletableFuture<MatrixResponse> routeAsync(GHMRequest request) {
+        if (!Helper.isEmpty(key)) {
+            request.getHints().put(KEY, key);
+        }
+
+        return requester.routeAsync(request);
+    }
 }
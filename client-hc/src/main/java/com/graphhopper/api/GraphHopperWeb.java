@@ -24,17 +24,21 @@ import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopperAPI;
 import com.graphhopper.PathWrapper;
+import com.graphhopper.http.RouteProtobuf;
 import com.graphhopper.http.WebHelper;
 import com.graphhopper.jackson.Jackson;
 import com.graphhopper.util.*;
 import com.graphhopper.util.details.PathDetail;
 import com.graphhopper.util.exceptions.*;
 import com.graphhopper.util.shapes.GHPoint;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.ResponseBody;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import static com.graphhopper.util.Helper.round6;
@@ -55,6 +59,7 @@ public class GraphHopperWeb implements GraphHopperAPI {
     private boolean instructions = true;
     private boolean calcPoints = true;
     private boolean elevation = false;
+    private boolean protobuf = false;
     private String optimize = "false";
     private final Set<String> ignoreSet;
 
@@ -334,6 +339,17 @@ public class GraphHopperWeb implements GraphHopperAPI {
         return this;
     }
 
+    /**
+     * Enable or disable the binary protocol buffers format for the route instead of JSON, which is faster to
+     * parse for many or long routes. The server has to support type=protobuf. The default is false.
+     * <p>
+     * The dependency com.google.protobuf:protobuf-java is optional and has to be added to use this format.
+     */
+    public GraphHopperWeb setProtobuf(boolean protobuf) {
+        this.protobuf = protobuf;
+        return this;
+    }
+
     /**
      * @param optimize "false" if the order of the locations should be left
      *                 unchanged, this is the default. Or if "true" then the order of the
@@ -349,36 +365,64 @@ public class GraphHopperWeb implements GraphHopperAPI {
     }
 
 
+    /**
+     * Limits the number of route requests of routeAsync which are executed at the same time, further requests are
+     * queued. The default is 64 requests and 5 per host, which limits the throughput of a single routing server.
+     */
+    public GraphHopperWeb setMaxRequests(int maxRequests, int maxRequestsPerHost) {
+        this.downloader = AsyncCalls.withMaxRequests(downloader, maxRequests, maxRequestsPerHost);
+        return this;
+    }
+
     @Override
     public GHResponse route(GHRequest request) {
         ResponseBody rspBody = null;
         try {
             Request okRequest = createRequest(request);
             rspBody = getClientForRequest(request).newCall(okRequest).execute().body();
-            JsonNode json = objectMapper.reader().readTree(rspBody.byteStream());
+            return readResponse(rspBody, request);
+        } catch (Exception ex) {
+            throw new RuntimeException("Problem while fetching path " + request.getPoints() + ": " + ex.getMessage(), ex);
+        } finally {
+            Helper.close(rspBody);
+        }
+    }
 
-            GHResponse res = new GHResponse();
-            res.addErrors(readErrors(json));
-            if (res.hasErrors())
-                return res;
+    /**
+     * Calculates the route like {@link #route} but without blocking the calling thread, so many requests can be in
+     * flight at the same time. The number of concurrent requests is limited by {@link #setMaxRequests}.
+     *
+     * @return a future which completes with the response or with the exception of the request
+     */
+    public CompletableFuture<GHResponse> routeAsync(final GHRequest request) {
+        Request okRequest = createRequest(request);
+        return AsyncCalls.enqueue(getClientForRequest(request), okRequest, body -> readResponse(body, request));
+    }
 
-            JsonNode paths = json.get("paths");
+    private GHResponse readResponse(ResponseBody rspBody, GHRequest request) throws IOException {
+        boolean tmpElevation = request.getHints().getBool("elevation", elevation);
+        boolean tmpTurnDescription = request.getHints().getBool("turn_description", true);
 
-            boolean tmpElevation = request.getHints().getBool("elevation", elevation);
-            boolean tmpTurnDescription = request.getHints().getBool("turn_description", true);
+        // errors are always JSON
+        MediaType contentType = rspBody.contentType();
+        if (contentType != null && RouteProtobuf.MEDIA_TYPE.equals(contentType.type() + "/" + contentType.subtype()))
+            return RouteProtobuf.read(rspBody.byteStream(), tmpTurnDescription);
 
-            for (JsonNode path : paths) {
-                PathWrapper altRsp = createPathWrapper(path, tmpElevation, tmpTurnDescription);
-                res.add(altRsp);
-            }
+        JsonNode json = objectMapper.reader().readTree(rspBody.byteStream());
 
+        GHResponse res = new GHResponse();
+        res.addErrors(readErrors(json));
+        if (res.hasErrors())
             return res;
 
-        } catch (Exception ex) {
-            throw new RuntimeException("Problem while fetching path " + request.getPoints() + ": " + ex.getMessage(), ex);
-        } finally {
-            Helper.close(rspBody);
+        JsonNode paths = json.get("paths");
+
+        for (JsonNode path : paths) {
+            PathWrapper altRsp = createPathWrapper(path, tmpElevation, tmpTurnDescription);
+            res.add(altRsp);
         }
+
+        return res;
     }
 
     private OkHttpClient getClientForRequest(GHRequest request) {
@@ -411,7 +455,7 @@ public class GraphHopperWeb implements GraphHopperAPI {
             places += "point=" + round6(p.lat) + "," + round6(p.lon) + "&";
         }
 
-        String type = request.getHints().get("type", "json");
+        String type = request.getHints().get("type", protobuf ? RouteProtobuf.TYPE : "json");
 
         String url = routeServiceUrl
                 + "?"
@@ -1,8 +1,16 @@
 package com.graphhopper.api;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Test;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
 
 /**
  * @author Peter Karich
@@ -26,4 +34,55 @@ public class GHMatrixBatchTest extends AbstractGHMatrixWebTester {
             }
         }.setSleepAfterGET(0));
     }
+
+    @Test
+    public void testRouteAsyncPollsUntilFinished() throws Exception {
+        final String json = readFile(new InputStreamReader(getClass().getResourceAsStream("matrix.json")));
+        final AtomicInteger gets = new AtomicInteger();
+        GHMatrixBatchRequester requester = new GHMatrixBatchRequester("") {
+            @Override
+            protected CompletableFuture<String> postJsonAsync(String url, JsonNode data) {
+                return CompletableFuture.completedFuture("{\"job_id\": \"1\"}");
+            }
+
+            @Override
+            protected CompletableFuture<String> getJsonAsync(String url) {
+                return CompletableFuture.completedFuture(gets.incrementAndGet() < 3 ? "{\"status\": \"processing\"}" : json);
+            }
+        }.setMinSleepAfterGET(1).setSleepAfterGET(10);
+
+        // the same out arrays as in matrix.json
+        GHMRequest req = createRequest();
+        req.addOutArray("weights");
+        req.addOutArray("distances");
+        req.addOutArray("times");
+        MatrixResponse rsp = requester.routeAsync(req).get(5, TimeUnit.SECONDS);
+        assertFalse(rsp.hasErrors());
+        assertEquals(3, gets.get());
+        assertEquals(9475., rsp.getDistance(0, 1), .1);
+    }
+
+    @Test
+    public void testRouteAsyncStopsAfterMaxIterations() throws Exception {
+        GHMatrixBatchRequester requester = new GHMatrixBatchRequester("") {
+            @Override
+            protected CompletableFuture<String> postJsonAsync(String url, JsonNode data) {
+                return CompletableFuture.completedFuture("{\"job_id\": \"1\"}");
+            }
+
+            @Override
+            protected CompletableFuture<String> getJsonAsync(String url) {
+                return CompletableFuture.completedFuture("{\"status\": \"waiting\"}");
+            }
+        }.setMinSleepAfterGET(1).setSleepAfterGET(1);
+        requester.setMaxIterations(3);
+
+        CompletableFuture<MatrixResponse> future = requester.routeAsync(createRequest());
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("the job never finishes");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
 }
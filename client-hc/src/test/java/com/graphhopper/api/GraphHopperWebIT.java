@@ -17,8 +17,11 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -64,6 +67,19 @@ public class GraphHopperWebIT {
         isBetween(9000, 9500, alt.getDistance());
     }
 
+    @Test
+    public void testRouteAsync() throws Exception {
+        List<CompletableFuture<GHResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(gh.routeAsync(new GHRequest(49.6724, 11.3494, 49.6550, 11.4180).setVehicle("car")));
+        }
+        for (CompletableFuture<GHResponse> future : futures) {
+            GHResponse res = future.get(10, TimeUnit.SECONDS);
+            assertFalse("errors:" + res.getErrors().toString(), res.hasErrors());
+            isBetween(11000, 12000, res.getBest().getDistance());
+        }
+    }
+
     @Test
     public void testAlternativeRoute() {
         // https://graphhopper.com/maps/?point=52.042989%2C10.373926&point=52.042289%2C10.384043&algorithm=alternative_route&ch.disable=true
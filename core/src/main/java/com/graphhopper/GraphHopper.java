@@ -53,9 +53,12 @@ import java.io.File;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.util.*;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.graphhopper.util.Helper.*;
 import static com.graphhopper.util.Parameters.Algorithms.*;
@@ -92,6 +95,11 @@ public class GraphHopper implements GraphHopperAPI {
     private boolean simplifyResponse = true;
     private TraversalMode traversalMode = TraversalMode.NODE_BASED;
     private int maxVisitedNodes = Integer.MAX_VALUE;
+    private int legThreads = 1;
+    private ExecutorService legExecutor;
+    private int batchThreads = Runtime.getRuntime().availableProcessors();
+    private ExecutorService batchExecutor;
+    private RouteCache routeCache;
 
     private int nonChMaxWaypointDistance = Integer.MAX_VALUE;
     // for index
@@ -115,7 +123,9 @@ public class GraphHopper implements GraphHopperAPI {
     private boolean calcPoints = true;
     private ElevationProvider eleProvider = ElevationProvider.NOOP;
     private FlagEncoderFactory flagEncoderFactory = FlagEncoderFactory.DEFAULT;
-    private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+    private final RunningRequests runningRequests = new RunningRequests();
+    // avoids that two graph changes are prepared from the same state
+    private final Object changeGraphMonitor = new Object();
     private PathDetailsBuilderFactory pathBuilderFactory = new PathDetailsBuilderFactory();
 
     public GraphHopper() {
@@ -342,6 +352,88 @@ public class GraphHopper implements GraphHopperAPI {
         this.maxVisitedNodes = maxVisitedNodes;
     }
 
+    public int getLegThreads() {
+        return legThreads;
+    }
+
+    /**
+     * Calculates the legs between the via points of a request concurrently with the specified number of threads.
+     * The threads are shared by all requests. Default is 1, i.e. the legs are calculated sequentially on the
+     * thread of the request.
+     */
+    public GraphHopper setLegThreads(int legThreads) {
+        if (legExecutor != null)
+            throw new IllegalStateException("Cannot change the leg threads after routing started");
+        this.legThreads = legThreads;
+        return this;
+    }
+
+    private synchronized ExecutorService getLegExecutor() {
+        if (legThreads <= 1)
+            return null;
+
+        if (legExecutor == null)
+            legExecutor = createDaemonThreadPool(legThreads, "gh-leg-");
+        return legExecutor;
+    }
+
+    public int getBatchThreads() {
+        return batchThreads;
+    }
+
+    /**
+     * Calculates the routes of a batch with the specified number of threads, see routeBatch. The threads are
+     * shared by all batches. Default is the number of available processors.
+     */
+    public GraphHopper setBatchThreads(int batchThreads) {
+        if (batchExecutor != null)
+            throw new IllegalStateException("Cannot change the batch threads after routing started");
+        if (batchThreads < 1)
+            throw new IllegalArgumentException("The batch threads must be at least 1 but was " + batchThreads);
+        this.batchThreads = batchThreads;
+        return this;
+    }
+
+    private synchronized ExecutorService getBatchExecutor() {
+        if (batchExecutor == null)
+            batchExecutor = createDaemonThreadPool(batchThreads, "gh-batch-");
+        return batchExecutor;
+    }
+
+    /**
+     * Caches the responses of up to the specified number of requests. A response is returned for a request with
+     * the same points, after snapping, and the same parameters until the specified time to live is over or the
+     * graph is changed. Default is no cache.
+     *
+     * @param maxSize   the maximum number of cached responses or 0 to disable the cache
+     * @param ttlMillis the time in milliseconds a cached response is returned
+     */
+    public GraphHopper setRouteCache(int maxSize, long ttlMillis) {
+        routeCache = maxSize > 0 ? new RouteCache(maxSize, ttlMillis) : null;
+        return this;
+    }
+
+    /**
+     * @return the cache of the route responses or null if disabled
+     */
+    public RouteCache getRouteCache() {
+        return routeCache;
+    }
+
+    private static ExecutorService createDaemonThreadPool(int threads, final String namePrefix) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, namePrefix + counter.incrementAndGet());
+                // do not prevent the JVM from exiting if close was not called
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
     /**
      * @return true if storing and fetching elevation data is enabled. Default is false
      */
@@ -616,6 +708,9 @@ public class GraphHopper implements GraphHopperAPI {
 
         // routing
         maxVisitedNodes = args.getInt(Routing.INIT_MAX_VISITED_NODES, Integer.MAX_VALUE);
+        setLegThreads(args.getInt(Routing.INIT_LEG_THREADS, legThreads));
+        setBatchThreads(args.getInt(Routing.INIT_BATCH_THREADS, batchThreads));
+        setRouteCache(args.getInt(Routing.INIT_CACHE_SIZE, 0), args.getLong(Routing.INIT_CACHE_TTL, 600) * 1000);
         maxRoundTripRetries = args.getInt(RoundTrip.INIT_MAX_RETRIES, maxRoundTripRetries);
         nonChMaxWaypointDistance = args.getInt(Parameters.NON_CH.MAX_NON_CH_POINT_DISTANCE, Integer.MAX_VALUE);
 
@@ -757,7 +852,10 @@ public class GraphHopper implements GraphHopperAPI {
 
         if (chFactoryDecorator.isEnabled()) {
             initCHAlgoFactoryDecorator();
-            ghStorage = new GraphHopperStorage(chFactoryDecorator.getWeightings(), dir, encodingManager, hasElevation(), ext);
+            if (chFactoryDecorator.isEdgeBased() && !encodingManager.needsTurnCostsSupport())
+                throw new IllegalArgumentException("Edge based CH requires turn costs, e.g. enable them via car|turn_costs=true");
+            ghStorage = new GraphHopperStorage(chFactoryDecorator.getWeightings(), dir, encodingManager, hasElevation(), ext,
+                    chFactoryDecorator.isEdgeBased());
         } else {
             ghStorage = new GraphHopperStorage(dir, encodingManager, hasElevation(), ext);
         }
@@ -866,6 +964,15 @@ public class GraphHopper implements GraphHopperAPI {
             chFactoryDecorator.createPreparations(ghStorage, traversalMode);
         if (!isCHPrepared())
             prepareCH();
+        if (chFactoryDecorator.needsAdjacencyArrays()) {
+            ensureWriteAccess();
+            chFactoryDecorator.createAdjacencyArrays();
+        }
+        if (chFactoryDecorator.isEnabled() && chFactoryDecorator.getUnpackedShortcuts() > 0
+                && !chFactoryDecorator.loadUnpackedShortcuts()) {
+            ensureWriteAccess();
+            chFactoryDecorator.createUnpackedShortcuts();
+        }
 
         if (lmFactoryDecorator.isEnabled())
             lmFactoryDecorator.createPreparations(ghStorage, locationIndex);
@@ -951,20 +1058,112 @@ public class GraphHopper implements GraphHopperAPI {
     @Override
     public GHResponse route(GHRequest request) {
         GHResponse response = new GHResponse();
-        calcPaths(request, response);
-        return response;
+        RouteCache cache = routeCache;
+        if (cache == null) {
+            calcPaths(request, response);
+            return response;
+        }
+
+        checkLoaded();
+        int generation = runningRequests.start();
+        try {
+            // changeGraph clears the cache again after all requests that started before its change finished, so
+            // an outdated response cannot stay in the cache
+            List<QueryResult> queryResults = new ArrayList<>(request.getPoints().size());
+            String cacheKey = createRouteCacheKey(request, queryResults);
+            if (cacheKey != null) {
+                GHResponse cachedResponse = cache.get(cacheKey);
+                if (cachedResponse != null)
+                    return cachedResponse;
+            }
+
+            // do not look up the points again if they were looked up for the key
+            calcPaths(request, response, queryResults.isEmpty() ? null : queryResults);
+            if (cacheKey != null && !response.hasErrors())
+                cache.put(cacheKey, response);
+            return response;
+        } finally {
+            runningRequests.finish(generation);
+        }
+    }
+
+    /**
+     * Creates the key of the request for the route cache from the parameters and the snapped points, so that
+     * requests with slightly different points that snap to the same locations share their response.
+     *
+     * @param queryResults receives the looked up points, stays empty if the points are not looked up
+     * @return the key or null if the response of the request cannot be cached
+     */
+    private String createRouteCacheKey(GHRequest request, List<QueryResult> queryResults) {
+        String algoStr = request.getAlgorithm();
+        // round trips are random unless a seed is specified
+        if (ROUND_TRIP.equalsIgnoreCase(algoStr) && !request.getHints().has(RoundTrip.SEED))
+            return null;
+
+        String vehicle = request.getVehicle();
+        if (vehicle.isEmpty())
+            vehicle = getDefaultVehicle().toString();
+        if (!encodingManager.supports(vehicle))
+            return null;
+
+        StringBuilder sb = new StringBuilder(vehicle).append('|').append(request.getWeighting()).
+                append('|').append(algoStr).append('|').append(request.getLocale()).
+                append('|').append(request.getPathDetails()).append('|').append(new TreeMap<>(request.getHints().toMap()));
+        EdgeFilter edgeFilter = DefaultEdgeFilter.allEdges(encodingManager.getEncoder(vehicle));
+        List<GHPoint> points = request.getPoints();
+        for (int i = 0; i < points.size(); i++) {
+            GHPoint point = points.get(i);
+            sb.append('|');
+            if (request.hasPointHints()) {
+                // the hint decides where the point snaps
+                sb.append(point).append(':').append(request.getPointHints().get(i));
+            } else {
+                QueryResult qr = locationIndex.findClosest(point.lat, point.lon, edgeFilter);
+                queryResults.add(qr);
+                sb.append(qr.isValid() ? createSnapKey(qr) : point.toString());
+            }
+            if (request.hasFavoredHeading(i))
+                sb.append(':').append(request.getFavoredHeading(i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return a key that is equal for query results at the same location of the graph
+     */
+    private static String createSnapKey(QueryResult qr) {
+        return qr.getSnappedPosition() == QueryResult.Position.TOWER
+                ? "node:" + qr.getClosestNode()
+                : "edge:" + qr.getClosestEdge().getEdge() + ":" + qr.getWayIndex() + ":" + qr.getSnappedPoint();
     }
 
     /**
      * This method calculates the alternative path list using the low level Path objects.
      */
     public List<Path> calcPaths(GHRequest request, GHResponse ghRsp) {
+        checkLoaded();
+        int generation = runningRequests.start();
+        try {
+            return calcPaths(request, ghRsp, null);
+        } finally {
+            runningRequests.finish(generation);
+        }
+    }
+
+    private void checkLoaded() {
         if (ghStorage == null || !fullyLoaded)
             throw new IllegalStateException("Do a successful call to load or importOrLoad before routing");
 
         if (ghStorage.isClosed())
             throw new IllegalStateException("You need to create a new GraphHopper instance as it is already closed");
+    }
 
+    /**
+     * The caller has to hold the read lock.
+     *
+     * @param queryResults the already looked up points of the request or null
+     */
+    private List<Path> calcPaths(GHRequest request, GHResponse ghRsp, List<QueryResult> queryResults) {
         // default handling
         String vehicle = request.getVehicle();
         if (vehicle.isEmpty()) {
@@ -972,8 +1171,6 @@ public class GraphHopper implements GraphHopperAPI {
             request.setVehicle(vehicle);
         }
 
-        Lock readLock = readWriteLock.readLock();
-        readLock.lock();
         try {
             if (!encodingManager.supports(vehicle))
                 throw new IllegalArgumentException("Vehicle not supported: " + vehicle + ". Supported are: " + encodingManager.toString());
@@ -1009,7 +1206,8 @@ public class GraphHopper implements GraphHopperAPI {
             else if (ALT_ROUTE.equalsIgnoreCase(algoStr))
                 routingTemplate = new AlternativeRoutingTemplate(request, ghRsp, locationIndex);
             else
-                routingTemplate = new ViaRoutingTemplate(request, ghRsp, locationIndex);
+                routingTemplate = new ViaRoutingTemplate(request, ghRsp, locationIndex).setLegExecutor(getLegExecutor()).
+                        setQueryResults(queryResults);
 
             List<Path> altPaths = null;
             int maxRetries = routingTemplate.getMaxRetries();
@@ -1041,7 +1239,7 @@ public class GraphHopper implements GraphHopperAPI {
                     else
                         throw new IllegalStateException("Although CH was enabled a non-CH algorithm factory was returned " + tmpAlgoFactory);
 
-                    tMode = getCHFactoryDecorator().getNodeBase();
+                    tMode = getCHFactoryDecorator().getTraversalMode();
                     queryGraph = new QueryGraph(ghStorage.getGraph(CHGraph.class, weighting));
                     queryGraph.lookup(qResults);
                 } else {
@@ -1091,29 +1289,155 @@ public class GraphHopper implements GraphHopperAPI {
         } catch (IllegalArgumentException ex) {
             ghRsp.addError(ex);
             return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Receives the responses of routeBatch
+     */
+    public interface BatchCallback {
+        /**
+         * @param index the index of the from and to point of the route
+         */
+        void onResponse(int index, GHResponse response);
+    }
+
+    /**
+     * Calculates the route from every from point to the to point with the same index. The vehicle, weighting,
+     * algorithm, locale, path details and hints are taken from the specified request, its points are ignored.
+     * <p>
+     * Every distinct point is looked up only once. Every route runs on its own QueryGraph with only its points,
+     * so it gets the same result as if it was calculated alone. The routes are calculated by the batch threads and
+     * passed to the callback in the order of their completion, so the callback has to be thread safe. Errors of a
+     * single route are returned in its response. A change of the graph is visible to the routes that start after it
+     * was published, only writing it back to the storage waits until the batch is finished.
+     */
+    public void routeBatch(GHRequest request, List<GHPoint> fromPoints, List<GHPoint> toPoints, final BatchCallback callback) {
+        if (fromPoints.size() != toPoints.size())
+            throw new IllegalArgumentException("The number of from points " + fromPoints.size()
+                    + " has to be equal to the number of to points " + toPoints.size());
+        String algoStr = request.getAlgorithm();
+        if (ROUND_TRIP.equalsIgnoreCase(algoStr) || ALT_ROUTE.equalsIgnoreCase(algoStr))
+            throw new IllegalArgumentException("The algorithm " + algoStr + " is not supported for a batch");
+
+        checkLoaded();
+        String vehicle = request.getVehicle();
+        if (vehicle.isEmpty())
+            vehicle = getDefaultVehicle().toString();
+        if (!encodingManager.supports(vehicle))
+            throw new IllegalArgumentException("Vehicle not supported: " + vehicle + ". Supported are: " + encodingManager.toString());
+
+        ExecutorService executor = getBatchExecutor();
+        int generation = runningRequests.start();
+        try {
+            List<GHPoint> allPoints = new ArrayList<>(fromPoints);
+            allPoints.addAll(toPoints);
+            final BatchLookup batchLookup = new BatchLookup(locationIndex, DefaultEdgeFilter.allEdges(encodingManager.getEncoder(vehicle)), allPoints);
+            List<Future<?>> futures = new ArrayList<>(fromPoints.size());
+            for (int i = 0; i < fromPoints.size(); i++) {
+                final int index = i;
+                final GHRequest routeRequest = new GHRequest(fromPoints.get(i), toPoints.get(i)).
+                        setVehicle(vehicle).
+                        setWeighting(request.getWeighting()).
+                        setAlgorithm(algoStr).
+                        setLocale(request.getLocale()).
+                        setPathDetails(request.getPathDetails());
+                routeRequest.getHints().merge(request.getHints());
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        GHResponse response = new GHResponse();
+                        try {
+                            // the batch is registered as running request by its own thread
+                            calcPaths(routeRequest, response, batchLookup.getQueryResults(routeRequest.getPoints()));
+                        } catch (RuntimeException ex) {
+                            response.addError(ex);
+                        }
+                        callback.onResponse(index, response);
+                    }
+                }));
+            }
+
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Thread was interrupted", ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) ex.getCause();
+                throw new RuntimeException(ex.getCause());
+            } finally {
+                // stop the remaining routes if the callback failed or the caller was interrupted
+                for (Future<?> future : futures) {
+                    future.cancel(true);
+                }
+            }
         } finally {
-            readLock.unlock();
+            runningRequests.finish(generation);
         }
     }
 
     /**
-     * This method applies the changes to the graph specified as feature collection. It does so by locking the routing
-     * to avoid concurrent changes which could result in incorrect routing (like when done while a Dijkstra search) or
-     * also while just reading one edge row (inconsistent edge properties).
+     * Looks up the distinct points of a batch. QueryGraph.lookup changes the results, so every route gets copies
+     * and its own QueryGraph. Otherwise the virtual nodes of all other routes would split the edges of a route and
+     * its distance would differ from the one of the same route calculated alone.
+     */
+    private static class BatchLookup {
+        private final Map<GHPoint, QueryResult> resultsByPoint = new HashMap<>();
+
+        BatchLookup(LocationIndex locationIndex, EdgeFilter edgeFilter, List<GHPoint> points) {
+            for (GHPoint point : points) {
+                if (!resultsByPoint.containsKey(point))
+                    resultsByPoint.put(point, locationIndex.findClosest(point.lat, point.lon, edgeFilter));
+            }
+        }
+
+        List<QueryResult> getQueryResults(List<GHPoint> points) {
+            List<QueryResult> results = new ArrayList<>(points.size());
+            for (GHPoint point : points) {
+                results.add(resultsByPoint.get(point).copy());
+            }
+            return results;
+        }
+    }
+
+    /**
+     * This method applies the changes to the graph specified as feature collection. The new edge properties are
+     * calculated while routing continues on the unchanged graph. Then they are published at once as a snapshot,
+     * so edge explorers created afterwards see the complete change and never a partially applied one. Routing
+     * never waits for a change: only writing the new properties back to the storage waits until all requests
+     * that started before the change was published have finished. An explorer that such a request created
+     * before the publication keeps reading the old properties. Concurrent calls of this method are applied one
+     * after the other.
      */
     public ChangeGraphResponse changeGraph(Collection<JsonFeature> collection) {
         // TODO allow calling this method if called before CH preparation
         if (getCHFactoryDecorator().isEnabled())
             throw new IllegalArgumentException("To use the changeGraph API you need to turn off CH");
 
-        Lock writeLock = readWriteLock.writeLock();
-        writeLock.lock();
-        try {
+        synchronized (changeGraphMonitor) {
             ChangeGraphHelper overlay = createChangeGraphHelper(ghStorage, locationIndex);
-            long updateCount = overlay.applyChanges(encodingManager, collection);
+            ChangeGraphHelper.PreparedChanges changes = overlay.prepareChanges(encodingManager, collection);
+
+            long updateCount = changes.getUpdateCount();
+            ghStorage.setChangedFlags(changes.getEdgeFlags());
+            try {
+                if (routeCache != null && updateCount > 0)
+                    routeCache.clear();
+
+                // requests of the previous generation might still read the old flags from the storage
+                runningRequests.awaitStarted();
+                overlay.applyChanges(changes);
+            } finally {
+                ghStorage.setChangedFlags(null);
+            }
+            // a request that started before the change might have cached its response meanwhile
+            if (routeCache != null && updateCount > 0)
+                routeCache.clear();
             return new ChangeGraphResponse(updateCount);
-        } finally {
-            writeLock.unlock();
         }
     }
 
@@ -1121,6 +1445,51 @@ public class GraphHopper implements GraphHopperAPI {
         return new ChangeGraphHelper(graph, locationIndex);
     }
 
+    /**
+     * Counts the running requests per generation without blocking them. A graph change starts a new generation
+     * and waits until the requests of the previous one have finished.
+     */
+    private static class RunningRequests {
+        private final AtomicInteger[] counts = {new AtomicInteger(), new AtomicInteger()};
+        private volatile int generation;
+
+        /**
+         * @return the generation that has to be passed to finish
+         */
+        int start() {
+            while (true) {
+                int current = generation;
+                counts[current & 1].incrementAndGet();
+                // if a new generation started meanwhile the change might not wait for this request
+                if (generation == current)
+                    return current;
+                counts[current & 1].decrementAndGet();
+            }
+        }
+
+        void finish(int generation) {
+            counts[generation & 1].decrementAndGet();
+        }
+
+        /**
+         * Starts a new generation and waits until all requests that started before have finished. Only one thread
+         * is allowed to call this method at a time.
+         */
+        void awaitStarted() {
+            int previous = generation;
+            generation = previous + 1;
+            AtomicInteger count = counts[previous & 1];
+            try {
+                while (count.get() > 0) {
+                    Thread.sleep(1);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Thread was interrupted", ex);
+            }
+        }
+    }
+
     private void checkIfPointsAreInBounds(List<GHPoint> points) {
         BBox bounds = getGraphHopperStorage().getBounds();
         for (int i = 0; i < points.size(); i++) {
@@ -1237,6 +1606,15 @@ public class GraphHopper implements GraphHopperAPI {
      * remove the files created in graphhopperLocation you have to call clean().
      */
     public void close() {
+        synchronized (this) {
+            if (legExecutor != null)
+                legExecutor.shutdownNow();
+            legExecutor = null;
+            if (batchExecutor != null)
+                batchExecutor.shutdownNow();
+            batchExecutor = null;
+        }
+
         if (ghStorage != null)
             ghStorage.close();
 
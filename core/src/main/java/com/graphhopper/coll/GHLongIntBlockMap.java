@@ -0,0 +1,216 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.carrotsearch.hppc.cursors.LongObjectCursor;
+import com.graphhopper.util.Helper;
+
+/**
+ * A memory efficient map from long to int for keys that are close to each other like the OSM node ids. The keys
+ * are grouped into blocks of 256 consecutive keys and only the delta to the start of the block is stored, i.e.
+ * one byte instead of 8 bytes per key. This needs about 5 bytes per entry if most ids of a block are used, as in
+ * big imports, and about 7 bytes if only every tenth id is used. The GHLongIntBTree needs about 12.5 bytes. Keys
+ * can be inserted in any order and negative keys are supported.
+ * Delete not supported.
+ * <p>
+ * Every block is a single int array to keep the object overhead small: the first int is the number of entries,
+ * followed by the values and the key offsets, four per int, both sorted by the offset.
+ */
+public class GHLongIntBlockMap implements LongIntMap {
+    private static final int BLOCK_BITS = 8;
+    private static final int BLOCK_MASK = (1 << BLOCK_BITS) - 1;
+    private static final int MAX_CAPACITY = 1 << BLOCK_BITS;
+    private static final int INIT_CAPACITY = 4;
+    private final int noEntryValue;
+    private final GHLongObjectHashMap<int[]> blocks;
+    private long size;
+    private long blockInts;
+    // the keys are often accessed in increasing order, e.g. while reading the nodes, so avoid the hash lookup
+    private long lastBlockKey = Long.MIN_VALUE;
+    private int[] lastBlock;
+
+    public GHLongIntBlockMap() {
+        this(-1);
+    }
+
+    public GHLongIntBlockMap(int noEntryValue) {
+        this.noEntryValue = noEntryValue;
+        this.blocks = new GHLongObjectHashMap<>(1000);
+    }
+
+    @Override
+    public int put(long key, int value) {
+        long blockKey = key >> BLOCK_BITS;
+        int offset = (int) (key & BLOCK_MASK);
+        int[] block = getBlock(blockKey);
+        if (block == null) {
+            block = new int[getLength(INIT_CAPACITY)];
+            blockInts += block.length;
+            setBlock(blockKey, block);
+        }
+
+        int entries = block[0];
+        int index = binarySearch(block, entries, offset);
+        if (index >= 0) {
+            int oldValue = block[1 + index];
+            block[1 + index] = value;
+            return oldValue;
+        }
+
+        index = ~index;
+        int capacity = getCapacity(block);
+        if (entries == capacity) {
+            block = resize(blockKey, block, Math.min(MAX_CAPACITY, roundUp(capacity + capacity / 2)));
+            capacity = getCapacity(block);
+        }
+
+        System.arraycopy(block, 1 + index, block, 2 + index, entries - index);
+        int offsetStart = 1 + capacity;
+        for (int i = entries; i > index; i--) {
+            setOffset(block, offsetStart, i, getOffset(block, offsetStart, i - 1));
+        }
+        setOffset(block, offsetStart, index, offset);
+        block[1 + index] = value;
+        block[0] = entries + 1;
+        size++;
+        return noEntryValue;
+    }
+
+    @Override
+    public int get(long key) {
+        int[] block = getBlock(key >> BLOCK_BITS);
+        if (block == null)
+            return noEntryValue;
+
+        int index = binarySearch(block, block[0], (int) (key & BLOCK_MASK));
+        if (index < 0)
+            return noEntryValue;
+        return block[1 + index];
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Releases the unused capacity of all blocks. Call this after all keys were inserted.
+     */
+    @Override
+    public void optimize() {
+        for (LongObjectCursor<int[]> cursor : blocks) {
+            int[] block = cursor.value;
+            int capacity = roundUp(block[0]);
+            if (capacity < getCapacity(block))
+                blocks.values[cursor.index] = copy(block, capacity);
+        }
+        lastBlockKey = Long.MIN_VALUE;
+        lastBlock = null;
+    }
+
+    /**
+     * @return memory usage in MB
+     */
+    @Override
+    public int getMemoryUsage() {
+        // the arrays have a header of 16 bytes and every slot of the hash map needs a long and a reference
+        long bytes = blockInts * 4 + blocks.size() * 16L + blocks.keys.length * 12L;
+        return (int) (bytes / Helper.MB);
+    }
+
+    @Override
+    public String toString() {
+        return "blocks:" + blocks.size() + ", entries:" + size;
+    }
+
+    private int[] getBlock(long blockKey) {
+        if (blockKey == lastBlockKey)
+            return lastBlock;
+
+        int[] block = blocks.get(blockKey);
+        if (block != null) {
+            lastBlockKey = blockKey;
+            lastBlock = block;
+        }
+        return block;
+    }
+
+    private void setBlock(long blockKey, int[] block) {
+        blocks.put(blockKey, block);
+        lastBlockKey = blockKey;
+        lastBlock = block;
+    }
+
+    private int[] resize(long blockKey, int[] block, int newCapacity) {
+        int[] newBlock = copy(block, newCapacity);
+        setBlock(blockKey, newBlock);
+        return newBlock;
+    }
+
+    private int[] copy(int[] block, int newCapacity) {
+        int entries = block[0];
+        int[] newBlock = new int[getLength(newCapacity)];
+        newBlock[0] = entries;
+        System.arraycopy(block, 1, newBlock, 1, entries);
+        // the offsets are packed in the same way, so we can copy the ints
+        System.arraycopy(block, 1 + getCapacity(block), newBlock, 1 + newCapacity, (entries + 3) / 4);
+        blockInts += newBlock.length - block.length;
+        return newBlock;
+    }
+
+    private static int binarySearch(int[] block, int entries, int offset) {
+        int offsetStart = 1 + getCapacity(block);
+        int low = 0, high = entries - 1;
+        while (low <= high) {
+            int guess = (low + high) >>> 1;
+            int guessedOffset = getOffset(block, offsetStart, guess);
+            if (guessedOffset < offset)
+                low = guess + 1;
+            else if (guessedOffset > offset)
+                high = guess - 1;
+            else
+                return guess;
+        }
+        return ~low;
+    }
+
+    private static int getOffset(int[] block, int offsetStart, int index) {
+        return (block[offsetStart + (index >> 2)] >>> ((index & 3) << 3)) & 0xFF;
+    }
+
+    private static void setOffset(int[] block, int offsetStart, int index, int offset) {
+        int shift = (index & 3) << 3;
+        int pointer = offsetStart + (index >> 2);
+        block[pointer] = (block[pointer] & ~(0xFF << shift)) | (offset << shift);
+    }
+
+    /**
+     * The capacity is always a multiple of 4 so that the offsets fill the ints completely.
+     */
+    private static int getCapacity(int[] block) {
+        return (block.length - 1) / 5 * 4;
+    }
+
+    private static int getLength(int capacity) {
+        return 1 + capacity + capacity / 4;
+    }
+
+    private static int roundUp(int capacity) {
+        return Math.max(INIT_CAPACITY, (capacity + 3) & ~3);
+    }
+}
@@ -37,11 +37,12 @@ import static com.graphhopper.util.Helper.createFormatter;
  * @author Robin Boldt
  */
 public class DateRangeParser implements ConditionalValueParser {
-    private static final DateFormat YEAR_MONTH_DAY_DF = createFormatter("yyyy MMM dd");
-    private static final DateFormat MONTH_DAY_DF = createFormatter("MMM dd");
-    private static final DateFormat MONTH_DAY2_DF = createFormatter("dd.MM");
-    private static final DateFormat YEAR_MONTH_DF = createFormatter("yyyy MMM");
-    private static final DateFormat MONTH_DF = createFormatter("MMM");
+    // DateFormat is not thread safe and the OSMReader parses the way tags from several threads
+    private static final ThreadLocal<DateFormat> YEAR_MONTH_DAY_DF = createThreadLocalFormatter("yyyy MMM dd");
+    private static final ThreadLocal<DateFormat> MONTH_DAY_DF = createThreadLocalFormatter("MMM dd");
+    private static final ThreadLocal<DateFormat> MONTH_DAY2_DF = createThreadLocalFormatter("dd.MM");
+    private static final ThreadLocal<DateFormat> YEAR_MONTH_DF = createThreadLocalFormatter("yyyy MMM");
+    private static final ThreadLocal<DateFormat> MONTH_DF = createThreadLocalFormatter("MMM");
     private static final List<String> DAY_NAMES = Arrays.asList(new String[]{
             "Su", "Mo", "Tu", "We", "Th", "Fr", "Sa"
     });
@@ -56,6 +57,15 @@ public class DateRangeParser implements ConditionalValueParser {
         this.date = date;
     }
 
+    private static ThreadLocal<DateFormat> createThreadLocalFormatter(final String format) {
+        return new ThreadLocal<DateFormat>() {
+            @Override
+            protected DateFormat initialValue() {
+                return createFormatter(format);
+            }
+        };
+    }
+
     public static Calendar createCalendar() {
         // Use locale US as exception here (instead of UK) to match week order "Su-Sa" used in Calendar for day_of_week.
         // Inconsistent but we should not use US for other date handling stuff like strange default formatting, related to #647.
@@ -69,23 +79,23 @@ public class DateRangeParser implements ConditionalValueParser {
         Calendar calendar = createCalendar();
         ParsedCalendar parsedCalendar;
         try {
-            calendar.setTime(YEAR_MONTH_DAY_DF.parse(dateString));
+            calendar.setTime(YEAR_MONTH_DAY_DF.get().parse(dateString));
             parsedCalendar = new ParsedCalendar(ParsedCalendar.ParseType.YEAR_MONTH_DAY, calendar);
         } catch (ParseException e1) {
             try {
-                calendar.setTime(MONTH_DAY_DF.parse(dateString));
+                calendar.setTime(MONTH_DAY_DF.get().parse(dateString));
                 parsedCalendar = new ParsedCalendar(ParsedCalendar.ParseType.MONTH_DAY, calendar);
             } catch (ParseException e2) {
                 try {
-                    calendar.setTime(MONTH_DAY2_DF.parse(dateString));
+                    calendar.setTime(MONTH_DAY2_DF.get().parse(dateString));
                     parsedCalendar = new ParsedCalendar(ParsedCalendar.ParseType.MONTH_DAY, calendar);
                 } catch (ParseException e3) {
                     try {
-                        calendar.setTime(YEAR_MONTH_DF.parse(dateString));
+                        calendar.setTime(YEAR_MONTH_DF.get().parse(dateString));
                         parsedCalendar = new ParsedCalendar(ParsedCalendar.ParseType.YEAR_MONTH, calendar);
                     } catch (ParseException e4) {
                         try {
-                            calendar.setTime(MONTH_DF.parse(dateString));
+                            calendar.setTime(MONTH_DF.get().parse(dateString));
                             parsedCalendar = new ParsedCalendar(ParsedCalendar.ParseType.MONTH, calendar);
                         } catch (ParseException e5) {
                             int index = DAY_NAMES.indexOf(dateString);
@@ -18,11 +18,14 @@
 package com.graphhopper.routing;
 
 import com.graphhopper.routing.ch.Path4CH;
+import com.graphhopper.routing.ch.UnpackedShortcutStorage;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 
 public class AStarBidirectionCH extends AStarBidirection {
+    private UnpackedShortcutStorage unpackedShortcuts;
+
     public AStarBidirectionCH(Graph graph, Weighting weighting, TraversalMode traversalMode) {
         super(graph, weighting, traversalMode);
         if (traversalMode.isEdgeBased()) {
@@ -31,6 +34,14 @@ public class AStarBidirectionCH extends AStarBidirection {
         }
     }
 
+    /**
+     * Copies the edges of these shortcuts during the path extraction instead of unpacking them.
+     */
+    public AStarBidirectionCH setUnpackedShortcuts(UnpackedShortcutStorage unpackedShortcuts) {
+        this.unpackedShortcuts = unpackedShortcuts;
+        return this;
+    }
+
     @Override
     protected void initCollections(int size) {
         super.initCollections(Math.min(size, 2000));
@@ -48,7 +59,7 @@ public class AStarBidirectionCH extends AStarBidirection {
 
     @Override
     protected Path createAndInitPath() {
-        bestPath = new Path4CH(graph, graph.getBaseGraph(), weighting);
+        bestPath = new Path4CH(graph, graph.getBaseGraph(), weighting).setUnpackedShortcuts(unpackedShortcuts);
         return bestPath;
     }
 
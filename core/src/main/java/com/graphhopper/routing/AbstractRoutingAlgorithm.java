@@ -70,6 +70,15 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm {
         return this;
     }
 
+    /**
+     * Replaces the explorers of the outgoing and incoming edges, e.g. to traverse a special representation of the graph.
+     */
+    public RoutingAlgorithm setEdgeExplorers(EdgeExplorer outEdgeExplorer, EdgeExplorer inEdgeExplorer) {
+        this.outEdgeExplorer = outEdgeExplorer;
+        this.inEdgeExplorer = inEdgeExplorer;
+        return this;
+    }
+
     protected boolean accept(EdgeIteratorState iter, int prevOrNextEdgeId) {
         if (!traversalMode.hasUTurnSupport() && iter.getEdge() == prevOrNextEdgeId)
             return false;
@@ -18,11 +18,14 @@
 package com.graphhopper.routing;
 
 import com.graphhopper.routing.ch.Path4CH;
+import com.graphhopper.routing.ch.UnpackedShortcutStorage;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 
 public class DijkstraBidirectionCHNoSOD extends DijkstraBidirectionRef {
+    private UnpackedShortcutStorage unpackedShortcuts;
+
     public DijkstraBidirectionCHNoSOD(Graph graph, Weighting weighting, TraversalMode traversalMode) {
         super(graph, weighting, traversalMode);
         if (traversalMode.isEdgeBased()) {
@@ -30,6 +33,14 @@ public class DijkstraBidirectionCHNoSOD extends DijkstraBidirectionRef {
         }
     }
 
+    /**
+     * Copies the edges of these shortcuts during the path extraction instead of unpacking them.
+     */
+    public DijkstraBidirectionCHNoSOD setUnpackedShortcuts(UnpackedShortcutStorage unpackedShortcuts) {
+        this.unpackedShortcuts = unpackedShortcuts;
+        return this;
+    }
+
     @Override
     protected void initCollections(int size) {
         super.initCollections(Math.min(size, 2000));
@@ -47,7 +58,7 @@ public class DijkstraBidirectionCHNoSOD extends DijkstraBidirectionRef {
 
     @Override
     protected Path createAndInitPath() {
-        bestPath = new Path4CH(graph, graph.getBaseGraph(), weighting);
+        bestPath = new Path4CH(graph, graph.getBaseGraph(), weighting).setUnpackedShortcuts(unpackedShortcuts);
         return bestPath;
     }
 
@@ -0,0 +1,209 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.ch.EdgeBasedPath4CH;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.TurnWeighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.SPTEntry;
+import com.graphhopper.util.*;
+
+/**
+ * Bidirectional Dijkstra for an edge based CH, i.e. for shortcuts created with turn costs. A search state is
+ * the node together with the original edge it was reached with. For the forward search this is the last original
+ * edge of a shortcut and for the backward search the first one. Both searches meet at a node where the turn from
+ * the incoming original edge of the forward search to the outgoing original edge of the backward search is
+ * possible. U-turns are not allowed, see {@link TraversalMode#EDGE_BASED_2DIR}.
+ *
+ * @see com.graphhopper.routing.ch.PrepareContractionHierarchies
+ */
+public class DijkstraBidirectionEdgeCHNoSOD extends AbstractBidirAlgo {
+    private final TurnWeighting turnWeighting;
+    private final Graph baseGraph;
+    private final EdgeExplorer meetingEdgeExplorer;
+    private SPTEntry fromStartEntry;
+    private SPTEntry toStartEntry;
+
+    /**
+     * @param turnWeighting its super weighting has to return the weight of shortcuts, e.g. a PreparationWeighting
+     */
+    public DijkstraBidirectionEdgeCHNoSOD(Graph graph, TurnWeighting turnWeighting) {
+        super(graph, turnWeighting, TraversalMode.EDGE_BASED_2DIR);
+        this.turnWeighting = turnWeighting;
+        this.baseGraph = graph.getBaseGraph();
+        this.meetingEdgeExplorer = baseGraph.createEdgeExplorer();
+    }
+
+    @Override
+    protected void initCollections(int size) {
+        super.initCollections(Math.min(size, 2000));
+    }
+
+    @Override
+    protected SPTEntry createStartEntry(int node, double weight, boolean reverse) {
+        SPTEntry entry = new EdgeCHEntry(EdgeIterator.NO_EDGE, EdgeIterator.NO_EDGE, node, weight);
+        if (reverse)
+            toStartEntry = entry;
+        else
+            fromStartEntry = entry;
+        return entry;
+    }
+
+    @Override
+    protected void postInit(int from, int to) {
+        super.postInit(from, to);
+        if (from == to)
+            bestPath.setWeight(currFrom.weight + currTo.weight);
+    }
+
+    @Override
+    protected SPTEntry createEntry(EdgeIteratorState edge, double weight, SPTEntry parent, boolean reverse) {
+        EdgeCHEntry entry = new EdgeCHEntry(edge.getEdge(), getIncomingOrigEdge(edge, reverse), edge.getAdjNode(), weight);
+        entry.parent = parent;
+        return entry;
+    }
+
+    @Override
+    protected boolean accept(EdgeIteratorState edge, SPTEntry currEdge, boolean reverse) {
+        // u-turns are excluded via the turn weight as they depend on the original edges and not on the shortcuts
+        return additionalEdgeFilter == null || additionalEdgeFilter.accept(edge);
+    }
+
+    @Override
+    protected int getTraversalId(EdgeIteratorState edge, int origEdgeId, boolean reverse) {
+        if (!((CHEdgeIteratorState) edge).isShortcut())
+            return GHUtility.createEdgeKey(edge.getBaseNode(), edge.getAdjNode(), edge.getEdge(), false);
+
+        return createStateKey(getIncomingOrigEdge(edge, reverse), edge.getAdjNode());
+    }
+
+    @Override
+    protected double calcWeight(EdgeIteratorState iter, SPTEntry currEdge, boolean reverse) {
+        int incEdge = ((EdgeCHEntry) currEdge).incEdge;
+        CHEdgeIteratorState chEdge = (CHEdgeIteratorState) iter;
+        double turnWeight = reverse
+                ? calcTurnWeight(chEdge.getOrigEdgeLast(), currEdge.adjNode, incEdge)
+                : calcTurnWeight(incEdge, currEdge.adjNode, chEdge.getOrigEdgeFirst());
+        if (Double.isInfinite(turnWeight))
+            return Double.POSITIVE_INFINITY;
+
+        return turnWeighting.calcWeight(iter, reverse, EdgeIterator.NO_EDGE) + turnWeight + currEdge.getWeightOfVisitedPath();
+    }
+
+    @Override
+    protected void updateBestPath(EdgeIteratorState edgeState, SPTEntry entry, int traversalId, boolean reverse) {
+        int node = entry.adjNode;
+        int incEdge = ((EdgeCHEntry) entry).incEdge;
+        // the path can end at the start of the other search
+        SPTEntry otherStartEntry = reverse ? fromStartEntry : toStartEntry;
+        if (otherStartEntry.adjNode == node)
+            updateBestPath(entry.getWeightOfVisitedPath(), entry, otherStartEntry, reverse);
+
+        EdgeIterator iter = meetingEdgeExplorer.setBaseNode(node);
+        while (iter.next()) {
+            SPTEntry entryOther = bestWeightMapOther.get(GHUtility.createEdgeKey(iter.getAdjNode(), node, iter.getEdge(), false));
+            if (entryOther == null)
+                continue;
+
+            double turnWeight = reverse
+                    ? calcTurnWeight(iter.getEdge(), node, incEdge)
+                    : calcTurnWeight(incEdge, node, iter.getEdge());
+            updateBestPath(entry.getWeightOfVisitedPath() + turnWeight + entryOther.getWeightOfVisitedPath(), entry, entryOther, reverse);
+        }
+    }
+
+    private void updateBestPath(double weight, SPTEntry entry, SPTEntry entryOther, boolean reverse) {
+        if (weight < bestPath.getWeight()) {
+            bestPath.setSwitchToFrom(reverse);
+            bestPath.setSPTEntry(entry);
+            bestPath.setSPTEntryTo(entryOther);
+            bestPath.setWeight(weight);
+        }
+    }
+
+    @Override
+    protected void updateEntry(SPTEntry entry, EdgeIteratorState edge, double weight, SPTEntry parent, boolean reverse) {
+        // the incoming original edge is part of the traversal id and does not change
+        entry.edge = edge.getEdge();
+        entry.weight = weight;
+        entry.parent = parent;
+    }
+
+    @Override
+    public boolean finished() {
+        // we need to finish BOTH searches for CH!
+        if (finishedFrom && finishedTo)
+            return true;
+
+        return currFrom.weight >= bestPath.getWeight() && currTo.weight >= bestPath.getWeight();
+    }
+
+    @Override
+    protected Path createAndInitPath() {
+        bestPath = new EdgeBasedPath4CH(graph, baseGraph, turnWeighting);
+        return bestPath;
+    }
+
+    /**
+     * @return the original edge of the specified edge that is adjacent to its adjacent node, i.e. the last
+     * original edge for the forward search and the first one for the backward search
+     */
+    private int getIncomingOrigEdge(EdgeIteratorState edge, boolean reverse) {
+        CHEdgeIteratorState chEdge = (CHEdgeIteratorState) edge;
+        return reverse ? chEdge.getOrigEdgeFirst() : chEdge.getOrigEdgeLast();
+    }
+
+    private int createStateKey(int origEdge, int node) {
+        // for a shortcut we do not know the other node of its original edge
+        int otherNode = baseGraph.getEdgeIteratorState(origEdge, node).getBaseNode();
+        return GHUtility.createEdgeKey(otherNode, node, origEdge, false);
+    }
+
+    private double calcTurnWeight(int inEdge, int viaNode, int outEdge) {
+        if (!EdgeIterator.Edge.isValid(inEdge) || !EdgeIterator.Edge.isValid(outEdge))
+            return 0;
+        if (inEdge == outEdge)
+            return Double.POSITIVE_INFINITY;
+        return turnWeighting.calcTurnWeight(inEdge, viaNode, outEdge);
+    }
+
+    @Override
+    public String getName() {
+        return "dijkstrabi|ch|edge_based|no_sod";
+    }
+
+    @Override
+    public String toString() {
+        return getName() + "|" + weighting;
+    }
+
+    private static class EdgeCHEntry extends SPTEntry {
+        final int incEdge;
+
+        EdgeCHEntry(int edge, int incEdge, int adjNode, double weight) {
+            super(edge, adjNode, weight);
+            this.incEdge = incEdge;
+        }
+
+        @Override
+        public String toString() {
+            return super.toString() + ", incEdge: " + incEdge;
+        }
+    }
+}
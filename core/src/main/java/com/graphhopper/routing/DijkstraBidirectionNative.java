@@ -0,0 +1,256 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.apache.commons.collections.IntDoubleBinaryHeap;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.Parameters;
+
+import java.util.Arrays;
+
+/**
+ * A bidirectional Dijkstra that does not create an object per visited node like DijkstraBidirectionRef. The
+ * parent node, the parent edge and the weight are stored in primitive arrays indexed by the node and the queue
+ * is an IntDoubleBinaryHeap. Instead of updating the key of a node it is inserted again and the outdated entry
+ * is skipped when it is polled.
+ * <p>
+ * The arrays are kept per thread and reused for the next request, where only the entries touched by the
+ * previous request are reset, similar to DijkstraOneToMany. Note that every thread that used this algorithm
+ * keeps roughly 2 * 17 bytes per node of the biggest graph it was used for. Only node based traversal is
+ * supported.
+ */
+public class DijkstraBidirectionNative extends AbstractRoutingAlgorithm {
+    private static final ThreadLocal<SPTArrays[]> ARRAYS = new ThreadLocal<SPTArrays[]>() {
+        @Override
+        protected SPTArrays[] initialValue() {
+            return new SPTArrays[]{new SPTArrays(), new SPTArrays()};
+        }
+    };
+    private SPTArrays from;
+    private SPTArrays to;
+    private double currFromKey;
+    private double currToKey;
+    private double bestWeight = Double.MAX_VALUE;
+    private int meetingNode = -1;
+    private boolean finishedFrom;
+    private boolean finishedTo;
+    private int visitedCountFrom;
+    private int visitedCountTo;
+
+    public DijkstraBidirectionNative(Graph graph, Weighting weighting, TraversalMode tMode) {
+        super(graph, weighting, tMode);
+        if (tMode.isEdgeBased())
+            throw new IllegalArgumentException(getClass().getSimpleName() + " supports only node based traversal but was "
+                    + tMode);
+    }
+
+    @Override
+    public Path calcPath(int from, int to) {
+        checkAlreadyRun();
+        init(from, to);
+        runAlgo();
+        return extractPath();
+    }
+
+    void init(int fromNode, int toNode) {
+        SPTArrays[] arrays = ARRAYS.get();
+        from = arrays[0].reset(graph.getNodes());
+        to = arrays[1].reset(graph.getNodes());
+
+        currFromKey = approximate(fromNode, false);
+        from.setLabel(fromNode, -1, EdgeIterator.NO_EDGE, 0);
+        from.heap.insert_(currFromKey, fromNode);
+
+        currToKey = approximate(toNode, true);
+        to.setLabel(toNode, -1, EdgeIterator.NO_EDGE, 0);
+        to.heap.insert_(currToKey, toNode);
+
+        if (fromNode == toNode) {
+            bestWeight = 0;
+            meetingNode = fromNode;
+            finishedFrom = true;
+            finishedTo = true;
+        }
+    }
+
+    void runAlgo() {
+        while (!finished() && !isMaxVisitedNodesExceeded()) {
+            if (!finishedFrom)
+                finishedFrom = !fillEdgesFrom();
+
+            if (!finishedTo)
+                finishedTo = !fillEdgesTo();
+        }
+    }
+
+    @Override
+    protected boolean finished() {
+        if (finishedFrom || finishedTo)
+            return true;
+
+        return currFromKey + currToKey >= bestWeight;
+    }
+
+    boolean fillEdgesFrom() {
+        int node = pollNode(from);
+        if (node < 0)
+            return false;
+
+        visitedCountFrom++;
+        currFromKey = from.weights[node] + approximate(node, false);
+        fillEdges(node, from, to, outEdgeExplorer, false);
+        return true;
+    }
+
+    boolean fillEdgesTo() {
+        int node = pollNode(to);
+        if (node < 0)
+            return false;
+
+        visitedCountTo++;
+        currToKey = to.weights[node] + approximate(node, true);
+        fillEdges(node, to, from, inEdgeExplorer, true);
+        return true;
+    }
+
+    /**
+     * @return the node with the smallest key that was not yet settled or -1 if there is no such node
+     */
+    private int pollNode(SPTArrays arrays) {
+        while (!arrays.heap.isEmpty()) {
+            int node = arrays.heap.poll_element();
+            // skip outdated entries of nodes that were inserted again with a smaller weight
+            if (!arrays.settled[node]) {
+                arrays.settled[node] = true;
+                return node;
+            }
+        }
+        return -1;
+    }
+
+    private void fillEdges(int node, SPTArrays arrays, SPTArrays other, EdgeExplorer explorer, boolean reverse) {
+        double nodeWeight = arrays.weights[node];
+        int nodeEdge = arrays.edges[node];
+        EdgeIterator iter = explorer.setBaseNode(node);
+        while (iter.next()) {
+            if (!accept(iter, nodeEdge))
+                continue;
+
+            int adjNode = iter.getAdjNode();
+            double weight = weighting.calcWeight(iter, reverse, nodeEdge) + nodeWeight;
+            if (Double.isInfinite(weight) || weight >= arrays.weights[adjNode])
+                continue;
+
+            arrays.setLabel(adjNode, node, iter.getEdge(), weight);
+            arrays.heap.insert_(weight + approximate(adjNode, reverse), adjNode);
+
+            // update μ, see the comment of AbstractBidirAlgo.finished
+            double otherWeight = other.weights[adjNode];
+            if (otherWeight != Double.MAX_VALUE && weight + otherWeight < bestWeight) {
+                bestWeight = weight + otherWeight;
+                meetingNode = adjNode;
+            }
+        }
+    }
+
+    /**
+     * @return the estimated weight from the specified node to the target or for reverse=true from the source to
+     * the specified node. Always 0 for Dijkstra.
+     */
+    protected double approximate(int node, boolean reverse) {
+        return 0;
+    }
+
+    @Override
+    protected Path extractPath() {
+        PathBidirNative path = new PathBidirNative(graph, weighting, from.parents, from.edges, to.parents, to.edges);
+        if (!finished() || meetingNode < 0)
+            return path;
+
+        path.setMeetingNode(meetingNode);
+        path.setWeight(bestWeight);
+        return path.extract();
+    }
+
+    @Override
+    public int getVisitedNodes() {
+        return visitedCountFrom + visitedCountTo;
+    }
+
+    @Override
+    public String getName() {
+        return Parameters.Algorithms.DIJKSTRA_BI_NATIVE;
+    }
+
+    /**
+     * The shortest path tree of one direction.
+     */
+    static class SPTArrays {
+        int[] parents = new int[0];
+        int[] edges = new int[0];
+        double[] weights = new double[0];
+        boolean[] settled = new boolean[0];
+        final IntDoubleBinaryHeap heap = new IntDoubleBinaryHeap(1000);
+        private final IntArrayList changedNodes = new IntArrayList();
+
+        /**
+         * Resets the entries changed by the previous request and makes sure the arrays can hold the specified
+         * number of nodes.
+         */
+        SPTArrays reset(int nodes) {
+            if (parents.length < nodes) {
+                // a bit more to avoid growing the arrays for every slightly bigger QueryGraph
+                int capacity = nodes + nodes / 10 + 10;
+                parents = new int[capacity];
+                edges = new int[capacity];
+                weights = new double[capacity];
+                settled = new boolean[capacity];
+                Arrays.fill(parents, -1);
+                Arrays.fill(edges, EdgeIterator.NO_EDGE);
+                Arrays.fill(weights, Double.MAX_VALUE);
+            } else {
+                for (int i = 0; i < changedNodes.size(); i++) {
+                    int node = changedNodes.get(i);
+                    parents[node] = -1;
+                    edges[node] = EdgeIterator.NO_EDGE;
+                    weights[node] = Double.MAX_VALUE;
+                    settled[node] = false;
+                }
+            }
+            changedNodes.elementsCount = 0;
+            heap.clear();
+            return this;
+        }
+
+        void setLabel(int node, int parent, int edge, double weight) {
+            if (weights[node] == Double.MAX_VALUE)
+                changedNodes.add(node);
+
+            parents[node] = parent;
+            edges[node] = edge;
+            weights[node] = weight;
+            // a settled node can only be improved if the approximation of A* is not consistent, visit it again
+            settled[node] = false;
+        }
+    }
+}
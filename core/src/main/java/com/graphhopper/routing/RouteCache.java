@@ -0,0 +1,133 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.GHResponse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of route responses. If the cache is full the least recently used response is removed and a
+ * response is not returned anymore after the time to live, counted from its calculation. The cached responses
+ * are shared by all requests with the same key, so they must not be modified.
+ */
+public class RouteCache {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxSize   the maximum number of cached responses
+     * @param ttlMillis the time in milliseconds a response is returned after it was put into the cache
+     */
+    public RouteCache(final int maxSize, long ttlMillis) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("The size of the route cache must be at least 1 but was " + maxSize);
+        if (ttlMillis < 1)
+            throw new IllegalArgumentException("The time to live of the route cache must be positive but was " + ttlMillis);
+
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        // access order, so the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= maxSize)
+                    return false;
+
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return the cached response for the specified key or null if there is none or it is expired
+     */
+    public synchronized GHResponse get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt <= now()) {
+            entries.remove(key);
+            entry = null;
+        }
+
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.response;
+    }
+
+    public synchronized void put(String key, GHResponse response) {
+        entries.put(key, new Entry(response, now() + ttlMillis));
+    }
+
+    /**
+     * Removes all responses, e.g. if the graph was changed.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of responses that were removed because the cache was full
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "size:" + entries.size() + "/" + maxSize + ", hits:" + hits + ", misses:" + misses + ", evictions:" + evictions;
+    }
+
+    private static class Entry {
+        final GHResponse response;
+        final long expiresAt;
+
+        Entry(GHResponse response, long expiresAt) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
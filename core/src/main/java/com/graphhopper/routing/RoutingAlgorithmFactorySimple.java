@@ -48,6 +48,15 @@ public class RoutingAlgorithmFactorySimple implements RoutingAlgorithmFactory {
             aStarBi.setApproximation(getApproximation(ASTAR_BI, opts, g.getNodeAccess()));
             ra = aStarBi;
 
+        } else if (DIJKSTRA_BI_NATIVE.equalsIgnoreCase(algoStr)) {
+            ra = new DijkstraBidirectionNative(g, opts.getWeighting(), opts.getTraversalMode());
+
+        } else if (ASTAR_BI_NATIVE.equalsIgnoreCase(algoStr)) {
+            AStarBidirectionNative aStarBi = new AStarBidirectionNative(g, opts.getWeighting(),
+                    opts.getTraversalMode());
+            aStarBi.setApproximation(getApproximation(ASTAR_BI, opts, g.getNodeAccess()));
+            ra = aStarBi;
+
         } else if (DIJKSTRA_ONE_TO_MANY.equalsIgnoreCase(algoStr)) {
             ra = new DijkstraOneToMany(g, opts.getWeighting(), opts.getTraversalMode());
 
@@ -186,6 +186,23 @@ class VirtualEdgeIterator implements EdgeIterator, CHEdgeIteratorState {
         throw new UnsupportedOperationException("Not supported.");
     }
 
+    @Override
+    public int getOrigEdgeFirst() {
+        EdgeIteratorState edge = edges.get(current);
+        return edge instanceof CHEdgeIteratorState ? ((CHEdgeIteratorState) edge).getOrigEdgeFirst() : edge.getEdge();
+    }
+
+    @Override
+    public int getOrigEdgeLast() {
+        EdgeIteratorState edge = edges.get(current);
+        return edge instanceof CHEdgeIteratorState ? ((CHEdgeIteratorState) edge).getOrigEdgeLast() : edge.getEdge();
+    }
+
+    @Override
+    public void setFirstAndLastOrigEdges(int firstOrigEdge, int lastOrigEdge) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
     @Override
     public int getMergeStatus(long flags) {
         throw new UnsupportedOperationException("Not supported.");
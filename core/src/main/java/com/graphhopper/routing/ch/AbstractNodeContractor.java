@@ -35,6 +35,8 @@ abstract class AbstractNodeContractor implements NodeContractor {
     CHEdgeExplorer inEdgeExplorer;
     CHEdgeExplorer outEdgeExplorer;
     private final DataAccess originalEdges;
+    // only the contractor that created the original edges storage is allowed to release it
+    private final boolean ownsOriginalEdges;
     int maxLevel;
     private int maxEdgesCount;
 
@@ -44,6 +46,19 @@ abstract class AbstractNodeContractor implements NodeContractor {
         this.encoder = weighting.getFlagEncoder();
         originalEdges = dir.find("original_edges_" + AbstractWeighting.weightingToFileName(weighting));
         originalEdges.create(1000);
+        ownsOriginalEdges = true;
+    }
+
+    /**
+     * Creates a contractor operating on the same graph and sharing the original edge counts with the specified
+     * contractor.
+     */
+    AbstractNodeContractor(AbstractNodeContractor parent) {
+        this.ghStorage = parent.ghStorage;
+        this.prepareGraph = parent.prepareGraph;
+        this.encoder = parent.encoder;
+        this.originalEdges = parent.originalEdges;
+        ownsOriginalEdges = false;
     }
 
     @Override
@@ -56,7 +71,8 @@ abstract class AbstractNodeContractor implements NodeContractor {
 
     @Override
     public void close() {
-        originalEdges.close();
+        if (ownsOriginalEdges)
+            originalEdges.close();
     }
 
     boolean isContracted(int node) {
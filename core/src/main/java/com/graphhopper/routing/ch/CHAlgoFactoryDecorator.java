@@ -29,6 +29,7 @@ import com.graphhopper.storage.*;
 import com.graphhopper.util.CmdArgs;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.Parameters.CH;
+import com.graphhopper.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,6 +62,10 @@ public class CHAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
     private int preparationNeighborUpdates = -1;
     private int preparationContractedNodes = -1;
     private double preparationLogMessages = -1;
+    private int preparationContractionThreads = -1;
+    private boolean edgeBased = false;
+    private boolean adjacencyArrays = false;
+    private double unpackedShortcuts = 0;
 
     public CHAlgoFactoryDecorator() {
         setPreparationThreads(1);
@@ -98,6 +103,16 @@ public class CHAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
         setPreparationNeighborUpdates(args.getInt(CH.PREPARE + "updates.neighbor", getPreparationNeighborUpdates()));
         setPreparationContractedNodes(args.getInt(CH.PREPARE + "contracted_nodes", getPreparationContractedNodes()));
         setPreparationLogMessages(args.getDouble(CH.PREPARE + "log_messages", getPreparationLogMessages()));
+        setPreparationContractionThreads(args.getInt(CH.PREPARE + "contraction_threads", getPreparationContractionThreads()));
+        setEdgeBased(args.getBool(CH.PREPARE + "edge_based", isEdgeBased()));
+        setAdjacencyArrays(args.getBool(CH.PREPARE + "adjacency_arrays", isAdjacencyArrays()));
+        if (isEdgeBased() && isAdjacencyArrays())
+            throw new IllegalArgumentException("Adjacency arrays are only supported for node based CH, disable "
+                    + CH.PREPARE + "adjacency_arrays or " + CH.PREPARE + "edge_based");
+        setUnpackedShortcuts(args.getDouble(CH.PREPARE + "unpacked_shortcuts", getUnpackedShortcuts()));
+        if (isEdgeBased() && getUnpackedShortcuts() > 0)
+            throw new IllegalArgumentException("Unpacked shortcuts are only supported for node based CH, disable "
+                    + CH.PREPARE + "unpacked_shortcuts or " + CH.PREPARE + "edge_based");
     }
 
     public int getPreparationPeriodicUpdates() {
@@ -145,6 +160,61 @@ public class CHAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
         return this;
     }
 
+    public int getPreparationContractionThreads() {
+        return preparationContractionThreads;
+    }
+
+    /**
+     * This method changes the number of threads used to contract the nodes of every single weighting. In contrast to
+     * setPreparationThreads this also speeds up the preparation if only one weighting is configured.
+     */
+    public CHAlgoFactoryDecorator setPreparationContractionThreads(int prepareContractionThreads) {
+        this.preparationContractionThreads = prepareContractionThreads;
+        return this;
+    }
+
+    public boolean isEdgeBased() {
+        return edgeBased;
+    }
+
+    /**
+     * Enables edge based preparations, which make turn costs and turn restrictions possible for CH. This requires
+     * an encoder with turn cost support and has to be configured before the graph storage is created.
+     */
+    public CHAlgoFactoryDecorator setEdgeBased(boolean edgeBased) {
+        this.edgeBased = edgeBased;
+        return this;
+    }
+
+    public boolean isAdjacencyArrays() {
+        return adjacencyArrays;
+    }
+
+    /**
+     * Stores the upward edges and shortcuts additionally as compact arrays after the preparation. This makes the
+     * queries faster but requires more memory and is only supported for node based preparations.
+     */
+    public CHAlgoFactoryDecorator setAdjacencyArrays(boolean adjacencyArrays) {
+        this.adjacencyArrays = adjacencyArrays;
+        return this;
+    }
+
+    public double getUnpackedShortcuts() {
+        return unpackedShortcuts;
+    }
+
+    /**
+     * Unpacks the shortcuts between the specified fraction of the nodes with the highest levels in advance, e.g. 0.01
+     * for the highest percent. This makes the path extraction of long routes faster but requires more memory. Use 0 to
+     * disable this, which is the default.
+     */
+    public CHAlgoFactoryDecorator setUnpackedShortcuts(double topNodes) {
+        if (topNodes < 0 || topNodes > 1)
+            throw new IllegalArgumentException("The fraction of the nodes with unpacked shortcuts has to be in [0, 1] but was " + topNodes);
+        this.unpackedShortcuts = topNodes;
+        return this;
+    }
+
     @Override
     public final boolean isEnabled() {
         return enabled;
@@ -309,13 +379,66 @@ public class CHAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
         }
     }
 
+    /**
+     * @return true if the adjacency arrays of at least one preparation are missing, see createAdjacencyArrays
+     */
+    public boolean needsAdjacencyArrays() {
+        if (!isEnabled() || !adjacencyArrays)
+            return false;
+
+        for (PrepareContractionHierarchies prepare : getPreparations()) {
+            if (!prepare.hasAdjacencyArrays())
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Creates the missing adjacency arrays of all preparations, this has to be done after the preparation.
+     */
+    public void createAdjacencyArrays() {
+        for (PrepareContractionHierarchies prepare : getPreparations()) {
+            if (prepare.hasAdjacencyArrays())
+                continue;
+
+            StopWatch sw = new StopWatch().start();
+            prepare.createAdjacencyArrays();
+            LOGGER.info("created adjacency arrays for " + prepare.getWeighting() + " in " + sw.stop().getSeconds() + "s");
+        }
+    }
+
+    /**
+     * Loads the unpacked shortcuts of all preparations, this has to be done after the preparation.
+     *
+     * @return false if the unpacked shortcuts of a preparation do not exist or were created for a different
+     * fraction of the nodes, then call createUnpackedShortcuts
+     */
+    public boolean loadUnpackedShortcuts() {
+        boolean loaded = true;
+        for (PrepareContractionHierarchies prepare : getPreparations()) {
+            if (!prepare.loadUnpackedShortcuts(unpackedShortcuts))
+                loaded = false;
+        }
+        return loaded;
+    }
+
+    /**
+     * Creates the unpacked shortcuts of all preparations for which loadUnpackedShortcuts failed.
+     */
+    public void createUnpackedShortcuts() {
+        for (PrepareContractionHierarchies prepare : getPreparations()) {
+            if (prepare.getUnpackedShortcuts() == null)
+                prepare.createUnpackedShortcuts(unpackedShortcuts);
+        }
+    }
+
     public void createPreparations(GraphHopperStorage ghStorage, TraversalMode traversalMode) {
         if (!isEnabled() || !preparations.isEmpty())
             return;
         if (weightings.isEmpty())
             throw new IllegalStateException("No CH weightings found");
 
-        traversalMode = getNodeBase();
+        traversalMode = getTraversalMode();
 
         for (Weighting weighting : getWeightings()) {
             PrepareContractionHierarchies tmpPrepareCH = new PrepareContractionHierarchies(
@@ -324,17 +447,24 @@ public class CHAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
             tmpPrepareCH.setPeriodicUpdates(preparationPeriodicUpdates).
                     setLazyUpdates(preparationLazyUpdates).
                     setNeighborUpdates(preparationNeighborUpdates).
-                    setLogMessages(preparationLogMessages);
+                    setLogMessages(preparationLogMessages).
+                    setContractionThreads(preparationContractionThreads);
 
             addPreparation(tmpPrepareCH);
         }
     }
 
     /**
-     * For now only node based will work, later on we can easily find usage of this method to remove
-     * it.
+     * @return the traversal mode of node based preparations, see also getTraversalMode
      */
     public TraversalMode getNodeBase() {
         return TraversalMode.NODE_BASED;
     }
+
+    /**
+     * @return the traversal mode used for all preparations and queries of this decorator
+     */
+    public TraversalMode getTraversalMode() {
+        return edgeBased ? TraversalMode.EDGE_BASED_2DIR : getNodeBase();
+    }
 }
@@ -0,0 +1,579 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.coll.GHLongObjectHashMap;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.LevelEdgeFilter;
+import com.graphhopper.routing.weighting.TurnWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.*;
+import com.graphhopper.util.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+import static com.graphhopper.util.Helper.nf;
+
+/**
+ * Contracts nodes for edge based traversal, i.e. the shortcuts are created such that turn costs and turn
+ * restrictions are respected. For every shortcut we store the first and the last original edge so the turn costs
+ * when entering and leaving the shortcut can be calculated at query time.
+ * <p>
+ * To contract a node v we look at every pair of an incoming edge (u,v) and an outgoing edge (v,w) and at every
+ * original edge x that leads to u. A witness search is started from u arriving via x (or starting at u) and the
+ * shortcut is only skipped if for every original edge y leaving w (or the path ending at w) there is a path
+ * avoiding v that is not more expensive, including the turn costs at u and w.
+ * <p>
+ * With turn restrictions the cheapest path from (u,v) to (v,w) can include loops at v, e.g. to turn around a block.
+ * Such a path is stored as a chain of shortcuts: first from u to v for the incoming edge plus the loops and then
+ * from u to w.
+ * <p>
+ * The witness searches are limited, so if a search is stopped early we rather add a shortcut too much.
+ *
+ * @see PrepareContractionHierarchies
+ */
+class EdgeBasedNodeContractor extends AbstractNodeContractor {
+    private final PreparationWeighting prepareWeighting;
+    private final TurnWeighting turnWeighting;
+    private final Graph baseGraph;
+    private final List<EdgeInfo> inEdges = new ArrayList<>();
+    private final List<EdgeInfo> outEdges = new ArrayList<>();
+    private final List<EdgeInfo> loops = new ArrayList<>();
+    // the cheapest path via the contracted node for every pair of incoming and outgoing edge
+    private Bridge[] bridges = new Bridge[0];
+    private double[] bridgeWeights = new double[0];
+    private final List<Shortcut> shortcuts = new ArrayList<>();
+    private final GHLongObjectHashMap<WitnessEntry> witnessEntries = new GHLongObjectHashMap<>(100);
+    private final PriorityQueue<WitnessEntry> witnessHeap = new PriorityQueue<>(100);
+    private CHEdgeExplorer remainingEdgeExplorer;
+    private CHEdgeExplorer witnessExplorer;
+    private EdgeExplorer sourceEdgeExplorer;
+    private EdgeExplorer origInEdgeExplorer;
+    private EdgeExplorer origOutEdgeExplorer;
+    // the witness search is stopped after this many settled entries
+    private final int maxSettledEntries = 500;
+    private int addedShortcutsCount;
+    private long dijkstraCount;
+    private StopWatch dijkstraSW = new StopWatch();
+
+    EdgeBasedNodeContractor(Directory dir, GraphHopperStorage ghStorage, CHGraph prepareGraph, Weighting weighting) {
+        super(dir, ghStorage, prepareGraph, weighting);
+        if (!(ghStorage.getExtension() instanceof TurnCostExtension))
+            throw new IllegalArgumentException("Edge based contraction requires a TurnCostExtension");
+
+        this.prepareWeighting = new PreparationWeighting(weighting);
+        this.turnWeighting = new TurnWeighting(weighting, (TurnCostExtension) ghStorage.getExtension());
+        this.baseGraph = ghStorage;
+    }
+
+    @Override
+    public void initFromGraph() {
+        super.initFromGraph();
+        final EdgeFilter allFilter = DefaultEdgeFilter.allEdges(encoder);
+        final EdgeFilter remainingNodesFilter = new LevelEdgeFilter(prepareGraph) {
+            @Override
+            public final boolean accept(EdgeIteratorState edgeState) {
+                return super.accept(edgeState) && allFilter.accept(edgeState);
+            }
+        };
+        remainingEdgeExplorer = prepareGraph.createEdgeExplorer(remainingNodesFilter);
+        witnessExplorer = prepareGraph.createEdgeExplorer(DefaultEdgeFilter.outEdges(encoder));
+        sourceEdgeExplorer = baseGraph.createEdgeExplorer(DefaultEdgeFilter.inEdges(encoder));
+        origInEdgeExplorer = baseGraph.createEdgeExplorer(DefaultEdgeFilter.inEdges(encoder));
+        origOutEdgeExplorer = baseGraph.createEdgeExplorer(DefaultEdgeFilter.outEdges(encoder));
+    }
+
+    @Override
+    public void prepareContraction() {
+        // nothing to do
+    }
+
+    @Override
+    public float calculatePriority(int node) {
+        findShortcuts(node);
+        int shortcutsCount = shortcuts.size();
+        int originalEdgesCount = 0;
+        for (Shortcut sc : shortcuts) {
+            originalEdgesCount += sc.bridge.originalEdges + sc.out.originalEdges;
+        }
+
+        int contractedNeighbors = 0;
+        int degree = 0;
+        CHEdgeIterator iter = remainingEdgeExplorer.setBaseNode(node);
+        while (iter.next()) {
+            degree++;
+            if (iter.isShortcut())
+                contractedNeighbors++;
+        }
+
+        // same linear combination as for node based contraction, see NodeBasedNodeContractor.calculatePriority
+        int edgeDifference = shortcutsCount - degree;
+        return 10 * edgeDifference + originalEdgesCount + contractedNeighbors;
+    }
+
+    @Override
+    public void contractNode(int node) {
+        findShortcuts(node);
+        for (Shortcut sc : shortcuts) {
+            int skippedEdge1 = addBridgeShortcuts(sc.bridge, node);
+            addShortcut(sc.from, sc.to, skippedEdge1, sc.out.edge, sc.bridge.origEdgeFirst, sc.out.origEdgeLast,
+                    sc.bridge.distance + sc.out.distance, sc.weight, sc.bridge.originalEdges + sc.out.originalEdges);
+        }
+    }
+
+    /**
+     * @return the edge that represents the specified bridge, i.e. the incoming edge itself or a shortcut from its
+     * adjacent node to the contracted node that includes the loops
+     */
+    private int addBridgeShortcuts(Bridge bridge, int node) {
+        if (bridge.parent == null)
+            return bridge.edge.edge;
+
+        int skippedEdge1 = addBridgeShortcuts(bridge.parent, node);
+        return addShortcut(bridge.from, node, skippedEdge1, bridge.edge.edge, bridge.origEdgeFirst,
+                bridge.edge.origEdgeLast, bridge.distance, bridge.weight, bridge.originalEdges);
+    }
+
+    @Override
+    public long getAddedShortcutsCount() {
+        return addedShortcutsCount;
+    }
+
+    @Override
+    public String getStatisticsString() {
+        return String.format(Locale.ROOT, "dijkstras: %10s, max settled: %s", nf(dijkstraCount), maxSettledEntries);
+    }
+
+    @Override
+    public long getDijkstraCount() {
+        return dijkstraCount;
+    }
+
+    @Override
+    public float getDijkstraSeconds() {
+        return dijkstraSW.getCurrentSeconds();
+    }
+
+    /**
+     * Fills the shortcuts list with all shortcuts that are needed to contract the given node without changing
+     * the graph.
+     */
+    private void findShortcuts(int node) {
+        shortcuts.clear();
+        collectEdges(node);
+        if (inEdges.isEmpty() || outEdges.isEmpty())
+            return;
+
+        findBridges(node);
+        boolean[] needed = new boolean[inEdges.size() * outEdges.size()];
+        for (int i = 0; i < inEdges.size(); i++) {
+            int fromNode = inEdges.get(i).adjNode;
+            if (isDuplicateFromNode(i, fromNode))
+                continue;
+
+            // every original edge leading to fromNode and the case that the route starts at fromNode
+            EdgeIterator origIter = sourceEdgeExplorer.setBaseNode(fromNode);
+            findShortcuts(node, fromNode, EdgeIterator.NO_EDGE, needed);
+            while (origIter.next()) {
+                findShortcuts(node, fromNode, origIter.getEdge(), needed);
+            }
+        }
+
+        for (int i = 0; i < inEdges.size(); i++) {
+            for (int j = 0; j < outEdges.size(); j++) {
+                int index = i * outEdges.size() + j;
+                if (needed[index])
+                    shortcuts.add(new Shortcut(bridges[index], outEdges.get(j), bridgeWeights[index]));
+            }
+        }
+    }
+
+    private boolean isDuplicateFromNode(int index, int fromNode) {
+        for (int i = 0; i < index; i++) {
+            if (inEdges.get(i).adjNode == fromNode)
+                return true;
+        }
+        return false;
+    }
+
+    private void collectEdges(int node) {
+        inEdges.clear();
+        outEdges.clear();
+        loops.clear();
+        CHEdgeIterator iter = inEdgeExplorer.setBaseNode(node);
+        while (iter.next()) {
+            if (iter.getAdjNode() == node || isContracted(iter.getAdjNode()))
+                continue;
+            inEdges.add(new EdgeInfo(iter, prepareWeighting.calcWeight(iter, true, EdgeIterator.NO_EDGE)));
+        }
+
+        iter = outEdgeExplorer.setBaseNode(node);
+        while (iter.next()) {
+            if (isContracted(iter.getAdjNode()))
+                continue;
+            EdgeInfo edgeInfo = new EdgeInfo(iter, prepareWeighting.calcWeight(iter, false, EdgeIterator.NO_EDGE));
+            if (iter.getAdjNode() != node)
+                outEdges.add(edgeInfo);
+            else if (!containsEdge(loops, edgeInfo.edge))
+                loops.add(edgeInfo);
+        }
+    }
+
+    private static boolean containsEdge(List<EdgeInfo> edges, int edge) {
+        for (EdgeInfo edgeInfo : edges) {
+            if (edgeInfo.edge == edge)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the cheapest path via the contracted node for every pair of incoming and outgoing edge. Without loops
+     * at the node this is the incoming edge, the turn and the outgoing edge, but a turn restriction can make a loop
+     * necessary.
+     */
+    private void findBridges(int node) {
+        int size = inEdges.size() * outEdges.size();
+        if (bridges.length < size) {
+            bridges = new Bridge[size];
+            bridgeWeights = new double[size];
+        }
+
+        List<Bridge> reached = new ArrayList<>();
+        for (int i = 0; i < inEdges.size(); i++) {
+            reached.clear();
+            EdgeInfo in = inEdges.get(i);
+            reached.add(new Bridge(in));
+            boolean improved = !loops.isEmpty();
+            while (improved) {
+                improved = false;
+                for (int r = 0; r < reached.size(); r++) {
+                    Bridge bridge = reached.get(r);
+                    for (EdgeInfo loop : loops) {
+                        double weight = bridge.weight + calcTurnWeight(bridge.edge.origEdgeLast, node, loop.origEdgeFirst)
+                                + loop.weight;
+                        if (Double.isInfinite(weight))
+                            continue;
+                        Bridge existing = findBridge(reached, loop.origEdgeLast);
+                        if (existing != null && existing.weight <= weight)
+                            continue;
+                        if (existing != null)
+                            reached.remove(existing);
+                        reached.add(new Bridge(bridge, loop, weight));
+                        improved = true;
+                    }
+                }
+            }
+
+            for (int j = 0; j < outEdges.size(); j++) {
+                EdgeInfo out = outEdges.get(j);
+                Bridge best = null;
+                double bestWeight = Double.POSITIVE_INFINITY;
+                for (Bridge bridge : reached) {
+                    double weight = bridge.weight + calcTurnWeight(bridge.edge.origEdgeLast, node, out.origEdgeFirst)
+                            + out.weight;
+                    if (weight < bestWeight) {
+                        best = bridge;
+                        bestWeight = weight;
+                    }
+                }
+                bridges[i * outEdges.size() + j] = best;
+                bridgeWeights[i * outEdges.size() + j] = bestWeight;
+            }
+        }
+    }
+
+    private static Bridge findBridge(List<Bridge> bridges, int origEdgeLast) {
+        for (Bridge bridge : bridges) {
+            if (bridge.edge.origEdgeLast == origEdgeLast)
+                return bridge;
+        }
+        return null;
+    }
+
+    /**
+     * Marks all pairs of incoming edges from fromNode and outgoing edges that need a shortcut if the route
+     * arrives at fromNode via the original edge inOrigEdge.
+     */
+    private void findShortcuts(int node, int fromNode, int inOrigEdge, boolean[] needed) {
+        double maxWeight = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < inEdges.size(); i++) {
+            if (inEdges.get(i).adjNode != fromNode)
+                continue;
+            for (int j = 0; j < outEdges.size(); j++) {
+                // u-turns and turn restrictions result in an infinite weight and need no witness
+                double weight = calcPathWeight(inOrigEdge, fromNode, i, j);
+                if (!Double.isInfinite(weight))
+                    maxWeight = Math.max(maxWeight, weight);
+            }
+        }
+
+        if (Double.isInfinite(maxWeight))
+            return;
+
+        runWitnessSearch(fromNode, inOrigEdge, node, maxWeight);
+        for (int i = 0; i < inEdges.size(); i++) {
+            EdgeInfo in = inEdges.get(i);
+            if (in.adjNode != fromNode)
+                continue;
+
+            for (int j = 0; j < outEdges.size(); j++) {
+                int index = i * outEdges.size() + j;
+                if (needed[index])
+                    continue;
+
+                EdgeInfo out = outEdges.get(j);
+                double weight = calcPathWeight(inOrigEdge, fromNode, i, j);
+                if (!Double.isInfinite(weight) && !hasWitness(fromNode, inOrigEdge, out, weight))
+                    needed[index] = true;
+            }
+        }
+    }
+
+    private double calcPathWeight(int inOrigEdge, int fromNode, int inIndex, int outIndex) {
+        return calcTurnWeight(inOrigEdge, fromNode, inEdges.get(inIndex).origEdgeFirst)
+                + bridgeWeights[inIndex * outEdges.size() + outIndex];
+    }
+
+    /**
+     * @return true if for every way to continue at the target node of the specified out edge there is a path
+     * found by the last witness search that is not more expensive than the path via the contracted node.
+     */
+    private boolean hasWitness(int fromNode, int inOrigEdge, EdgeInfo out, double weight) {
+        int toNode = out.adjNode;
+        // the path might end at toNode
+        if (!hasWitness(fromNode, inOrigEdge, toNode, EdgeIterator.NO_EDGE, weight))
+            return false;
+
+        EdgeIterator iter = origOutEdgeExplorer.setBaseNode(toNode);
+        while (iter.next()) {
+            double weightWithTurn = weight + calcTurnWeight(out.origEdgeLast, toNode, iter.getEdge());
+            if (Double.isInfinite(weightWithTurn))
+                continue;
+            if (!hasWitness(fromNode, inOrigEdge, toNode, iter.getEdge(), weightWithTurn))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean hasWitness(int fromNode, int inOrigEdge, int toNode, int outOrigEdge, double weight) {
+        // for a loop the start of the witness search itself is a witness
+        if (fromNode == toNode && calcTurnWeight(inOrigEdge, toNode, outOrigEdge) <= weight)
+            return true;
+
+        EdgeIterator iter = origInEdgeExplorer.setBaseNode(toNode);
+        while (iter.next()) {
+            WitnessEntry entry = witnessEntries.get(createKey(iter.getEdge(), toNode));
+            if (entry != null && entry.weight + calcTurnWeight(iter.getEdge(), toNode, outOrigEdge) <= weight)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Runs an edge based Dijkstra from fromNode arriving via inOrigEdge over all uncontracted nodes except
+     * avoidNode. Every entry found is a valid witness even if it is not settled.
+     */
+    private void runWitnessSearch(int fromNode, int inOrigEdge, int avoidNode, double maxWeight) {
+        dijkstraSW.start();
+        dijkstraCount++;
+        witnessEntries.clear();
+        witnessHeap.clear();
+        int settled = 0;
+        WitnessEntry curr = new WitnessEntry(fromNode, inOrigEdge, 0);
+        while (curr != null && curr.weight <= maxWeight && settled < maxSettledEntries) {
+            settled++;
+            CHEdgeIterator iter = witnessExplorer.setBaseNode(curr.node);
+            while (iter.next()) {
+                int adjNode = iter.getAdjNode();
+                if (adjNode == avoidNode || isContracted(adjNode))
+                    continue;
+
+                double weight = curr.weight + calcTurnWeight(curr.incEdge, curr.node, iter.getOrigEdgeFirst());
+                if (Double.isInfinite(weight))
+                    continue;
+                weight += prepareWeighting.calcWeight(iter, false, EdgeIterator.NO_EDGE);
+                if (Double.isInfinite(weight))
+                    continue;
+
+                int incEdge = iter.getOrigEdgeLast();
+                long key = createKey(incEdge, adjNode);
+                WitnessEntry entry = witnessEntries.get(key);
+                if (entry == null) {
+                    entry = new WitnessEntry(adjNode, incEdge, weight);
+                    witnessEntries.put(key, entry);
+                    witnessHeap.add(entry);
+                } else if (weight < entry.weight) {
+                    witnessHeap.remove(entry);
+                    entry.weight = weight;
+                    witnessHeap.add(entry);
+                }
+            }
+            curr = witnessHeap.poll();
+        }
+        dijkstraSW.stop();
+    }
+
+    /**
+     * @return the id of the added shortcut or of an existing one with the same end points and original edges
+     */
+    private int addShortcut(int from, int to, int skippedEdge1, int skippedEdge2, int origEdgeFirst, int origEdgeLast,
+                            double dist, double weight, int originalEdges) {
+        // update an existing shortcut with the same end points and original edges if the new one is better
+        CHEdgeIterator iter = outEdgeExplorer.setBaseNode(from);
+        while (iter.next()) {
+            if (!iter.isShortcut() || iter.getAdjNode() != to
+                    || iter.getOrigEdgeFirst() != origEdgeFirst || iter.getOrigEdgeLast() != origEdgeLast)
+                continue;
+
+            if (weight >= prepareWeighting.calcWeight(iter, false, EdgeIterator.NO_EDGE))
+                return iter.getEdge();
+
+            iter.setWeight(weight);
+            iter.setDistance(dist);
+            iter.setSkippedEdges(skippedEdge1, skippedEdge2);
+            setOrigEdgeCount(iter.getEdge(), originalEdges);
+            return iter.getEdge();
+        }
+
+        CHEdgeIteratorState edgeState = prepareGraph.shortcut(from, to);
+        // a loop can be traversed in both directions as the original edges define the direction of travel
+        edgeState.setFlags(from == to ? PrepareEncoder.getScDirMask() : PrepareEncoder.getScFwdDir());
+        // note: flags overwrite weight => call first
+        edgeState.setWeight(weight);
+        edgeState.setDistance(dist);
+        edgeState.setSkippedEdges(skippedEdge1, skippedEdge2);
+        edgeState.setFirstAndLastOrigEdges(origEdgeFirst, origEdgeLast);
+        setOrigEdgeCount(edgeState.getEdge(), originalEdges);
+        addedShortcutsCount++;
+        return edgeState.getEdge();
+    }
+
+    private double calcTurnWeight(int inOrigEdge, int viaNode, int outOrigEdge) {
+        if (!EdgeIterator.Edge.isValid(inOrigEdge) || !EdgeIterator.Edge.isValid(outOrigEdge))
+            return 0;
+        // u-turns are not allowed, the same as for TraversalMode.EDGE_BASED_2DIR
+        if (inOrigEdge == outOrigEdge)
+            return Double.POSITIVE_INFINITY;
+        return turnWeighting.calcTurnWeight(inOrigEdge, viaNode, outOrigEdge);
+    }
+
+    private static long createKey(int origEdge, int node) {
+        return ((long) origEdge << 32) | node;
+    }
+
+    /**
+     * An edge adjacent to the node that is contracted, weight and original edges are stored in travel direction.
+     */
+    private class EdgeInfo {
+        final int edge;
+        final int adjNode;
+        final double weight;
+        final double distance;
+        final int origEdgeFirst;
+        final int origEdgeLast;
+        final int originalEdges;
+
+        EdgeInfo(CHEdgeIteratorState iter, double weight) {
+            this.edge = iter.getEdge();
+            this.adjNode = iter.getAdjNode();
+            this.weight = weight;
+            this.distance = iter.getDistance();
+            this.origEdgeFirst = iter.getOrigEdgeFirst();
+            this.origEdgeLast = iter.getOrigEdgeLast();
+            this.originalEdges = getOrigEdgeCount(edge);
+        }
+    }
+
+    /**
+     * A path from the adjacent node of an incoming edge to the contracted node: the incoming edge followed by zero
+     * or more loops at the contracted node.
+     */
+    private static class Bridge {
+        final Bridge parent;
+        final EdgeInfo edge;
+        final int from;
+        final int origEdgeFirst;
+        final double weight;
+        final double distance;
+        final int originalEdges;
+
+        Bridge(EdgeInfo in) {
+            this.parent = null;
+            this.edge = in;
+            this.from = in.adjNode;
+            this.origEdgeFirst = in.origEdgeFirst;
+            this.weight = in.weight;
+            this.distance = in.distance;
+            this.originalEdges = in.originalEdges;
+        }
+
+        Bridge(Bridge parent, EdgeInfo loop, double weight) {
+            this.parent = parent;
+            this.edge = loop;
+            this.from = parent.from;
+            this.origEdgeFirst = parent.origEdgeFirst;
+            this.weight = weight;
+            this.distance = parent.distance + loop.distance;
+            this.originalEdges = parent.originalEdges + loop.originalEdges;
+        }
+    }
+
+    private static class Shortcut {
+        final int from;
+        final int to;
+        final Bridge bridge;
+        final EdgeInfo out;
+        final double weight;
+
+        Shortcut(Bridge bridge, EdgeInfo out, double weight) {
+            // the bridge leads from its incoming edge to the contracted node, out from there to out.adjNode
+            this.from = bridge.from;
+            this.to = out.adjNode;
+            this.bridge = bridge;
+            this.out = out;
+            this.weight = weight;
+        }
+
+        @Override
+        public String toString() {
+            return from + "->" + to + ", weight:" + weight + " (" + bridge.edge.edge + "," + out.edge + ")";
+        }
+    }
+
+    private static class WitnessEntry implements Comparable<WitnessEntry> {
+        final int node;
+        final int incEdge;
+        double weight;
+
+        WitnessEntry(int node, int incEdge, double weight) {
+            this.node = node;
+            this.incEdge = incEdge;
+            this.weight = weight;
+        }
+
+        @Override
+        public int compareTo(WitnessEntry o) {
+            return Double.compare(weight, o.weight);
+        }
+    }
+}
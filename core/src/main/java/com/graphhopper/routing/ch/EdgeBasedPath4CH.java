@@ -0,0 +1,92 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.PathBidirRef;
+import com.graphhopper.routing.weighting.TurnWeighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.CHEdgeIteratorState;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.util.List;
+
+/**
+ * Recursively unpacks the shortcuts of an edge based CH. In contrast to node based shortcuts these shortcuts are
+ * stored in travel direction, i.e. the first skipped edge is always the first one to travel. The turn costs are
+ * only part of the shortcut weight, so the time of the turns is added after unpacking.
+ *
+ * @see EdgeBasedNodeContractor
+ */
+public class EdgeBasedPath4CH extends PathBidirRef {
+    private final Graph routingGraph;
+    private final TurnWeighting turnWeighting;
+
+    public EdgeBasedPath4CH(Graph routingGraph, Graph baseGraph, TurnWeighting turnWeighting) {
+        super(baseGraph, turnWeighting);
+        this.routingGraph = routingGraph;
+        this.turnWeighting = turnWeighting;
+    }
+
+    @Override
+    public Path extract() {
+        super.extract();
+        if (isFound())
+            addTurnTimes();
+        return this;
+    }
+
+    @Override
+    protected final void processEdge(int edgeId, int endNode, int prevEdgeId) {
+        expandEdge(edgeId, endNode);
+    }
+
+    /**
+     * @param adjNode the node the edge leads to in travel direction
+     */
+    private void expandEdge(int edgeId, int adjNode) {
+        CHEdgeIteratorState edge = (CHEdgeIteratorState) routingGraph.getEdgeIteratorState(edgeId, adjNode);
+        if (!edge.isShortcut()) {
+            distance += edge.getDistance();
+            time += weighting.calcMillis(edge, false, EdgeIterator.NO_EDGE);
+            addEdge(edgeId);
+            return;
+        }
+
+        int skippedEdge1 = edge.getSkippedEdge1();
+        int skippedEdge2 = edge.getSkippedEdge2();
+        int viaNode = routingGraph.getEdgeIteratorState(skippedEdge2, adjNode).getBaseNode();
+        // the edges are added in reverse order while we go from the meeting point towards the start
+        if (reverseOrder) {
+            expandEdge(skippedEdge2, adjNode);
+            expandEdge(skippedEdge1, viaNode);
+        } else {
+            expandEdge(skippedEdge1, viaNode);
+            expandEdge(skippedEdge2, adjNode);
+        }
+    }
+
+    private void addTurnTimes() {
+        List<EdgeIteratorState> edges = calcEdges();
+        for (int i = 1; i < edges.size(); i++) {
+            EdgeIteratorState edge = edges.get(i);
+            time += (long) turnWeighting.calcTurnWeight(edges.get(i - 1).getEdge(), edge.getBaseNode(), edge.getEdge());
+        }
+    }
+}
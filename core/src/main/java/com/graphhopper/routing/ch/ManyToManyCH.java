@@ -0,0 +1,253 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.coll.GHLongLongHashMap;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.SPTEntry;
+import com.graphhopper.util.CHEdgeIteratorState;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Calculates the weights, times and distances between many sources and many targets with the bucket based
+ * approach from Knopp et al., "Computing Many-to-Many Shortest Paths Using Highway Hierarchies". First an upward
+ * search is done backwards from every target and every settled node stores a bucket entry with the target and
+ * its weight. Then an upward search is done from every source and at every settled node the buckets are scanned.
+ * As both searches only go upwards in the hierarchy this needs one search per source and target instead of one
+ * query per pair.
+ * <p>
+ * Only node based CH is supported. Create a new instance per call.
+ *
+ * @see PrepareContractionHierarchies#createManyToMany(Graph)
+ */
+public class ManyToManyCH {
+    private final Graph graph;
+    private final Weighting weighting;
+    private final EdgeFilter levelEdgeFilter;
+    private final EdgeExplorer outEdgeExplorer;
+    private final EdgeExplorer inEdgeExplorer;
+    // the time of shortcuts is only known after unpacking and the same shortcuts are used by many searches
+    private final GHLongLongHashMap shortcutMillis = new GHLongLongHashMap(1000);
+    private final GHIntObjectHashMap<BucketEntry> buckets = new GHIntObjectHashMap<>(1000);
+    private double[][] weights;
+    private long[][] times;
+    private double[][] distances;
+    private int visitedNodes;
+    private boolean alreadyRun;
+
+    /**
+     * @param graph           the CHGraph or a QueryGraph on top of it
+     * @param weighting       has to return the weight of shortcuts, e.g. a PreparationWeighting
+     * @param levelEdgeFilter accepts only edges leading to nodes of a higher level
+     */
+    public ManyToManyCH(Graph graph, Weighting weighting, EdgeFilter levelEdgeFilter) {
+        this.graph = graph;
+        this.weighting = weighting;
+        this.levelEdgeFilter = levelEdgeFilter;
+        this.outEdgeExplorer = graph.createEdgeExplorer(DefaultEdgeFilter.outEdges(weighting.getFlagEncoder()));
+        this.inEdgeExplorer = graph.createEdgeExplorer(DefaultEdgeFilter.inEdges(weighting.getFlagEncoder()));
+    }
+
+    /**
+     * Calculates the matrix from every node in fromNodes to every node in toNodes. Afterwards the results are
+     * available via {@link #getWeights()}, {@link #getTimes()} and {@link #getDistances()}. Unreachable entries
+     * have an infinite weight.
+     */
+    public ManyToManyCH calcMatrix(int[] fromNodes, int[] toNodes) {
+        if (alreadyRun)
+            throw new IllegalStateException("Create a new instance per call");
+        alreadyRun = true;
+
+        weights = new double[fromNodes.length][toNodes.length];
+        times = new long[fromNodes.length][toNodes.length];
+        distances = new double[fromNodes.length][toNodes.length];
+        for (double[] row : weights) {
+            Arrays.fill(row, Double.POSITIVE_INFINITY);
+        }
+
+        for (int toIndex = 0; toIndex < toNodes.length; toIndex++) {
+            search(toNodes[toIndex], toIndex, true);
+        }
+        for (int fromIndex = 0; fromIndex < fromNodes.length; fromIndex++) {
+            search(fromNodes[fromIndex], fromIndex, false);
+        }
+        return this;
+    }
+
+    /**
+     * Runs a full upward search. The backward search (reverse is true) fills the buckets of the settled nodes
+     * and the forward search scans them.
+     */
+    private void search(int startNode, int index, boolean reverse) {
+        EdgeExplorer explorer = reverse ? inEdgeExplorer : outEdgeExplorer;
+        GHIntObjectHashMap<MatrixEntry> bestEntries = new GHIntObjectHashMap<>(100);
+        PriorityQueue<MatrixEntry> heap = new PriorityQueue<>(100);
+        MatrixEntry startEntry = new MatrixEntry(EdgeIterator.NO_EDGE, startNode, 0);
+        bestEntries.put(startNode, startEntry);
+        heap.add(startEntry);
+        while (!heap.isEmpty()) {
+            MatrixEntry curr = heap.poll();
+            visitedNodes++;
+            if (curr.parent != null) {
+                // the parent is already settled, so its time and distance are final
+                CHEdgeIteratorState edge = (CHEdgeIteratorState) graph.getEdgeIteratorState(curr.edge, curr.adjNode);
+                MatrixEntry parent = (MatrixEntry) curr.parent;
+                curr.time = parent.time + calcMillis(edge, reverse);
+                curr.distance = parent.distance + edge.getDistance();
+            }
+
+            if (reverse)
+                addToBucket(curr, index);
+            else
+                scanBucket(curr, index);
+
+            EdgeIterator iter = explorer.setBaseNode(curr.adjNode);
+            while (iter.next()) {
+                if (!levelEdgeFilter.accept(iter))
+                    continue;
+
+                double weight = weighting.calcWeight(iter, reverse, curr.edge) + curr.weight;
+                if (Double.isInfinite(weight))
+                    continue;
+
+                MatrixEntry entry = bestEntries.get(iter.getAdjNode());
+                if (entry == null) {
+                    entry = new MatrixEntry(iter.getEdge(), iter.getAdjNode(), weight);
+                    entry.parent = curr;
+                    bestEntries.put(iter.getAdjNode(), entry);
+                    heap.add(entry);
+                } else if (entry.weight > weight) {
+                    heap.remove(entry);
+                    entry.edge = iter.getEdge();
+                    entry.weight = weight;
+                    entry.parent = curr;
+                    heap.add(entry);
+                }
+            }
+        }
+    }
+
+    private void addToBucket(MatrixEntry entry, int toIndex) {
+        buckets.put(entry.adjNode, new BucketEntry(toIndex, entry.weight, entry.time, entry.distance,
+                buckets.get(entry.adjNode)));
+    }
+
+    private void scanBucket(MatrixEntry entry, int fromIndex) {
+        BucketEntry bucketEntry = buckets.get(entry.adjNode);
+        double[] weightRow = weights[fromIndex];
+        while (bucketEntry != null) {
+            double weight = entry.weight + bucketEntry.weight;
+            if (weight < weightRow[bucketEntry.toIndex]) {
+                weightRow[bucketEntry.toIndex] = weight;
+                times[fromIndex][bucketEntry.toIndex] = entry.time + bucketEntry.time;
+                distances[fromIndex][bucketEntry.toIndex] = entry.distance + bucketEntry.distance;
+            }
+            bucketEntry = bucketEntry.next;
+        }
+    }
+
+    /**
+     * @param edge    the edge leading to the settled node, i.e. its adjacent node is the settled node
+     * @param reverse true if the edge is travelled from its adjacent node to its base node
+     */
+    private long calcMillis(CHEdgeIteratorState edge, boolean reverse) {
+        if (!edge.isShortcut())
+            return weighting.calcMillis(edge, reverse, EdgeIterator.NO_EDGE);
+
+        int endNode = reverse ? edge.getBaseNode() : edge.getAdjNode();
+        long key = ((long) edge.getEdge() << 32) | endNode;
+        long millis = shortcutMillis.getOrDefault(key, -1);
+        if (millis >= 0)
+            return millis;
+
+        // both skipped edges are oriented like the shortcut, so the direction of travel does not change
+        CHEdgeIteratorState second = getEdge(edge.getSkippedEdge2(), edge.getAdjNode());
+        CHEdgeIteratorState first;
+        if (second != null) {
+            first = getEdge(edge.getSkippedEdge1(), second.getBaseNode());
+        } else {
+            second = getEdge(edge.getSkippedEdge1(), edge.getAdjNode());
+            first = getEdge(edge.getSkippedEdge2(), second.getBaseNode());
+        }
+        millis = calcMillis(first, reverse) + calcMillis(second, reverse);
+        shortcutMillis.put(key, millis);
+        return millis;
+    }
+
+    private CHEdgeIteratorState getEdge(int edgeId, int adjNode) {
+        return (CHEdgeIteratorState) graph.getEdgeIteratorState(edgeId, adjNode);
+    }
+
+    /**
+     * @return the weights of all entries where the first index is the source and the second the target
+     */
+    public double[][] getWeights() {
+        return weights;
+    }
+
+    /**
+     * @return the times in milliseconds
+     */
+    public long[][] getTimes() {
+        return times;
+    }
+
+    /**
+     * @return the distances in meter
+     */
+    public double[][] getDistances() {
+        return distances;
+    }
+
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    private static class MatrixEntry extends SPTEntry {
+        long time;
+        double distance;
+
+        MatrixEntry(int edge, int adjNode, double weight) {
+            super(edge, adjNode, weight);
+        }
+    }
+
+    private static class BucketEntry {
+        final int toIndex;
+        final double weight;
+        final long time;
+        final double distance;
+        final BucketEntry next;
+
+        BucketEntry(int toIndex, double weight, long time, double distance, BucketEntry next) {
+            this.toIndex = toIndex;
+            this.weight = weight;
+            this.time = time;
+            this.distance = distance;
+            this.next = next;
+        }
+    }
+}
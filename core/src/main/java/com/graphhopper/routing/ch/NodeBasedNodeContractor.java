@@ -17,14 +17,17 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.graphhopper.coll.GHBitSet;
 import com.graphhopper.routing.DijkstraOneToMany;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.*;
 import com.graphhopper.util.*;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -50,6 +53,19 @@ class NodeBasedNodeContractor extends AbstractNodeContractor {
         this.prepareWeighting = new PreparationWeighting(weighting);
     }
 
+    private NodeBasedNodeContractor(NodeBasedNodeContractor parent) {
+        super(parent);
+        this.prepareWeighting = parent.prepareWeighting;
+    }
+
+    /**
+     * Creates a contractor that works on the same graph but has its own witness search. It can be used to find
+     * shortcuts concurrently to this contractor as long as the graph is not modified in the meantime.
+     */
+    NodeBasedNodeContractor createWorker() {
+        return new NodeBasedNodeContractor(this);
+    }
+
     @Override
     public void initFromGraph() {
         super.initFromGraph();
@@ -133,6 +149,29 @@ class NodeBasedNodeContractor extends AbstractNodeContractor {
         meanDegree = (meanDegree * 2 + degree) / 3;
     }
 
+    /**
+     * Searches the shortcuts that are required to contract the given node without changing the graph. All nodes in
+     * ignoredNodes are skipped by the witness searches, i.e. they are treated as if they were contracted together
+     * with the given node. Add the returned shortcuts via {@link #insertShortcuts(Collection)}.
+     */
+    List<Shortcut> findShortcuts(int node, GHBitSet ignoredNodes) {
+        ignoreNodeFilter.setAvoidNodes(ignoredNodes);
+        try {
+            long degree = findShortcuts(addScHandler.setNode(node));
+            meanDegree = (meanDegree * 2 + degree) / 3;
+        } finally {
+            ignoreNodeFilter.setAvoidNodes(null);
+        }
+        return new ArrayList<>(shortcuts.keySet());
+    }
+
+    /**
+     * Adds shortcuts found via {@link #findShortcuts(int, GHBitSet)} to the graph.
+     */
+    void insertShortcuts(Collection<Shortcut> foundShortcuts) {
+        addedShortcutsCount += addShortcuts(foundShortcuts);
+    }
+
     @Override
     public String getStatisticsString() {
         return String.format(Locale.ROOT, "meanDegree: %.2f, dijkstras: %10s, mem: %10s",
@@ -303,7 +342,7 @@ class NodeBasedNodeContractor extends AbstractNodeContractor {
         return (int) meanDegree * 100;
     }
 
-    private static class Shortcut {
+    static class Shortcut {
         int from;
         int to;
         int skippedEdge1;
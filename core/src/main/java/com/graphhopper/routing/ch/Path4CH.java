@@ -24,7 +24,7 @@ import com.graphhopper.util.CHEdgeIteratorState;
 import com.graphhopper.util.EdgeIterator;
 
 /**
- * Recursively unpack shortcuts.
+ * Recursively unpack shortcuts. The edges of shortcuts that were unpacked in advance are copied instead.
  * <p>
  *
  * @author Peter Karich
@@ -32,12 +32,18 @@ import com.graphhopper.util.EdgeIterator;
  */
 public class Path4CH extends PathBidirRef {
     private final Graph routingGraph;
+    private UnpackedShortcutStorage unpackedShortcuts;
 
     public Path4CH(Graph routingGraph, Graph baseGraph, Weighting weighting) {
         super(baseGraph, weighting);
         this.routingGraph = routingGraph;
     }
 
+    public Path4CH setUnpackedShortcuts(UnpackedShortcutStorage unpackedShortcuts) {
+        this.unpackedShortcuts = unpackedShortcuts;
+        return this;
+    }
+
     @Override
     protected final void processEdge(int edgeId, int endNode, int prevEdgeId) {
         // Shortcuts do only contain valid weight so first expand before adding
@@ -52,9 +58,34 @@ public class Path4CH extends PathBidirRef {
             addEdge(edge.getEdge());
             return;
         }
+        if (unpackedShortcuts != null && copyUnpackedEdges(edge, reverse))
+            return;
         expandSkippedEdges(edge.getSkippedEdge1(), edge.getSkippedEdge2(), edge.getBaseNode(), edge.getAdjNode(), reverse);
     }
 
+    private boolean copyUnpackedEdges(CHEdgeIteratorState shortcut, boolean reverse) {
+        long pointer = unpackedShortcuts.getPointer(shortcut.getEdge());
+        if (pointer < 0)
+            return false;
+
+        // the edges are stored in travel direction from the start node
+        boolean fromStart = (shortcut.getBaseNode() == unpackedShortcuts.getStartNode(pointer)) != reverse;
+        distance += unpackedShortcuts.getDistance(pointer);
+        time += unpackedShortcuts.getMillis(pointer, fromStart);
+        int count = unpackedShortcuts.getEdgeCount(pointer);
+        // the edges are added in reverse order while we go from the meeting point towards the start
+        if (fromStart != reverseOrder) {
+            for (int i = 0; i < count; i++) {
+                addEdge(unpackedShortcuts.getEdge(pointer, i));
+            }
+        } else {
+            for (int i = count - 1; i >= 0; i--) {
+                addEdge(unpackedShortcuts.getEdge(pointer, i));
+            }
+        }
+        return true;
+    }
+
     private void expandSkippedEdges(int skippedEdge1, int skippedEdge2, int from, int to, boolean reverse) {
         // get properties like speed of the edge in the correct direction
         if (reverseOrder == reverse) {
@@ -20,6 +20,7 @@ package com.graphhopper.routing.ch;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.util.HintsMap;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHAdjacency;
 import com.graphhopper.util.CHEdgeIteratorState;
 import com.graphhopper.util.EdgeIteratorState;
 
@@ -44,6 +45,13 @@ public class PreparationWeighting implements Weighting {
 
     @Override
     public double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId) {
+        if (edgeState instanceof CHAdjacency.AdjacencyIterator) {
+            CHAdjacency.AdjacencyIterator iter = (CHAdjacency.AdjacencyIterator) edgeState;
+            // the adjacency arrays store the weight of the edges too
+            if (iter.isReverse() == reverse)
+                return iter.getWeight();
+        }
+
         CHEdgeIteratorState tmp = (CHEdgeIteratorState) edgeState;
         if (tmp.isShortcut())
             // if a shortcut is in both directions the weight is identical => no need for 'reverse'
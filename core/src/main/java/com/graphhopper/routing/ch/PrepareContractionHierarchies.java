@@ -17,9 +17,13 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.coll.GHBitSetImpl;
 import com.graphhopper.coll.GHTreeMapComposed;
 import com.graphhopper.routing.*;
 import com.graphhopper.routing.util.*;
+import com.graphhopper.routing.weighting.TurnWeighting;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.*;
 import com.graphhopper.util.CHEdgeExplorer;
@@ -29,8 +33,11 @@ import com.graphhopper.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Random;
+import java.util.concurrent.*;
 
 import static com.graphhopper.util.Helper.nf;
 import static com.graphhopper.util.Parameters.Algorithms.ASTAR_BI;
@@ -66,6 +73,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
     private NodeContractor nodeContractor;
     private CHEdgeExplorer vehicleAllExplorer;
     private CHEdgeExplorer vehicleAllTmpExplorer;
+    private UnpackedShortcutStorage unpackedShortcuts;
     private int maxLevel;
     // nodes with highest priority come last
     private GHTreeMapComposed sortedNodes;
@@ -75,14 +83,21 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
     private int neighborUpdatePercentage = 20;
     private double nodesContractedPercentage = 100;
     private double logMessagesPercentage = 20;
+    private int contractionThreads = 1;
     private int initSize;
     private int checkCounter;
+    private long workersDijkstraCount;
 
     public PrepareContractionHierarchies(Directory dir, GraphHopperStorage ghStorage, CHGraph chGraph,
                                          Weighting weighting, TraversalMode traversalMode) {
         this.dir = dir;
         this.ghStorage = ghStorage;
         this.prepareGraph = (CHGraphImpl) chGraph;
+        if (traversalMode.isEdgeBased() != prepareGraph.isEdgeBased())
+            throw new IllegalArgumentException("Traversal mode " + traversalMode + " does not fit to " + prepareGraph);
+        // u-turns are always forbidden for edge based CH
+        if (traversalMode.isEdgeBased() && traversalMode != TraversalMode.EDGE_BASED_2DIR)
+            throw new IllegalArgumentException("Edge based CH only supports " + TraversalMode.EDGE_BASED_2DIR + " but was " + traversalMode);
         this.traversalMode = traversalMode;
         this.weighting = weighting;
         prepareWeighting = new PreparationWeighting(weighting);
@@ -160,6 +175,22 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         return this;
     }
 
+    /**
+     * Specifies the number of threads used to contract the nodes of this preparation. With more than one thread the
+     * nodes are contracted in rounds: every round picks all nodes that have a lower priority than their uncontracted
+     * neighbors, searches their shortcuts concurrently and then inserts the shortcuts from a single thread. The
+     * resulting hierarchy is different from the sequential one but leads to the same query results.
+     * <p>
+     * Edge based preparations are always contracted sequentially.
+     */
+    public PrepareContractionHierarchies setContractionThreads(int contractionThreads) {
+        if (contractionThreads < 1)
+            return this;
+
+        this.contractionThreads = contractionThreads;
+        return this;
+    }
+
     @Override
     public void doSpecificWork() {
         allSW.start();
@@ -173,6 +204,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 + ", periodic:" + periodicUpdatesPercentage
                 + ", lazy:" + lastNodesLazyUpdatePercentage
                 + ", neighbor:" + neighborUpdatePercentage
+                + ", threads:" + contractionThreads
                 + ", " + getTimesAsString()
                 + ", lazy-overhead: " + (int) (100 * ((checkCounter / (double) initSize) - 1)) + "%"
                 + ", " + Helper.getMemInfo());
@@ -183,6 +215,11 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
     }
 
     protected void runGraphContraction() {
+        if (contractionThreads > 1 && !traversalMode.isEdgeBased()) {
+            contractNodesParallel();
+            return;
+        }
+
         if (!prepareNodes())
             return;
         contractNodes();
@@ -191,20 +228,46 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
     @Override
     public RoutingAlgorithm createAlgo(Graph graph, AlgorithmOptions opts) {
         AbstractBidirAlgo algo = doCreateAlgo(graph, opts);
-        algo.setEdgeFilter(new LevelEdgeFilter(prepareGraph));
+        if (!traversalMode.isEdgeBased() && prepareGraph.hasAdjacencyArrays()) {
+            // the explorers only return the upward edges, so there is no need for an additional level filter
+            FlagEncoder encoder = prepareWeighting.getFlagEncoder();
+            algo.setEdgeExplorers(graph.createEdgeExplorer(new UpwardEdgeFilter(prepareGraph, encoder, false)),
+                    graph.createEdgeExplorer(new UpwardEdgeFilter(prepareGraph, encoder, true)));
+        } else {
+            algo.setEdgeFilter(new LevelEdgeFilter(prepareGraph));
+        }
         algo.setMaxVisitedNodes(opts.getMaxVisitedNodes());
         return algo;
     }
 
+    /**
+     * Creates the algorithm to calculate many-to-many matrices.
+     *
+     * @param graph the CHGraph or a QueryGraph on top of it
+     */
+    public ManyToManyCH createManyToMany(Graph graph) {
+        if (traversalMode.isEdgeBased())
+            throw new IllegalArgumentException("Matrix calculation is not supported for edge based Contraction Hierarchies");
+        return new ManyToManyCH(graph, prepareWeighting, new LevelEdgeFilter(prepareGraph));
+    }
+
     private AbstractBidirAlgo doCreateAlgo(Graph graph, AlgorithmOptions opts) {
+        if (traversalMode.isEdgeBased()) {
+            if (!DIJKSTRA_BI.equals(opts.getAlgorithm()))
+                throw new IllegalArgumentException("Algorithm " + opts.getAlgorithm() + " not supported for edge based Contraction Hierarchies. Try with " + DIJKSTRA_BI);
+            // the extension of the query graph is necessary to calculate the turn costs of virtual edges
+            return new DijkstraBidirectionEdgeCHNoSOD(graph, new TurnWeighting(prepareWeighting, (TurnCostExtension) graph.getExtension()));
+        }
+
         if (ASTAR_BI.equals(opts.getAlgorithm())) {
             return new AStarBidirectionCH(graph, prepareWeighting, traversalMode)
+                    .setUnpackedShortcuts(unpackedShortcuts)
                     .setApproximation(RoutingAlgorithmFactorySimple.getApproximation(ASTAR_BI, opts, graph.getNodeAccess()));
         } else if (DIJKSTRA_BI.equals(opts.getAlgorithm())) {
             if (opts.getHints().getBool("stall_on_demand", true)) {
-                return new DijkstraBidirectionCH(graph, prepareWeighting, traversalMode);
+                return new DijkstraBidirectionCH(graph, prepareWeighting, traversalMode).setUnpackedShortcuts(unpackedShortcuts);
             } else {
-                return new DijkstraBidirectionCHNoSOD(graph, prepareWeighting, traversalMode);
+                return new DijkstraBidirectionCHNoSOD(graph, prepareWeighting, traversalMode).setUnpackedShortcuts(unpackedShortcuts);
             }
         } else {
             throw new IllegalArgumentException("Algorithm " + opts.getAlgorithm() + " not supported for Contraction Hierarchies. Try with ch.disable=true");
@@ -226,7 +289,10 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         //   but we need the additional oldPriorities array to keep the old value which is necessary for the update method
         sortedNodes = new GHTreeMapComposed();
         oldPriorities = new float[prepareGraph.getNodes()];
-        nodeContractor = new NodeBasedNodeContractor(dir, ghStorage, prepareGraph, weighting);
+        if (traversalMode.isEdgeBased())
+            nodeContractor = new EdgeBasedNodeContractor(dir, ghStorage, prepareGraph, weighting);
+        else
+            nodeContractor = new NodeBasedNodeContractor(dir, ghStorage, prepareGraph, weighting);
         nodeContractor.initFromGraph();
     }
 
@@ -357,14 +423,257 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         close();
     }
 
+    private void contractNodesParallel() {
+        NodeBasedNodeContractor[] workers = new NodeBasedNodeContractor[contractionThreads];
+        workers[0] = (NodeBasedNodeContractor) nodeContractor;
+        for (int i = 1; i < workers.length; i++) {
+            workers[i] = workers[0].createWorker();
+            workers[i].initFromGraph();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(contractionThreads);
+        try {
+            contractNodesParallel(workers, executor);
+        } finally {
+            executor.shutdownNow();
+            for (int i = 1; i < workers.length; i++) {
+                workersDijkstraCount += workers[i].getDijkstraCount();
+                workers[i].close();
+            }
+        }
+        close();
+    }
+
+    private void contractNodesParallel(NodeBasedNodeContractor[] workers, ExecutorService executor) {
+        int nodes = prepareGraph.getNodes();
+        IntArrayList remainingNodes = new IntArrayList(nodes);
+        for (int node = 0; node < nodes; node++) {
+            prepareGraph.setLevel(node, maxLevel);
+            remainingNodes.add(node);
+        }
+
+        periodicUpdateSW.start();
+        updatePriorities(workers, executor, remainingNodes);
+        periodicUpdateSW.stop();
+        for (NodeBasedNodeContractor worker : workers) {
+            worker.prepareContraction();
+        }
+
+        initSize = nodes;
+        checkCounter = 0;
+        long logSize = Math.round(Math.max(10, initSize / 100d * logMessagesPercentage));
+        if (logMessagesPercentage == 0)
+            logSize = Integer.MAX_VALUE;
+
+        long nodesToAvoidContract = Math.round((100 - nodesContractedPercentage) / 100d * initSize);
+        int level = 0;
+        int rounds = 0;
+        long nextLog = 0;
+        final GHBitSet independentSet = new GHBitSetImpl(nodes);
+        final IntArrayList independentNodes = new IntArrayList();
+        GHBitSet neighborSet = new GHBitSetImpl(nodes);
+        IntArrayList neighbors = new IntArrayList();
+        while (!remainingNodes.isEmpty() && remainingNodes.size() > nodesToAvoidContract) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new RuntimeException("Thread was interrupted");
+            }
+
+            if (checkCounter >= nextLog) {
+                logParallelStats(remainingNodes.size(), rounds);
+                nextLog += logSize;
+            }
+
+            // nodes which are not adjacent to each other can be contracted independently
+            for (int i = 0; i < remainingNodes.size(); i++) {
+                int node = remainingNodes.get(i);
+                if (isLocalMinimum(node)) {
+                    independentSet.add(node);
+                    independentNodes.add(node);
+                }
+            }
+
+            contractionSW.start();
+            // the graph is not modified while searching the shortcuts, the witness searches ignore all nodes of the
+            // independent set so that no witness path can be removed by contracting another node of the same set
+            final List<List<NodeBasedNodeContractor.Shortcut>> shortcuts = new ArrayList<>(independentNodes.size());
+            for (int i = 0; i < independentNodes.size(); i++) {
+                shortcuts.add(null);
+            }
+            runParallel(workers, executor, independentNodes.size(), new NodeTask() {
+                @Override
+                public void run(NodeBasedNodeContractor contractor, int index) {
+                    shortcuts.set(index, contractor.findShortcuts(independentNodes.get(index), independentSet));
+                }
+            });
+
+            for (int i = 0; i < independentNodes.size(); i++) {
+                workers[0].insertShortcuts(shortcuts.get(i));
+                prepareGraph.setLevel(independentNodes.get(i), level);
+                level++;
+            }
+            contractionSW.stop();
+
+            for (int i = 0; i < independentNodes.size(); i++) {
+                CHEdgeIterator iter = vehicleAllExplorer.setBaseNode(independentNodes.get(i));
+                while (iter.next()) {
+                    int nn = iter.getAdjNode();
+                    if (prepareGraph.getLevel(nn) != maxLevel)
+                        continue;
+
+                    if (!neighborSet.contains(nn)) {
+                        neighborSet.add(nn);
+                        neighbors.add(nn);
+                    }
+                    prepareGraph.disconnect(vehicleAllTmpExplorer, iter);
+                }
+            }
+
+            neighborUpdateSW.start();
+            updatePriorities(workers, executor, neighbors);
+            neighborUpdateSW.stop();
+
+            int remaining = 0;
+            for (int i = 0; i < remainingNodes.size(); i++) {
+                int node = remainingNodes.get(i);
+                if (!independentSet.contains(node))
+                    remainingNodes.set(remaining++, node);
+            }
+            remainingNodes.elementsCount = remaining;
+
+            checkCounter += independentNodes.size();
+            rounds++;
+            independentSet.clear();
+            independentNodes.clear();
+            neighborSet.clear();
+            neighbors.clear();
+        }
+
+        logParallelStats(remainingNodes.size(), rounds);
+    }
+
+    /**
+     * @return true if the given node has a lower priority than all of its uncontracted neighbors. Ties are broken by
+     * the node id, so the set of all such nodes does not contain two adjacent nodes.
+     */
+    private boolean isLocalMinimum(int node) {
+        float priority = oldPriorities[node];
+        CHEdgeIterator iter = vehicleAllExplorer.setBaseNode(node);
+        while (iter.next()) {
+            int nn = iter.getAdjNode();
+            if (nn == node || prepareGraph.getLevel(nn) != maxLevel)
+                continue;
+
+            float nnPriority = oldPriorities[nn];
+            if (nnPriority < priority || nnPriority == priority && nn < node)
+                return false;
+        }
+        return true;
+    }
+
+    private void updatePriorities(NodeBasedNodeContractor[] workers, ExecutorService executor, final IntArrayList nodes) {
+        runParallel(workers, executor, nodes.size(), new NodeTask() {
+            @Override
+            public void run(NodeBasedNodeContractor contractor, int index) {
+                int node = nodes.get(index);
+                oldPriorities[node] = contractor.calculatePriority(node);
+            }
+        });
+    }
+
+    /**
+     * Calls the task for every index in [0, size) where every worker handles every n-th index and uses its own
+     * contractor. Returns when all indices are processed.
+     */
+    private void runParallel(final NodeBasedNodeContractor[] workers, ExecutorService executor, final int size,
+                             final NodeTask task) {
+        List<Callable<Object>> callables = new ArrayList<>(workers.length);
+        for (int w = 0; w < workers.length && w < size; w++) {
+            final int worker = w;
+            callables.add(Executors.callable(new Runnable() {
+                @Override
+                public void run() {
+                    for (int index = worker; index < size; index += workers.length) {
+                        task.run(workers[worker], index);
+                    }
+                }
+            }));
+        }
+
+        try {
+            for (Future<Object> future : executor.invokeAll(callables)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Thread was interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    private interface NodeTask {
+        void run(NodeBasedNodeContractor contractor, int index);
+    }
+
     private void close() {
         nodeContractor.close();
         sortedNodes = null;
         oldPriorities = null;
     }
 
+    /**
+     * Loads the unpacked shortcuts, which the algorithms of createAlgo then use when extracting the path.
+     *
+     * @return false if they do not exist or were created for a different fraction of the nodes
+     */
+    public boolean loadUnpackedShortcuts(double topNodes) {
+        if (traversalMode.isEdgeBased())
+            throw new IllegalArgumentException("Unpacked shortcuts are not supported for edge based CH");
+
+        UnpackedShortcutStorage storage = new UnpackedShortcutStorage(ghStorage.getDirectory(), prepareGraph, prepareGraph.getWeighting());
+        if (!storage.loadExisting())
+            return false;
+        if (storage.getTopNodes() != topNodes) {
+            logger.info(storage + " were created for a fraction of " + storage.getTopNodes() + " not " + topNodes);
+            return false;
+        }
+        unpackedShortcuts = storage;
+        return true;
+    }
+
+    /**
+     * Creates the unpacked shortcuts for the specified fraction of the nodes with the highest levels and replaces
+     * existing ones. The algorithms of createAlgo then copy the edges of these shortcuts when extracting the path.
+     */
+    public void createUnpackedShortcuts(double topNodes) {
+        if (traversalMode.isEdgeBased())
+            throw new IllegalArgumentException("Unpacked shortcuts are not supported for edge based CH");
+
+        UnpackedShortcutStorage storage = new UnpackedShortcutStorage(ghStorage.getDirectory(), prepareGraph, prepareGraph.getWeighting());
+        StopWatch sw = new StopWatch().start();
+        storage.createUnpackedShortcuts(topNodes);
+        storage.flush();
+        logger.info("created " + storage + " in " + sw.stop().getSeconds() + "s");
+        unpackedShortcuts = storage;
+    }
+
+    public UnpackedShortcutStorage getUnpackedShortcuts() {
+        return unpackedShortcuts;
+    }
+
+    public boolean hasAdjacencyArrays() {
+        return prepareGraph.hasAdjacencyArrays();
+    }
+
+    /**
+     * Creates the adjacency arrays of the prepared or loaded graph, which the algorithms of createAlgo use if present.
+     */
+    public void createAdjacencyArrays() {
+        prepareGraph.createAdjacencyArrays();
+    }
+
     public long getDijkstraCount() {
-        return nodeContractor.getDijkstraCount();
+        return nodeContractor.getDijkstraCount() + workersDijkstraCount;
     }
 
     public long getShortcuts() {
@@ -387,6 +696,10 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         return prepareGraph.getWeighting();
     }
 
+    public TraversalMode getTraversalMode() {
+        return traversalMode;
+    }
+
     private String getTimesAsString() {
         float totalTime = allSW.getCurrentSeconds();
         float periodicUpdateTime = periodicUpdateSW.getCurrentSeconds();
@@ -410,6 +723,18 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         return "prepare|dijkstrabi|ch";
     }
 
+    private void logParallelStats(int remainingNodes, int rounds) {
+        logger.info(String.format(Locale.ROOT,
+                "nodes: %10s, shortcuts: %10s, rounds: %4d, contracted-nodes: %10s, %s, %s, %s",
+                nf(remainingNodes),
+                nf(nodeContractor.getAddedShortcutsCount()),
+                rounds,
+                nf(checkCounter),
+                getTimesAsString(),
+                nodeContractor.getStatisticsString(),
+                Helper.getMemInfo()));
+    }
+
     private void logStats(int updateCounter) {
         logger.info(String.format(Locale.ROOT,
                 "nodes: %10s, shortcuts: %10s, updates: %2d, checked-nodes: %10s, %s, %s, %s",
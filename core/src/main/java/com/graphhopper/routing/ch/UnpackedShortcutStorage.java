@@ -0,0 +1,293 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.util.AllCHEdgesIterator;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.AbstractWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Storable;
+import com.graphhopper.util.CHEdgeIteratorState;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.graphhopper.util.Helper.nf;
+
+/**
+ * Stores the unpacked original edges of the shortcuts between the nodes of the highest levels of a node based CH,
+ * together with their distance and time. The path extraction then copies the edges of these shortcuts instead of
+ * recursively unpacking them, which is expensive for long routes as most of their shortcuts are in the highest levels.
+ *
+ * @see Path4CH
+ */
+public class UnpackedShortcutStorage implements Storable<UnpackedShortcutStorage> {
+    private static final int NO_ENTRY = -1;
+    // the node the edges start from, the number of edges, the distance and the time in both directions
+    private static final int E_START = 0, E_COUNT = 4, E_DIST = 8, E_MILLIS_FWD = 16, E_MILLIS_BWD = 24, E_EDGES = 32;
+    private final Directory dir;
+    private final CHGraph graph;
+    private final Weighting weighting;
+    private final String indexName;
+    private final String entriesName;
+    // the entry pointer of every shortcut divided by 4 or NO_ENTRY
+    private DataAccess index;
+    private DataAccess entries;
+    private double topNodes;
+    private int baseEdges;
+    private int shortcuts;
+    private int unpackedShortcuts;
+
+    public UnpackedShortcutStorage(Directory dir, CHGraph graph, Weighting weighting) {
+        this.dir = dir;
+        this.graph = graph;
+        this.weighting = weighting;
+        String name = AbstractWeighting.weightingToFileName(weighting);
+        this.indexName = "unpacked_shortcuts_index_" + name;
+        this.entriesName = "unpacked_shortcuts_" + name;
+        this.index = dir.find(indexName);
+        this.entries = dir.find(entriesName);
+    }
+
+    /**
+     * Unpacks all shortcuts whose nodes are both in the specified fraction of the highest levels.
+     *
+     * @param topNodes the fraction of the nodes with the highest levels, e.g. 0.01 for the highest percent
+     */
+    public void createUnpackedShortcuts(double topNodes) {
+        if (topNodes <= 0 || topNodes > 1)
+            throw new IllegalArgumentException("The fraction of the nodes with unpacked shortcuts has to be in (0, 1] but was " + topNodes);
+        if (graph.isEdgeBased())
+            throw new IllegalArgumentException("Unpacked shortcuts are only supported for node based CH " + graph);
+
+        // the files were loaded before, e.g. as they were created for a different fraction
+        if (index.getCapacity() > 0 || entries.getCapacity() > 0) {
+            dir.remove(index);
+            dir.remove(entries);
+            index = dir.find(indexName);
+            entries = dir.find(entriesName);
+        }
+
+        this.topNodes = topNodes;
+        int minLevel = (int) ((1 - topNodes) * graph.getNodes());
+        baseEdges = graph.getBaseGraph().getAllEdges().length();
+        AllCHEdgesIterator iter = graph.getAllEdges();
+        shortcuts = iter.length() - baseEdges;
+        unpackedShortcuts = 0;
+        index.create(4L * Math.max(1, shortcuts));
+        entries.create(1000);
+
+        FlagEncoder encoder = weighting.getFlagEncoder();
+        List<EdgeIteratorState> edges = new ArrayList<>();
+        long pointer = 0;
+        while (iter.next()) {
+            if (!iter.isShortcut())
+                continue;
+
+            int shortcut = iter.getEdge() - baseEdges;
+            if (Math.min(graph.getLevel(iter.getBaseNode()), graph.getLevel(iter.getAdjNode())) < minLevel) {
+                index.setInt(4L * shortcut, NO_ENTRY);
+                continue;
+            }
+
+            edges.clear();
+            unpack(iter.getSkippedEdge1(), iter.getSkippedEdge2(), iter.getBaseNode(), iter.getAdjNode(), edges);
+            double distance = 0;
+            long millisFwd = 0, millisBwd = 0;
+            for (EdgeIteratorState edge : edges) {
+                distance += edge.getDistance();
+                // calcMillis fails for blocked directions, which a path cannot travel anyway
+                if (iter.isForward(encoder))
+                    millisFwd += weighting.calcMillis(edge, false, EdgeIterator.NO_EDGE);
+                if (iter.isBackward(encoder))
+                    millisBwd += weighting.calcMillis(edge, true, EdgeIterator.NO_EDGE);
+            }
+
+            entries.ensureCapacity(pointer + E_EDGES + 4L * edges.size());
+            entries.setInt(pointer + E_START, iter.getBaseNode());
+            entries.setInt(pointer + E_COUNT, edges.size());
+            setLong(pointer + E_DIST, Double.doubleToRawLongBits(distance));
+            setLong(pointer + E_MILLIS_FWD, millisFwd);
+            setLong(pointer + E_MILLIS_BWD, millisBwd);
+            for (int i = 0; i < edges.size(); i++) {
+                entries.setInt(pointer + E_EDGES + 4L * i, edges.get(i).getEdge());
+            }
+            if (pointer / 4 > Integer.MAX_VALUE)
+                throw new IllegalStateException("Too many unpacked shortcuts for " + graph);
+
+            index.setInt(4L * shortcut, (int) (pointer / 4));
+            pointer += E_EDGES + 4L * edges.size();
+            unpackedShortcuts++;
+        }
+
+        index.setHeader(0, baseEdges);
+        index.setHeader(4, shortcuts);
+        index.setHeader(8, unpackedShortcuts);
+        long topNodesBits = Double.doubleToRawLongBits(topNodes);
+        index.setHeader(12, (int) (topNodesBits >>> 32));
+        index.setHeader(16, (int) topNodesBits);
+    }
+
+    /**
+     * Appends the original edges of the shortcut in travel direction from the specified node to the other node.
+     */
+    private void unpack(int skippedEdge1, int skippedEdge2, int from, int to, List<EdgeIteratorState> edges) {
+        // one of the skipped edges leads to the 'to' node, the other one to the via node
+        CHEdgeIteratorState second = getEdge(skippedEdge2, to);
+        CHEdgeIteratorState first;
+        if (second != null) {
+            first = getEdge(skippedEdge1, second.getBaseNode());
+        } else {
+            second = getEdge(skippedEdge1, to);
+            first = getEdge(skippedEdge2, second.getBaseNode());
+        }
+        if (first.getBaseNode() != from)
+            throw new IllegalStateException("Skipped edges of shortcut " + from + "->" + to + " do not start at " + from);
+
+        unpack(first, edges);
+        unpack(second, edges);
+    }
+
+    private void unpack(CHEdgeIteratorState edge, List<EdgeIteratorState> edges) {
+        if (edge.isShortcut())
+            unpack(edge.getSkippedEdge1(), edge.getSkippedEdge2(), edge.getBaseNode(), edge.getAdjNode(), edges);
+        else
+            edges.add(edge);
+    }
+
+    private CHEdgeIteratorState getEdge(int edgeId, int adjNode) {
+        return (CHEdgeIteratorState) graph.getEdgeIteratorState(edgeId, adjNode);
+    }
+
+    /**
+     * @return the pointer of the unpacked edges of the specified shortcut or -1 if it was not unpacked
+     */
+    long getPointer(int shortcutId) {
+        int shortcut = shortcutId - baseEdges;
+        if (shortcut < 0 || shortcut >= shortcuts)
+            return -1;
+
+        int entry = index.getInt(4L * shortcut);
+        return entry == NO_ENTRY ? -1 : 4L * entry;
+    }
+
+    /**
+     * @return the node the edges of the entry start from
+     */
+    int getStartNode(long pointer) {
+        return entries.getInt(pointer + E_START);
+    }
+
+    int getEdgeCount(long pointer) {
+        return entries.getInt(pointer + E_COUNT);
+    }
+
+    int getEdge(long pointer, int i) {
+        return entries.getInt(pointer + E_EDGES + 4L * i);
+    }
+
+    double getDistance(long pointer) {
+        return Double.longBitsToDouble(getLong(pointer + E_DIST));
+    }
+
+    /**
+     * @param fromStart true for the time from the start node, otherwise for the time to the start node
+     */
+    long getMillis(long pointer, boolean fromStart) {
+        return getLong(pointer + (fromStart ? E_MILLIS_FWD : E_MILLIS_BWD));
+    }
+
+    private void setLong(long pointer, long value) {
+        entries.setInt(pointer, (int) (value >>> 32));
+        entries.setInt(pointer + 4, (int) value);
+    }
+
+    private long getLong(long pointer) {
+        return ((long) entries.getInt(pointer) << 32) | (entries.getInt(pointer + 4) & 0xFFFFFFFFL);
+    }
+
+    public Weighting getWeighting() {
+        return weighting;
+    }
+
+    public int getUnpackedShortcuts() {
+        return unpackedShortcuts;
+    }
+
+    /**
+     * @return the fraction of the nodes with the highest levels the shortcuts were unpacked for
+     */
+    public double getTopNodes() {
+        return topNodes;
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (!index.loadExisting())
+            return false;
+        if (!entries.loadExisting())
+            throw new IllegalStateException("Index of the unpacked shortcuts loaded but not the edges!?");
+
+        baseEdges = index.getHeader(0);
+        shortcuts = index.getHeader(4);
+        unpackedShortcuts = index.getHeader(8);
+        topNodes = Double.longBitsToDouble(((long) index.getHeader(12) << 32) | (index.getHeader(16) & 0xFFFFFFFFL));
+        int allEdges = graph.getAllEdges().length();
+        if (baseEdges + shortcuts != allEdges)
+            throw new IllegalArgumentException("Cannot load unpacked shortcuts as written for a different CH graph with "
+                    + (baseEdges + shortcuts) + " edges and shortcuts, not " + allEdges);
+        return true;
+    }
+
+    @Override
+    public UnpackedShortcutStorage create(long byteCount) {
+        throw new IllegalStateException("Do not call UnpackedShortcutStorage.create directly");
+    }
+
+    @Override
+    public void flush() {
+        index.flush();
+        entries.flush();
+    }
+
+    @Override
+    public void close() {
+        index.close();
+        entries.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return index.isClosed();
+    }
+
+    @Override
+    public long getCapacity() {
+        return index.getCapacity() + entries.getCapacity();
+    }
+
+    @Override
+    public String toString() {
+        return "unpacked shortcuts " + nf(unpackedShortcuts) + " of " + nf(shortcuts) + " for " + weighting;
+    }
+}
@@ -67,6 +67,7 @@ public class LMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
     private boolean disablingAllowed = false;
     private final List<String> lmSuggestionsLocations = new ArrayList<>(5);
     private int preparationThreads;
+    private int preparationLandmarkThreads = -1;
     private ExecutorService threadPool;
     private boolean logDetails = false;
 
@@ -77,6 +78,7 @@ public class LMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
     @Override
     public void init(CmdArgs args) {
         setPreparationThreads(args.getInt(Parameters.Landmark.PREPARE + "threads", getPreparationThreads()));
+        setPreparationLandmarkThreads(args.getInt(Landmark.PREPARE + "landmark_threads", getPreparationLandmarkThreads()));
 
         landmarkCount = args.getInt(Parameters.Landmark.COUNT, landmarkCount);
         activeLandmarkCount = args.getInt(Landmark.ACTIVE_COUNT_DEFAULT, Math.min(8, landmarkCount));
@@ -138,6 +140,19 @@ public class LMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
         this.threadPool = java.util.concurrent.Executors.newFixedThreadPool(preparationThreads);
     }
 
+    public int getPreparationLandmarkThreads() {
+        return preparationLandmarkThreads;
+    }
+
+    /**
+     * This method changes the number of threads used to explore the landmarks of every single weighting. In contrast
+     * to setPreparationThreads this also speeds up the preparation if only one weighting is configured.
+     */
+    public LMAlgoFactoryDecorator setPreparationLandmarkThreads(int preparationLandmarkThreads) {
+        this.preparationLandmarkThreads = preparationLandmarkThreads;
+        return this;
+    }
+
     /**
      * Enables the use of contraction hierarchies to reduce query times. Enabled by default.
      *
@@ -336,6 +351,7 @@ public class LMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
                     weighting, landmarkCount, activeLandmarkCount).
                     setLandmarkSuggestions(lmSuggestions).
                     setMaximumWeight(maximumWeight).
+                    setLandmarkThreads(preparationLandmarkThreads).
                     setLogDetails(logDetails);
             if (minNodes > 1)
                 tmpPrepareLM.setMinimumNodes(minNodes);
@@ -41,6 +41,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -77,6 +81,7 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
     private List<LandmarkSuggestion> landmarkSuggestions = Collections.emptyList();
     private SpatialRuleLookup ruleLookup;
     private boolean logDetails = false;
+    private int landmarkThreads = 1;
 
     public LandmarkStorage(GraphHopperStorage graph, Directory dir, final Weighting weighting, int landmarks) {
         this.graph = graph;
@@ -144,6 +149,18 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
         this.logDetails = logDetails;
     }
 
+    /**
+     * Specifies the number of threads used to explore the weights from and to the landmarks of one subnetwork.
+     * Every thread needs the memory of two explorations of the subnetwork. Default is 1.
+     */
+    public LandmarkStorage setLandmarkThreads(int landmarkThreads) {
+        if (landmarkThreads < 1)
+            return this;
+
+        this.landmarkThreads = landmarkThreads;
+        return this;
+    }
+
     /**
      * This method forces the landmark preparation to skip the landmark search and uses the specified landmark list instead.
      * Useful for manual tuning of larger areas to safe import time or improve quality.
@@ -398,44 +415,99 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
         }
 
         // 2) calculate weights for all landmarks -> 'from' and 'to' weight
-        for (int lmIdx = 0; lmIdx < tmpLandmarkNodeIds.length; lmIdx++) {
-            if (Thread.currentThread().isInterrupted()) {
-                throw new RuntimeException("Thread was interrupted");
-            }
-            int lmNodeId = tmpLandmarkNodeIds[lmIdx];
-            LandmarkExplorer explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, true);
-            explorer.setStartNode(lmNodeId);
-            explorer.setFilter(blockedEdges, true, false);
-            explorer.runAlgo();
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH);
+        // the explorations of the first landmark set the subnetwork id of the explored nodes, so they have to finish
+        // before the other landmarks can be explored
+        if (!createLandmarkWeights(0, tmpLandmarkNodeIds, blockedEdges, subnetworks, subnetworkId))
+            return false;
 
-            // set subnetwork id to all explored nodes, but do this only for the first landmark
-            if (lmIdx == 0) {
-                if (explorer.setSubnetworks(subnetworks, subnetworkId))
-                    return false;
+        if (landmarkThreads > 1 && tmpLandmarkNodeIds.length > 2) {
+            createLandmarkWeightsParallel(tmpLandmarkNodeIds, blockedEdges);
+        } else {
+            for (int lmIdx = 1; lmIdx < tmpLandmarkNodeIds.length; lmIdx++) {
+                createLandmarkWeights(lmIdx, tmpLandmarkNodeIds, blockedEdges, subnetworks, subnetworkId);
             }
+        }
 
-            explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, false);
-            explorer.setStartNode(lmNodeId);
-            explorer.setFilter(blockedEdges, false, true);
-            explorer.runAlgo();
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH);
+        // TODO set weight to SHORT_MAX if entry has either no 'from' or no 'to' entry
+        landmarkIDs.add(tmpLandmarkNodeIds);
+        return true;
+    }
 
-            if (lmIdx == 0) {
-                if (explorer.setSubnetworks(subnetworks, subnetworkId))
-                    return false;
-            }
+    /**
+     * Explores the 'from' and 'to' weights of the specified landmark. Every landmark has its own column in every
+     * row of the landmark DataAccess, so different landmarks can be explored concurrently without locking. Only the
+     * explorations of the first landmark (lmIdx == 0) set the subnetwork of the explored nodes.
+     *
+     * @return false if the subnetwork of the first landmark could not be set
+     */
+    private boolean createLandmarkWeights(int lmIdx, int[] lmNodeIds, IntHashSet blockedEdges, byte[] subnetworks, int subnetworkId) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new RuntimeException("Thread was interrupted");
+        }
+        int lmNodeId = lmNodeIds[lmIdx];
+        LandmarkExplorer explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, true);
+        explorer.setStartNode(lmNodeId);
+        explorer.setFilter(blockedEdges, true, false);
+        explorer.runAlgo();
+        explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH);
+
+        // set subnetwork id to all explored nodes, but do this only for the first landmark
+        if (lmIdx == 0) {
+            if (explorer.setSubnetworks(subnetworks, subnetworkId))
+                return false;
+        }
 
-            if (logDetails && lmIdx % logOffset == 0)
-                LOGGER.info("Set landmarks weights [" + weighting + "]. "
-                        + "Progress " + (int) (100.0 * lmIdx / tmpLandmarkNodeIds.length) + "%");
+        explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, false);
+        explorer.setStartNode(lmNodeId);
+        explorer.setFilter(blockedEdges, false, true);
+        explorer.runAlgo();
+        explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH);
+
+        if (lmIdx == 0) {
+            if (explorer.setSubnetworks(subnetworks, subnetworkId))
+                return false;
         }
 
-        // TODO set weight to SHORT_MAX if entry has either no 'from' or no 'to' entry
-        landmarkIDs.add(tmpLandmarkNodeIds);
+        int logOffset = Math.max(1, lmNodeIds.length / 2);
+        if (logDetails && lmIdx % logOffset == 0)
+            LOGGER.info("Set landmarks weights [" + weighting + "]. "
+                    + "Progress " + (int) (100.0 * lmIdx / lmNodeIds.length) + "%");
         return true;
     }
 
+    /**
+     * Explores all except the first landmark concurrently. The explorations only read the graph and write into
+     * distinct columns of the landmark DataAccess, whose capacity was already ensured.
+     */
+    private void createLandmarkWeightsParallel(final int[] lmNodeIds, final IntHashSet blockedEdges) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(landmarkThreads, lmNodeIds.length - 1));
+        try {
+            List<Future<?>> futures = new ArrayList<>(lmNodeIds.length - 1);
+            for (int lmIdx = 1; lmIdx < lmNodeIds.length; lmIdx++) {
+                final int tmpLMIdx = lmIdx;
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        createLandmarkWeights(tmpLMIdx, lmNodeIds, blockedEdges, null, -1);
+                    }
+                }));
+            }
+            // waiting for every future also makes the written weights visible to this thread
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Thread was interrupted", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * This method specifies the polygons which should be used to split the world wide area to improve performance and
      * quality in this scenario.
@@ -100,6 +100,14 @@ public class PrepareLandmarks extends AbstractAlgoPreparation {
         lms.setMinimumNodes(nodes);
     }
 
+    /**
+     * @see LandmarkStorage#setLandmarkThreads(int)
+     */
+    public PrepareLandmarks setLandmarkThreads(int landmarkThreads) {
+        lms.setLandmarkThreads(landmarkThreads);
+        return this;
+    }
+
     public PrepareLandmarks setLogDetails(boolean logDetails) {
         lms.setLogDetails(logDetails);
         return this;
@@ -34,6 +34,10 @@ import com.graphhopper.util.shapes.GHPoint;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Implementation of calculating a route with multiple via points.
@@ -47,6 +51,8 @@ public class ViaRoutingTemplate extends AbstractRoutingTemplate implements Routi
     private final LocationIndex locationIndex;
     // result from route
     protected List<Path> pathList;
+    private ExecutorService legExecutor;
+    private List<QueryResult> preparedQueryResults;
 
     public ViaRoutingTemplate(GHRequest ghRequest, GHResponse ghRsp, LocationIndex locationIndex) {
         this.locationIndex = locationIndex;
@@ -54,6 +60,24 @@ public class ViaRoutingTemplate extends AbstractRoutingTemplate implements Routi
         this.ghResponse = ghRsp;
     }
 
+    /**
+     * Calculates the legs between the via points concurrently on the specified executor if they are
+     * independent of each other, i.e. if neither headings nor pass_through are requested.
+     */
+    public ViaRoutingTemplate setLegExecutor(ExecutorService legExecutor) {
+        this.legExecutor = legExecutor;
+        return this;
+    }
+
+    /**
+     * Uses the specified query results instead of looking up the points, e.g. if they were already looked up for
+     * the key of the route cache or for many requests at once. Null looks up the points.
+     */
+    public ViaRoutingTemplate setQueryResults(List<QueryResult> preparedQueryResults) {
+        this.preparedQueryResults = preparedQueryResults;
+        return this;
+    }
+
     @Override
     public List<QueryResult> lookup(List<GHPoint> points, FlagEncoder encoder) {
         if (points.size() < 2)
@@ -64,7 +88,9 @@ public class ViaRoutingTemplate extends AbstractRoutingTemplate implements Routi
         for (int placeIndex = 0; placeIndex < points.size(); placeIndex++) {
             GHPoint point = points.get(placeIndex);
             QueryResult qr = null;
-            if (ghRequest.hasPointHints())
+            if (preparedQueryResults != null)
+                qr = preparedQueryResults.get(placeIndex);
+            else if (ghRequest.hasPointHints())
                 qr = locationIndex.findClosest(point.lat, point.lon, new NameSimilarityEdgeFilter(edgeFilter, ghRequest.getPointHints().get(placeIndex)));
             if (qr == null || !qr.isValid())
                 qr = locationIndex.findClosest(point.lat, point.lon, edgeFilter);
@@ -79,44 +105,48 @@ public class ViaRoutingTemplate extends AbstractRoutingTemplate implements Routi
 
     @Override
     public List<Path> calcPaths(QueryGraph queryGraph, RoutingAlgorithmFactory algoFactory, AlgorithmOptions algoOpts) {
-        long visitedNodesSum = 0L;
         boolean viaTurnPenalty = ghRequest.getHints().getBool(Routing.PASS_THROUGH, false);
         int pointCounts = ghRequest.getPoints().size();
         pathList = new ArrayList<>(pointCounts - 1);
+        Leg[] legs = null;
+        if (legExecutor != null && pointCounts > 2 && !viaTurnPenalty && !hasFavoredHeading())
+            legs = calcLegsConcurrently(queryGraph, algoFactory, algoOpts);
+
+        long visitedNodesSum = 0L;
         QueryResult fromQResult = queryResults.get(0);
-        StopWatch sw;
         for (int placeIndex = 1; placeIndex < pointCounts; placeIndex++) {
-            if (placeIndex == 1) {
-                // enforce start direction
-                queryGraph.enforceHeading(fromQResult.getClosestNode(), ghRequest.getFavoredHeading(0), false);
-            } else if (viaTurnPenalty) {
-                // enforce straight start after via stop
-                Path prevRoute = pathList.get(placeIndex - 2);
-                if (prevRoute.getEdgeCount() > 0) {
-                    EdgeIteratorState incomingVirtualEdge = prevRoute.getFinalEdge();
-                    queryGraph.unfavorVirtualEdgePair(fromQResult.getClosestNode(), incomingVirtualEdge.getEdge());
-                }
-            }
-
             QueryResult toQResult = queryResults.get(placeIndex);
+            Leg leg;
+            if (legs != null) {
+                leg = legs[placeIndex - 1];
+            } else {
+                if (placeIndex == 1) {
+                    // enforce start direction
+                    queryGraph.enforceHeading(fromQResult.getClosestNode(), ghRequest.getFavoredHeading(0), false);
+                } else if (viaTurnPenalty) {
+                    // enforce straight start after via stop
+                    Path prevRoute = pathList.get(placeIndex - 2);
+                    if (prevRoute.getEdgeCount() > 0) {
+                        EdgeIteratorState incomingVirtualEdge = prevRoute.getFinalEdge();
+                        queryGraph.unfavorVirtualEdgePair(fromQResult.getClosestNode(), incomingVirtualEdge.getEdge());
+                    }
+                }
 
-            // enforce end direction
-            queryGraph.enforceHeading(toQResult.getClosestNode(), ghRequest.getFavoredHeading(placeIndex), true);
+                // enforce end direction
+                queryGraph.enforceHeading(toQResult.getClosestNode(), ghRequest.getFavoredHeading(placeIndex), true);
 
-            sw = new StopWatch().start();
-            RoutingAlgorithm algo = algoFactory.createAlgo(queryGraph, algoOpts);
-            String debug = ", algoInit:" + sw.stop().getSeconds() + "s";
+                leg = calcLeg(queryGraph, algoFactory, algoOpts, fromQResult, toQResult);
 
-            sw = new StopWatch().start();
+                // reset all direction enforcements in queryGraph to avoid influencing next path
+                queryGraph.clearUnfavoredStatus();
+            }
 
-            // calculate paths
-            List<Path> tmpPathList = algo.calcPaths(fromQResult.getClosestNode(), toQResult.getClosestNode());
-            debug += ", " + algo.getName() + "-routing:" + sw.stop().getSeconds() + "s";
-            if (tmpPathList.isEmpty())
+            if (leg.paths.isEmpty())
                 throw new IllegalStateException("At least one path has to be returned for " + fromQResult + " -> " + toQResult);
 
+            String debug = leg.debug;
             int idx = 0;
-            for (Path path : tmpPathList) {
+            for (Path path : leg.paths) {
                 if (path.getTime() < 0)
                     throw new RuntimeException("Time was negative " + path.getTime() + " for index " + idx + ". Please report as bug and include:" + ghRequest);
 
@@ -127,13 +157,10 @@ public class ViaRoutingTemplate extends AbstractRoutingTemplate implements Routi
 
             altResponse.addDebugInfo(debug);
 
-            // reset all direction enforcements in queryGraph to avoid influencing next path
-            queryGraph.clearUnfavoredStatus();
-
-            if (algo.getVisitedNodes() >= algoOpts.getMaxVisitedNodes())
+            if (leg.visitedNodes >= algoOpts.getMaxVisitedNodes())
                 throw new IllegalArgumentException("No path found due to maximum nodes exceeded " + algoOpts.getMaxVisitedNodes());
 
-            visitedNodesSum += algo.getVisitedNodes();
+            visitedNodesSum += leg.visitedNodes;
             altResponse.addDebugInfo("visited nodes sum: " + visitedNodesSum);
             fromQResult = toQResult;
         }
@@ -144,6 +171,80 @@ public class ViaRoutingTemplate extends AbstractRoutingTemplate implements Routi
         return pathList;
     }
 
+    private boolean hasFavoredHeading() {
+        for (int i = 0; i < ghRequest.getPoints().size(); i++) {
+            if (ghRequest.hasFavoredHeading(i))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Every leg gets its own algorithm, the QueryGraph is shared as it is not modified while routing.
+     */
+    private Leg calcLeg(QueryGraph queryGraph, RoutingAlgorithmFactory algoFactory, AlgorithmOptions algoOpts,
+                        QueryResult fromQResult, QueryResult toQResult) {
+        StopWatch sw = new StopWatch().start();
+        RoutingAlgorithm algo = algoFactory.createAlgo(queryGraph, algoOpts);
+        String debug = ", algoInit:" + sw.stop().getSeconds() + "s";
+
+        sw = new StopWatch().start();
+
+        // calculate paths
+        List<Path> paths = algo.calcPaths(fromQResult.getClosestNode(), toQResult.getClosestNode());
+        debug += ", " + algo.getName() + "-routing:" + sw.stop().getSeconds() + "s";
+        return new Leg(paths, debug, algo.getVisitedNodes());
+    }
+
+    private Leg[] calcLegsConcurrently(final QueryGraph queryGraph, final RoutingAlgorithmFactory algoFactory,
+                                       final AlgorithmOptions algoOpts) {
+        Leg[] legs = new Leg[queryResults.size() - 1];
+        List<Future<Leg>> futures = new ArrayList<>(legs.length - 1);
+        try {
+            for (int i = 1; i < legs.length; i++) {
+                final QueryResult fromQResult = queryResults.get(i);
+                final QueryResult toQResult = queryResults.get(i + 1);
+                futures.add(legExecutor.submit(new Callable<Leg>() {
+                    @Override
+                    public Leg call() {
+                        return calcLeg(queryGraph, algoFactory, algoOpts, fromQResult, toQResult);
+                    }
+                }));
+            }
+
+            // the request thread would only wait otherwise
+            legs[0] = calcLeg(queryGraph, algoFactory, algoOpts, queryResults.get(0), queryResults.get(1));
+            for (int i = 1; i < legs.length; i++) {
+                legs[i] = futures.get(i - 1).get();
+            }
+            return legs;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Thread was interrupted", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            // stop the remaining legs if one failed
+            for (Future<Leg> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static class Leg {
+        final List<Path> paths;
+        final String debug;
+        final int visitedNodes;
+
+        Leg(List<Path> paths, String debug, int visitedNodes) {
+            this.paths = paths;
+            this.debug = debug;
+            this.visitedNodes = visitedNodes;
+        }
+    }
+
     @Override
     public boolean isReady(PathMerger pathMerger, Translation tr) {
         if (ghRequest.getPoints().size() - 1 != pathList.size())
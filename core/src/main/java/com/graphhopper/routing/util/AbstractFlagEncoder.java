@@ -215,7 +215,7 @@ public abstract class AbstractFlagEncoder implements FlagEncoder, TurnCostEncode
 
     /**
      * Analyze properties of a way and create the routing flags. This method is called in the second
-     * parsing step.
+     * parsing step, possibly from several threads, see FlagEncoder.
      */
     public abstract long handleWayTags(ReaderWay way, long allowed, long relationFlags);
 
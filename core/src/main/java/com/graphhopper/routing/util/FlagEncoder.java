@@ -24,6 +24,10 @@ import com.graphhopper.util.Translation;
  * This class provides methods to define how a value (like speed or direction) converts to a flag
  * (currently an integer value), which is stored in an edge .
  * <p>
+ * The import can call acceptWay and handleWayTags of an encoder from several threads at the same time if
+ * datareader.way_flags_threads is larger than 1. An encoder used for such an import must not change its state
+ * in these methods, e.g. it must not use a shared DateFormat or cache.
+ * <p>
  *
  * @author Peter Karich
  */
@@ -0,0 +1,48 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util;
+
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * Only accepts the edges of the upward search of a CH query in one direction, i.e. the accessible edges leading to
+ * equal and higher level nodes. A CHGraph with adjacency arrays returns an explorer over these arrays for this filter.
+ */
+public class UpwardEdgeFilter extends LevelEdgeFilter {
+    private final DefaultEdgeFilter accessFilter;
+    private final boolean reverse;
+
+    /**
+     * @param reverse if false the edges of the forward search are accepted, otherwise the edges of the backward search
+     */
+    public UpwardEdgeFilter(CHGraph g, FlagEncoder encoder, boolean reverse) {
+        super(g);
+        this.accessFilter = reverse ? DefaultEdgeFilter.inEdges(encoder) : DefaultEdgeFilter.outEdges(encoder);
+        this.reverse = reverse;
+    }
+
+    public boolean isReverse() {
+        return reverse;
+    }
+
+    @Override
+    public boolean accept(EdgeIteratorState edgeIterState) {
+        return accessFilter.accept(edgeIterState) && super.accept(edgeIterState);
+    }
+}
@@ -17,6 +17,7 @@
  */
 package com.graphhopper.storage;
 
+import com.carrotsearch.hppc.IntLongMap;
 import com.graphhopper.coll.GHBitSet;
 import com.graphhopper.coll.GHBitSetImpl;
 import com.graphhopper.coll.SparseIntIntArray;
@@ -60,6 +61,10 @@ class BaseGraph implements Graph {
     private final DataAccess wayGeometry;
     private final Directory dir;
     private final InternalGraphEventListener listener;
+    /**
+     * Published edge flags that are not yet written to the edges area, see setChangedFlags
+     */
+    private volatile IntLongMap changedFlags;
     /**
      * interval [0,n)
      */
@@ -462,6 +467,19 @@ class BaseGraph implements Graph {
         loadNodesHeader();
         loadEdgesHeader();
         loadWayGeometryHeader();
+
+        // turn costs added after the last TurnCostExtension.optimize, e.g. without OSMReader, are stored as linked lists
+        if (extStorage instanceof TurnCostExtension && dir.getDefaultType().isAllowWrites()) {
+            TurnCostExtension turnCostExt = (TurnCostExtension) extStorage;
+            if (!turnCostExt.isSorted()) {
+                turnCostExt.optimize();
+                // a loaded graph is not necessarily flushed again, but for MMAP the data is already changed on disk
+                // and must not be read as linked lists on the next start
+                setNodesHeader();
+                nodes.flush();
+                turnCostExt.flush();
+            }
+        }
     }
 
     /**
@@ -549,6 +567,16 @@ class BaseGraph implements Graph {
         return new AllEdgeIterator(this, edgeAccess);
     }
 
+    /**
+     * Publishes the specified edge flags (edgeId to flags) without writing them. Explorers and iterators that
+     * are created afterwards read the flags of these edges from the map, already existing ones keep reading
+     * the edges area. The map must not be modified after it was published. Pass null to stop reading from the
+     * map once the flags were written.
+     */
+    void setChangedFlags(IntLongMap changedFlags) {
+        this.changedFlags = changedFlags;
+    }
+
     @Override
     public Graph copyTo(Graph g) {
         initialized = true;
@@ -1102,11 +1130,14 @@ class BaseGraph implements Graph {
         boolean freshFlags;
         int edgeId = -1;
         private long cachedFlags;
+        // the changes published when this iterator was created, shortcuts are never changed
+        private final IntLongMap changedFlags;
 
         public CommonEdgeIterator(long edgePointer, EdgeAccess edgeAccess, BaseGraph baseGraph) {
             this.edgePointer = edgePointer;
             this.edgeAccess = edgeAccess;
             this.baseGraph = baseGraph;
+            this.changedFlags = edgeAccess == baseGraph.edgeAccess ? baseGraph.changedFlags : null;
         }
 
         @Override
@@ -1132,12 +1163,21 @@ class BaseGraph implements Graph {
 
         final long getDirectFlags() {
             if (!freshFlags) {
-                cachedFlags = edgeAccess.getFlags_(edgePointer, reverse);
+                cachedFlags = changedFlags == null ? edgeAccess.getFlags_(edgePointer, reverse) : getChangedFlags();
                 freshFlags = true;
             }
             return cachedFlags;
         }
 
+        private long getChangedFlags() {
+            int index = changedFlags.indexOf(edgeId);
+            if (!changedFlags.indexExists(index))
+                return edgeAccess.getFlags_(edgePointer, reverse);
+
+            long flags = changedFlags.indexGet(index);
+            return reverse ? edgeAccess.reverseFlags(edgePointer, flags) : flags;
+        }
+
         @Override
         public long getFlags() {
             return getDirectFlags();
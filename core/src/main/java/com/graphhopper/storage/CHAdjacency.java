@@ -0,0 +1,370 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.LevelEdgeFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.util.*;
+
+import static com.graphhopper.util.Helper.nf;
+
+/**
+ * A frozen and query only representation of a node based CHGraph. For every node the accessible edges to nodes of
+ * the same or a higher level are stored as compressed sparse rows, once for the forward and once for the backward
+ * search, together with the weight in this direction and the skipped edges. A CH query then reads the consecutive
+ * entries of a node instead of following the linked lists of the edges and shortcuts.
+ * <p>
+ * The arrays are built after the preparation and become unavailable if a shortcut is added afterwards.
+ */
+public class CHAdjacency {
+    // the adjacent node, the edge, the weight as two ints and the skipped edges
+    private static final int E_ADJ = 0, E_EDGE = 4, E_WEIGHT = 8, E_SKIP1 = 16, E_SKIP2 = 20;
+    private static final int ENTRY_BYTES = 24;
+    private final CHGraphImpl graph;
+    // the first entry of every node for the forward search, then for the backward search, each followed by the end
+    private final DataAccess index;
+    private final DataAccess entries;
+    private int nodes;
+    private boolean available;
+
+    CHAdjacency(CHGraphImpl graph, Directory dir, String name) {
+        this.graph = graph;
+        this.index = dir.find("ch_adj_index_" + name);
+        this.entries = dir.find("ch_adj_entries_" + name);
+    }
+
+    /**
+     * @return true if the arrays fit to the current shortcuts of the graph and can be used for queries
+     */
+    boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Marks the arrays as outdated, e.g. if a shortcut is added.
+     */
+    void invalidate() {
+        available = false;
+    }
+
+    void build(Weighting weighting, int edgeCount, int shortcutCount) {
+        nodes = graph.getNodes();
+        long indexBytes = 2 * ((long) nodes + 1) * 4;
+        if (index.getSegments() == 0)
+            index.create(indexBytes);
+        else
+            index.ensureCapacity(indexBytes);
+        if (entries.getSegments() == 0)
+            entries.create(((long) edgeCount + shortcutCount) * ENTRY_BYTES);
+
+        FlagEncoder encoder = weighting.getFlagEncoder();
+        LevelEdgeFilter levelFilter = new LevelEdgeFilter(graph);
+        long entry = 0;
+        for (int i = 0; i < 2; i++) {
+            boolean reverse = i == 1;
+            CHEdgeExplorer explorer = graph.createEdgeExplorer(reverse ? DefaultEdgeFilter.inEdges(encoder) : DefaultEdgeFilter.outEdges(encoder));
+            for (int node = 0; node < nodes; node++) {
+                index.setInt(toIndexPointer(reverse, node), (int) entry);
+                CHEdgeIterator iter = explorer.setBaseNode(node);
+                while (iter.next()) {
+                    if (!levelFilter.accept(iter))
+                        continue;
+
+                    long pointer = entry * ENTRY_BYTES;
+                    entries.ensureCapacity(pointer + ENTRY_BYTES);
+                    entries.setInt(pointer + E_ADJ, iter.getAdjNode());
+                    entries.setInt(pointer + E_EDGE, iter.getEdge());
+                    // the same weight as the PreparationWeighting calculates for this direction
+                    double weight = iter.isShortcut() ? iter.getWeight() : weighting.calcWeight(iter, reverse, EdgeIterator.NO_EDGE);
+                    long bits = Double.doubleToRawLongBits(weight);
+                    entries.setInt(pointer + E_WEIGHT, (int) (bits >>> 32));
+                    entries.setInt(pointer + E_WEIGHT + 4, (int) bits);
+                    entries.setInt(pointer + E_SKIP1, iter.isShortcut() ? iter.getSkippedEdge1() : EdgeIterator.NO_EDGE);
+                    entries.setInt(pointer + E_SKIP2, iter.isShortcut() ? iter.getSkippedEdge2() : EdgeIterator.NO_EDGE);
+                    entry++;
+                    if (entry > Integer.MAX_VALUE)
+                        throw new IllegalStateException("Too many entries for the adjacency arrays of " + graph);
+                }
+            }
+            index.setInt(toIndexPointer(reverse, nodes), (int) entry);
+        }
+
+        index.setHeader(0, nodes);
+        index.setHeader(4, edgeCount);
+        index.setHeader(8, shortcutCount);
+        entries.setHeader(0, (int) entry);
+        available = true;
+    }
+
+    /**
+     * Loads the arrays if they exist, they are only available if they were built for the specified edges.
+     */
+    boolean loadExisting(int edgeCount, int shortcutCount) {
+        if (!index.loadExisting() || !entries.loadExisting())
+            return false;
+
+        nodes = index.getHeader(0);
+        available = nodes == graph.getNodes() && index.getHeader(4) == edgeCount && index.getHeader(8) == shortcutCount;
+        return available;
+    }
+
+    private long toIndexPointer(boolean reverse, int node) {
+        return (reverse ? (long) nodes + 1 + node : node) * 4;
+    }
+
+    /**
+     * @param reverse if false the explorer returns the edges of the forward search, otherwise the edges of the
+     *                backward search
+     */
+    AdjacencyIterator createEdgeExplorer(boolean reverse) {
+        if (!available)
+            throw new IllegalStateException("Adjacency arrays are not available for " + graph);
+        return new AdjacencyIterator(reverse);
+    }
+
+    void flush() {
+        if (index.getSegments() == 0)
+            return;
+
+        index.flush();
+        entries.flush();
+    }
+
+    void close() {
+        index.close();
+        entries.close();
+    }
+
+    long getCapacity() {
+        return index.getCapacity() + entries.getCapacity();
+    }
+
+    @Override
+    public String toString() {
+        return "adjacency arrays " + (available ? nf(entries.getHeader(0)) + " entries" : "not available");
+    }
+
+    /**
+     * Iterates over the entries of a node in one direction. Everything a CH query needs is read from the adjacency
+     * arrays, all other properties are read from the graph.
+     */
+    public final class AdjacencyIterator implements CHEdgeExplorer, CHEdgeIterator {
+        private final boolean reverse;
+        private long pointer;
+        private long endPointer;
+        private int baseNode;
+        private int adjNode;
+        private int edge = EdgeIterator.NO_EDGE;
+        private double weight;
+
+        AdjacencyIterator(boolean reverse) {
+            this.reverse = reverse;
+        }
+
+        /**
+         * @return true if the weights are stored for the backward search
+         */
+        public boolean isReverse() {
+            return reverse;
+        }
+
+        @Override
+        public CHEdgeIterator setBaseNode(int baseNode) {
+            long indexPointer = toIndexPointer(reverse, baseNode);
+            this.pointer = (long) index.getInt(indexPointer) * ENTRY_BYTES - ENTRY_BYTES;
+            this.endPointer = (long) index.getInt(indexPointer + 4) * ENTRY_BYTES;
+            this.baseNode = baseNode;
+            this.edge = EdgeIterator.NO_EDGE;
+            return this;
+        }
+
+        @Override
+        public boolean next() {
+            pointer += ENTRY_BYTES;
+            if (pointer >= endPointer)
+                return false;
+
+            adjNode = entries.getInt(pointer + E_ADJ);
+            edge = entries.getInt(pointer + E_EDGE);
+            long bits = ((long) entries.getInt(pointer + E_WEIGHT) << 32) | (entries.getInt(pointer + E_WEIGHT + 4) & 0xFFFFFFFFL);
+            weight = Double.longBitsToDouble(bits);
+            return true;
+        }
+
+        @Override
+        public int getEdge() {
+            return edge;
+        }
+
+        @Override
+        public int getBaseNode() {
+            return baseNode;
+        }
+
+        @Override
+        public int getAdjNode() {
+            return adjNode;
+        }
+
+        @Override
+        public boolean isShortcut() {
+            return graph.isShortcut(edge);
+        }
+
+        /**
+         * @return the weight of the edge or shortcut in the direction of this iterator
+         */
+        @Override
+        public double getWeight() {
+            return weight;
+        }
+
+        @Override
+        public int getSkippedEdge1() {
+            checkShortcut("getSkippedEdge1");
+            return entries.getInt(pointer + E_SKIP1);
+        }
+
+        @Override
+        public int getSkippedEdge2() {
+            checkShortcut("getSkippedEdge2");
+            return entries.getInt(pointer + E_SKIP2);
+        }
+
+        private void checkShortcut(String methodName) {
+            if (!isShortcut())
+                throw new IllegalStateException("Method " + methodName + " only for shortcuts " + edge);
+        }
+
+        private CHEdgeIteratorState getState() {
+            return graph.getEdgeIteratorState(edge, adjNode);
+        }
+
+        @Override
+        public int getOrigEdgeFirst() {
+            return getState().getOrigEdgeFirst();
+        }
+
+        @Override
+        public int getOrigEdgeLast() {
+            return getState().getOrigEdgeLast();
+        }
+
+        @Override
+        public int getMergeStatus(long flags) {
+            return getState().getMergeStatus(flags);
+        }
+
+        @Override
+        public PointList fetchWayGeometry(int mode) {
+            return getState().fetchWayGeometry(mode);
+        }
+
+        @Override
+        public double getDistance() {
+            return getState().getDistance();
+        }
+
+        @Override
+        public long getFlags() {
+            return getState().getFlags();
+        }
+
+        @Override
+        public int getAdditionalField() {
+            return getState().getAdditionalField();
+        }
+
+        @Override
+        public boolean isForward(FlagEncoder encoder) {
+            return getState().isForward(encoder);
+        }
+
+        @Override
+        public boolean isBackward(FlagEncoder encoder) {
+            return getState().isBackward(encoder);
+        }
+
+        @Override
+        public boolean getBool(int key, boolean _default) {
+            return getState().getBool(key, _default);
+        }
+
+        @Override
+        public String getName() {
+            return getState().getName();
+        }
+
+        @Override
+        public EdgeIteratorState detach(boolean reverseArg) {
+            return graph.getEdgeIteratorState(edge, reverseArg ? baseNode : adjNode);
+        }
+
+        @Override
+        public EdgeIteratorState copyPropertiesTo(EdgeIteratorState e) {
+            return getState().copyPropertiesTo(e);
+        }
+
+        @Override
+        public CHEdgeIteratorState setWeight(double weight) {
+            throw new UnsupportedOperationException("The adjacency arrays are read only");
+        }
+
+        @Override
+        public void setSkippedEdges(int edge1, int edge2) {
+            throw new UnsupportedOperationException("The adjacency arrays are read only");
+        }
+
+        @Override
+        public void setFirstAndLastOrigEdges(int firstOrigEdge, int lastOrigEdge) {
+            throw new UnsupportedOperationException("The adjacency arrays are read only");
+        }
+
+        @Override
+        public EdgeIteratorState setWayGeometry(PointList list) {
+            throw new UnsupportedOperationException("The adjacency arrays are read only");
+        }
+
+        @Override
+        public EdgeIteratorState setDistance(double dist) {
+            throw new UnsupportedOperationException("The adjacency arrays are read only");
+        }
+
+        @Override
+        public EdgeIteratorState setFlags(long flags) {
+            throw new UnsupportedOperationException("The adjacency arrays are read only");
+        }
+
+        @Override
+        public EdgeIteratorState setAdditionalField(int value) {
+            throw new UnsupportedOperationException("The adjacency arrays are read only");
+        }
+
+        @Override
+        public EdgeIteratorState setName(String name) {
+            throw new UnsupportedOperationException("The adjacency arrays are read only");
+        }
+
+        @Override
+        public String toString() {
+            return edge + " " + baseNode + "-" + adjNode;
+        }
+    }
+}
@@ -44,6 +44,12 @@ public interface CHGraph extends Graph {
 
     boolean isShortcut(int edgeId);
 
+    /**
+     * @return true if the shortcuts of this graph are created for edge based traversal, i.e. they
+     * store their first and last original edge to make turn costs possible.
+     */
+    boolean isEdgeBased();
+
     /**
      * This method creates a shortcut between a to b which is nearly identical to creating an edge
      * except that it can be excluded or included for certain traversals or algorithms.
@@ -21,6 +21,7 @@ import com.graphhopper.routing.ch.PrepareEncoder;
 import com.graphhopper.routing.util.AllCHEdgesIterator;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.UpwardEdgeFilter;
 import com.graphhopper.routing.weighting.AbstractWeighting;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.BaseGraph.AllEdgeIterator;
@@ -52,7 +53,9 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph> {
     final long scDirMask = PrepareEncoder.getScDirMask();
     private final BaseGraph baseGraph;
     private final EdgeAccess chEdgeAccess;
+    private final CHAdjacency adjacency;
     private final Weighting weighting;
+    private final boolean edgeBased;
     int N_CH_REF;
     int shortcutEntryBytes;
     // the nodesCH storage is limited via baseGraph.nodeCount too
@@ -60,17 +63,25 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph> {
     private int N_LEVEL;
     // shortcut memory layout is synced with edges indices until E_FLAGS, then:
     private int S_SKIP_EDGE1, S_SKIP_EDGE2;
+    // only for edge based CH: the first and last original edge of a shortcut in travel direction
+    private int S_ORIG_FIRST, S_ORIG_LAST;
     private int shortcutCount = 0;
 
     CHGraphImpl(Weighting w, Directory dir, final BaseGraph baseGraph) {
+        this(w, dir, baseGraph, false);
+    }
+
+    CHGraphImpl(Weighting w, Directory dir, final BaseGraph baseGraph, boolean edgeBased) {
         if (w == null)
             throw new IllegalStateException("Weighting for CHGraph cannot be null");
 
         this.weighting = w;
+        this.edgeBased = edgeBased;
         this.baseGraph = baseGraph;
         final String name = AbstractWeighting.weightingToFileName(w);
         this.nodesCH = dir.find("nodes_ch_" + name);
         this.shortcuts = dir.find("shortcuts_" + name);
+        this.adjacency = new CHAdjacency(this, dir, name);
         this.chEdgeAccess = new EdgeAccess(shortcuts, baseGraph.bitUtil) {
             @Override
             final EdgeIterable createSingleEdge(EdgeFilter edgeFilter) {
@@ -130,6 +141,11 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph> {
         return weighting;
     }
 
+    @Override
+    public boolean isEdgeBased() {
+        return edgeBased;
+    }
+
     @Override
     public boolean isShortcut(int edgeId) {
         assert baseGraph.isFrozen() : "level graph not yet frozen";
@@ -159,12 +175,15 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph> {
 
         checkNodeId(a);
         checkNodeId(b);
+        adjacency.invalidate();
 
         int scId = chEdgeAccess.internalEdgeAdd(nextShortcutId(), a, b);
         CHEdgeIteratorImpl iter = new CHEdgeIteratorImpl(baseGraph, chEdgeAccess, EdgeFilter.ALL_EDGES);
         boolean ret = iter.init(scId, b);
         assert ret;
         iter.setSkippedEdges(EdgeIterator.NO_EDGE, EdgeIterator.NO_EDGE);
+        if (edgeBased)
+            iter.setFirstAndLastOrigEdges(EdgeIterator.NO_EDGE, EdgeIterator.NO_EDGE);
         return iter;
     }
 
@@ -201,6 +220,8 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph> {
 
     @Override
     public CHEdgeExplorer createEdgeExplorer(EdgeFilter filter) {
+        if (filter instanceof UpwardEdgeFilter && adjacency.isAvailable())
+            return adjacency.createEdgeExplorer(((UpwardEdgeFilter) filter).isReverse());
         return new CHEdgeIteratorImpl(baseGraph, chEdgeAccess, filter);
     }
 
@@ -248,7 +269,29 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph> {
     }
 
     String toDetailsString() {
-        return toString() + ", shortcuts:" + nf(shortcutCount) + ", nodesCH:(" + nodesCH.getCapacity() / Helper.MB + "MB)";
+        return toString() + ", shortcuts:" + nf(shortcutCount) + ", nodesCH:(" + nodesCH.getCapacity() / Helper.MB + "MB)"
+                + ", " + adjacency;
+    }
+
+    /**
+     * @return true if the CH queries can use the adjacency arrays, see createAdjacencyArrays
+     */
+    public boolean hasAdjacencyArrays() {
+        return adjacency.isAvailable();
+    }
+
+    /**
+     * Creates and stores the compressed adjacency arrays of the upward edges and shortcuts, which speed up the CH
+     * queries. Call this after the preparation, as adding a shortcut makes the arrays unavailable again.
+     */
+    public void createAdjacencyArrays() {
+        if (edgeBased)
+            throw new IllegalStateException("Adjacency arrays are only available for node based CH " + toString());
+        if (!baseGraph.isFrozen())
+            throw new IllegalStateException("Cannot create adjacency arrays if graph is not yet frozen");
+
+        adjacency.build(weighting, baseGraph.edgeCount, shortcutCount);
+        adjacency.flush();
     }
 
     /**
@@ -355,7 +398,13 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph> {
         // shortcuts
         S_SKIP_EDGE1 = ea.E_FLAGS + 4;
         S_SKIP_EDGE2 = S_SKIP_EDGE1 + 4;
-        shortcutEntryBytes = S_SKIP_EDGE2 + 4;
+        if (edgeBased) {
+            S_ORIG_FIRST = S_SKIP_EDGE2 + 4;
+            S_ORIG_LAST = S_ORIG_FIRST + 4;
+            shortcutEntryBytes = S_ORIG_LAST + 4;
+        } else {
+            shortcutEntryBytes = S_SKIP_EDGE2 + 4;
+        }
 
         // node based data:
         N_LEVEL = 0;
@@ -380,7 +429,15 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph> {
         if (!nodesCH.loadExisting() || !shortcuts.loadExisting())
             return false;
 
+        int expectedEntryBytes = shortcutEntryBytes;
         loadEdgesHeader();
+        if (expectedEntryBytes != shortcutEntryBytes)
+            throw new IllegalStateException("Configured CH graph is " + (edgeBased ? "edge" : "node") + " based but "
+                    + "the stored shortcuts do not fit, entry bytes " + shortcutEntryBytes + " vs. " + expectedEntryBytes
+                    + ". Remove the graph folder and prepare it again. " + toString());
+        // the adjacency arrays are optional
+        if (!edgeBased)
+            adjacency.loadExisting(baseGraph.edgeCount, shortcutCount);
         return true;
     }
 
@@ -388,12 +445,14 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph> {
     public void flush() {
         nodesCH.flush();
         shortcuts.flush();
+        adjacency.flush();
     }
 
     @Override
     public void close() {
         nodesCH.close();
         shortcuts.close();
+        adjacency.close();
     }
 
     @Override
@@ -403,12 +462,28 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph> {
 
     @Override
     public long getCapacity() {
-        return nodesCH.getCapacity() + shortcuts.getCapacity();
+        return nodesCH.getCapacity() + shortcuts.getCapacity() + adjacency.getCapacity();
     }
 
     @Override
     public String toString() {
-        return "CHGraph|" + getWeighting().toString();
+        return "CHGraph|" + getWeighting().toString() + (edgeBased ? "|edge_based" : "");
+    }
+
+    final void checkEdgeBased(String methodName) {
+        if (!edgeBased)
+            throw new IllegalStateException("Method " + methodName + " is only available for edge based CH");
+    }
+
+    final int getOrigEdge(CommonEdgeIterator edge, boolean first) {
+        checkEdgeBased(first ? "getOrigEdgeFirst" : "getOrigEdgeLast");
+        return shortcuts.getInt(edge.edgePointer + (first ? S_ORIG_FIRST : S_ORIG_LAST));
+    }
+
+    final void setFirstAndLastOrigEdges(CommonEdgeIterator edge, int firstOrigEdge, int lastOrigEdge) {
+        checkEdgeBased("setFirstAndLastOrigEdges");
+        shortcuts.setInt(edge.edgePointer + S_ORIG_FIRST, firstOrigEdge);
+        shortcuts.setInt(edge.edgePointer + S_ORIG_LAST, lastOrigEdge);
     }
 
     class CHEdgeIteratorImpl extends EdgeIterable implements CHEdgeExplorer, CHEdgeIterator {
@@ -455,6 +530,26 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph> {
             return shortcuts.getInt(edgePointer + S_SKIP_EDGE2);
         }
 
+        @Override
+        public final int getOrigEdgeFirst() {
+            if (!isShortcut())
+                return getEdge();
+            return getOrigEdge(this, true);
+        }
+
+        @Override
+        public final int getOrigEdgeLast() {
+            if (!isShortcut())
+                return getEdge();
+            return getOrigEdge(this, false);
+        }
+
+        @Override
+        public final void setFirstAndLastOrigEdges(int firstOrigEdge, int lastOrigEdge) {
+            checkShortcut(true, "setFirstAndLastOrigEdges");
+            CHGraphImpl.this.setFirstAndLastOrigEdges(this, firstOrigEdge, lastOrigEdge);
+        }
+
         @Override
         public final boolean isShortcut() {
             // assert baseGraph.isFrozen() : "chgraph not yet frozen";
@@ -620,6 +715,26 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph> {
             return shortcuts.getInt(edgePointer + S_SKIP_EDGE2);
         }
 
+        @Override
+        public final int getOrigEdgeFirst() {
+            if (!isShortcut())
+                return getEdge();
+            return getOrigEdge(this, true);
+        }
+
+        @Override
+        public final int getOrigEdgeLast() {
+            if (!isShortcut())
+                return getEdge();
+            return getOrigEdge(this, false);
+        }
+
+        @Override
+        public final void setFirstAndLastOrigEdges(int firstOrigEdge, int lastOrigEdge) {
+            checkShortcut(true, "setFirstAndLastOrigEdges");
+            CHGraphImpl.this.setFirstAndLastOrigEdges(this, firstOrigEdge, lastOrigEdge);
+        }
+
         @Override
         public final boolean isShortcut() {
             assert baseGraph.isFrozen() : "level graph not yet frozen";
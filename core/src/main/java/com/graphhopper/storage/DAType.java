@@ -43,6 +43,16 @@ public class DAType {
      * Optimized RAM_STORE DA type for integer access. The set and getBytes methods cannot be used.
      */
     public static final DAType RAM_INT_STORE = new DAType(MemRef.HEAP, true, true, true);
+    /**
+     * The DA object is hold entirely in direct memory outside of the Java heap. Loading and flushing is a no-op.
+     * See RAMDirectDataAccess.
+     */
+    public static final DAType RAM_DIRECT = new DAType(MemRef.DIRECT, false, false, true);
+    /**
+     * The DA object is hold entirely in direct memory outside of the Java heap. It uses the same file format as
+     * RAM_STORE. See RAMDirectDataAccess.
+     */
+    public static final DAType RAM_DIRECT_STORE = new DAType(MemRef.DIRECT, true, false, true);
     /**
      * Memory mapped DA object. See MMapDataAccess.
      */
@@ -82,6 +92,8 @@ public class DAType {
             type = DAType.MMAP;
         else if (dataAccess.contains("UNSAFE"))
             type = DAType.UNSAFE_STORE;
+        else if (dataAccess.contains("RAM_DIRECT"))
+            type = dataAccess.contains("STORE") ? DAType.RAM_DIRECT_STORE : DAType.RAM_DIRECT;
         else if (dataAccess.contains("RAM_STORE"))
             type = DAType.RAM_STORE;
         else
@@ -111,6 +123,13 @@ public class DAType {
         return memRef == MemRef.MMAP;
     }
 
+    /**
+     * @return true if data resides in direct memory outside of the JVM heap.
+     */
+    public boolean isDirect() {
+        return memRef == MemRef.DIRECT;
+    }
+
     /**
      * Temporary data or store (with loading and storing)? default is false
      */
@@ -132,6 +151,8 @@ public class DAType {
             str = "MMAP";
         else if (getMemRef() == MemRef.HEAP)
             str = "RAM";
+        else if (getMemRef() == MemRef.DIRECT)
+            str = "RAM_DIRECT";
         else
             str = "UNSAFE";
 
@@ -168,8 +189,7 @@ public class DAType {
     }
 
     public enum MemRef {
-        HEAP, MMAP, UNSAFE
-        /*, DIRECT */
+        HEAP, MMAP, UNSAFE, DIRECT
 
     }
 }
@@ -113,6 +113,8 @@ public class GHDirectory implements Directory {
                 da = new RAMDataAccess(name, location, true, byteOrder);
             else
                 da = new RAMDataAccess(name, location, false, byteOrder);
+        } else if (type.isDirect()) {
+            da = new RAMDirectDataAccess(name, location, type.isStoring(), byteOrder);
         } else if (type.isMMap()) {
             da = new MMapDataAccess(name, location, byteOrder, type.isAllowWrites());
         } else {
@@ -36,6 +36,7 @@ public class GraphBuilder {
     private boolean elevation;
     private long byteCapacity = 100;
     private Weighting singleCHWeighting;
+    private boolean edgeBasedCH;
 
     public GraphBuilder(EncodingManager encodingManager) {
         this.encodingManager = encodingManager;
@@ -49,6 +50,15 @@ public class GraphBuilder {
         return this;
     }
 
+    /**
+     * This method enables creating the CHGraph for edge based traversal, which also adds turn cost
+     * support to the graph.
+     */
+    public GraphBuilder setEdgeBasedCH(boolean edgeBasedCH) {
+        this.edgeBasedCH = edgeBasedCH;
+        return this;
+    }
+
     public GraphBuilder setLocation(String location) {
         this.location = location;
         return this;
@@ -96,7 +106,9 @@ public class GraphBuilder {
                 new RAMDirectory(location, store);
 
         GraphHopperStorage graph;
-        if (encodingManager.needsTurnCostsSupport() || singleCHWeighting == null)
+        if (singleCHWeighting != null && edgeBasedCH)
+            graph = new GraphHopperStorage(Arrays.asList(singleCHWeighting), dir, encodingManager, elevation, new TurnCostExtension(), true);
+        else if (encodingManager.needsTurnCostsSupport() || singleCHWeighting == null)
             graph = new GraphHopperStorage(dir, encodingManager, elevation, new TurnCostExtension());
         else
             graph = new GraphHopperStorage(Arrays.asList(singleCHWeighting), dir, encodingManager, elevation, new TurnCostExtension.NoOpExtension());
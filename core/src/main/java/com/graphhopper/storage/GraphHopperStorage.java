@@ -17,6 +17,7 @@
  */
 package com.graphhopper.storage;
 
+import com.carrotsearch.hppc.IntLongMap;
 import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
@@ -46,6 +47,7 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
     private final EncodingManager encodingManager;
     private final StorableProperties properties;
     private final BaseGraph baseGraph;
+    private final boolean edgeBasedCH;
     // same flush order etc
     private final Collection<CHGraphImpl> chGraphs = new ArrayList<>(5);
 
@@ -55,13 +57,26 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
 
     public GraphHopperStorage(List<? extends Weighting> chWeightings, Directory dir, final EncodingManager encodingManager,
                               boolean withElevation, GraphExtension extendedStorage) {
+        this(chWeightings, dir, encodingManager, withElevation, extendedStorage, false);
+    }
+
+    /**
+     * @param edgeBasedCH if true the CH graphs are created for edge based traversal and turn costs, which
+     *                    requires a TurnCostExtension
+     */
+    public GraphHopperStorage(List<? extends Weighting> chWeightings, Directory dir, final EncodingManager encodingManager,
+                              boolean withElevation, GraphExtension extendedStorage, boolean edgeBasedCH) {
         if (extendedStorage == null)
             throw new IllegalArgumentException("GraphExtension cannot be null, use NoOpExtension");
 
+        if (edgeBasedCH && !(extendedStorage instanceof TurnCostExtension))
+            throw new IllegalArgumentException("Edge based CH requires a TurnCostExtension but was " + extendedStorage.getClass().getSimpleName());
+
         if (encodingManager == null)
             throw new IllegalArgumentException("EncodingManager needs to be non-null since 0.7. Create one using new EncodingManager or EncodingManager.create(flagEncoderFactory, ghLocation)");
 
         this.encodingManager = encodingManager;
+        this.edgeBasedCH = edgeBasedCH;
         this.dir = dir;
         this.properties = new StorableProperties(dir);
         InternalGraphEventListener listener = new InternalGraphEventListener() {
@@ -82,7 +97,7 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
 
         this.baseGraph = new BaseGraph(dir, encodingManager, withElevation, listener, extendedStorage);
         for (Weighting w : chWeightings) {
-            chGraphs.add(new CHGraphImpl(w, dir, this.baseGraph));
+            chGraphs.add(new CHGraphImpl(w, dir, this.baseGraph, edgeBasedCH));
         }
     }
 
@@ -134,6 +149,13 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
         return list;
     }
 
+    /**
+     * @return true if the CH graphs of this storage are created for edge based traversal
+     */
+    public boolean isCHEdgeBased() {
+        return edgeBasedCH;
+    }
+
     /**
      * @return the directory where this graph is stored.
      */
@@ -376,6 +398,14 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
         return baseGraph.getAllEdges();
     }
 
+    /**
+     * Publishes edge flags which are read instead of the stored ones until null is set, see
+     * ChangeGraphHelper.PreparedChanges. The map must not be modified afterwards.
+     */
+    public void setChangedFlags(IntLongMap changedFlags) {
+        baseGraph.setChangedFlags(changedFlags);
+    }
+
     @Override
     public EdgeExplorer createEdgeExplorer(EdgeFilter filter) {
         return baseGraph.createEdgeExplorer(filter);
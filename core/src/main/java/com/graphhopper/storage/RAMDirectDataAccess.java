@@ -0,0 +1,333 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * An in-memory DataAccess where the segments are direct ByteBuffers, i.e. the data lives outside of the Java heap
+ * and does not increase the work of the garbage collector. The file format is identical to the one of
+ * RAMDataAccess, so data flushed with one of them can be loaded with the other.
+ * <p>
+ * The data is only accessed via the public ByteBuffer API. But Java has no supported way to free a direct
+ * ByteBuffer before it is garbage collected, so close and trimTo free the memory with the buffer cleaner of
+ * MMapDataAccess, which calls sun.misc.Cleaner up to Java 8 and sun.misc.Unsafe.invokeCleaner since Java 9.
+ * <p>
+ * The int and short methods use the absolute ByteBuffer methods which do not change the state of the buffer.
+ * The byte methods have to synchronize on the segment like MMapDataAccess.
+ *
+ * @see DAType#RAM_DIRECT
+ */
+public class RAMDirectDataAccess extends AbstractDataAccess {
+    private ByteBuffer[] segments = new ByteBuffer[0];
+    private boolean store;
+
+    RAMDirectDataAccess(String name, String location, boolean store, ByteOrder order) {
+        super(name, location, order);
+        this.store = store;
+    }
+
+    @Override
+    public boolean isStoring() {
+        return store;
+    }
+
+    @Override
+    public RAMDirectDataAccess create(long bytes) {
+        if (segments.length > 0)
+            throw new IllegalThreadStateException("already created");
+
+        // initialize transient values
+        setSegmentSize(segmentSizeInBytes);
+        ensureCapacity(Math.max(10 * 4, bytes));
+        return this;
+    }
+
+    @Override
+    public boolean ensureCapacity(long bytes) {
+        if (bytes < 0)
+            throw new IllegalArgumentException("new capacity has to be strictly positive");
+
+        long cap = getCapacity();
+        long newBytes = bytes - cap;
+        if (newBytes <= 0)
+            return false;
+
+        int segmentsToCreate = (int) (newBytes / segmentSizeInBytes);
+        if (newBytes % segmentSizeInBytes != 0)
+            segmentsToCreate++;
+
+        try {
+            ByteBuffer[] newSegs = Arrays.copyOf(segments, segments.length + segmentsToCreate);
+            for (int i = segments.length; i < newSegs.length; i++) {
+                newSegs[i] = newByteBuffer();
+            }
+            segments = newSegs;
+        } catch (OutOfMemoryError err) {
+            throw new OutOfMemoryError(err.getMessage() + " - problem when allocating new direct memory. Old capacity: "
+                    + cap + ", new bytes:" + newBytes + ", segmentSizeIntsPower:" + segmentSizePower
+                    + ", new segments:" + segmentsToCreate + ", existing:" + segments.length
+                    + ". Increase -XX:MaxDirectMemorySize if necessary");
+        }
+        return true;
+    }
+
+    private ByteBuffer newByteBuffer() {
+        // allocateDirect fills the memory with zeros like new byte[]
+        return ByteBuffer.allocateDirect(segmentSizeInBytes).order(byteOrder);
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (segments.length > 0)
+            throw new IllegalStateException("already initialized");
+
+        if (isClosed())
+            throw new IllegalStateException("already closed");
+
+        if (!store)
+            return false;
+
+        File file = new File(getFullName());
+        if (!file.exists() || file.length() == 0)
+            return false;
+
+        try {
+            RandomAccessFile raFile = new RandomAccessFile(getFullName(), "r");
+            try {
+                long byteCount = readHeader(raFile) - HEADER_OFFSET;
+                if (byteCount < 0)
+                    return false;
+
+                int segmentCount = (int) (byteCount / segmentSizeInBytes);
+                if (byteCount % segmentSizeInBytes != 0)
+                    segmentCount++;
+
+                FileChannel channel = raFile.getChannel();
+                long position = HEADER_OFFSET;
+                segments = new ByteBuffer[segmentCount];
+                for (int s = 0; s < segmentCount; s++) {
+                    ByteBuffer segment = newByteBuffer();
+                    // the file could end before the last segment is full
+                    ByteBuffer tmp = segment.duplicate();
+                    int read;
+                    while (tmp.hasRemaining() && (read = channel.read(tmp, position)) > 0) {
+                        position += read;
+                    }
+                    if (tmp.position() == 0)
+                        throw new IllegalStateException("segment " + s + " is empty? " + toString());
+
+                    segments[s] = segment;
+                }
+                return true;
+            } finally {
+                raFile.close();
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Problem while loading " + getFullName(), ex);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (closed)
+            throw new IllegalStateException("already closed");
+
+        if (!store)
+            return;
+
+        try {
+            RandomAccessFile raFile = new RandomAccessFile(getFullName(), "rw");
+            try {
+                long len = getCapacity();
+                writeHeader(raFile, len, segmentSizeInBytes);
+                FileChannel channel = raFile.getChannel();
+                long position = HEADER_OFFSET;
+                for (ByteBuffer segment : segments) {
+                    ByteBuffer tmp = segment.duplicate();
+                    tmp.clear();
+                    while (tmp.hasRemaining()) {
+                        position += channel.write(tmp, position);
+                    }
+                }
+            } finally {
+                raFile.close();
+            }
+        } catch (Exception ex) {
+            throw new RuntimeException("Couldn't store bytes to " + toString(), ex);
+        }
+    }
+
+    @Override
+    public final void setInt(long bytePos, int value) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        assert index + 4 <= segmentSizeInBytes : "integer cannot be distributed over two segments";
+        segments[bufferIndex].putInt(index, value);
+    }
+
+    @Override
+    public final int getInt(long bytePos) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        assert index + 4 <= segmentSizeInBytes : "integer cannot be distributed over two segments";
+        return segments[bufferIndex].getInt(index);
+    }
+
+    @Override
+    public final void setShort(long bytePos, short value) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        assert index + 2 <= segmentSizeInBytes : "integer cannot be distributed over two segments";
+        segments[bufferIndex].putShort(index, value);
+    }
+
+    @Override
+    public final short getShort(long bytePos) {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        assert index + 2 <= segmentSizeInBytes : "integer cannot be distributed over two segments";
+        return segments[bufferIndex].getShort(index);
+    }
+
+    @Override
+    public void setBytes(long bytePos, byte[] values, int length) {
+        assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        int delta = index + length - segmentSizeInBytes;
+        ByteBuffer bb1 = segments[bufferIndex];
+        synchronized (bb1) {
+            bb1.position(index);
+            if (delta > 0)
+                length -= delta;
+            bb1.put(values, 0, length);
+        }
+        if (delta > 0) {
+            ByteBuffer bb2 = segments[bufferIndex + 1];
+            synchronized (bb2) {
+                bb2.position(0);
+                bb2.put(values, length, delta);
+            }
+        }
+    }
+
+    @Override
+    public void getBytes(long bytePos, byte[] values, int length) {
+        assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        int delta = index + length - segmentSizeInBytes;
+        ByteBuffer bb1 = segments[bufferIndex];
+        synchronized (bb1) {
+            bb1.position(index);
+            if (delta > 0)
+                length -= delta;
+            bb1.get(values, 0, length);
+        }
+        if (delta > 0) {
+            ByteBuffer bb2 = segments[bufferIndex + 1];
+            synchronized (bb2) {
+                bb2.position(0);
+                bb2.get(values, length, delta);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        free(0, segments.length);
+        segments = new ByteBuffer[0];
+    }
+
+    /**
+     * Releases the native memory of the specified segments immediately instead of waiting for the garbage
+     * collector, see the class comment. The segments must not be used afterwards.
+     *
+     * @param from inclusive
+     * @param to   exclusive
+     */
+    private void free(int from, int to) {
+        for (int i = from; i < to; i++) {
+            MMapDataAccess.cleanMappedByteBuffer(segments[i]);
+            segments[i] = null;
+        }
+    }
+
+    @Override
+    public long getCapacity() {
+        return (long) getSegments() * segmentSizeInBytes;
+    }
+
+    @Override
+    public int getSegments() {
+        return segments.length;
+    }
+
+    @Override
+    public void trimTo(long capacity) {
+        if (capacity > getCapacity()) {
+            throw new IllegalStateException("Cannot increase capacity (" + getCapacity() + ") to " + capacity
+                    + " via trimTo. Use ensureCapacity instead. ");
+        }
+
+        if (capacity < segmentSizeInBytes)
+            capacity = segmentSizeInBytes;
+
+        int remainingSegments = (int) (capacity / segmentSizeInBytes);
+        if (capacity % segmentSizeInBytes != 0) {
+            remainingSegments++;
+        }
+
+        free(remainingSegments, segments.length);
+        segments = Arrays.copyOf(segments, remainingSegments);
+    }
+
+    @Override
+    public void rename(String newName) {
+        if (!checkBeforeRename(newName)) {
+            return;
+        }
+        if (store) {
+            super.rename(newName);
+        }
+
+        // in every case set the name
+        name = newName;
+    }
+
+    @Override
+    public DAType getType() {
+        if (isStoring())
+            return DAType.RAM_DIRECT_STORE;
+        return DAType.RAM_DIRECT;
+    }
+}
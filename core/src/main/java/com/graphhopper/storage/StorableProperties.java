@@ -141,6 +141,7 @@ public class StorableProperties implements Storable<StorableProperties> {
         put("location_index.version", Constants.VERSION_LOCATION_IDX);
         put("name_index.version", Constants.VERSION_NAME_IDX);
         put("shortcuts.version", Constants.VERSION_SHORTCUT);
+        put("turn_costs.version", Constants.VERSION_TURN_COSTS);
     }
 
     public synchronized String versionsToString() {
@@ -170,6 +171,9 @@ public class StorableProperties implements Storable<StorableProperties> {
         if (!check("shortcuts", Constants.VERSION_SHORTCUT, silent))
             return false;
 
+        if (!check("turn_costs", Constants.VERSION_TURN_COSTS, silent))
+            return false;
+
         // The check for the encoder version is done in EncoderManager, as this class does not know about the
         // registered encoders and their version
         return true;
@@ -24,6 +24,10 @@ import com.graphhopper.util.EdgeIterator;
  * towards the first entry within a node cost table to identify turn restrictions, or later, turn
  * getCosts.
  * <p>
+ * While adding entries the table of a node is a linked list. After calling optimize the entries of a node are
+ * stored contiguously and sorted by the from and to edge, and the next pointer of an entry is replaced by the
+ * number of entries that follow in the same node table. This way a lookup is a binary search.
+ * <p>
  *
  * @author Karl Hübner
  * @author Peter Karich
@@ -43,6 +47,8 @@ public class TurnCostExtension implements GraphExtension {
     private int turnCostsEntryIndex = -4;
     private int turnCostsEntryBytes;
     private int turnCostsCount;
+    private boolean sorted;
+    private Graph graph;
     private NodeAccess nodeAccess;
 
     public TurnCostExtension() {
@@ -59,6 +65,7 @@ public class TurnCostExtension implements GraphExtension {
         if (turnCostsCount > 0)
             throw new AssertionError("The turn cost storage must be initialized only once.");
 
+        this.graph = graph;
         this.nodeAccess = graph.getNodeAccess();
         this.turnCosts = dir.find("turn_costs");
     }
@@ -83,6 +90,7 @@ public class TurnCostExtension implements GraphExtension {
     public void flush() {
         turnCosts.setHeader(0, turnCostsEntryBytes);
         turnCosts.setHeader(1 * 4, turnCostsCount);
+        turnCosts.setHeader(2 * 4, sorted ? 1 : 0);
         turnCosts.flush();
     }
 
@@ -103,6 +111,8 @@ public class TurnCostExtension implements GraphExtension {
 
         turnCostsEntryBytes = turnCosts.getHeader(0);
         turnCostsCount = turnCosts.getHeader(4);
+        // the header is 0 for graphs created before the sorted layout existed, see BaseGraph.loadExisting
+        sorted = turnCosts.getHeader(2 * 4) == 1;
         return true;
     }
 
@@ -129,6 +139,18 @@ public class TurnCostExtension implements GraphExtension {
      *                  new flags and write this merged flag.
      */
     public void mergeOrOverwriteTurnInfo(int fromEdge, int viaNode, int toEdge, long turnFlags, boolean merge) {
+        if (sorted) {
+            int entryIndex = findSortedEntry(fromEdge, viaNode, toEdge);
+            if (entryIndex != NO_TURN_ENTRY) {
+                long costsIdx = (long) entryIndex * turnCostsEntryBytes;
+                long newFlags = merge ? turnCosts.getInt(costsIdx + TC_FLAGS) | turnFlags : turnFlags;
+                turnCosts.setInt(costsIdx + TC_FLAGS, (int) newFlags);
+                return;
+            }
+            // a new entry does not fit into the contiguous table of the node
+            toLinkedLists();
+        }
+
         int newEntryIndex = turnCostsCount;
         ensureTurnCostIndex(newEntryIndex);
         boolean oldEntryFound = false;
@@ -194,9 +216,134 @@ public class TurnCostExtension implements GraphExtension {
         if (nodeVia < 0)
             throw new IllegalArgumentException("via node cannot be negative");
 
+        if (sorted) {
+            int entryIndex = findSortedEntry(edgeFrom, nodeVia, edgeTo);
+            if (entryIndex == NO_TURN_ENTRY)
+                return EMPTY_FLAGS;
+            return turnCosts.getInt((long) entryIndex * turnCostsEntryBytes + TC_FLAGS);
+        }
         return nextCostFlags(edgeFrom, nodeVia, edgeTo);
     }
 
+    /**
+     * @return the index of the entry in the sorted table of the specified node or NO_TURN_ENTRY
+     */
+    private int findSortedEntry(int edgeFrom, int nodeVia, int edgeTo) {
+        int low = nodeAccess.getAdditionalNodeField(nodeVia);
+        if (low == NO_TURN_ENTRY)
+            return NO_TURN_ENTRY;
+
+        int high = low + turnCosts.getInt((long) low * turnCostsEntryBytes + TC_NEXT);
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long turnCostPtr = (long) mid * turnCostsEntryBytes;
+            int cmp = compare(turnCosts.getInt(turnCostPtr + TC_FROM), turnCosts.getInt(turnCostPtr + TC_TO),
+                    edgeFrom, edgeTo);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return NO_TURN_ENTRY;
+    }
+
+    private static int compare(int fromA, int toA, int fromB, int toB) {
+        if (fromA != fromB)
+            return fromA < fromB ? -1 : 1;
+        if (toA != toB)
+            return toA < toB ? -1 : 1;
+        return 0;
+    }
+
+    /**
+     * Rewrites all entries so that the table of every node is stored contiguously and sorted by the from and
+     * to edge, which makes getTurnCostFlags a binary search instead of walking a linked list. Call this after
+     * all turn costs were added, e.g. at the end of the import, or to migrate a graph stored with linked lists.
+     * Adding a new entry afterwards is still possible but switches back to the linked lists until this method
+     * is called again.
+     */
+    public void optimize() {
+        if (sorted)
+            return;
+
+        int[] froms = new int[turnCostsCount];
+        int[] tos = new int[turnCostsCount];
+        int[] flags = new int[turnCostsCount];
+        int[] following = new int[turnCostsCount];
+        int size = 0;
+        int nodes = graph.getNodes();
+        for (int node = 0; node < nodes; node++) {
+            int turnCostIndex = nodeAccess.getAdditionalNodeField(node);
+            if (turnCostIndex == NO_TURN_ENTRY)
+                continue;
+
+            int start = size;
+            for (int i = 0; turnCostIndex != NO_TURN_ENTRY; i++) {
+                if (i >= 1000)
+                    throw new IllegalStateException("something went wrong: there seems to be no end of the turn cost-list!?");
+                long turnCostPtr = (long) turnCostIndex * turnCostsEntryBytes;
+                froms[size] = turnCosts.getInt(turnCostPtr + TC_FROM);
+                tos[size] = turnCosts.getInt(turnCostPtr + TC_TO);
+                flags[size] = turnCosts.getInt(turnCostPtr + TC_FLAGS);
+                size++;
+                turnCostIndex = turnCosts.getInt(turnCostPtr + TC_NEXT);
+            }
+            sortTable(froms, tos, flags, start, size);
+            for (int i = start; i < size; i++) {
+                following[i] = size - 1 - i;
+            }
+            // the old entries are only read via the node field, so it can be changed already
+            nodeAccess.setAdditionalNodeField(node, start);
+        }
+
+        for (int i = 0; i < size; i++) {
+            long costsBase = (long) i * turnCostsEntryBytes;
+            turnCosts.setInt(costsBase + TC_FROM, froms[i]);
+            turnCosts.setInt(costsBase + TC_TO, tos[i]);
+            turnCosts.setInt(costsBase + TC_FLAGS, flags[i]);
+            turnCosts.setInt(costsBase + TC_NEXT, following[i]);
+        }
+        turnCostsCount = size;
+        sorted = true;
+    }
+
+    /**
+     * Insertion sort of the entries from start (inclusive) to end (exclusive), a node has only a few entries.
+     */
+    private static void sortTable(int[] froms, int[] tos, int[] flags, int start, int end) {
+        for (int i = start + 1; i < end; i++) {
+            int from = froms[i], to = tos[i], flag = flags[i];
+            int j = i - 1;
+            for (; j >= start && compare(froms[j], tos[j], from, to) > 0; j--) {
+                froms[j + 1] = froms[j];
+                tos[j + 1] = tos[j];
+                flags[j + 1] = flags[j];
+            }
+            froms[j + 1] = from;
+            tos[j + 1] = to;
+            flags[j + 1] = flag;
+        }
+    }
+
+    /**
+     * Converts the sorted tables back into linked lists. As the tables are contiguous the next entry of the same
+     * node is the following entry if there is one.
+     */
+    private void toLinkedLists() {
+        for (int i = 0; i < turnCostsCount; i++) {
+            long turnCostPtr = (long) i * turnCostsEntryBytes;
+            int followingEntries = turnCosts.getInt(turnCostPtr + TC_NEXT);
+            turnCosts.setInt(turnCostPtr + TC_NEXT, followingEntries > 0 ? i + 1 : NO_TURN_ENTRY);
+        }
+        sorted = false;
+    }
+
+    boolean isSorted() {
+        return sorted;
+    }
+
     private long nextCostFlags(int edgeFrom, int nodeVia, int edgeTo) {
         int turnCostIndex = nodeAccess.getAdditionalNodeField(nodeVia);
         int i = 0;
@@ -256,6 +403,7 @@ public class TurnCostExtension implements GraphExtension {
 
         turnCosts.copyTo(clonedTC.turnCosts);
         clonedTC.turnCostsCount = turnCostsCount;
+        clonedTC.sorted = sorted;
 
         return clonedStorage;
     }
@@ -17,8 +17,11 @@
  */
 package com.graphhopper.storage.change;
 
+import com.carrotsearch.hppc.IntLongMap;
 import com.carrotsearch.hppc.cursors.IntCursor;
+import com.carrotsearch.hppc.cursors.IntLongCursor;
 import com.graphhopper.coll.GHIntHashSet;
+import com.graphhopper.coll.GHIntLongHashMap;
 import com.graphhopper.json.geo.JsonFeature;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
 import com.graphhopper.routing.util.EdgeFilter;
@@ -27,7 +30,6 @@ import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphEdgeIdFinder;
 import com.graphhopper.storage.index.LocationIndex;
-import com.graphhopper.util.EdgeIteratorState;
 
 import java.util.Collection;
 import java.util.Iterator;
@@ -41,6 +43,10 @@ import java.util.Map;
 /**
  * This graph applies permanent changes passed as JsonFeature to the specified graph.
  * <p>
+ * The changes are done in two steps: prepareChanges only reads the graph and calculates the new flags of all
+ * affected edges, so it can run while other threads are routing. Then applyChanges(PreparedChanges) writes them.
+ * Routing can already use the prepared flags before they are written, see GraphHopperStorage.setChangedFlags.
+ * <p>
  * This class is not thread-safe. It is currently only safe to use it via GraphHopper.changeGraph
  *
  * @author Peter Karich
@@ -66,10 +72,17 @@ public class ChangeGraphHelper {
      * @return number of successfully applied edge changes
      */
     public long applyChanges(EncodingManager em, Collection<JsonFeature> features) {
+        return applyChanges(prepareChanges(em, features));
+    }
+
+    /**
+     * This method calculates the changes specified by the json features without modifying the graph.
+     */
+    public PreparedChanges prepareChanges(EncodingManager em, Collection<JsonFeature> features) {
         if (em == null)
             throw new NullPointerException("EncodingManager cannot be null to change existing graph");
 
-        long updates = 0;
+        PreparedChanges changes = new PreparedChanges();
         for (JsonFeature jsonFeature : features) {
             if (!jsonFeature.hasProperties())
                 throw new IllegalArgumentException("One feature has no properties, please specify properties e.g. speed or access");
@@ -77,20 +90,31 @@ public class ChangeGraphHelper {
             List<String> encodersAsStr = (List) jsonFeature.getProperty("vehicles");
             if (encodersAsStr == null) {
                 for (FlagEncoder encoder : em.fetchEdgeEncoders()) {
-                    updates += applyChange(jsonFeature, encoder);
+                    prepareChange(changes, jsonFeature, encoder);
                 }
             } else {
                 for (String encoderStr : encodersAsStr) {
-                    updates += applyChange(jsonFeature, em.getEncoder(encoderStr));
+                    prepareChange(changes, jsonFeature, em.getEncoder(encoderStr));
                 }
             }
         }
 
-        return updates;
+        return changes;
+    }
+
+    /**
+     * This method writes the previously prepared changes into the graph.
+     *
+     * @return number of successfully applied edge changes
+     */
+    public long applyChanges(PreparedChanges changes) {
+        for (IntLongCursor cursor : changes.edgeFlags) {
+            graph.getEdgeIteratorState(cursor.key, Integer.MIN_VALUE).setFlags(cursor.value);
+        }
+        return changes.updates;
     }
 
-    private long applyChange(JsonFeature jsonFeature, FlagEncoder encoder) {
-        long updates = 0;
+    private void prepareChange(PreparedChanges changes, JsonFeature jsonFeature, FlagEncoder encoder) {
         EdgeFilter filter = DefaultEdgeFilter.allEdges(encoder);
         GHIntHashSet edges = new GHIntHashSet();
         if (jsonFeature.hasGeometry()) {
@@ -104,26 +128,50 @@ public class ChangeGraphHelper {
         Map<String, Object> props = jsonFeature.getProperties();
         while (iter.hasNext()) {
             int edgeId = iter.next().value;
-            EdgeIteratorState edge = graph.getEdgeIteratorState(edgeId, Integer.MIN_VALUE);
+            // several features or encoders can change the same edge
+            long flags = changes.edgeFlags.containsKey(edgeId)
+                    ? changes.edgeFlags.get(edgeId)
+                    : graph.getEdgeIteratorState(edgeId, Integer.MIN_VALUE).getFlags();
             if (props.containsKey("access")) {
                 boolean value = (boolean) props.get("access");
-                updates++;
+                changes.updates++;
                 if (enableLogging)
                     logger.info(encoder.toString() + " - access change via feature " + jsonFeature.getId());
-                edge.setFlags(encoder.setAccess(edge.getFlags(), value, value));
+                changes.edgeFlags.put(edgeId, encoder.setAccess(flags, value, value));
 
             } else if (props.containsKey("speed")) {
                 // TODO use different speed for the different directions (see e.g. Bike2WeightFlagEncoder)
                 double value = ((Number) props.get("speed")).doubleValue();
-                double oldSpeed = encoder.getSpeed(edge.getFlags());
+                double oldSpeed = encoder.getSpeed(flags);
                 if (oldSpeed != value) {
-                    updates++;
+                    changes.updates++;
                     if (enableLogging)
                         logger.info(encoder.toString() + " - speed change via feature " + jsonFeature.getId() + ". Old: " + oldSpeed + ", new:" + value);
-                    edge.setFlags(encoder.setSpeed(edge.getFlags(), value));
+                    changes.edgeFlags.put(edgeId, encoder.setSpeed(flags, value));
                 }
             }
         }
-        return updates;
+    }
+
+    /**
+     * The new flags of the changed edges. They are not visible to the routing until applied or published.
+     */
+    public static class PreparedChanges {
+        private final GHIntLongHashMap edgeFlags = new GHIntLongHashMap();
+        private long updates;
+
+        /**
+         * @return the number of edge changes, which can be larger than the number of changed edges
+         */
+        public long getUpdateCount() {
+            return updates;
+        }
+
+        /**
+         * @return the new flags per edge id, must not be modified
+         */
+        public IntLongMap getEdgeFlags() {
+            return edgeFlags;
+        }
     }
 }
@@ -161,6 +161,21 @@ public class QueryResult {
             snappedPoint = new GHPoint3D(tmpLat, tmpLon, tmpEle);
     }
 
+    /**
+     * Returns an independent copy of this result. QueryGraph.lookup changes the results, so a result that is
+     * used for several QueryGraphs has to be copied before every lookup.
+     */
+    public QueryResult copy() {
+        QueryResult copy = new QueryResult(queryPoint.lat, queryPoint.lon);
+        copy.queryDistance = queryDistance;
+        copy.wayIndex = wayIndex;
+        copy.closestNode = closestNode;
+        copy.closestEdge = closestEdge;
+        copy.snappedPoint = snappedPoint;
+        copy.snappedPosition = snappedPosition;
+        return copy;
+    }
+
     @Override
     public String toString() {
         if (closestEdge != null)
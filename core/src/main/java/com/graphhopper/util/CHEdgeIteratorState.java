@@ -38,6 +38,24 @@ public interface CHEdgeIteratorState extends EdgeIteratorState {
      */
     void setSkippedEdges(int edge1, int edge2);
 
+    /**
+     * Returns the first original edge of this shortcut in travel direction or the edge id itself if
+     * this is not a shortcut. Only available for edge based CH, see CHGraph#isEdgeBased.
+     */
+    int getOrigEdgeFirst();
+
+    /**
+     * Returns the last original edge of this shortcut in travel direction or the edge id itself if
+     * this is not a shortcut. Only available for edge based CH, see CHGraph#isEdgeBased.
+     */
+    int getOrigEdgeLast();
+
+    /**
+     * Sets the first and last original edge of this shortcut. Those are needed to calculate the turn
+     * costs when entering and leaving the shortcut.
+     */
+    void setFirstAndLastOrigEdges(int firstOrigEdge, int lastOrigEdge);
+
     /**
      * @return true if this edge is a shortcut, false otherwise.
      */
@@ -73,6 +73,7 @@ public class Constants {
     public static final int VERSION_GEOMETRY = 4;
     public static final int VERSION_LOCATION_IDX = 3;
     public static final int VERSION_NAME_IDX = 3;
+    public static final int VERSION_TURN_COSTS = 1;
     /**
      * The version without the snapshot string
      */
@@ -128,7 +129,7 @@ public class Constants {
 
     public static String getVersions() {
         return VERSION_NODE + "," + VERSION_EDGE + "," + VERSION_GEOMETRY + "," + VERSION_LOCATION_IDX
-                + "," + VERSION_NAME_IDX + "," + VERSION_SHORTCUT;
+                + "," + VERSION_NAME_IDX + "," + VERSION_SHORTCUT + "," + VERSION_TURN_COSTS;
     }
 
     public static String getMajorVersion() {
@@ -303,7 +303,7 @@ public class GHUtility {
         boolean is3D = store.getNodeAccess().is3D();
 
         return new GraphHopperStorage(store.getCHWeightings(), outdir, store.getEncodingManager(),
-                is3D, store.getExtension()).
+                is3D, store.getExtension(), store.isCHEdgeBased()).
                 create(store.getNodes());
     }
 
@@ -500,6 +500,21 @@ public class GHUtility {
             throw new UnsupportedOperationException("Not supported. Edge is empty.");
         }
 
+        @Override
+        public int getOrigEdgeFirst() {
+            throw new UnsupportedOperationException("Not supported. Edge is empty.");
+        }
+
+        @Override
+        public int getOrigEdgeLast() {
+            throw new UnsupportedOperationException("Not supported. Edge is empty.");
+        }
+
+        @Override
+        public void setFirstAndLastOrigEdges(int firstOrigEdge, int lastOrigEdge) {
+            throw new UnsupportedOperationException("Not supported. Edge is empty.");
+        }
+
         @Override
         public double getWeight() {
             throw new UnsupportedOperationException("Not supported. Edge is empty.");
@@ -25,11 +25,14 @@ import com.graphhopper.storage.GraphHopperStorage;
 import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.storage.change.ChangeGraphHelper;
 import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.Parameters;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
 import org.junit.Test;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -128,6 +131,109 @@ public class GraphHopperAPITest {
         }
     }
 
+    @Test
+    public void testRouteBatch() {
+        GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
+        initGraph(graph);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(4, 41.9, 10.2);
+
+        graph.edge(1, 2, 10, false);
+        graph.edge(0, 4, 40, true);
+        graph.edge(4, 3, 40, true);
+
+        GraphHopper instance = new GraphHopper().
+                setStoreOnFlush(false).
+                setEncodingManager(encodingManager).setCHEnabled(false).
+                setBatchThreads(2).
+                loadGraph(graph);
+
+        // the first and the third route have the same points, the last points snap to the same node
+        final List<GHPoint> fromPoints = Arrays.asList(new GHPoint(42, 10.4), new GHPoint(42, 10),
+                new GHPoint(42, 10.4), new GHPoint(42.1, 10.1), new GHPoint(42.1, 10.1));
+        final List<GHPoint> toPoints = Arrays.asList(new GHPoint(42, 10), new GHPoint(42, 10.4),
+                new GHPoint(42, 10), new GHPoint(41.9, 10.2), new GHPoint(41.9001, 10.2));
+        final Map<Integer, GHResponse> responses = new ConcurrentHashMap<>();
+        instance.routeBatch(new GHRequest(), fromPoints, toPoints, new GraphHopper.BatchCallback() {
+            @Override
+            public void onResponse(int index, GHResponse response) {
+                assertNull(responses.put(index, response));
+            }
+        });
+
+        assertEquals(fromPoints.size(), responses.size());
+        for (int i = 0; i < fromPoints.size(); i++) {
+            GHResponse expected = instance.route(new GHRequest(fromPoints.get(i), toPoints.get(i)));
+            GHResponse actual = responses.get(i);
+            assertFalse(actual.toString(), actual.hasErrors());
+            assertEquals(expected.getBest().getDistance(), actual.getBest().getDistance(), 1e-6);
+            assertEquals(expected.getBest().getTime(), actual.getBest().getTime());
+            assertEquals(expected.getBest().getPoints().getSize(), actual.getBest().getPoints().getSize());
+        }
+        // 3-4-0 with the stored edge distances 40 and 40 like in testLoad, the points of the other routes must not
+        // split these edges
+        assertEquals(80, responses.get(0).getBest().getDistance(), 1e-6);
+
+        try {
+            instance.routeBatch(new GHRequest(), fromPoints, toPoints.subList(0, 1), new GraphHopper.BatchCallback() {
+                @Override
+                public void onResponse(int index, GHResponse response) {
+                    fail("no route expected");
+                }
+            });
+            fail("exception expected");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("The number of from points 5"));
+        }
+        instance.close();
+    }
+
+    @Test
+    public void testRouteCache() {
+        GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
+        initGraph(graph);
+        graph.edge(1, 2, 10, true);
+        graph.getNodeAccess().setNode(5, 42.05, 10.2);
+        graph.edge(2, 5, 10, true);
+
+        GraphHopper instance = new GraphHopper().
+                setStoreOnFlush(false).
+                setEncodingManager(encodingManager).setCHEnabled(false).
+                setRouteCache(10, 60 * 1000).
+                loadGraph(graph);
+
+        GHResponse rsp = instance.route(new GHRequest(42, 10.4, 42, 10));
+        assertFalse(rsp.toString(), rsp.hasErrors());
+        assertEquals(1800, rsp.getBest().getTime());
+        GHRequest otherRequest = new GHRequest(42, 10.4, 42, 10);
+        otherRequest.getHints().put(Parameters.Routing.INSTRUCTIONS, false);
+        assertNotSame(rsp, instance.route(otherRequest));
+
+        // both start points are behind the dead end and snap to the tower node 5
+        GHResponse deadEndRsp = instance.route(new GHRequest(42.049, 10.2, 42, 10));
+        assertFalse(deadEndRsp.toString(), deadEndRsp.hasErrors());
+        assertSame(deadEndRsp, instance.route(new GHRequest(42.045, 10.2, 42, 10)));
+        assertEquals(1, instance.getRouteCache().getHits());
+        assertEquals(3, instance.getRouteCache().getMisses());
+
+        // both start points snap to the same position on the edge 2-5
+        GHResponse edgeRsp = instance.route(new GHRequest(42.06, 10.2, 42, 10));
+        assertFalse(edgeRsp.toString(), edgeRsp.hasErrors());
+        assertNotSame(deadEndRsp, edgeRsp);
+        assertSame(edgeRsp, instance.route(new GHRequest(42.06, 10.201, 42, 10)));
+        assertEquals(2, instance.getRouteCache().getHits());
+        assertEquals(4, instance.getRouteCache().getMisses());
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("speed", 5);
+        instance.changeGraph(Collections.singletonList(new JsonFeature("1", "bbox",
+                new BBox(10.399, 10.4, 42.0, 42.001), null, properties)));
+        assertEquals(0, instance.getRouteCache().getSize());
+        rsp = instance.route(new GHRequest(42, 10.4, 42, 10));
+        assertEquals(8400, rsp.getBest().getTime());
+        instance.close();
+    }
+
     @Test
     public void testConcurrentGraphChange() throws InterruptedException {
         final GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
@@ -141,8 +247,8 @@ public class GraphHopperAPITest {
             protected ChangeGraphHelper createChangeGraphHelper(Graph graph, LocationIndex locationIndex) {
                 return new ChangeGraphHelper(graph, locationIndex) {
                     @Override
-                    public long applyChanges(EncodingManager em, Collection<JsonFeature> features) {
-                        // force sleep inside the lock and let the main thread run until the lock barrier
+                    public long applyChanges(PreparedChanges changes) {
+                        // force sleep while the published change is written and let the main thread route meanwhile
                         latch.countDown();
                         try {
                             Thread.sleep(400);
@@ -150,7 +256,7 @@ public class GraphHopperAPITest {
                             throw new RuntimeException(e);
                         }
                         checkPointCounter.incrementAndGet();
-                        return super.applyChanges(em, features);
+                        return super.applyChanges(changes);
                     }
                 };
             }
@@ -189,4 +295,70 @@ public class GraphHopperAPITest {
 
         assertEquals(2, checkPointCounter.get());
     }
+
+    @Test
+    public void testRouteWhileGraphChangeIsPrepared() throws InterruptedException {
+        final GraphHopperStorage graph = new GraphBuilder(encodingManager).create();
+        initGraph(graph);
+        graph.edge(1, 2, 10, true);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicInteger checkPointCounter = new AtomicInteger(0);
+        final GraphHopper graphHopper = new GraphHopper() {
+            @Override
+            protected ChangeGraphHelper createChangeGraphHelper(Graph graph, LocationIndex locationIndex) {
+                return new ChangeGraphHelper(graph, locationIndex) {
+                    @Override
+                    public PreparedChanges prepareChanges(EncodingManager em, Collection<JsonFeature> features) {
+                        // force sleep while preparing and let the main thread route on the unchanged graph
+                        latch.countDown();
+                        try {
+                            Thread.sleep(400);
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        checkPointCounter.incrementAndGet();
+                        return super.prepareChanges(em, features);
+                    }
+                };
+            }
+        }.setStoreOnFlush(false).setEncodingManager(encodingManager).setCHEnabled(false).
+                loadGraph(graph);
+
+        GHResponse rsp = graphHopper.route(new GHRequest(42, 10.4, 42, 10));
+        assertFalse(rsp.toString(), rsp.hasErrors());
+        assertEquals(1800, rsp.getBest().getTime());
+
+        final List<JsonFeature> list = new ArrayList<>();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("speed", 5);
+
+        list.add(new JsonFeature("1", "bbox",
+                new BBox(10.399, 10.4, 42.0, 42.001),
+                null, properties));
+
+        ExecutorService executorService = Executors.newFixedThreadPool(1);
+        executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                graphHopper.changeGraph(list);
+                checkPointCounter.incrementAndGet();
+            }
+        });
+
+        latch.await();
+        // routing is not blocked while the change is prepared and does not see a part of it
+        rsp = graphHopper.route(new GHRequest(42, 10.4, 42, 10));
+        assertEquals(0, checkPointCounter.get());
+        assertFalse(rsp.toString(), rsp.hasErrors());
+        assertEquals(1800, rsp.getBest().getTime());
+
+        executorService.shutdown();
+        executorService.awaitTermination(3, TimeUnit.SECONDS);
+
+        assertEquals(2, checkPointCounter.get());
+        rsp = graphHopper.route(new GHRequest(42, 10.4, 42, 10));
+        assertFalse(rsp.toString(), rsp.hasErrors());
+        assertEquals(8400, rsp.getBest().getTime());
+    }
 }
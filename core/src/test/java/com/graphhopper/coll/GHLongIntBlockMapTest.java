@@ -0,0 +1,110 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class GHLongIntBlockMapTest {
+    @Test
+    public void testPutAndGet() {
+        GHLongIntBlockMap map = new GHLongIntBlockMap();
+        assertEquals(-1, map.get(10));
+        assertEquals(-1, map.put(10, 1));
+        assertEquals(-1, map.put(3, 2));
+        assertEquals(-1, map.put(255, 3));
+        assertEquals(-1, map.put(256, 4));
+        assertEquals(-1, map.put(-5, 5));
+        assertEquals(5, map.getSize());
+
+        assertEquals(1, map.get(10));
+        assertEquals(2, map.get(3));
+        assertEquals(3, map.get(255));
+        assertEquals(4, map.get(256));
+        assertEquals(5, map.get(-5));
+        assertEquals(-1, map.get(4));
+        assertEquals(-1, map.get(-4));
+
+        // overwrite
+        assertEquals(1, map.put(10, 7));
+        assertEquals(7, map.get(10));
+        assertEquals(5, map.getSize());
+    }
+
+    @Test
+    public void testNoEntryValue() {
+        GHLongIntBlockMap map = new GHLongIntBlockMap(-3);
+        assertEquals(-3, map.get(1));
+        assertEquals(-3, map.put(1, 4));
+        assertEquals(4, map.put(1, 5));
+    }
+
+    @Test
+    public void testFullBlock() {
+        GHLongIntBlockMap map = new GHLongIntBlockMap();
+        // insert in reverse order to shift all entries
+        for (int i = 1023; i >= 0; i--) {
+            map.put(i, i * 2);
+        }
+        assertEquals(1024, map.getSize());
+        for (int i = 0; i < 1024; i++) {
+            assertEquals(i * 2, map.get(i));
+        }
+        assertEquals(-1, map.get(1024));
+    }
+
+    @Test
+    public void testRandom() {
+        Random rand = new Random(0);
+        GHLongIntBlockMap map = new GHLongIntBlockMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            // similar to OSM ids: big but close to each other
+            long key = 4_000_000_000L + rand.nextInt(500_000) - (rand.nextInt(10) == 0 ? 5_000_000_000L : 0);
+            int value = rand.nextInt();
+            Integer old = expected.put(key, value);
+            assertEquals(old == null ? -1 : old, map.put(key, value));
+        }
+        assertEquals(expected.size(), map.getSize());
+        checkEntries(expected, map, rand);
+
+        map.optimize();
+        assertEquals(expected.size(), map.getSize());
+        checkEntries(expected, map, rand);
+
+        // still possible to insert after optimize
+        map.put(3, 3);
+        assertEquals(3, map.get(3));
+    }
+
+    private void checkEntries(Map<Long, Integer> expected, GHLongIntBlockMap map, Random rand) {
+        for (Map.Entry<Long, Integer> e : expected.entrySet()) {
+            assertEquals((int) e.getValue(), map.get(e.getKey()));
+        }
+        for (int i = 0; i < 1000; i++) {
+            long key = rand.nextLong();
+            if (!expected.containsKey(key))
+                assertEquals(-1, map.get(key));
+        }
+    }
+}
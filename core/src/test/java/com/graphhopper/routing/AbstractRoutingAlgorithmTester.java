@@ -92,6 +92,25 @@ public abstract class AbstractRoutingAlgorithmTester {
         }
     }
 
+    /**
+     * Creates a grid of size x size nodes with random distances between minDistance and minDistance + distanceRange
+     * and some oneways. With diagonals some cells get an additional diagonal oneway.
+     */
+    public static void initRandomGridGraph(Graph g, int size, Random rand, int minDistance, int distanceRange,
+                                           boolean diagonals) {
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int node = y * size + x;
+                if (x + 1 < size)
+                    g.edge(node, node + 1, minDistance + rand.nextInt(distanceRange), rand.nextInt(5) > 0);
+                if (y + 1 < size)
+                    g.edge(node, node + size, minDistance + rand.nextInt(distanceRange), rand.nextInt(5) > 0);
+                if (diagonals && x + 1 < size && y + 1 < size && rand.nextInt(4) == 0)
+                    g.edge(node, node + size + 1, minDistance + rand.nextInt(distanceRange * 3 / 2), true);
+            }
+        }
+    }
+
     protected static GraphHopperStorage createMatrixAlikeGraph(GraphHopperStorage tmpGraph) {
         int WIDTH = 10;
         int HEIGHT = 15;
@@ -0,0 +1,91 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphHopperStorage;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import static com.graphhopper.util.Parameters.Algorithms.ASTAR_BI_NATIVE;
+import static com.graphhopper.util.Parameters.Algorithms.DIJKSTRA_BI_NATIVE;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the same tests for the bidirectional algorithms that keep their arrays per thread.
+ */
+@RunWith(Parameterized.class)
+public class BidirectionNativeTest extends AbstractRoutingAlgorithmTester {
+    private final String algoStr;
+
+    public BidirectionNativeTest(String algo) {
+        this.algoStr = algo;
+    }
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> configs() {
+        return Arrays.asList(new Object[][]{
+                {DIJKSTRA_BI_NATIVE},
+                {ASTAR_BI_NATIVE}
+        });
+    }
+
+    @Override
+    public RoutingAlgorithmFactory createFactory(GraphHopperStorage prepareGraph, AlgorithmOptions prepareOpts) {
+        return new RoutingAlgorithmFactory() {
+            @Override
+            public RoutingAlgorithm createAlgo(Graph g, AlgorithmOptions opts) {
+                opts = AlgorithmOptions.start(opts).algorithm(algoStr).traversalMode(TraversalMode.NODE_BASED).build();
+                return new RoutingAlgorithmFactorySimple().createAlgo(g, opts);
+            }
+        };
+    }
+
+    @Test
+    public void testReuseArraysForDifferentGraphs() {
+        GraphHopperStorage matrixGraph = createMatrixAlikeGraph(createGHStorage(false));
+        GraphHopperStorage smallGraph = createTestStorage();
+        Random rand = new Random(1);
+        for (int i = 0; i < 20; i++) {
+            // the arrays of this thread are reused and must not contain entries of the previous query
+            GraphHopperStorage graph = i % 2 == 0 ? matrixGraph : smallGraph;
+            int from = rand.nextInt(graph.getNodes());
+            int to = rand.nextInt(graph.getNodes());
+            Path refPath = new DijkstraBidirectionRef(graph, defaultOpts.getWeighting(), TraversalMode.NODE_BASED).
+                    calcPath(from, to);
+            Path path = createAlgo(graph).calcPath(from, to);
+            assertEquals(refPath.isFound(), path.isFound());
+            assertEquals(refPath.getWeight(), path.getWeight(), 1e-4);
+            assertEquals(refPath.getDistance(), path.getDistance(), 1e-4);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEdgeBasedNotSupported() {
+        AlgorithmOptions opts = AlgorithmOptions.start(defaultOpts).algorithm(algoStr).
+                traversalMode(TraversalMode.EDGE_BASED_2DIR).build();
+        new RoutingAlgorithmFactorySimple().createAlgo(createTestStorage(), opts);
+    }
+}
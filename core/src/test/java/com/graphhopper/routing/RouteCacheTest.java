@@ -0,0 +1,75 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.GHResponse;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RouteCacheTest {
+    private long time = 0;
+
+    private RouteCache createCache(int maxSize, long ttlMillis) {
+        return new RouteCache(maxSize, ttlMillis) {
+            @Override
+            long now() {
+                return time;
+            }
+        };
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        RouteCache cache = createCache(2, 1000);
+        GHResponse a = new GHResponse(), b = new GHResponse(), c = new GHResponse();
+        cache.put("a", a);
+        cache.put("b", b);
+        // a is used more recently than b
+        assertSame(a, cache.get("a"));
+        cache.put("c", c);
+
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("b"));
+        assertSame(a, cache.get("a"));
+        assertSame(c, cache.get("c"));
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testExpiredResponseIsNotReturned() {
+        RouteCache cache = createCache(10, 1000);
+        GHResponse response = new GHResponse();
+        cache.put("a", response);
+        time = 999;
+        assertSame(response, cache.get("a"));
+        time = 1000;
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getSize());
+        // an expired response is no eviction
+        assertEquals(0, cache.getEvictions());
+
+        cache.put("a", response);
+        assertSame(response, cache.get("a"));
+        cache.clear();
+        assertNull(cache.get("a"));
+        assertEquals(2, cache.getMisses());
+    }
+}
@@ -76,6 +76,10 @@ public class RoutingAlgorithmIT {
         AlgorithmOptions dijkstrabiOpts = AlgorithmOptions.start(defaultOpts).algorithm(DIJKSTRA_BI).build();
         prepare.add(new AlgoHelperEntry(ghStorage, astarbiOpts, idx, "astarbi|beeline|" + addStr + weighting));
         prepare.add(new AlgoHelperEntry(ghStorage, dijkstrabiOpts, idx, "dijkstrabi|" + addStr + weighting));
+        if (!tMode.isEdgeBased()) {
+            prepare.add(new AlgoHelperEntry(ghStorage, AlgorithmOptions.start(astarbiOpts).algorithm(ASTAR_BI_NATIVE).build(), idx, "astarbi_native|beeline|" + weighting));
+            prepare.add(new AlgoHelperEntry(ghStorage, AlgorithmOptions.start(defaultOpts).algorithm(DIJKSTRA_BI_NATIVE).build(), idx, "dijkstrabi_native|" + weighting));
+        }
 
         // add additional preparations if CH and LM preparation are enabled
         if (hopper.getLMFactoryDecorator().isEnabled()) {
@@ -0,0 +1,211 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.AbstractRoutingAlgorithmTester;
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.TurnWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.*;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.graphhopper.util.GHUtility.getEdge;
+import static com.graphhopper.util.Parameters.Algorithms.ASTAR_BI;
+import static com.graphhopper.util.Parameters.Algorithms.DIJKSTRA_BI;
+import static org.junit.Assert.*;
+
+public class EdgeBasedNodeContractorTest {
+    private final CarFlagEncoder encoder = new CarFlagEncoder(5, 5, 3);
+    private final EncodingManager encodingManager = new EncodingManager(encoder);
+    private final Weighting weighting = new FastestWeighting(encoder);
+    private final TraversalMode traversalMode = TraversalMode.EDGE_BASED_2DIR;
+    private GraphHopperStorage graph;
+    private CHGraph chGraph;
+    private TurnCostExtension turnCostExtension;
+
+    @Before
+    public void setUp() {
+        graph = new GraphBuilder(encodingManager).setCHGraph(weighting).setEdgeBasedCH(true).create();
+        chGraph = graph.getGraph(CHGraph.class);
+        turnCostExtension = (TurnCostExtension) graph.getExtension();
+    }
+
+    private PrepareContractionHierarchies prepare() {
+        graph.freeze();
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(new GHDirectory("", DAType.RAM_INT),
+                graph, chGraph, weighting, traversalMode);
+        prepare.doWork();
+        return prepare;
+    }
+
+    @Test
+    public void testTurnRestrictions() {
+        // 0---1
+        // |   /
+        // 2--3--4
+        // |  |  |
+        // 5--6--7
+        graph.edge(0, 1, 3, true);
+        graph.edge(0, 2, 1, true);
+        graph.edge(1, 3, 1, true);
+        graph.edge(2, 3, 1, true);
+        graph.edge(3, 4, 1, true);
+        graph.edge(2, 5, .5, true);
+        graph.edge(3, 6, 1, true);
+        graph.edge(4, 7, 1, true);
+        graph.edge(5, 6, 1, true);
+        graph.edge(6, 7, 1, true);
+
+        long restricted = encoder.getTurnFlags(true, 0);
+        turnCostExtension.addTurnInfo(getEdge(graph, 2, 3).getEdge(), 3, getEdge(graph, 3, 6).getEdge(), restricted);
+        turnCostExtension.addTurnInfo(getEdge(graph, 2, 3).getEdge(), 3, getEdge(graph, 3, 1).getEdge(), restricted);
+        turnCostExtension.addTurnInfo(getEdge(graph, 5, 2).getEdge(), 2, getEdge(graph, 2, 0).getEdge(), restricted);
+        turnCostExtension.addTurnInfo(getEdge(graph, 7, 6).getEdge(), 6, getEdge(graph, 6, 5).getEdge(), restricted);
+        turnCostExtension.addTurnInfo(getEdge(graph, 5, 6).getEdge(), 6, getEdge(graph, 6, 3).getEdge(), restricted);
+        turnCostExtension.addTurnInfo(getEdge(graph, 4, 3).getEdge(), 3, getEdge(graph, 3, 1).getEdge(), restricted);
+        turnCostExtension.addTurnInfo(getEdge(graph, 4, 3).getEdge(), 3, getEdge(graph, 3, 2).getEdge(), restricted);
+
+        PrepareContractionHierarchies prepare = prepare();
+        compareWithDijkstra(prepare, new Random(42), 200);
+
+        // the direct route 5-2-0 is restricted
+        Path path = calcCHPath(prepare, 5, 0);
+        assertTrue(path.isFound());
+        assertNotEquals(IntArrayList.from(5, 2, 0), path.calcNodes());
+    }
+
+    @Test
+    public void testTurnCostsAreAddedToTime() {
+        // 0-1-2
+        //   |
+        //   3
+        graph.edge(0, 1, 100, true);
+        graph.edge(1, 2, 100, true);
+        graph.edge(1, 3, 100, true);
+        turnCostExtension.addTurnInfo(getEdge(graph, 0, 1).getEdge(), 1, getEdge(graph, 1, 3).getEdge(), encoder.getTurnFlags(false, 2));
+
+        PrepareContractionHierarchies prepare = prepare();
+        Path refPath = calcRefPath(0, 3);
+        Path path = calcCHPath(prepare, 0, 3);
+        assertEquals(refPath.getWeight(), path.getWeight(), 1e-2);
+        assertEquals(refPath.getDistance(), path.getDistance(), 1e-5);
+        assertEquals(refPath.getTime(), path.getTime());
+        // turn costs are currently interpreted as milliseconds, see TurnWeighting.calcMillis
+        assertEquals(calcCHPath(prepare, 0, 2).getTime() + 2, path.getTime());
+    }
+
+    @Test
+    public void testRandomGraphWithTurnCosts() {
+        Random rand = new Random(123);
+        AbstractRoutingAlgorithmTester.initRandomGridGraph(graph, 8, rand, 10, 100, false);
+        addRandomTurnCosts(graph, rand, 10);
+
+        PrepareContractionHierarchies prepare = prepare();
+        assertTrue(prepare.getShortcuts() > 0);
+        compareWithDijkstra(prepare, rand, 500);
+    }
+
+    @Test
+    public void testRandomGraphsWithManyTurnRestrictions() {
+        // many restrictions make detours necessary that pass the same node twice, i.e. shortcuts including loops
+        for (int seed = 0; seed < 30; seed++) {
+            setUp();
+            Random rand = new Random(seed);
+            AbstractRoutingAlgorithmTester.initRandomGridGraph(graph, 6, rand, 10, 100, seed % 2 == 0);
+            addRandomTurnCosts(graph, rand, 3);
+            compareWithDijkstra(prepare(), rand, 100);
+        }
+    }
+
+    @Test
+    public void testOnlyDijkstraBiIsSupported() {
+        graph.edge(0, 1, 1, true);
+        PrepareContractionHierarchies prepare = prepare();
+        try {
+            prepare.createAlgo(chGraph, new AlgorithmOptions(ASTAR_BI, weighting, traversalMode));
+            fail("edge based CH should not support astarbi");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNodeBasedPreparationOfEdgeBasedGraphFails() {
+        new PrepareContractionHierarchies(new GHDirectory("", DAType.RAM_INT), graph, chGraph, weighting, TraversalMode.NODE_BASED);
+    }
+
+    private void compareWithDijkstra(PrepareContractionHierarchies prepare, Random rand, int queries) {
+        for (int i = 0; i < queries; i++) {
+            int from = rand.nextInt(graph.getNodes());
+            int to = rand.nextInt(graph.getNodes());
+            Path refPath = calcRefPath(from, to);
+            Path path = calcCHPath(prepare, from, to);
+            String msg = "route " + from + "->" + to;
+            assertEquals(msg, refPath.isFound(), path.isFound());
+            if (!refPath.isFound())
+                continue;
+            assertEquals(msg, refPath.getWeight(), path.getWeight(), 1e-2);
+            assertEquals(msg, from, path.calcNodes().get(0));
+            assertEquals(msg, to, path.calcNodes().get(path.calcNodes().size() - 1));
+        }
+    }
+
+    private Path calcRefPath(int from, int to) {
+        TurnWeighting turnWeighting = new TurnWeighting(weighting, turnCostExtension);
+        return new Dijkstra(graph, turnWeighting, traversalMode).calcPath(from, to);
+    }
+
+    private Path calcCHPath(PrepareContractionHierarchies prepare, int from, int to) {
+        return prepare.createAlgo(chGraph, new AlgorithmOptions(DIJKSTRA_BI, weighting, traversalMode)).calcPath(from, to);
+    }
+
+    /**
+     * Adds a turn restriction to every restrictionRate-th turn on average and turn costs to some more turns.
+     */
+    private void addRandomTurnCosts(Graph g, Random rand, int restrictionRate) {
+        EdgeExplorer inExplorer = g.createEdgeExplorer();
+        EdgeExplorer outExplorer = g.createEdgeExplorer();
+        for (int node = 0; node < g.getNodes(); node++) {
+            EdgeIterator inIter = inExplorer.setBaseNode(node);
+            while (inIter.next()) {
+                EdgeIterator outIter = outExplorer.setBaseNode(node);
+                while (outIter.next()) {
+                    if (inIter.getEdge() == outIter.getEdge())
+                        continue;
+                    int r = rand.nextInt(restrictionRate);
+                    if (r == 0)
+                        turnCostExtension.addTurnInfo(inIter.getEdge(), node, outIter.getEdge(), encoder.getTurnFlags(true, 0));
+                    else if (r < 3)
+                        turnCostExtension.addTurnInfo(inIter.getEdge(), node, outIter.getEdge(), encoder.getTurnFlags(false, r));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.AbstractRoutingAlgorithmTester;
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.DijkstraBidirectionRef;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.*;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.graphhopper.util.Parameters.Algorithms.DIJKSTRA_BI;
+import static org.junit.Assert.*;
+
+public class ManyToManyCHTest {
+    private final CarFlagEncoder encoder = new CarFlagEncoder();
+    private final EncodingManager encodingManager = new EncodingManager(encoder);
+    private final Weighting weighting = new FastestWeighting(encoder);
+    private final GraphHopperStorage graph = new GraphBuilder(encodingManager).setCHGraph(weighting).create();
+    private final CHGraph chGraph = graph.getGraph(CHGraph.class);
+
+    private PrepareContractionHierarchies prepare() {
+        graph.freeze();
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(new GHDirectory("", DAType.RAM_INT),
+                graph, chGraph, weighting, TraversalMode.NODE_BASED);
+        prepare.doWork();
+        return prepare;
+    }
+
+    @Test
+    public void testSimpleMatrix() {
+        // 0-1-2
+        //   |
+        //   3  4
+        graph.edge(0, 1, 100, true);
+        graph.edge(1, 2, 200, true);
+        graph.edge(1, 3, 300, false);
+        graph.getNodeAccess().setNode(4, 0, 0);
+
+        ManyToManyCH manyToMany = prepare().createManyToMany(chGraph).
+                calcMatrix(new int[]{0, 3}, new int[]{2, 3, 0, 4});
+        double[][] distances = manyToMany.getDistances();
+        assertArrayEquals(new double[]{300, 400, 0, 0}, distances[0], 1e-5);
+        assertEquals(0, distances[1][1], 1e-5);
+
+        double[][] weights = manyToMany.getWeights();
+        assertTrue(Double.isInfinite(weights[0][3]));
+        // 1->3 is a oneway
+        assertTrue(Double.isInfinite(weights[1][0]));
+        assertTrue(Double.isInfinite(weights[1][2]));
+        assertEquals(0, weights[1][1], 1e-5);
+    }
+
+    @Test
+    public void testRandomGraph() {
+        Random rand = new Random(42);
+        AbstractRoutingAlgorithmTester.initRandomGridGraph(graph, 10, rand, 10, 100, false);
+        PrepareContractionHierarchies prepare = prepare();
+        assertTrue(prepare.getShortcuts() > 0);
+
+        int[] fromNodes = new int[15];
+        int[] toNodes = new int[20];
+        for (int i = 0; i < fromNodes.length; i++) {
+            fromNodes[i] = rand.nextInt(graph.getNodes());
+        }
+        for (int i = 0; i < toNodes.length; i++) {
+            toNodes[i] = rand.nextInt(graph.getNodes());
+        }
+
+        ManyToManyCH manyToMany = prepare.createManyToMany(chGraph).calcMatrix(fromNodes, toNodes);
+        for (int from = 0; from < fromNodes.length; from++) {
+            for (int to = 0; to < toNodes.length; to++) {
+                Path refPath = new DijkstraBidirectionRef(graph, weighting, TraversalMode.NODE_BASED).
+                        calcPath(fromNodes[from], toNodes[to]);
+                String msg = "route " + fromNodes[from] + "->" + toNodes[to];
+                if (!refPath.isFound()) {
+                    assertTrue(msg, Double.isInfinite(manyToMany.getWeights()[from][to]));
+                    continue;
+                }
+                // both CH algorithms sum up the same shortcut weights
+                Path chPath = prepare.createAlgo(chGraph, new AlgorithmOptions(DIJKSTRA_BI, weighting, TraversalMode.NODE_BASED)).
+                        calcPath(fromNodes[from], toNodes[to]);
+                assertEquals(msg, chPath.getWeight(), manyToMany.getWeights()[from][to], 1e-6);
+                // the weight of every shortcut is rounded to 1e-3 when it is stored, and a route can contain many
+                assertEquals(msg, refPath.getWeight(), manyToMany.getWeights()[from][to], 1e-2);
+                assertEquals(msg, refPath.getDistance(), manyToMany.getDistances()[from][to], 1e-3);
+                // paths with the same weight can differ slightly in the rounded time of their edges
+                assertEquals(msg, refPath.getTime(), manyToMany.getTimes()[from][to], 10);
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCreateNewInstancePerCall() {
+        graph.edge(0, 1, 100, true);
+        ManyToManyCH manyToMany = prepare().createManyToMany(chGraph);
+        manyToMany.calcMatrix(new int[]{0}, new int[]{1});
+        manyToMany.calcMatrix(new int[]{0}, new int[]{1});
+    }
+}
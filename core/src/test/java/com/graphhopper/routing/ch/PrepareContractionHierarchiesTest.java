@@ -24,6 +24,7 @@ import com.graphhopper.routing.util.BikeFlagEncoder;
 import com.graphhopper.routing.util.CarFlagEncoder;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.util.UpwardEdgeFilter;
 import com.graphhopper.routing.weighting.FastestWeighting;
 import com.graphhopper.routing.weighting.ShortestWeighting;
 import com.graphhopper.routing.weighting.Weighting;
@@ -34,7 +35,9 @@ import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
+import static com.graphhopper.util.Parameters.Algorithms.ASTAR_BI;
 import static com.graphhopper.util.Parameters.Algorithms.DIJKSTRA_BI;
 import static org.junit.Assert.*;
 
@@ -478,6 +481,119 @@ public class PrepareContractionHierarchiesTest {
         checkPath(ghStorage, bikeWeighting, 9, 5, IntArrayList.from(new int[]{3, 10, 14, 16, 13, 12}));
     }
 
+    @Test
+    public void testParallelContraction() {
+        GraphHopperStorage sequentialStorage = createGHStorage();
+        AbstractRoutingAlgorithmTester.initRandomGridGraph(sequentialStorage, 25, new Random(42), 1, 10, true);
+        sequentialStorage.freeze();
+        CHGraph sequentialCHGraph = sequentialStorage.getGraph(CHGraph.class);
+        PrepareContractionHierarchies sequentialPrepare = new PrepareContractionHierarchies(dir, sequentialStorage,
+                sequentialCHGraph, weighting, tMode);
+        sequentialPrepare.doWork();
+
+        GraphHopperStorage parallelStorage = createGHStorage();
+        AbstractRoutingAlgorithmTester.initRandomGridGraph(parallelStorage, 25, new Random(42), 1, 10, true);
+        parallelStorage.freeze();
+        CHGraph parallelCHGraph = parallelStorage.getGraph(CHGraph.class);
+        PrepareContractionHierarchies parallelPrepare = new PrepareContractionHierarchies(
+                new GHDirectory("", DAType.RAM_INT), parallelStorage, parallelCHGraph, weighting, tMode).
+                setContractionThreads(4);
+        parallelPrepare.doWork();
+        assertTrue(parallelPrepare.getShortcuts() > 0);
+
+        AlgorithmOptions opts = new AlgorithmOptions(DIJKSTRA_BI, weighting, tMode);
+        Random rand = new Random(123);
+        for (int i = 0; i < 200; i++) {
+            int from = rand.nextInt(parallelStorage.getNodes());
+            int to = rand.nextInt(parallelStorage.getNodes());
+            Path refPath = new Dijkstra(parallelStorage, weighting, tMode).calcPath(from, to);
+            Path sequentialPath = sequentialPrepare.createAlgo(sequentialCHGraph, opts).calcPath(from, to);
+            Path parallelPath = parallelPrepare.createAlgo(parallelCHGraph, opts).calcPath(from, to);
+            String msg = "route " + from + "->" + to;
+            assertEquals(msg, refPath.isFound(), parallelPath.isFound());
+            assertEquals(msg, sequentialPath.isFound(), parallelPath.isFound());
+            assertEquals(msg, refPath.getDistance(), parallelPath.getDistance(), 1e-5);
+            assertEquals(msg, sequentialPath.getDistance(), parallelPath.getDistance(), 1e-5);
+        }
+    }
+
+    @Test
+    public void testAdjacencyArrays() {
+        GraphHopperStorage ghStorage = createGHStorage();
+        AbstractRoutingAlgorithmTester.initRandomGridGraph(ghStorage, 20, new Random(7), 1, 10, true);
+        ghStorage.freeze();
+        CHGraphImpl chGraph = (CHGraphImpl) ghStorage.getGraph(CHGraph.class);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(dir, ghStorage, chGraph, weighting, tMode);
+        prepare.doWork();
+        assertFalse(prepare.hasAdjacencyArrays());
+
+        AlgorithmOptions opts = new AlgorithmOptions(DIJKSTRA_BI, weighting, tMode);
+        Random rand = new Random(123);
+        int[][] pairs = new int[100][2];
+        Path[] expectedPaths = new Path[pairs.length];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i][0] = rand.nextInt(ghStorage.getNodes());
+            pairs[i][1] = rand.nextInt(ghStorage.getNodes());
+            expectedPaths[i] = prepare.createAlgo(chGraph, opts).calcPath(pairs[i][0], pairs[i][1]);
+        }
+
+        prepare.createAdjacencyArrays();
+        assertTrue(prepare.hasAdjacencyArrays());
+        assertTrue(chGraph.createEdgeExplorer(new UpwardEdgeFilter(chGraph, carEncoder, false)) instanceof CHAdjacency.AdjacencyIterator);
+        for (String algo : Arrays.asList(DIJKSTRA_BI, ASTAR_BI)) {
+            opts = new AlgorithmOptions(algo, weighting, tMode);
+            for (int i = 0; i < pairs.length; i++) {
+                Path path = prepare.createAlgo(chGraph, opts).calcPath(pairs[i][0], pairs[i][1]);
+                String msg = algo + ", route " + pairs[i][0] + "->" + pairs[i][1];
+                assertEquals(msg, expectedPaths[i].isFound(), path.isFound());
+                assertEquals(msg, expectedPaths[i].getWeight(), path.getWeight(), 1e-5);
+                assertEquals(msg, expectedPaths[i].getDistance(), path.getDistance(), 1e-5);
+            }
+        }
+
+        // a new shortcut makes the arrays outdated
+        chGraph.shortcut(0, 1);
+        assertFalse(prepare.hasAdjacencyArrays());
+    }
+
+    @Test
+    public void testUnpackedShortcuts() {
+        GraphHopperStorage ghStorage = createGHStorage();
+        AbstractRoutingAlgorithmTester.initRandomGridGraph(ghStorage, 20, new Random(11), 1, 10, true);
+        ghStorage.freeze();
+        CHGraph chGraph = ghStorage.getGraph(CHGraph.class);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(dir, ghStorage, chGraph, weighting, tMode);
+        prepare.doWork();
+
+        Random rand = new Random(123);
+        int[][] pairs = new int[100][2];
+        Path[] expectedPaths = new Path[pairs.length];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i][0] = rand.nextInt(ghStorage.getNodes());
+            pairs[i][1] = rand.nextInt(ghStorage.getNodes());
+            expectedPaths[i] = prepare.createAlgo(chGraph, new AlgorithmOptions(DIJKSTRA_BI, weighting, tMode)).
+                    calcPath(pairs[i][0], pairs[i][1]);
+        }
+
+        prepare.createUnpackedShortcuts(0.3);
+        int unpacked = prepare.getUnpackedShortcuts().getUnpackedShortcuts();
+        assertTrue("unpacked " + unpacked, unpacked > 0 && unpacked < prepare.getShortcuts());
+        for (String algo : Arrays.asList(DIJKSTRA_BI, ASTAR_BI)) {
+            AlgorithmOptions opts = new AlgorithmOptions(algo, weighting, tMode);
+            for (int i = 0; i < pairs.length; i++) {
+                Path path = prepare.createAlgo(chGraph, opts).calcPath(pairs[i][0], pairs[i][1]);
+                String msg = algo + ", route " + pairs[i][0] + "->" + pairs[i][1];
+                assertEquals(msg, expectedPaths[i].isFound(), path.isFound());
+                assertEquals(msg, expectedPaths[i].getDistance(), path.getDistance(), 1e-5);
+                // the same search, only the shortcuts are unpacked differently
+                if (DIJKSTRA_BI.equals(algo)) {
+                    assertEquals(msg, expectedPaths[i].getTime(), path.getTime());
+                    assertEquals(msg, expectedPaths[i].calcNodes(), path.calcNodes());
+                }
+            }
+        }
+    }
+
     void checkPath(GraphHopperStorage ghStorage, Weighting w, int expShortcuts, double expDistance, IntIndexedContainer expNodes) {
         CHGraph lg = ghStorage.getGraph(CHGraph.class, w);
         PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(dir, ghStorage, lg, w, tMode);
@@ -34,6 +34,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -311,4 +312,27 @@ public class LandmarkStorageTest {
         assertEquals((int) Math.pow(2, 13) - 2, storage.getToWeight(0, 9) - storage.getFromWeight(0, 9));
         assertEquals((int) -Math.pow(2, 13), storage.getToWeight(1, 12) - storage.getFromWeight(1, 12));
     }
+
+    @Test
+    public void testParallelLandmarkWeights() {
+        AbstractRoutingAlgorithmTester.initRandomGridGraph(ghStorage, 10, new Random(42), 10, 100, false);
+
+        LandmarkStorage sequential = new LandmarkStorage(ghStorage, new RAMDirectory(), new FastestWeighting(encoder), 8);
+        sequential.setMinimumNodes(2);
+        sequential.createLandmarks();
+
+        LandmarkStorage parallel = new LandmarkStorage(ghStorage, new RAMDirectory(), new FastestWeighting(encoder), 8).
+                setLandmarkThreads(4);
+        parallel.setMinimumNodes(2);
+        parallel.createLandmarks();
+
+        assertEquals(sequential.getSubnetworksWithLandmarks(), parallel.getSubnetworksWithLandmarks());
+        assertEquals(Arrays.toString(sequential.getLandmarks(1)), Arrays.toString(parallel.getLandmarks(1)));
+        for (int node = 0; node < ghStorage.getNodes(); node++) {
+            for (int lmIdx = 0; lmIdx < 8; lmIdx++) {
+                assertEquals(sequential.getFromWeight(lmIdx, node), parallel.getFromWeight(lmIdx, node));
+                assertEquals(sequential.getToWeight(lmIdx, node), parallel.getToWeight(lmIdx, node));
+            }
+        }
+    }
 }
@@ -0,0 +1,104 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.template;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.routing.*;
+import com.graphhopper.routing.util.*;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.shapes.GHPoint;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.graphhopper.util.Parameters.Algorithms.DIJKSTRA_BI;
+import static org.junit.Assert.assertEquals;
+
+public class ViaRoutingTemplateTest {
+    private final FlagEncoder carFE = new CarFlagEncoder();
+    private final EncodingManager em = new EncodingManager(carFE);
+    private final TraversalMode tMode = TraversalMode.NODE_BASED;
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentLegsAreIdentical() {
+        Graph g = new AlternativeRouteTest(tMode).createTestGraph(true, em);
+        LocationIndex locationIndex = new LocationIndexTree(g, new RAMDirectory()).prepareIndex();
+        GHRequest request = createRequest(g, 5, 10, 1, 8, 9);
+
+        List<Path> sequentialPaths = calcPaths(new ViaRoutingTemplate(request, new GHResponse(), locationIndex), g);
+        List<Path> concurrentPaths = calcPaths(new ViaRoutingTemplate(request, new GHResponse(), locationIndex).
+                setLegExecutor(executor), g);
+
+        assertEquals(4, sequentialPaths.size());
+        assertEquals(IntArrayList.from(new int[]{5, 6, 3, 4, 10}), sequentialPaths.get(0).calcNodes());
+        assertEquals(sequentialPaths.size(), concurrentPaths.size());
+        for (int i = 0; i < sequentialPaths.size(); i++) {
+            assertEquals(sequentialPaths.get(i).calcNodes(), concurrentPaths.get(i).calcNodes());
+            assertEquals(sequentialPaths.get(i).getDistance(), concurrentPaths.get(i).getDistance(), 1e-6);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConcurrentLegsThrowOriginalException() {
+        Graph g = new AlternativeRouteTest(tMode).createTestGraph(true, em);
+        LocationIndex locationIndex = new LocationIndexTree(g, new RAMDirectory()).prepareIndex();
+        ViaRoutingTemplate template = new ViaRoutingTemplate(createRequest(g, 5, 10, 1), new GHResponse(),
+                locationIndex).setLegExecutor(executor);
+        List<QueryResult> qResults = template.lookup(template.ghRequest.getPoints(), carFE);
+        QueryGraph queryGraph = new QueryGraph(g);
+        queryGraph.lookup(qResults);
+        template.calcPaths(queryGraph, new RoutingAlgorithmFactorySimple(),
+                AlgorithmOptions.start().algorithm(DIJKSTRA_BI).traversalMode(tMode).
+                        weighting(new FastestWeighting(carFE)).maxVisitedNodes(1).build());
+    }
+
+    private GHRequest createRequest(Graph g, int... nodes) {
+        NodeAccess na = g.getNodeAccess();
+        List<GHPoint> points = new ArrayList<>();
+        for (int node : nodes) {
+            points.add(new GHPoint(na.getLatitude(node), na.getLongitude(node)));
+        }
+        return new GHRequest(points);
+    }
+
+    private List<Path> calcPaths(ViaRoutingTemplate template, Graph g) {
+        List<QueryResult> qResults = template.lookup(template.ghRequest.getPoints(), carFE);
+        QueryGraph queryGraph = new QueryGraph(g);
+        queryGraph.lookup(qResults);
+        return template.calcPaths(queryGraph, new RoutingAlgorithmFactorySimple(),
+                new AlgorithmOptions(DIJKSTRA_BI, new FastestWeighting(carFE), tMode));
+    }
+}
@@ -17,6 +17,7 @@
  */
 package com.graphhopper.storage;
 
+import com.graphhopper.coll.GHIntLongHashMap;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
 import org.junit.Test;
@@ -221,6 +222,40 @@ public class GraphHopperStorageTest extends AbstractGraphStorageTester {
         assertEquals(store.getAllEdges().length(), store.getGraph(Graph.class).getAllEdges().length());
     }
 
+    @Test
+    public void testChangedFlags() {
+        graph = createGHStorage();
+        graph.edge(0, 1).setDistance(10).setFlags(carEncoder.setProperties(100, true, true));
+        graph.edge(1, 2).setDistance(10).setFlags(carEncoder.setProperties(10, true, true));
+        EdgeExplorer oldExplorer = graph.createEdgeExplorer();
+
+        GHIntLongHashMap changedFlags = new GHIntLongHashMap();
+        long oneWayFlags = carEncoder.setProperties(50, true, false);
+        changedFlags.put(1, oneWayFlags);
+        graph.setChangedFlags(changedFlags);
+
+        EdgeIterator iter = graph.createEdgeExplorer().setBaseNode(1);
+        assertTrue(iter.next());
+        assertEquals(2, iter.getAdjNode());
+        assertEquals(oneWayFlags, iter.getFlags());
+        assertTrue(iter.next());
+        assertEquals(carEncoder.setProperties(100, true, true), iter.getFlags());
+        // the reverse direction is derived from the changed flags
+        iter = graph.createEdgeExplorer().setBaseNode(2);
+        assertTrue(iter.next());
+        assertFalse(carEncoder.isForward(iter.getFlags()));
+        assertTrue(carEncoder.isBackward(iter.getFlags()));
+        assertEquals(oneWayFlags, graph.getEdgeIteratorState(1, 2).getFlags());
+
+        // already existing explorers are not affected
+        iter = oldExplorer.setBaseNode(1);
+        assertTrue(iter.next());
+        assertEquals(carEncoder.setProperties(10, true, true), iter.getFlags());
+
+        graph.setChangedFlags(null);
+        assertEquals(carEncoder.setProperties(10, true, true), graph.getEdgeIteratorState(1, 2).getFlags());
+    }
+
     public void testAdditionalEdgeField() {
         GraphExtension extStorage = new GraphExtension() {
             @Override
@@ -73,6 +73,8 @@ public class GraphHopperStorageWithTurnCostsTest extends GraphHopperStorageTest
 
         assertEquals(12, graph.getNodes());
         checkGraph(graph);
+        // the linked lists were migrated into sorted tables while loading
+        assertTrue(turnCostStorage.isSorted());
 
         assertEquals("named street1", graph.getEdgeIteratorState(iter1.getEdge(), iter1.getAdjNode()).getName());
         assertEquals("named street2", graph.getEdgeIteratorState(iter2.getEdge(), iter2.getAdjNode()).getName());
@@ -86,6 +88,37 @@ public class GraphHopperStorageWithTurnCostsTest extends GraphHopperStorageTest
         checkGraph(graph);
     }
 
+    @Test
+    public void testMigrationIsStoredWithoutFlush() throws IOException {
+        graph = newGHStorage(new RAMDirectory(defaultGraphLoc, true), false).create(defaultSize);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 10, 10);
+        na.setNode(1, 11, 20);
+        na.setNode(2, 12, 12);
+        EdgeIteratorState edge01 = graph.edge(0, 1, 100, true);
+        EdgeIteratorState edge02 = graph.edge(0, 2, 200, true);
+        EdgeIteratorState edge12 = graph.edge(1, 2, 120, true);
+        turnCostStorage.addTurnInfo(edge02.getEdge(), 0, edge01.getEdge(), 1337);
+        turnCostStorage.addTurnInfo(edge01.getEdge(), 0, edge02.getEdge(), 666);
+        turnCostStorage.addTurnInfo(edge12.getEdge(), 2, edge02.getEdge(), 815);
+        graph.flush();
+        graph.close();
+
+        // the migration changes the mapped files while loading, e.g. GraphHopper.load does not flush afterwards
+        graph = newGHStorage(new MMapDirectory(defaultGraphLoc), false);
+        assertTrue(graph.loadExisting());
+        assertTrue(turnCostStorage.isSorted());
+        graph.close();
+
+        graph = newGHStorage(new MMapDirectory(defaultGraphLoc), false);
+        assertTrue(graph.loadExisting());
+        assertTrue(turnCostStorage.isSorted());
+        assertEquals(1337, turnCostStorage.getTurnCostFlags(edge02.getEdge(), 0, edge01.getEdge()));
+        assertEquals(666, turnCostStorage.getTurnCostFlags(edge01.getEdge(), 0, edge02.getEdge()));
+        assertEquals(815, turnCostStorage.getTurnCostFlags(edge12.getEdge(), 2, edge02.getEdge()));
+        assertEquals(0, turnCostStorage.getTurnCostFlags(edge01.getEdge(), 1, edge12.getEdge()));
+    }
+
     @Test
     public void testEnsureCapacity() throws IOException {
         graph = newGHStorage(new MMapDirectory(defaultGraphLoc), false);
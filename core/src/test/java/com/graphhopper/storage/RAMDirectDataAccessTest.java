@@ -0,0 +1,68 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RAMDirectDataAccessTest extends DataAccessTest {
+    @Override
+    public DataAccess createDataAccess(String name) {
+        return new RAMDirectDataAccess(name, directory, true, defaultOrder).setSegmentSize(128);
+    }
+
+    @Test
+    public void testFileFormatIsCompatibleWithRAMDataAccess() {
+        DataAccess ramDA = new RAMDataAccess(name, directory, true, defaultOrder).setSegmentSize(128);
+        // the int at 130 * 4 is in the fifth segment
+        ramDA.create(5 * 128);
+        ramDA.setHeader(4, 42);
+        ramDA.setInt(7 * 4, 123);
+        ramDA.setInt(130 * 4, -456);
+        ramDA.flush();
+        long capacity = ramDA.getCapacity();
+        ramDA.close();
+
+        DataAccess directDA = createDataAccess(name);
+        assertTrue(directDA.loadExisting());
+        assertEquals(capacity, directDA.getCapacity());
+        assertEquals(42, directDA.getHeader(4));
+        assertEquals(123, directDA.getInt(7 * 4));
+        assertEquals(-456, directDA.getInt(130 * 4));
+        directDA.setInt(8 * 4, 789);
+        directDA.flush();
+        directDA.close();
+
+        ramDA = new RAMDataAccess(name, directory, true, defaultOrder);
+        assertTrue(ramDA.loadExisting());
+        assertEquals(123, ramDA.getInt(7 * 4));
+        assertEquals(789, ramDA.getInt(8 * 4));
+        assertEquals(-456, ramDA.getInt(130 * 4));
+        ramDA.close();
+    }
+
+    @Test
+    public void testType() {
+        assertEquals(DAType.RAM_DIRECT_STORE, createDataAccess(name).getType());
+        assertEquals(DAType.RAM_DIRECT_STORE, DAType.fromString("ram_direct_store"));
+        assertEquals(DAType.RAM_DIRECT, DAType.fromString("RAM_DIRECT"));
+        assertFalse(DAType.RAM_DIRECT.isInMemory());
+        assertTrue(new GHDirectory(directory, DAType.RAM_DIRECT).find("edges") instanceof RAMDirectDataAccess);
+    }
+}
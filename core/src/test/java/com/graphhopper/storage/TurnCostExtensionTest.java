@@ -6,8 +6,12 @@ import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FlagEncoder;
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
 import static com.graphhopper.util.GHUtility.getEdge;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class TurnCostExtensionTest {
 
@@ -115,4 +119,69 @@ public class TurnCostExtensionTest {
         assertEquals(Double.POSITIVE_INFINITY, carEncoder.getTurnCost(flags023), 0);
         assertEquals(Double.POSITIVE_INFINITY, bikeEncoder.getTurnCost(flags023), 0);
     }
+
+    @Test
+    public void testOptimize() {
+        GraphHopperStorage g = new GraphBuilder(new EncodingManager(new CarFlagEncoder(5, 5, 3))).create();
+        Random rand = new Random(0);
+        for (int i = 0; i < 200; i++) {
+            g.edge(rand.nextInt(50), rand.nextInt(50), 1, true);
+        }
+        TurnCostExtension tcs = (TurnCostExtension) g.getExtension();
+        Map<String, Long> expected = new HashMap<>();
+        addRandomTurnCosts(tcs, expected, rand, 1000);
+        checkTurnCosts(tcs, expected, rand);
+
+        tcs.optimize();
+        assertTrue(tcs.isSorted());
+        checkTurnCosts(tcs, expected, rand);
+
+        // overwriting or merging an existing entry keeps the tables sorted
+        String[] existing = expected.keySet().iterator().next().split(",");
+        int from = Integer.parseInt(existing[0]), via = Integer.parseInt(existing[1]), to = Integer.parseInt(existing[2]);
+        tcs.mergeOrOverwriteTurnInfo(from, via, to, 1, false);
+        tcs.mergeOrOverwriteTurnInfo(from, via, to, 2, true);
+        expected.put(key(from, via, to), 3L);
+        assertTrue(tcs.isSorted());
+        checkTurnCosts(tcs, expected, rand);
+
+        // a new entry falls back to the linked lists
+        assertEquals(0, tcs.getTurnCostFlags(7, 49, 1000));
+        tcs.mergeOrOverwriteTurnInfo(7, 49, 1000, 5, true);
+        expected.put(key(7, 49, 1000), 5L);
+        assertFalse(tcs.isSorted());
+        addRandomTurnCosts(tcs, expected, rand, 200);
+        checkTurnCosts(tcs, expected, rand);
+
+        tcs.optimize();
+        assertTrue(tcs.isSorted());
+        checkTurnCosts(tcs, expected, rand);
+    }
+
+    private void addRandomTurnCosts(TurnCostExtension tcs, Map<String, Long> expected, Random rand, int count) {
+        for (int i = 0; i < count; i++) {
+            int from = rand.nextInt(200), via = rand.nextInt(50), to = rand.nextInt(200);
+            long flags = 1 + rand.nextInt(100);
+            tcs.addTurnInfo(from, via, to, flags);
+            Long old = expected.get(key(from, via, to));
+            expected.put(key(from, via, to), old == null ? flags : old | flags);
+        }
+    }
+
+    private void checkTurnCosts(TurnCostExtension tcs, Map<String, Long> expected, Random rand) {
+        for (Map.Entry<String, Long> e : expected.entrySet()) {
+            String[] parts = e.getKey().split(",");
+            assertEquals(e.getKey(), (long) e.getValue(), tcs.getTurnCostFlags(Integer.parseInt(parts[0]),
+                    Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+        }
+        for (int i = 0; i < 1000; i++) {
+            int from = rand.nextInt(300), via = rand.nextInt(50), to = rand.nextInt(300);
+            if (!expected.containsKey(key(from, via, to)))
+                assertEquals(0, tcs.getTurnCostFlags(from, via, to));
+        }
+    }
+
+    private static String key(int from, int via, int to) {
+        return from + "," + via + "," + to;
+    }
 }
@@ -19,6 +19,8 @@ package com.graphhopper.isochrone.algorithm;
 
 import com.carrotsearch.hppc.IntObjectHashMap;
 import com.carrotsearch.hppc.procedures.IntObjectProcedure;
+import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.coll.GHBitSetImpl;
 import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.AbstractRoutingAlgorithm;
 import com.graphhopper.routing.Path;
@@ -42,21 +44,37 @@ public class Isochrone extends AbstractRoutingAlgorithm {
 
     enum ExploreType {TIME, DISTANCE}
 
+    /**
+     * Receives every node of the shortest path tree as soon as it is settled, i.e. in the order of increasing
+     * weight.
+     */
+    public interface SPTCallback {
+        /**
+         * @param prevNode the previous node in the tree or -1 for the start node
+         * @param time     in milliseconds
+         * @param distance in meter
+         */
+        void add(int node, int prevNode, long time, double distance);
+    }
+
     // TODO use same class as used in GTFS module?
     class IsoLabel extends SPTEntry {
 
-        IsoLabel(int edgeId, int adjNode, double weight, long time, double distance) {
+        IsoLabel(int edgeId, int adjNode, double weight, long time, double distance, int source) {
             super(edgeId, adjNode, weight);
             this.time = time;
             this.distance = distance;
+            this.source = source;
         }
 
         public long time;
         public double distance;
+        // the index of the start node this node was reached from
+        public int source;
 
         @Override
         public String toString() {
-            return super.toString() + ", time:" + time + ", distance:" + distance;
+            return super.toString() + ", time:" + time + ", distance:" + distance + ", source:" + source;
         }
     }
 
@@ -68,6 +86,8 @@ public class Isochrone extends AbstractRoutingAlgorithm {
     private double finishLimit = -1;
     private ExploreType exploreType = TIME;
     private final boolean reverseFlow;
+    // only used when streaming the tree, where settled labels are removed from fromMap
+    private GHBitSet settled;
 
     public Isochrone(Graph g, Weighting weighting, boolean reverseFlow) {
         super(g, weighting, TraversalMode.NODE_BASED);
@@ -103,44 +123,90 @@ public class Isochrone extends AbstractRoutingAlgorithm {
     }
 
     public List<List<Double[]>> searchGPS(int from, final int bucketCount) {
-        searchInternal(from);
+        return searchGPS(new int[]{from}, bucketCount);
+    }
 
-        final double bucketSize = limit / bucketCount;
-        final List<List<Double[]>> buckets = new ArrayList<>(bucketCount);
+    /**
+     * Explores from all start nodes at once, so the buckets contain every point that is within the limit of its
+     * nearest start node.
+     */
+    public List<List<Double[]>> searchGPS(int[] from, final int bucketCount) {
+        searchInternal(from, null);
 
-        for (int i = 0; i < bucketCount + 1; i++) {
-            buckets.add(new ArrayList<Double[]>());
-        }
-        final NodeAccess na = graph.getNodeAccess();
+        final List<List<Double[]>> buckets = createGPSBuckets(bucketCount);
         fromMap.forEach(new IntObjectProcedure<IsoLabel>() {
 
             @Override
             public void apply(int nodeId, IsoLabel label) {
-                int bucketIndex = (int) (getExploreValue(label) / bucketSize);
-                if (bucketIndex < 0) {
-                    throw new IllegalArgumentException("edge cannot have negative explore value " + nodeId + ", " + label);
-                } else if (bucketIndex > bucketCount) {
-                    return;
-                }
+                addToGPSBuckets(buckets, bucketCount, nodeId, label);
+            }
+        });
+        return buckets;
+    }
 
-                double lat = na.getLatitude(nodeId);
-                double lon = na.getLongitude(nodeId);
-                buckets.get(bucketIndex).add(new Double[]{lon, lat});
+    /**
+     * Explores from all start nodes at once and partitions the points by their nearest start node, like a
+     * Voronoi diagram of the start nodes in the road network.
+     *
+     * @return the buckets as returned by searchGPS for every start node, in the order of the start nodes
+     */
+    public List<List<List<Double[]>>> searchGPSBySource(int[] from, final int bucketCount) {
+        searchInternal(from, null);
 
-                // guess center of road to increase precision a bit for longer roads
-                if (label.parent != null) {
-                    nodeId = label.parent.adjNode;
-                    double lat2 = na.getLatitude(nodeId);
-                    double lon2 = na.getLongitude(nodeId);
-                    buckets.get(bucketIndex).add(new Double[]{(lon + lon2) / 2, (lat + lat2) / 2});
-                }
+        final List<List<List<Double[]>>> bucketsBySource = new ArrayList<>(from.length);
+        for (int i = 0; i < from.length; i++) {
+            bucketsBySource.add(createGPSBuckets(bucketCount));
+        }
+        fromMap.forEach(new IntObjectProcedure<IsoLabel>() {
+
+            @Override
+            public void apply(int nodeId, IsoLabel label) {
+                addToGPSBuckets(bucketsBySource.get(label.source), bucketCount, nodeId, label);
             }
         });
+        return bucketsBySource;
+    }
+
+    private List<List<Double[]>> createGPSBuckets(int bucketCount) {
+        List<List<Double[]>> buckets = new ArrayList<>(bucketCount + 1);
+        for (int i = 0; i < bucketCount + 1; i++) {
+            buckets.add(new ArrayList<Double[]>());
+        }
         return buckets;
     }
 
+    private void addToGPSBuckets(List<List<Double[]>> buckets, int bucketCount, int nodeId, IsoLabel label) {
+        final double bucketSize = limit / bucketCount;
+        int bucketIndex = (int) (getExploreValue(label) / bucketSize);
+        if (bucketIndex < 0) {
+            throw new IllegalArgumentException("edge cannot have negative explore value " + nodeId + ", " + label);
+        } else if (bucketIndex > bucketCount) {
+            return;
+        }
+
+        NodeAccess na = graph.getNodeAccess();
+        double lat = na.getLatitude(nodeId);
+        double lon = na.getLongitude(nodeId);
+        buckets.get(bucketIndex).add(new Double[]{lon, lat});
+
+        // guess center of road to increase precision a bit for longer roads
+        if (label.parent != null) {
+            nodeId = label.parent.adjNode;
+            double lat2 = na.getLatitude(nodeId);
+            double lon2 = na.getLongitude(nodeId);
+            buckets.get(bucketIndex).add(new Double[]{(lon + lon2) / 2, (lat + lat2) / 2});
+        }
+    }
+
     public List<Set<Integer>> search(int from, final int bucketCount) {
-        searchInternal(from);
+        return search(new int[]{from}, bucketCount);
+    }
+
+    /**
+     * Explores from all start nodes at once, see searchGPS
+     */
+    public List<Set<Integer>> search(int[] from, final int bucketCount) {
+        searchInternal(from, null);
 
         final double bucketSize = limit / bucketCount;
         final List<Set<Integer>> list = new ArrayList<>(bucketCount);
@@ -172,10 +238,45 @@ public class Isochrone extends AbstractRoutingAlgorithm {
         return list;
     }
 
-    private void searchInternal(int from) {
+    /**
+     * @return the index of the start node the specified node was reached from in the last search or -1 if it was
+     * not reached. The search with an SPTCallback does not keep its labels.
+     */
+    public int getSource(int node) {
+        IsoLabel label = fromMap.get(node);
+        return label == null ? -1 : label.source;
+    }
+
+    /**
+     * Explores the shortest path tree up to the time or distance limit and passes every node to the specified
+     * callback while the search is still running. Unlike the other search methods this keeps only the labels of
+     * the search frontier in memory, so even very large trees can be exported.
+     */
+    public void search(int from, SPTCallback callback) {
+        // no additional exploration as there is no hull to build
+        finishLimit = limit;
+        settled = new GHBitSetImpl(graph.getNodes());
+        searchInternal(new int[]{from}, callback);
+    }
+
+    /**
+     * All start nodes begin with a weight of 0, so every label carries the start node it is nearest to. If a
+     * start node is specified twice it belongs to its first occurrence.
+     */
+    private void searchInternal(int[] from, SPTCallback callback) {
+        if (from.length == 0)
+            throw new IllegalArgumentException("At least one start node has to be specified");
+
         checkAlreadyRun();
-        currEdge = new IsoLabel(-1, from, 0, 0, 0);
-        fromMap.put(from, currEdge);
+        for (int i = 0; i < from.length; i++) {
+            if (fromMap.containsKey(from[i]))
+                continue;
+
+            IsoLabel label = new IsoLabel(-1, from[i], 0, 0, 0, i);
+            fromMap.put(from[i], label);
+            fromHeap.add(label);
+        }
+        currEdge = fromHeap.poll();
         EdgeExplorer explorer = reverseFlow ? inEdgeExplorer : outEdgeExplorer;
         while (true) {
             visitedNodes++;
@@ -184,6 +285,14 @@ public class Isochrone extends AbstractRoutingAlgorithm {
             }
 
             int neighborNode = currEdge.adjNode;
+            if (callback != null) {
+                callback.add(neighborNode, currEdge.parent == null ? -1 : currEdge.parent.adjNode,
+                        currEdge.time, currEdge.distance);
+                // the label is final now and the children only need its node
+                settled.add(neighborNode);
+                fromMap.remove(neighborNode);
+                currEdge.parent = null;
+            }
             EdgeIterator iter = explorer.setBaseNode(neighborNode);
             while (iter.next()) {
                 if (!accept(iter, currEdge.edge)) {
@@ -193,6 +302,9 @@ public class Isochrone extends AbstractRoutingAlgorithm {
                 if (currEdge.edge == iter.getEdge()) {
                     continue;
                 }
+                if (settled != null && settled.contains(iter.getAdjNode())) {
+                    continue;
+                }
 
                 double tmpWeight = weighting.calcWeight(iter, reverseFlow, currEdge.edge) + currEdge.weight;
                 if (Double.isInfinite(tmpWeight))
@@ -203,7 +315,7 @@ public class Isochrone extends AbstractRoutingAlgorithm {
                 int tmpNode = iter.getAdjNode();
                 IsoLabel nEdge = fromMap.get(tmpNode);
                 if (nEdge == null) {
-                    nEdge = new IsoLabel(iter.getEdge(), tmpNode, tmpWeight, tmpTime, tmpDistance);
+                    nEdge = new IsoLabel(iter.getEdge(), tmpNode, tmpWeight, tmpTime, tmpDistance, currEdge.source);
                     nEdge.parent = currEdge;
                     fromMap.put(tmpNode, nEdge);
                     fromHeap.add(nEdge);
@@ -213,6 +325,7 @@ public class Isochrone extends AbstractRoutingAlgorithm {
                     nEdge.weight = tmpWeight;
                     nEdge.distance = tmpDistance;
                     nEdge.time = tmpTime;
+                    nEdge.source = currEdge.source;
                     nEdge.parent = currEdge;
                     fromHeap.add(nEdge);
                 }
@@ -13,11 +13,9 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 /**
  * @author Peter Karich
@@ -83,4 +81,60 @@ public class IsochroneTest {
         res = instance.search(0, 5);
         assertEquals("[[0], [4], [], [6], [1, 7]]", res.toString());
     }
+
+    @Test
+    public void testSearchMultipleSources() {
+        initDirectedAndDiffSpeed(graph);
+        Isochrone instance = new Isochrone(graph, new FastestWeighting(carEncoder, new PMap()), false);
+        instance.setTimeLimit(30);
+        List<Set<Integer>> res = instance.search(new int[]{0, 3}, 3);
+        // 7 is reached from 3 after 25s and 5 via 7 after 34s instead of 36s from 0
+        assertEquals("[[0, 3, 4], [6], [1, 5, 7]]", res.toString());
+        assertEquals(0, instance.getSource(4));
+        assertEquals(0, instance.getSource(1));
+        assertEquals(1, instance.getSource(7));
+        assertEquals(1, instance.getSource(5));
+        assertEquals(1, instance.getSource(2));
+
+        instance = new Isochrone(graph, new FastestWeighting(carEncoder, new PMap()), false);
+        instance.setTimeLimit(30);
+        List<List<List<Double[]>>> bySource = instance.searchGPSBySource(new int[]{0, 3}, 1);
+        assertEquals(2, bySource.size());
+        assertEquals(2, bySource.get(0).size());
+        assertFalse(bySource.get(0).get(0).isEmpty());
+        assertFalse(bySource.get(1).get(0).isEmpty());
+    }
+
+    @Test
+    public void testSearchWithCallback() {
+        initDirectedAndDiffSpeed(graph);
+        Isochrone instance = new Isochrone(graph, new FastestWeighting(carEncoder, new PMap()), false);
+        instance.setTimeLimit(30);
+        final List<Integer> nodes = new ArrayList<>();
+        final List<Long> times = new ArrayList<>();
+        final Map<Integer, Integer> prevNodes = new HashMap<>();
+        instance.search(0, new Isochrone.SPTCallback() {
+            @Override
+            public void add(int node, int prevNode, long time, double distance) {
+                if (nodes.isEmpty()) {
+                    assertEquals(-1, prevNode);
+                    assertEquals(0, time);
+                    assertEquals(0, distance, 1e-6);
+                } else {
+                    assertTrue("previous node " + prevNode + " of " + node + " not yet settled", nodes.contains(prevNode));
+                    assertTrue(time >= times.get(times.size() - 1));
+                }
+                assertFalse("node " + node + " settled twice", nodes.contains(node));
+                nodes.add(node);
+                times.add(time);
+                prevNodes.put(node, prevNode);
+            }
+        });
+        // 5 is reached via 7 only after 36s
+        assertEquals(Arrays.asList(0, 4, 6, 1, 7), nodes);
+        assertEquals(Arrays.asList(0L, 9000L, 18000L, 25200L, 27000L), times);
+        assertEquals(0, (int) prevNodes.get(1));
+        assertEquals(4, (int) prevNodes.get(6));
+        assertEquals(6, (int) prevNodes.get(7));
+    }
 }
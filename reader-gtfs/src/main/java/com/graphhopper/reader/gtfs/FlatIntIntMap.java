@@ -0,0 +1,154 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.reader.gtfs;
+
+import com.graphhopper.storage.DataAccess;
+
+import java.util.*;
+
+/**
+ * A map from small non-negative int keys like edge ids to non-negative int values, stored as an int array in
+ * a DataAccess. The array holds the value plus one for every key or 0 if there is no value for the key.
+ */
+final class FlatIntIntMap extends AbstractMap<Integer, Integer> {
+
+    private final DataAccess da;
+    // the biggest key plus one
+    private int keyCount;
+    private int size;
+
+    FlatIntIntMap(DataAccess da) {
+        this.da = da;
+    }
+
+    FlatIntIntMap create(long bytes) {
+        da.create(bytes);
+        return this;
+    }
+
+    boolean loadExisting() {
+        if (!da.loadExisting())
+            return false;
+
+        keyCount = da.getHeader(0);
+        size = da.getHeader(4);
+        return true;
+    }
+
+    void flush() {
+        da.setHeader(0, keyCount);
+        da.setHeader(4, size);
+        da.flush();
+    }
+
+    void close() {
+        da.close();
+    }
+
+    long getCapacity() {
+        return da.getCapacity();
+    }
+
+    @Override
+    public Integer get(Object key) {
+        return getOrDefault(key, null);
+    }
+
+    @Override
+    public Integer getOrDefault(Object key, Integer defaultValue) {
+        int value = getStored(key);
+        return value == 0 ? defaultValue : value - 1;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return getStored(key) != 0;
+    }
+
+    @Override
+    public Integer put(Integer key, Integer value) {
+        if (key < 0 || value < 0 || value == Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Key and value must be in [0, Integer.MAX_VALUE) but was " + key + " -> " + value);
+
+        Integer previous = get(key);
+        long pos = (long) key * 4;
+        da.ensureCapacity(pos + 4);
+        // new memory of a DataAccess is zeroed, so the keys in between have no value
+        if (key >= keyCount)
+            keyCount = key + 1;
+        da.setInt(pos, value + 1);
+        if (previous == null)
+            size++;
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<Integer, Integer>> entrySet() {
+        return new AbstractSet<Entry<Integer, Integer>>() {
+            @Override
+            public Iterator<Entry<Integer, Integer>> iterator() {
+                return new Iterator<Entry<Integer, Integer>>() {
+                    private int nextKey = findKey(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return nextKey < keyCount;
+                    }
+
+                    @Override
+                    public Entry<Integer, Integer> next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+                        int key = nextKey;
+                        nextKey = findKey(key + 1);
+                        return new SimpleImmutableEntry<>(key, get(key));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int findKey(int fromKey) {
+        int key = fromKey;
+        while (key < keyCount && getStored(key) == 0) {
+            key++;
+        }
+        return key;
+    }
+
+    private int getStored(Object key) {
+        if (!(key instanceof Integer))
+            return 0;
+        int intKey = (Integer) key;
+        if (intKey < 0 || intKey >= keyCount)
+            return 0;
+
+        return da.getInt((long) intKey * 4);
+    }
+}
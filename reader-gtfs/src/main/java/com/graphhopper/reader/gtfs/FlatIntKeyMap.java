@@ -0,0 +1,204 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.reader.gtfs;
+
+import com.graphhopper.storage.DataAccess;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A map from small non-negative int keys like edge ids to variable length values, stored in two DataAccess
+ * objects instead of a MapDB map. The offset table holds 8 bytes per key, which is the position of the value
+ * plus one or 0 if there is no value for the key. The values are appended as their length followed by their
+ * bytes and padded to a multiple of 4 bytes, so the length never spans two segments of the DataAccess. A lookup
+ * is two reads without any tree traversal or deserialization of the map entry.
+ * <p>
+ * Overwriting a key appends the new value and leaves the old one unused, which is fine as the map is only
+ * written during the import.
+ */
+final class FlatIntKeyMap<V> extends AbstractMap<Integer, V> {
+
+    private final DataAccess offsets;
+    private final DataAccess values;
+    private final Function<V, byte[]> encoder;
+    private final Function<byte[], V> decoder;
+    // the biggest key plus one
+    private int keyCount;
+    private int size;
+    private long valueBytes;
+
+    FlatIntKeyMap(DataAccess offsets, DataAccess values, Function<V, byte[]> encoder, Function<byte[], V> decoder) {
+        this.offsets = offsets;
+        this.values = values;
+        this.encoder = encoder;
+        this.decoder = decoder;
+    }
+
+    static FlatIntKeyMap<byte[]> forBytes(DataAccess offsets, DataAccess values) {
+        return new FlatIntKeyMap<>(offsets, values, Function.identity(), Function.identity());
+    }
+
+    static FlatIntKeyMap<String> forStrings(DataAccess offsets, DataAccess values) {
+        return new FlatIntKeyMap<>(offsets, values, s -> s.getBytes(StandardCharsets.UTF_8),
+                b -> new String(b, StandardCharsets.UTF_8));
+    }
+
+    FlatIntKeyMap<V> create(long bytes) {
+        offsets.create(bytes);
+        values.create(bytes);
+        return this;
+    }
+
+    boolean loadExisting() {
+        if (!offsets.loadExisting() || !values.loadExisting())
+            return false;
+
+        keyCount = offsets.getHeader(0);
+        size = offsets.getHeader(4);
+        valueBytes = ((long) values.getHeader(4) << 32) | (values.getHeader(0) & 0xFFFFFFFFL);
+        return true;
+    }
+
+    void flush() {
+        offsets.setHeader(0, keyCount);
+        offsets.setHeader(4, size);
+        values.setHeader(0, (int) valueBytes);
+        values.setHeader(4, (int) (valueBytes >>> 32));
+        offsets.flush();
+        values.flush();
+    }
+
+    void close() {
+        offsets.close();
+        values.close();
+    }
+
+    long getCapacity() {
+        return offsets.getCapacity() + values.getCapacity();
+    }
+
+    @Override
+    public V get(Object key) {
+        return getOrDefault(key, null);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        long pointer = getPointer(key);
+        if (pointer < 0)
+            return defaultValue;
+
+        byte[] bytes = new byte[values.getInt(pointer)];
+        if (bytes.length > 0)
+            values.getBytes(pointer + 4, bytes, bytes.length);
+        return decoder.apply(bytes);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return getPointer(key) >= 0;
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        if (key < 0)
+            throw new IllegalArgumentException("Key must not be negative but was " + key);
+        byte[] bytes = encoder.apply(value);
+        if (bytes.length > values.getSegmentSize() - 4)
+            throw new IllegalArgumentException("Value for key " + key + " is too big: " + bytes.length);
+
+        V previous = get(key);
+        int entryBytes = (4 + bytes.length + 3) & ~3;
+        values.ensureCapacity(valueBytes + entryBytes);
+        values.setInt(valueBytes, bytes.length);
+        if (bytes.length > 0)
+            values.setBytes(valueBytes + 4, bytes, bytes.length);
+
+        long offsetPos = (long) key * 8;
+        offsets.ensureCapacity(offsetPos + 8);
+        // new memory of a DataAccess is zeroed, so the keys in between have no value
+        if (key >= keyCount)
+            keyCount = key + 1;
+
+        long pointer = valueBytes + 1;
+        offsets.setInt(offsetPos, (int) pointer);
+        offsets.setInt(offsetPos + 4, (int) (pointer >>> 32));
+        valueBytes += entryBytes;
+        if (previous == null)
+            size++;
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        return new AbstractSet<Entry<Integer, V>>() {
+            @Override
+            public Iterator<Entry<Integer, V>> iterator() {
+                return new Iterator<Entry<Integer, V>>() {
+                    private int nextKey = findKey(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return nextKey < keyCount;
+                    }
+
+                    @Override
+                    public Entry<Integer, V> next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+                        int key = nextKey;
+                        nextKey = findKey(key + 1);
+                        return new SimpleImmutableEntry<>(key, get(key));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int findKey(int fromKey) {
+        int key = fromKey;
+        while (key < keyCount && getPointer(key) < 0) {
+            key++;
+        }
+        return key;
+    }
+
+    private long getPointer(Object key) {
+        if (!(key instanceof Integer))
+            return -1;
+        int intKey = (Integer) key;
+        if (intKey < 0 || intKey >= keyCount)
+            return -1;
+
+        long offsetPos = (long) intKey * 8;
+        return (((long) offsets.getInt(offsetPos + 4) << 32) | (offsets.getInt(offsetPos) & 0xFFFFFFFFL)) - 1;
+    }
+}
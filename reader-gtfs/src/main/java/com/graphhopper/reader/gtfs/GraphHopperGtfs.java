@@ -44,6 +44,7 @@ import java.io.IOException;
 import java.time.Instant;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipFile;
@@ -76,6 +77,18 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
         public GraphHopperGtfs createWithoutRealtimeFeed() {
             return new GraphHopperGtfs(flagEncoder, translationMap, graphHopperStorage, locationIndex, gtfsStorage, RealtimeFeed.empty(gtfsStorage));
         }
+
+        /**
+         * Every request uses the latest snapshot of the specified realtime feed, so new messages can be applied
+         * to it without creating a new GraphHopperGtfs.
+         */
+        public GraphHopperGtfs createWith(IncrementalRealtimeFeed realtimeFeed) {
+            return new GraphHopperGtfs(flagEncoder, translationMap, graphHopperStorage, locationIndex, gtfsStorage, realtimeFeed::getSnapshot);
+        }
+
+        public IncrementalRealtimeFeed createIncrementalRealtimeFeed() {
+            return new IncrementalRealtimeFeed(graphHopperStorage, gtfsStorage, flagEncoder);
+        }
     }
 
     public static Factory createFactory(PtFlagEncoder flagEncoder, TranslationMap translationMap, GraphHopperStorage graphHopperStorage, LocationIndex locationIndex, GtfsStorage gtfsStorage) {
@@ -88,16 +101,21 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
     private final GraphHopperStorage graphHopperStorage;
     private final LocationIndex locationIndex;
     private final GtfsStorage gtfsStorage;
-    private final RealtimeFeed realtimeFeed;
-    private final TripFromLabel tripFromLabel;
+    private final Supplier<RealtimeFeed> realtimeFeeds;
 
     private class RequestHandler {
+        // the same snapshot for the whole request
+        private final RealtimeFeed realtimeFeed = realtimeFeeds.get();
+        private final TripFromLabel tripFromLabel = new TripFromLabel(gtfsStorage, realtimeFeed);
         private final int maxVisitedNodesForRequest;
         private final int limitSolutions;
         private final Instant initialTime;
+        // the end of the departure window of a range query or null
+        private final Instant latestDepartureTime;
         private final boolean profileQuery;
         private final boolean arriveBy;
         private final boolean ignoreTransfers;
+        private final boolean raptor;
         private final double betaTransfers;
         private final double betaWalkTime;
         private final double walkSpeedKmH;
@@ -120,13 +138,27 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
             ignoreTransfers = request.getHints().getBool(Parameters.PT.IGNORE_TRANSFERS, profileQuery);
             betaTransfers = request.getHints().getDouble("beta_transfers", 0.0);
             betaWalkTime = request.getHints().getDouble("beta_walk_time", 1.0);
-            limitSolutions = request.getHints().getInt(Parameters.PT.LIMIT_SOLUTIONS, profileQuery ? 5 : ignoreTransfers ? 1 : Integer.MAX_VALUE);
             final String departureTimeString = request.getHints().get(Parameters.PT.EARLIEST_DEPARTURE_TIME, "");
             try {
                 initialTime = Instant.parse(departureTimeString);
             } catch (DateTimeParseException e) {
                 throw new IllegalArgumentException(String.format(Locale.ROOT, "Illegal value for required parameter %s: [%s]", Parameters.PT.EARLIEST_DEPARTURE_TIME, departureTimeString));
             }
+            final String latestDepartureTimeString = request.getHints().get(Parameters.PT.LATEST_DEPARTURE_TIME, "");
+            if (latestDepartureTimeString.isEmpty()) {
+                latestDepartureTime = null;
+            } else {
+                try {
+                    latestDepartureTime = Instant.parse(latestDepartureTimeString);
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException(String.format(Locale.ROOT, "Illegal value for parameter %s: [%s]", Parameters.PT.LATEST_DEPARTURE_TIME, latestDepartureTimeString));
+                }
+                if (latestDepartureTime.isBefore(initialTime)) {
+                    throw new IllegalArgumentException(Parameters.PT.LATEST_DEPARTURE_TIME + " must not be before " + Parameters.PT.EARLIEST_DEPARTURE_TIME);
+                }
+            }
+            // a range query returns every Pareto optimal journey of the departure window by default
+            limitSolutions = request.getHints().getInt(Parameters.PT.LIMIT_SOLUTIONS, profileQuery ? 5 : latestDepartureTime != null || !ignoreTransfers ? Integer.MAX_VALUE : 1);
             arriveBy = request.getHints().getBool(Parameters.PT.ARRIVE_BY, false);
             walkSpeedKmH = request.getHints().getDouble(Parameters.PT.WALK_SPEED, 5.0);
             blockedRouteTypes = request.getHints().getInt(Parameters.PT.BLOCKED_ROUTE_TYPES, 0);
@@ -137,6 +169,13 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
             enter = request.getPoints().get(0);
             exit = request.getPoints().get(1);
             maxWalkDistancePerLeg = request.getHints().getDouble(Parameters.PT.MAX_WALK_DISTANCE_PER_LEG, Integer.MAX_VALUE);
+            raptor = Parameters.Algorithms.RAPTOR.equalsIgnoreCase(request.getAlgorithm());
+            if (raptor && (arriveBy || profileQuery)) {
+                throw new IllegalArgumentException("The algorithm " + Parameters.Algorithms.RAPTOR + " supports only departure time queries");
+            }
+            if (latestDepartureTime != null && (arriveBy || profileQuery)) {
+                throw new IllegalArgumentException(Parameters.PT.LATEST_DEPARTURE_TIME + " cannot be combined with " + Parameters.PT.ARRIVE_BY + " or " + PROFILE_QUERY);
+            }
         }
 
         GHResponse route() {
@@ -189,6 +228,10 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
             }
             Comparator<PathWrapper> c = Comparator.comparingInt(p -> (p.isImpossible() ? 1 : 0));
             Comparator<PathWrapper> d = Comparator.comparingDouble(PathWrapper::getTime);
+            if (latestDepartureTime != null) {
+                // the journeys of a range query are in the order of their departure
+                d = Comparator.comparing(p -> p.getLegs().get(0).getDepartureTime());
+            }
             response.getAll().sort(c.thenComparing(d));
         }
 
@@ -218,6 +261,53 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
             }
 
             graphExplorer = new GraphExplorer(queryGraph, accessEgressWeighting, flagEncoder, gtfsStorage, realtimeFeed, arriveBy, extraEdges, false, walkSpeedKmH);
+            List<Label> solutions;
+            if (latestDepartureTime != null) {
+                solutions = findSolutionsInDepartureWindow(startNode, reverseSettledSet);
+            } else if (raptor) {
+                solutions = findSolutionsWithRaptor(startNode, reverseSettledSet);
+            } else {
+                solutions = findSolutionsWithLabelSetting(startNode, destNode, stationRouter, stationLabels, reverseSettledSet);
+            }
+
+            List<List<Label.Transition>> pathsToStations = solutions.stream()
+                    .map(l -> new TripFromLabel(gtfsStorage, realtimeFeed).getTransitions(arriveBy, flagEncoder, graphExplorer, l)).collect(Collectors.toList());
+
+            List<List<Label.Transition>> paths = pathsToStations.stream().map(p -> {
+                if (arriveBy) {
+                    List<Label.Transition> pp = new ArrayList<>(p.subList(1, p.size()));
+                    List<Label.Transition> pathFromStation = pathFromStation(accessEgressGraphExplorer, reverseSettledSet.get(p.get(0).label.adjNode));
+                    long diff = p.get(0).label.currentTime - pathFromStation.get(pathFromStation.size() - 1).label.currentTime;
+                    List<Label.Transition> patchedPathFromStation = pathFromStation.stream().map(t -> {
+                        return new Label.Transition(new Label(t.label.currentTime + diff, t.label.edge, t.label.adjNode, t.label.nTransfers, t.label.nWalkDistanceConstraintViolations, t.label.walkDistanceOnCurrentLeg, t.label.departureTime, t.label.walkTime, t.label.residualDelay, t.label.impossible, null), t.edge);
+                    }).collect(Collectors.toList());
+                    pp.addAll(0, patchedPathFromStation);
+                    return pp;
+                } else {
+                    List<Label.Transition> pp = new ArrayList<>(p);
+                    List<Label.Transition> pathFromStation = pathFromStation(accessEgressGraphExplorer, reverseSettledSet.get(p.get(p.size() - 1).label.adjNode));
+                    long diff = p.get(p.size() - 1).label.currentTime - pathFromStation.get(0).label.currentTime;
+                    List<Label.Transition> patchedPathFromStation = pathFromStation.subList(1, pathFromStation.size()).stream().map(t -> {
+                        return new Label.Transition(new Label(t.label.currentTime + diff, t.label.edge, t.label.adjNode, t.label.nTransfers, t.label.nWalkDistanceConstraintViolations, t.label.walkDistanceOnCurrentLeg, t.label.departureTime, t.label.walkTime, t.label.residualDelay, t.label.impossible, null), t.edge);
+                    }).collect(Collectors.toList());
+                    pp.addAll(patchedPathFromStation);
+                    return pp;
+                }
+            }).collect(Collectors.toList());
+
+            response.addDebugInfo("routing:" + stopWatch.stop().getSeconds() + "s");
+            response.getHints().put("visited_nodes.sum", visitedNodes);
+            response.getHints().put("visited_nodes.average", visitedNodes);
+            if (solutions.isEmpty()) {
+                response.addError(new RuntimeException("No route found"));
+            }
+            return paths;
+        }
+
+        /**
+         * @return the labels of the forward search at the nodes where the paths from the stations start
+         */
+        private List<Label> findSolutionsWithLabelSetting(int startNode, int destNode, MultiCriteriaLabelSetting stationRouter, List<Label> stationLabels, Map<Integer, Label> reverseSettledSet) {
             List<Label> discoveredSolutions = new ArrayList<>();
             final long smallestStationLabelWeight;
             MultiCriteriaLabelSetting router = new MultiCriteriaLabelSetting(graphExplorer, flagEncoder, arriveBy, maxWalkDistancePerLeg, true, !ignoreTransfers, profileQuery, maxVisitedNodesForRequest, discoveredSolutions);
@@ -256,43 +346,38 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
                 }
             }
 
-            List<List<Label.Transition>> pathsToStations = discoveredSolutions.stream()
-                    .map(originalSolutions::get)
-                    .map(l -> new TripFromLabel(gtfsStorage, realtimeFeed).getTransitions(arriveBy, flagEncoder, graphExplorer, l)).collect(Collectors.toList());
+            visitedNodes += router.getVisitedNodes();
+            checkSolutionsFound(discoveredSolutions, router.getVisitedNodes());
+            return discoveredSolutions.stream().map(originalSolutions::get).collect(Collectors.toList());
+        }
 
-            List<List<Label.Transition>> paths = pathsToStations.stream().map(p -> {
-                if (arriveBy) {
-                    List<Label.Transition> pp = new ArrayList<>(p.subList(1, p.size()));
-                    List<Label.Transition> pathFromStation = pathFromStation(accessEgressGraphExplorer, reverseSettledSet.get(p.get(0).label.adjNode));
-                    long diff = p.get(0).label.currentTime - pathFromStation.get(pathFromStation.size() - 1).label.currentTime;
-                    List<Label.Transition> patchedPathFromStation = pathFromStation.stream().map(t -> {
-                        return new Label.Transition(new Label(t.label.currentTime + diff, t.label.edge, t.label.adjNode, t.label.nTransfers, t.label.nWalkDistanceConstraintViolations, t.label.walkDistanceOnCurrentLeg, t.label.departureTime, t.label.walkTime, t.label.residualDelay, t.label.impossible, null), t.edge);
-                    }).collect(Collectors.toList());
-                    pp.addAll(0, patchedPathFromStation);
-                    return pp;
-                } else {
-                    List<Label.Transition> pp = new ArrayList<>(p);
-                    List<Label.Transition> pathFromStation = pathFromStation(accessEgressGraphExplorer, reverseSettledSet.get(p.get(p.size() - 1).label.adjNode));
-                    long diff = p.get(p.size() - 1).label.currentTime - pathFromStation.get(0).label.currentTime;
-                    List<Label.Transition> patchedPathFromStation = pathFromStation.subList(1, pathFromStation.size()).stream().map(t -> {
-                        return new Label.Transition(new Label(t.label.currentTime + diff, t.label.edge, t.label.adjNode, t.label.nTransfers, t.label.nWalkDistanceConstraintViolations, t.label.walkDistanceOnCurrentLeg, t.label.departureTime, t.label.walkTime, t.label.residualDelay, t.label.impossible, null), t.edge);
-                    }).collect(Collectors.toList());
-                    pp.addAll(patchedPathFromStation);
-                    return pp;
-                }
-            }).collect(Collectors.toList());
+        private List<Label> findSolutionsWithRaptor(int startNode, Map<Integer, Label> reverseSettledSet) {
+            RaptorRouter router = new RaptorRouter(graphExplorer, flagEncoder, maxWalkDistancePerLeg, maxVisitedNodesForRequest);
+            List<Label> solutions = new ArrayList<>(router.calcLabels(startNode, initialTime, blockedRouteTypes, reverseSettledSet));
+            visitedNodes += router.getVisitedNodes();
+            checkSolutionsFound(solutions, router.getVisitedNodes());
+            // the later rounds arrive earlier, so with ignoreTransfers and the default limit only the earliest arrival is kept
+            Collections.reverse(solutions);
+            return solutions.subList(0, Math.min(limitSolutions, solutions.size()));
+        }
 
+        /**
+         * The range query always runs the RaptorRouter, as it keeps the labels of the later departures.
+         */
+        private List<Label> findSolutionsInDepartureWindow(int startNode, Map<Integer, Label> reverseSettledSet) {
+            RaptorRouter router = new RaptorRouter(graphExplorer, flagEncoder, maxWalkDistancePerLeg, maxVisitedNodesForRequest);
+            List<Label> solutions = new ArrayList<>(router.calcRangeLabels(startNode, initialTime, latestDepartureTime, blockedRouteTypes, reverseSettledSet, !ignoreTransfers));
             visitedNodes += router.getVisitedNodes();
-            response.addDebugInfo("routing:" + stopWatch.stop().getSeconds() + "s");
-            if (discoveredSolutions.isEmpty() && router.getVisitedNodes() >= maxVisitedNodesForRequest) {
+            checkSolutionsFound(solutions, router.getVisitedNodes());
+            // keep the earliest departures if the solutions are limited
+            Collections.reverse(solutions);
+            return solutions.subList(0, Math.min(limitSolutions, solutions.size()));
+        }
+
+        private void checkSolutionsFound(List<Label> solutions, int routerVisitedNodes) {
+            if (solutions.isEmpty() && routerVisitedNodes >= maxVisitedNodesForRequest) {
                 throw new IllegalArgumentException("No path found - maximum number of nodes exceeded: " + maxVisitedNodesForRequest);
             }
-            response.getHints().put("visited_nodes.sum", visitedNodes);
-            response.getHints().put("visited_nodes.average", visitedNodes);
-            if (discoveredSolutions.isEmpty()) {
-                response.addError(new RuntimeException("No route found"));
-            }
-            return paths;
         }
 
         private List<Label.Transition> pathFromStation(GraphExplorer accessEgressGraphExplorer, Label l) {
@@ -301,14 +386,17 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
     }
 
     public GraphHopperGtfs(PtFlagEncoder flagEncoder, TranslationMap translationMap, GraphHopperStorage graphHopperStorage, LocationIndex locationIndex, GtfsStorage gtfsStorage, RealtimeFeed realtimeFeed) {
+        this(flagEncoder, translationMap, graphHopperStorage, locationIndex, gtfsStorage, () -> realtimeFeed);
+    }
+
+    private GraphHopperGtfs(PtFlagEncoder flagEncoder, TranslationMap translationMap, GraphHopperStorage graphHopperStorage, LocationIndex locationIndex, GtfsStorage gtfsStorage, Supplier<RealtimeFeed> realtimeFeeds) {
         this.flagEncoder = flagEncoder;
         this.accessEgressWeighting = new FastestWeighting(graphHopperStorage.getEncodingManager().getEncoder("foot"));
         this.translationMap = translationMap;
         this.graphHopperStorage = graphHopperStorage;
         this.locationIndex = locationIndex;
         this.gtfsStorage = gtfsStorage;
-        this.realtimeFeed = realtimeFeed;
-        this.tripFromLabel = new TripFromLabel(this.gtfsStorage, this.realtimeFeed);
+        this.realtimeFeeds = realtimeFeeds;
     }
 
     public static GtfsStorage createGtfsStorage() {
@@ -417,7 +505,7 @@ public final class GraphHopperGtfs implements GraphHopperAPI {
 
                     QueryGraph queryGraph = new QueryGraph(graphHopperStorage);
                     queryGraph.lookup(Collections.emptyList());
-                    final GraphExplorer graphExplorer = new GraphExplorer(queryGraph, accessEgressWeighting, flagEncoder, gtfsStorage, realtimeFeed, false, Collections.emptyList(), true, 5.0);
+                    final GraphExplorer graphExplorer = new GraphExplorer(queryGraph, accessEgressWeighting, flagEncoder, gtfsStorage, realtimeFeeds.get(), false, Collections.emptyList(), true, 5.0);
 
                     MultiCriteriaLabelSetting router = new MultiCriteriaLabelSetting(graphExplorer, flagEncoder, false, Double.MAX_VALUE, false, false, false, Integer.MAX_VALUE, new ArrayList<>());
                     final Stream<Label> labels = router.calcLabels(fromnode, tonode, Instant.ofEpochMilli(0), 0);
@@ -54,6 +54,7 @@ import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
@@ -259,8 +260,16 @@ class GtfsReader {
         insertTransfers();
     }
 
+    /**
+     * Connects the timelines of the trips added since the last call to the static graph.
+     */
     void wireUpAdditionalDepartures(ZoneId zoneId) {
-        for (Stop stop : feed.stops.values()) {
+        Set<String> stopIds = new HashSet<>(departureTimelineNodes.keySet());
+        stopIds.addAll(arrivalTimelineNodes.keySet());
+        for (String stopId : stopIds) {
+            Stop stop = feed.stops.get(stopId);
+            if (stop == null)
+                continue;
             int stationNode = gtfsStorage.getStationNodes().get(stop.stop_id);
             final Map<String, List<TimelineNodeIdWithTripId>> departureTimelineNodesByRoute = departureTimelineNodes.get(stop.stop_id).stream().collect(Collectors.groupingBy(t -> t.routeId));
             departureTimelineNodesByRoute.forEach((routeId, timelineNodesWithTripId) -> {
@@ -347,6 +356,8 @@ class GtfsReader {
                 });
             });
         }
+        departureTimelineNodes.clear();
+        arrivalTimelineNodes.clear();
     }
 
     private Stream<Fun.Tuple2<Integer, Integer>> findDepartureTimelineNodesForRoute(int stationNode, String routeId) {
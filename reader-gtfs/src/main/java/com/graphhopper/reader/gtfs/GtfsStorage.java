@@ -23,6 +23,7 @@ import com.conveyal.gtfs.model.Fare;
 import com.conveyal.gtfs.model.FareRule;
 import com.google.transit.realtime.GtfsRealtime;
 import com.graphhopper.gtfs.fare.FixedFareAttributeLoader;
+import com.graphhopper.storage.DAType;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphExtension;
@@ -86,6 +87,7 @@ public class GtfsStorage implements GraphExtension, GtfsStorageI {
 	}
 
 	private boolean isClosed = false;
+	private boolean isReadOnly = false;
 	private Directory dir;
 	private Set<String> gtfsFeedIds;
 	private Map<String, GTFSFeed> gtfsFeeds = new HashMap<>();
@@ -93,10 +95,11 @@ public class GtfsStorage implements GraphExtension, GtfsStorageI {
 	private HTreeMap<Validity, Integer> operatingDayPatterns;
 	private Bind.MapWithModificationListener<FeedIdWithTimezone, Integer> timeZones;
 	private Map<Integer, FeedIdWithTimezone> readableTimeZones;
-	private Map<Integer, byte[]> tripDescriptors;
-	private Map<Integer, Integer> stopSequences;
+	// the tables by edge id are read for every edge expansion, they are flat DataAccess tables instead of MapDB maps
+	private FlatIntKeyMap<byte[]> tripDescriptors;
+	private FlatIntIntMap stopSequences;
 
-	private Map<Integer, String> routes;
+	private FlatIntKeyMap<String> routes;
 
 	private Map<String, Fare> fares;
 	private Map<String, int[]> boardEdgesForTrip;
@@ -147,6 +150,13 @@ public class GtfsStorage implements GraphExtension, GtfsStorageI {
 
 	@Override
 	public boolean loadExisting() {
+		// the tables are only written during the import, so map them read-only instead of reading them into memory
+		isReadOnly = true;
+		initFlatTables(DAType.MMAP_RO);
+		// e.g. a graph imported before the flat tables existed
+		if (!tripDescriptors.loadExisting() || !stopSequences.loadExisting() || !routes.loadExisting())
+			return false;
+
 		this.data = DBMaker.newFileDB(new File(dir.getLocation() + "/transit_schedule")).transactionDisable().mmapFileEnable().readOnly().make();
 		init();
 		for (String gtfsFeedId : this.gtfsFeedIds) {
@@ -171,9 +181,20 @@ public class GtfsStorage implements GraphExtension, GtfsStorageI {
 		}
 		this.data = DBMaker.newFileDB(file).transactionDisable().mmapFileEnable().asyncWriteEnable().make();
 		init();
+		initFlatTables(dir.getDefaultType());
+		tripDescriptors.create(byteCount);
+		stopSequences.create(byteCount);
+		routes.create(byteCount);
 		return this;
 	}
 
+	private void initFlatTables(DAType type) {
+		this.tripDescriptors = FlatIntKeyMap.forBytes(dir.find("pt_trip_descriptor_offsets", type),
+				dir.find("pt_trip_descriptors", type));
+		this.stopSequences = new FlatIntIntMap(dir.find("pt_stop_sequences", type));
+		this.routes = FlatIntKeyMap.forStrings(dir.find("pt_route_offsets", type), dir.find("pt_routes", type));
+	}
+
     private void init() {
 		this.gtfsFeedIds = data.getHashSet("gtfsFeeds");
 		this.operatingDayPatterns = data.getHashMap("validities");
@@ -184,13 +205,10 @@ public class GtfsStorage implements GraphExtension, GtfsStorageI {
 		}
 		Bind.mapInverse(this.timeZones, readableTimeZones);
 		this.readableTimeZones = Collections.unmodifiableMap(readableTimeZones);
-		this.tripDescriptors = data.getTreeMap("tripDescriptors");
-		this.stopSequences = data.getTreeMap("stopSequences");
 		this.fares = data.getTreeMap("fares");
 		this.boardEdgesForTrip = data.getHashMap("boardEdgesForTrip");
 		this.leaveEdgesForTrip = data.getHashMap("leaveEdgesForTrip");
 		this.stationNodes = data.getHashMap("stationNodes");
-		this.routes = data.getHashMap("routes");
 	}
 
 	void loadGtfsFromFile(String id, ZipFile zip) {
@@ -219,13 +237,23 @@ public class GtfsStorage implements GraphExtension, GtfsStorageI {
 
 	@Override
 	public void flush() {
+		if (isReadOnly)
+			return;
+
+		tripDescriptors.flush();
+		stopSequences.flush();
+		routes.flush();
 	}
 
 	@Override
 	public void close() {
 		if (!isClosed) {
 			isClosed = true;
-			data.close();
+			if (data != null)
+				data.close();
+			tripDescriptors.close();
+			stopSequences.close();
+			routes.close();
 			for (GTFSFeed feed : gtfsFeeds.values()) {
 				feed.close();
 			}
@@ -239,7 +267,7 @@ public class GtfsStorage implements GraphExtension, GtfsStorageI {
 
 	@Override
 	public long getCapacity() {
-		return 0;
+		return tripDescriptors.getCapacity() + stopSequences.getCapacity() + routes.getCapacity();
 	}
 
     @Override
@@ -0,0 +1,549 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.reader.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntLongHashMap;
+import com.carrotsearch.hppc.IntObjectHashMap;
+import com.conveyal.gtfs.GTFSFeed;
+import com.conveyal.gtfs.model.Fare;
+import com.conveyal.gtfs.model.Frequency;
+import com.conveyal.gtfs.model.StopTime;
+import com.conveyal.gtfs.model.Trip;
+import com.google.transit.realtime.GtfsRealtime;
+import com.graphhopper.routing.VirtualEdgeIteratorState;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.BBox;
+import org.mapdb.Fun;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.SKIPPED;
+import static java.time.temporal.ChronoUnit.DAYS;
+
+/**
+ * Keeps the overlay of the realtime updates over the static timetable and applies new GTFS-realtime feed
+ * messages incrementally. The overlay consists of the edges, the blocked edges and the delays of every feed
+ * entity. When a message arrives only the entities that were added, changed or deleted since the last message
+ * are processed, the part of the overlay of all other entities is kept.
+ * <p>
+ * After every message a new immutable RealtimeFeed is published, which is what the queries use. A query that
+ * takes the snapshot once never sees a partly applied message. A message with incrementality FULL_DATASET
+ * replaces all entities of the feed, a DIFFERENTIAL message only the entities it contains.
+ * <p>
+ * The node and edge ids of replaced entities are not reused. When most of the ids are garbage the overlay is
+ * built again from the current entities.
+ */
+public class IncrementalRealtimeFeed {
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalRealtimeFeed.class);
+    // rebuild the overlay if there are more unused edge ids than this plus twice the number of used ones
+    private static final int MAX_UNUSED_EDGES = 100_000;
+    private final GraphHopperStorage graphHopperStorage;
+    private final GtfsStorage staticGtfs;
+    private final PtFlagEncoder encoder;
+    private final int staticNodes;
+    private final int staticEdges;
+    private final Map<GtfsStorage.Validity, Integer> operatingDayPatterns;
+    private final Map<GtfsStorage.FeedIdWithTimezone, Integer> writableTimeZones;
+    // the current entities of every feed by their id
+    private final Map<String, Map<String, EntityOverlay>> entities = new LinkedHashMap<>();
+    private final Map<String, GtfsRealtime.FeedHeader> headers = new HashMap<>();
+    private int nextNode;
+    private int nextEdge;
+    private int usedEdges;
+    private volatile RealtimeFeed snapshot;
+
+    public IncrementalRealtimeFeed(GraphHopperStorage graphHopperStorage, GtfsStorage staticGtfs, PtFlagEncoder encoder) {
+        this.graphHopperStorage = graphHopperStorage;
+        this.staticGtfs = staticGtfs;
+        this.encoder = encoder;
+        this.staticNodes = graphHopperStorage.getNodes();
+        this.staticEdges = graphHopperStorage.getAllEdges().length();
+        this.operatingDayPatterns = new HashMap<>(staticGtfs.getOperatingDayPatterns());
+        this.writableTimeZones = new HashMap<>(staticGtfs.getWritableTimeZones());
+        this.nextNode = staticNodes;
+        this.nextEdge = staticEdges;
+        this.snapshot = RealtimeFeed.empty(staticGtfs);
+    }
+
+    /**
+     * @return the latest published state, which does not change anymore
+     */
+    public RealtimeFeed getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Applies the message to the overlay and publishes a new snapshot.
+     *
+     * @param feedKey the id of the static GTFS feed the message belongs to, e.g. gtfs_0
+     * @return the new snapshot
+     */
+    public synchronized RealtimeFeed apply(String feedKey, GtfsRealtime.FeedMessage feedMessage) {
+        if (!staticGtfs.getGtfsFeeds().containsKey(feedKey))
+            throw new IllegalArgumentException("Unknown GTFS feed " + feedKey);
+
+        Map<String, EntityOverlay> current = entities.getOrDefault(feedKey, Collections.emptyMap());
+        boolean fullDataset = feedMessage.getHeader().getIncrementality() == GtfsRealtime.FeedHeader.Incrementality.FULL_DATASET;
+        Map<String, EntityOverlay> next = fullDataset ? new LinkedHashMap<>() : new LinkedHashMap<>(current);
+        List<EntityOverlay> changed = new ArrayList<>();
+        for (GtfsRealtime.FeedEntity entity : feedMessage.getEntityList()) {
+            if (entity.getIsDeleted()) {
+                next.remove(entity.getId());
+                continue;
+            }
+            EntityOverlay previous = current.get(entity.getId());
+            if (previous != null && previous.entity.equals(entity)) {
+                next.put(entity.getId(), previous);
+            } else {
+                EntityOverlay overlay = new EntityOverlay(entity, feedMessage.getHeader().getTimestamp());
+                next.put(entity.getId(), overlay);
+                changed.add(overlay);
+            }
+        }
+        entities.put(feedKey, next);
+        headers.put(feedKey, feedMessage.getHeader());
+        logger.debug("Applying {} changed of {} entities of {}", changed.size(), next.size(), feedKey);
+
+        addToOverlay(feedKey, changed);
+        usedEdges = 0;
+        for (Map<String, EntityOverlay> overlays : entities.values()) {
+            for (EntityOverlay overlay : overlays.values()) {
+                usedEdges += overlay.edges.size();
+            }
+        }
+        if (nextEdge - staticEdges > 2 * usedEdges + MAX_UNUSED_EDGES)
+            rebuild();
+
+        snapshot = createSnapshot();
+        return snapshot;
+    }
+
+    private void rebuild() {
+        logger.info("Rebuilding realtime overlay, {} of {} edge ids are used", usedEdges, nextEdge - staticEdges);
+        nextNode = staticNodes;
+        nextEdge = staticEdges;
+        for (Map.Entry<String, Map<String, EntityOverlay>> feedEntities : entities.entrySet()) {
+            List<EntityOverlay> overlays = new ArrayList<>();
+            for (Map.Entry<String, EntityOverlay> entry : feedEntities.getValue().entrySet()) {
+                EntityOverlay overlay = new EntityOverlay(entry.getValue().entity, entry.getValue().timestamp);
+                entry.setValue(overlay);
+                overlays.add(overlay);
+            }
+            addToOverlay(feedEntities.getKey(), overlays);
+        }
+    }
+
+    private void addToOverlay(String feedKey, Collection<EntityOverlay> overlays) {
+        if (overlays.isEmpty())
+            return;
+
+        GTFSFeed feed = staticGtfs.getGtfsFeeds().get(feedKey);
+        ZoneId timezone = ZoneId.of(feed.agency.values().stream().findFirst().get().agency_timezone);
+        OverlayGraph overlayGraph = new OverlayGraph();
+        Map<Integer, byte[]> tripDescriptors = new HashMap<>();
+        Map<Integer, Integer> stopSequences = new HashMap<>();
+        Map<String, int[]> boardEdgesForTrip = new HashMap<>();
+        Map<String, int[]> alightEdgesForTrip = new HashMap<>();
+        GtfsStorageI gtfsStorage = new GtfsStorageI() {
+            @Override
+            public Map<String, Fare> getFares() {
+                return null;
+            }
+
+            @Override
+            public Map<GtfsStorage.Validity, Integer> getOperatingDayPatterns() {
+                return operatingDayPatterns;
+            }
+
+            @Override
+            public Map<GtfsStorage.FeedIdWithTimezone, Integer> getWritableTimeZones() {
+                return writableTimeZones;
+            }
+
+            @Override
+            public Map<Integer, byte[]> getTripDescriptors() {
+                return tripDescriptors;
+            }
+
+            @Override
+            public Map<Integer, Integer> getStopSequences() {
+                return stopSequences;
+            }
+
+            @Override
+            public Map<String, int[]> getBoardEdgesForTrip() {
+                return boardEdgesForTrip;
+            }
+
+            @Override
+            public Map<String, int[]> getAlightEdgesForTrip() {
+                return alightEdgesForTrip;
+            }
+
+            @Override
+            public Map<String, GTFSFeed> getGtfsFeeds() {
+                return Collections.singletonMap(feedKey, feed);
+            }
+
+            @Override
+            public Map<String, Transfers> getTransfers() {
+                return staticGtfs.getTransfers();
+            }
+
+            @Override
+            public Map<String, Integer> getStationNodes() {
+                return staticGtfs.getStationNodes();
+            }
+
+            @Override
+            public Map<Integer, String> getRoutes() {
+                return staticGtfs.getRoutes();
+            }
+        };
+        final GtfsReader gtfsReader = new GtfsReader(feedKey, overlayGraph, gtfsStorage, encoder, null);
+        LocalDate startDate = feed.calculateStats().getStartDate();
+        for (EntityOverlay overlay : overlays) {
+            if (!overlay.entity.hasTripUpdate())
+                continue;
+
+            GtfsRealtime.TripUpdate tripUpdate = overlay.entity.getTripUpdate();
+            LocalDate serviceDay = getServiceDay(tripUpdate.getTrip(), overlay.timestamp, timezone);
+            if (serviceDay.isBefore(startDate)) {
+                logger.warn("Service day {} is before the start of the feed: {}", serviceDay, tripUpdate.getTrip());
+                continue;
+            }
+            overlayGraph.owner = overlay;
+            BitSet validOnDay = new BitSet();
+            validOnDay.set((int) DAYS.between(startDate, serviceDay));
+            GtfsRealtime.TripDescriptor.ScheduleRelationship scheduleRelationship = tripUpdate.getTrip().getScheduleRelationship();
+            if (scheduleRelationship == GtfsRealtime.TripDescriptor.ScheduleRelationship.SCHEDULED) {
+                addScheduledTripUpdate(feed, timezone, gtfsReader, validOnDay, tripUpdate, overlay);
+            } else if (scheduleRelationship == GtfsRealtime.TripDescriptor.ScheduleRelationship.ADDED) {
+                addAddedTrip(timezone, gtfsReader, serviceDay, validOnDay, tripUpdate);
+            }
+            // wire up per entity, so that the stop nodes created for its trips are not shared with other entities
+            gtfsReader.wireUpAdditionalDepartures(timezone);
+        }
+        overlayGraph.owner = null;
+
+        for (Map.Entry<Integer, byte[]> entry : tripDescriptors.entrySet()) {
+            overlayGraph.getEdgeOwner(entry.getKey()).tripDescriptors.put(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<Integer, Integer> entry : stopSequences.entrySet()) {
+            overlayGraph.getEdgeOwner(entry.getKey()).stopSequences.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void addScheduledTripUpdate(GTFSFeed feed, ZoneId timezone, GtfsReader gtfsReader, BitSet validOnDay, GtfsRealtime.TripUpdate tripUpdate, EntityOverlay overlay) {
+        Collection<Frequency> frequencies = feed.getFrequencies(tripUpdate.getTrip().getTripId());
+        int timeOffset = (tripUpdate.getTrip().hasStartTime() && !frequencies.isEmpty()) ? LocalTime.parse(tripUpdate.getTrip().getStartTime()).toSecondOfDay() : 0;
+        String key = GtfsStorage.tripKey(tripUpdate.getTrip(), !frequencies.isEmpty());
+        final int[] boardEdges = staticGtfs.getBoardEdgesForTrip().get(key);
+        final int[] leaveEdges = staticGtfs.getAlightEdgesForTrip().get(key);
+        if (boardEdges == null || leaveEdges == null) {
+            logger.warn("Trip not found: {}", tripUpdate.getTrip());
+            return;
+        }
+        tripUpdate.getStopTimeUpdateList().stream()
+                .filter(stopTimeUpdate -> stopTimeUpdate.getScheduleRelationship() == SKIPPED)
+                .mapToInt(GtfsRealtime.TripUpdate.StopTimeUpdate::getStopSequence)
+                .forEach(skippedStopSequenceNumber -> {
+                    overlay.blockedEdges.add(boardEdges[skippedStopSequenceNumber]);
+                    overlay.blockedEdges.add(leaveEdges[skippedStopSequenceNumber]);
+                });
+        GtfsReader.TripWithStopTimes tripWithStopTimes = RealtimeFeed.toTripWithStopTimes(feed, tripUpdate);
+        tripWithStopTimes.stopTimes.forEach(stopTime -> {
+            if (stopTime.stop_sequence > leaveEdges.length - 1) {
+                logger.warn("Stop sequence number too high {} vs {}", stopTime.stop_sequence, leaveEdges.length);
+                return;
+            }
+            final StopTime originalStopTime = feed.stop_times.get(new Fun.Tuple2(tripUpdate.getTrip().getTripId(), stopTime.stop_sequence));
+            int arrivalDelay = stopTime.arrival_time - originalStopTime.arrival_time;
+            overlay.delaysForAlightEdges.put(leaveEdges[stopTime.stop_sequence], arrivalDelay * 1000);
+            int departureDelay = stopTime.departure_time - originalStopTime.departure_time;
+            if (departureDelay > 0) {
+                int boardEdge = boardEdges[stopTime.stop_sequence];
+                int departureNode = graphHopperStorage.getEdgeIteratorState(boardEdge, Integer.MIN_VALUE).getAdjNode();
+                int delayedBoardEdge = gtfsReader.addDelayedBoardEdge(timezone, tripUpdate.getTrip(), stopTime.stop_sequence, stopTime.departure_time + timeOffset, departureNode, validOnDay);
+                overlay.delaysForBoardEdges.put(delayedBoardEdge, departureDelay * 1000);
+            }
+        });
+    }
+
+    /**
+     * The service day of the trip is given by its start date. If it is missing the trip is assumed to run on the
+     * day of the feed timestamp, which is the day the realtime producer refers to in the common case of a trip
+     * that is currently running. Times of an overnight trip are still correct because they are counted from the
+     * start of the service day and can exceed 24 hours.
+     */
+    private static LocalDate getServiceDay(GtfsRealtime.TripDescriptor trip, long timestamp, ZoneId timezone) {
+        if (trip.hasStartDate())
+            return LocalDate.parse(trip.getStartDate(), DateTimeFormatter.BASIC_ISO_DATE);
+        return Instant.ofEpochSecond(timestamp).atZone(timezone).toLocalDate();
+    }
+
+    private void addAddedTrip(ZoneId timezone, GtfsReader gtfsReader, LocalDate serviceDay, BitSet validOnDay, GtfsRealtime.TripUpdate tripUpdate) {
+        // GTFS counts the times from noon minus 12 hours, which is not midnight on days with a daylight saving change
+        final Instant serviceDayStart = serviceDay.atTime(LocalTime.NOON).atZone(timezone).minusHours(12).toInstant();
+        Trip trip = new Trip();
+        trip.trip_id = tripUpdate.getTrip().getTripId();
+        trip.route_id = tripUpdate.getTrip().getRouteId();
+        final List<StopTime> stopTimes = tripUpdate.getStopTimeUpdateList().stream()
+                .map(stopTimeUpdate -> {
+                    final StopTime stopTime = new StopTime();
+                    stopTime.stop_sequence = stopTimeUpdate.getStopSequence();
+                    stopTime.stop_id = stopTimeUpdate.getStopId();
+                    stopTime.trip_id = trip.trip_id;
+                    // a stop can specify only one of both events, e.g. the first stop only the departure
+                    final GtfsRealtime.TripUpdate.StopTimeEvent arrival = stopTimeUpdate.hasArrival() ? stopTimeUpdate.getArrival() : stopTimeUpdate.getDeparture();
+                    final GtfsRealtime.TripUpdate.StopTimeEvent departure = stopTimeUpdate.hasDeparture() ? stopTimeUpdate.getDeparture() : stopTimeUpdate.getArrival();
+                    stopTime.arrival_time = (int) Duration.between(serviceDayStart, Instant.ofEpochSecond(arrival.getTime())).getSeconds();
+                    stopTime.departure_time = (int) Duration.between(serviceDayStart, Instant.ofEpochSecond(departure.getTime())).getSeconds();
+                    return stopTime;
+                })
+                .collect(Collectors.toList());
+        GtfsReader.TripWithStopTimes tripWithStopTimes = new GtfsReader.TripWithStopTimes(trip, stopTimes, validOnDay, Collections.emptySet(), Collections.emptySet());
+        gtfsReader.addTrip(timezone, 0, new ArrayList<>(), tripWithStopTimes, tripUpdate.getTrip(), false);
+    }
+
+    private RealtimeFeed createSnapshot() {
+        IntHashSet blockedEdges = new IntHashSet();
+        IntLongHashMap delaysForBoardEdges = new IntLongHashMap();
+        IntLongHashMap delaysForAlightEdges = new IntLongHashMap();
+        List<VirtualEdgeIteratorState> additionalEdges = new ArrayList<>(usedEdges);
+        Map<Integer, byte[]> tripDescriptors = new HashMap<>();
+        Map<Integer, Integer> stopSequences = new HashMap<>();
+        Map<String, GtfsRealtime.FeedMessage> feedMessages = new HashMap<>();
+        for (Map.Entry<String, Map<String, EntityOverlay>> feedEntities : entities.entrySet()) {
+            GtfsRealtime.FeedMessage.Builder feedMessage = GtfsRealtime.FeedMessage.newBuilder()
+                    .setHeader(GtfsRealtime.FeedHeader.newBuilder(headers.get(feedEntities.getKey()))
+                            .setIncrementality(GtfsRealtime.FeedHeader.Incrementality.FULL_DATASET));
+            for (EntityOverlay overlay : feedEntities.getValue().values()) {
+                feedMessage.addEntity(overlay.entity);
+                blockedEdges.addAll(overlay.blockedEdges);
+                delaysForBoardEdges.putAll(overlay.delaysForBoardEdges);
+                delaysForAlightEdges.putAll(overlay.delaysForAlightEdges);
+                additionalEdges.addAll(overlay.edges);
+                tripDescriptors.putAll(overlay.tripDescriptors);
+                stopSequences.putAll(overlay.stopSequences);
+            }
+            feedMessages.put(feedEntities.getKey(), feedMessage.build());
+        }
+        return new RealtimeFeed(staticGtfs, Collections.unmodifiableMap(feedMessages), blockedEdges, delaysForBoardEdges,
+                delaysForAlightEdges, Collections.unmodifiableList(additionalEdges), tripDescriptors, stopSequences,
+                operatingDayPatterns, writableTimeZones);
+    }
+
+    /**
+     * The part of the overlay that belongs to one feed entity. It does not change after it was added to the
+     * overlay, so it can be shared by all snapshots.
+     */
+    private static final class EntityOverlay {
+        final GtfsRealtime.FeedEntity entity;
+        final long timestamp;
+        final IntArrayList blockedEdges = new IntArrayList();
+        final IntLongHashMap delaysForBoardEdges = new IntLongHashMap();
+        final IntLongHashMap delaysForAlightEdges = new IntLongHashMap();
+        final List<VirtualEdgeIteratorState> edges = new ArrayList<>();
+        final Map<Integer, byte[]> tripDescriptors = new HashMap<>();
+        final Map<Integer, Integer> stopSequences = new HashMap<>();
+
+        EntityOverlay(GtfsRealtime.FeedEntity entity, long timestamp) {
+            this.entity = entity;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * The graph the GtfsReader adds the realtime nodes and edges to. The new edges are assigned to the entity
+     * that is currently processed, including the edges that wire its trips up with the static timelines.
+     */
+    private final class OverlayGraph implements Graph {
+        private final IntObjectHashMap<EntityOverlay> edgeOwners = new IntObjectHashMap<>();
+        private EntityOverlay owner;
+        private final NodeAccess nodeAccess = new NodeAccess() {
+            @Override
+            public int getAdditionalNodeField(int nodeId) {
+                return 0;
+            }
+
+            @Override
+            public void setAdditionalNodeField(int nodeId, int additionalValue) {
+            }
+
+            @Override
+            public boolean is3D() {
+                return false;
+            }
+
+            @Override
+            public int getDimension() {
+                return 0;
+            }
+
+            @Override
+            public void ensureNode(int nodeId) {
+            }
+
+            @Override
+            public void setNode(int nodeId, double lat, double lon) {
+            }
+
+            @Override
+            public void setNode(int nodeId, double lat, double lon, double ele) {
+            }
+
+            @Override
+            public double getLatitude(int nodeId) {
+                return 0;
+            }
+
+            @Override
+            public double getLat(int nodeId) {
+                return 0;
+            }
+
+            @Override
+            public double getLongitude(int nodeId) {
+                return 0;
+            }
+
+            @Override
+            public double getLon(int nodeId) {
+                return 0;
+            }
+
+            @Override
+            public double getElevation(int nodeId) {
+                return 0;
+            }
+
+            @Override
+            public double getEle(int nodeId) {
+                return 0;
+            }
+        };
+
+        EntityOverlay getEdgeOwner(int edge) {
+            EntityOverlay edgeOwner = edgeOwners.get(edge);
+            if (edgeOwner == null)
+                throw new IllegalStateException("Edge " + edge + " was not created by the realtime overlay");
+            return edgeOwner;
+        }
+
+        @Override
+        public Graph getBaseGraph() {
+            return graphHopperStorage;
+        }
+
+        @Override
+        public int getNodes() {
+            return nextNode;
+        }
+
+        @Override
+        public NodeAccess getNodeAccess() {
+            return nodeAccess;
+        }
+
+        @Override
+        public BBox getBounds() {
+            return null;
+        }
+
+        @Override
+        public EdgeIteratorState edge(int a, int b) {
+            EntityOverlay edgeOwner = owner;
+            if (edgeOwner == null)
+                throw new IllegalStateException("Edge " + a + "-" + b + " is not added for a feed entity");
+            nextNode = Math.max(nextNode, Math.max(a, b) + 1);
+            int edge = nextEdge++;
+            final VirtualEdgeIteratorState newEdge = new VirtualEdgeIteratorState(-1,
+                    edge, a, b, 0.0, 0, "", new PointList());
+            final VirtualEdgeIteratorState reverseNewEdge = new VirtualEdgeIteratorState(-1,
+                    edge, b, a, 0.0, 0, "", new PointList());
+            newEdge.setReverseEdge(reverseNewEdge);
+            reverseNewEdge.setReverseEdge(newEdge);
+            edgeOwner.edges.add(newEdge);
+            edgeOwners.put(edge, edgeOwner);
+            return newEdge;
+        }
+
+        @Override
+        public EdgeIteratorState edge(int a, int b, double distance, boolean bothDirections) {
+            return null;
+        }
+
+        @Override
+        public EdgeIteratorState getEdgeIteratorState(int edgeId, int adjNode) {
+            return null;
+        }
+
+        @Override
+        public AllEdgesIterator getAllEdges() {
+            return null;
+        }
+
+        @Override
+        public EdgeExplorer createEdgeExplorer(EdgeFilter filter) {
+            return null;
+        }
+
+        @Override
+        public EdgeExplorer createEdgeExplorer() {
+            return graphHopperStorage.createEdgeExplorer();
+        }
+
+        @Override
+        public Graph copyTo(Graph g) {
+            return null;
+        }
+
+        @Override
+        public GraphExtension getExtension() {
+            throw new RuntimeException();
+        }
+    }
+}
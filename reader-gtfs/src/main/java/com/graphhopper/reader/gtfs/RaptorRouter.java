@@ -0,0 +1,425 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.reader.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.apache.commons.collections.IntDoubleBinaryHeap;
+import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Implements a round based public transit router in the spirit of RAPTOR (Delling, Pajor, Werneck: Round-Based
+ * Public Transit Routing). Round k finds the earliest arrival at every node with k boardings, so every round
+ * that improves the arrival at the destination adds a solution that is Pareto optimal with respect to arrival
+ * time and number of transfers.
+ * <p>
+ * Instead of a separate timetable of routes and trips the rounds run over the time-expanded graph of the
+ * GtfsStorage, where a trip is a chain of HOP and DWELL edges entered by a BOARD edge. An edge that counts as a
+ * transfer is the only way into the next round. Every node keeps only its earliest Label in an array and a
+ * round is a search with a primitive binary heap, so there are no dominance tests and much fewer labels than
+ * with the MultiCriteriaLabelSetting. The node indexed arrays are kept per thread and reused for the next
+ * request, see NodeLabels.
+ * <p>
+ * A range query over a departure window runs the rounds once for every departure in the window, from the
+ * latest to the earliest, like rRAPTOR. The labels of the later departures are kept, because waiting at the
+ * start makes them reachable from the earlier departures as well, so every run only explores the connections
+ * that are new for its departure. If the number of transfers matters the labels are kept per round, where a
+ * round only stores the nodes that it reaches earlier than the rounds before.
+ * <p>
+ * Only departure time queries are supported. The egress is taken from a reverse search from the destination.
+ * Blocked edges and connections missed because of a realtime delay are not expanded instead of being returned
+ * as impossible solutions.
+ */
+final class RaptorRouter {
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final ThreadLocal<NodeLabels> NODE_LABELS = ThreadLocal.withInitial(NodeLabels::new);
+
+    private final GraphExplorer explorer;
+    private final PtFlagEncoder flagEncoder;
+    private final double maxWalkDistancePerLeg;
+    private final int maxVisitedNodes;
+    private final IntDoubleBinaryHeap heap = new IntDoubleBinaryHeap(1000);
+    private final NodeLabels nodeLabels;
+    // the earliest labels by round over all departures searched so far, starting with round 1. The labels of
+    // round 0 are in nodeLabels and the later rounds only exist if the labels are kept per round. A round only
+    // contains the nodes it reaches earlier than the rounds before, see getLabel.
+    private final List<GHIntObjectHashMap<Label>> roundLabels = new ArrayList<>();
+    private long[] bestArrivalTimes = new long[0];
+    private boolean labelsPerRound;
+    // the nodes that have a label after a transfer, they start the next round
+    private final IntArrayList transferNodes = new IntArrayList();
+    private Map<Integer, Label> egressLabels;
+    private long egressStartTime;
+    private int blockedRouteTypes;
+    private long startTime;
+    private int round;
+    private Label roundSolution;
+    private int visitedNodes;
+
+    RaptorRouter(GraphExplorer explorer, PtFlagEncoder flagEncoder, double maxWalkDistancePerLeg, int maxVisitedNodes) {
+        this.explorer = explorer;
+        this.flagEncoder = flagEncoder;
+        this.maxWalkDistancePerLeg = maxWalkDistancePerLeg;
+        this.maxVisitedNodes = maxVisitedNodes;
+        nodeLabels = NODE_LABELS.get().reset(explorer.getGraph().getNodes());
+    }
+
+    /**
+     * @param egressLabels the labels of the reverse search from the destination by the node where the egress
+     *                     starts, the reverse search has to start at startTime
+     * @return the label where the egress starts for every round that improved the arrival at the destination, in
+     * the order of increasing number of transfers and decreasing arrival time
+     */
+    List<Label> calcLabels(int from, Instant startTime, int blockedRouteTypes, Map<Integer, Label> egressLabels) {
+        init(startTime.toEpochMilli(), blockedRouteTypes, egressLabels, false);
+        return calcLabelsForDeparture(from, startTime.toEpochMilli());
+    }
+
+    /**
+     * Finds all journeys departing between earliestDepartureTime and latestDepartureTime that are Pareto optimal
+     * with respect to departure time, arrival time and, if mindTransfers is set, the number of transfers. A
+     * journey that only walks does not depend on the departure time and is returned once, for the earliest
+     * departure.
+     *
+     * @param egressLabels the labels of the reverse search from the destination by the node where the egress
+     *                     starts, the reverse search has to start at earliestDepartureTime
+     * @return the label where the egress starts for every solution, in the order of decreasing departure time
+     * and for the same departure in the order of increasing number of transfers
+     */
+    List<Label> calcRangeLabels(int from, Instant earliestDepartureTime, Instant latestDepartureTime, int blockedRouteTypes,
+                                Map<Integer, Label> egressLabels, boolean mindTransfers) {
+        if (latestDepartureTime.isBefore(earliestDepartureTime))
+            throw new IllegalArgumentException("The latest departure time " + latestDepartureTime + " is before the earliest departure time " + earliestDepartureTime);
+
+        init(earliestDepartureTime.toEpochMilli(), blockedRouteTypes, egressLabels, mindTransfers);
+        List<Label> solutions = new ArrayList<>();
+        Label walkSolution = null;
+        for (long departureTime : findDepartureTimes(from, earliestDepartureTime.toEpochMilli(), latestDepartureTime.toEpochMilli())) {
+            List<Label> departureSolutions = calcLabelsForDeparture(from, departureTime);
+            // walking improves the arrival with every earlier departure, so only the last run decides if it is useful
+            walkSolution = null;
+            if (!departureSolutions.isEmpty() && departureSolutions.get(0).nTransfers == 0)
+                walkSolution = departureSolutions.remove(0);
+            if (mindTransfers) {
+                solutions.addAll(departureSolutions);
+            } else if (!departureSolutions.isEmpty()) {
+                // the rounds share their labels, so only the last improvement is optimal for this departure
+                solutions.add(departureSolutions.get(departureSolutions.size() - 1));
+            }
+            if (visitedNodes >= maxVisitedNodes)
+                break;
+        }
+        if (walkSolution != null)
+            solutions.add(walkSolution);
+        return solutions;
+    }
+
+    private void init(long egressStartTime, int blockedRouteTypes, Map<Integer, Label> egressLabels, boolean labelsPerRound) {
+        this.egressStartTime = egressStartTime;
+        this.blockedRouteTypes = blockedRouteTypes;
+        this.egressLabels = egressLabels;
+        this.labelsPerRound = labelsPerRound;
+        roundLabels.clear();
+        bestArrivalTimes = new long[0];
+    }
+
+    private List<Label> calcLabelsForDeparture(int from, long departureTime) {
+        startTime = departureTime;
+        round = 0;
+        List<Label> solutions = new ArrayList<>();
+        transferNodes.elementsCount = 0;
+        addTransferLabel(new Label(startTime, EdgeIterator.NO_EDGE, from, 0, 0, 0.0, null, 0, 0, false, null));
+        while (!transferNodes.isEmpty() && visitedNodes < maxVisitedNodes) {
+            roundSolution = null;
+            // a transfer is only useful if the same node was not reached earlier in this or a previous round
+            for (int i = 0; i < transferNodes.size(); i++) {
+                int node = transferNodes.get(i);
+                Label label = nodeLabels.transferLabels[node];
+                nodeLabels.transferLabels[node] = null;
+                if (label.currentTime < getBestArrivalTime(round))
+                    improve(label, round);
+            }
+            transferNodes.elementsCount = 0;
+
+            while (!heap.isEmpty() && visitedNodes < maxVisitedNodes) {
+                int node = heap.poll_element();
+                Label label = getLabel(round, node);
+                if (label == nodeLabels.expandedLabels[node])
+                    continue;
+
+                nodeLabels.set(nodeLabels.expandedLabels, node, label);
+                visitedNodes++;
+                explore(label);
+            }
+            heap.clear();
+            if (roundSolution != null)
+                solutions.add(roundSolution);
+            round++;
+        }
+        // the search was stopped by the maximum number of visited nodes
+        for (int i = 0; i < transferNodes.size(); i++) {
+            nodeLabels.transferLabels[transferNodes.get(i)] = null;
+        }
+        return solutions;
+    }
+
+    /**
+     * The access is a walk, which takes the same time for every departure, so the departures from the
+     * reachable stations are collected by a single walk from the start.
+     *
+     * @return the departure times in decreasing order, the earliest departure time is always included
+     */
+    private NavigableSet<Long> findDepartureTimes(int from, long earliestDepartureTime, long latestDepartureTime) {
+        NavigableSet<Long> departureTimes = new TreeSet<>(Comparator.reverseOrder());
+        departureTimes.add(earliestDepartureTime);
+        Set<Integer> settledNodes = new HashSet<>();
+        PriorityQueue<Label> queue = new PriorityQueue<>(Comparator.comparingLong(l -> l.currentTime));
+        queue.add(new Label(earliestDepartureTime, EdgeIterator.NO_EDGE, from, 0, 0, 0.0, null, 0, 0, false, null));
+        while (!queue.isEmpty()) {
+            Label label = queue.poll();
+            if (!settledNodes.add(label.adjNode))
+                continue;
+
+            explorer.exploreEdgesAround(label).forEach(edge -> {
+                GtfsStorage.EdgeType edgeType = flagEncoder.getEdgeType(edge.getFlags());
+                if (edgeType == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK) {
+                    // leave the start as late as possible to catch this departure on every day of the window
+                    long departureTime = earliestDepartureTime + explorer.calcTravelTimeMillis(edge, label.currentTime);
+                    for (; departureTime <= latestDepartureTime; departureTime += DAY_MILLIS) {
+                        departureTimes.add(departureTime);
+                    }
+                } else if (edgeType == GtfsStorage.EdgeType.HIGHWAY || (edgeType == GtfsStorage.EdgeType.ENTER_PT
+                        && (blockedRouteTypes & (1 << flagEncoder.getValidityId(edge.getFlags()))) == 0)) {
+                    Label next = nextLabel(label, edge, edgeType);
+                    if (next != null)
+                        queue.add(next);
+                }
+            });
+        }
+        return departureTimes;
+    }
+
+    private void explore(Label label) {
+        explorer.exploreEdgesAround(label).forEach(edge -> {
+            GtfsStorage.EdgeType edgeType = flagEncoder.getEdgeType(edge.getFlags());
+            // the egress is part of the reverse search and after the first boarding we cannot walk anymore
+            if (edgeType == GtfsStorage.EdgeType.EXIT_PT)
+                return;
+            if (edgeType == GtfsStorage.EdgeType.ENTER_PT && (label.nTransfers > 0
+                    || (blockedRouteTypes & (1 << flagEncoder.getValidityId(edge.getFlags()))) != 0))
+                return;
+            if (explorer.isBlocked(edge) || edgeType == GtfsStorage.EdgeType.BOARD && label.residualDelay > 0)
+                return;
+
+            Label next = nextLabel(label, edge, edgeType);
+            if (next == null)
+                return;
+
+            if (next.nTransfers > label.nTransfers) {
+                if (next.currentTime < getBestArrivalTime(round + 1))
+                    addTransferLabel(next);
+            } else if (next.currentTime < getBestArrivalTime(round)) {
+                improve(next, round);
+            }
+        });
+    }
+
+    /**
+     * Calculates the label at the adjacent node like the forward search of the MultiCriteriaLabelSetting.
+     *
+     * @return the new label or null if it violates the maximum walk distance
+     */
+    private Label nextLabel(Label label, EdgeIteratorState edge, GtfsStorage.EdgeType edgeType) {
+        long travelTime = explorer.calcTravelTimeMillis(edge, label.currentTime);
+        long nextTime = label.currentTime + travelTime;
+        int nTransfers = label.nTransfers + explorer.calcNTransfers(edge);
+        Long firstPtDepartureTime = label.departureTime;
+        if ((edgeType == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK || edgeType == GtfsStorage.EdgeType.WAIT)
+                && label.nTransfers == 0) {
+            firstPtDepartureTime = nextTime - label.walkTime;
+        }
+        double walkDistanceOnCurrentLeg = edgeType == GtfsStorage.EdgeType.BOARD ? 0 : label.walkDistanceOnCurrentLeg + edge.getDistance();
+        if (walkDistanceOnCurrentLeg > maxWalkDistancePerLeg)
+            return null;
+
+        long walkTime = label.walkTime;
+        if (edgeType == GtfsStorage.EdgeType.HIGHWAY || edgeType == GtfsStorage.EdgeType.ENTER_PT)
+            walkTime += travelTime;
+
+        long residualDelay;
+        if (edgeType == GtfsStorage.EdgeType.WAIT || edgeType == GtfsStorage.EdgeType.TRANSFER) {
+            residualDelay = Math.max(0, label.residualDelay - travelTime);
+        } else if (edgeType == GtfsStorage.EdgeType.ALIGHT) {
+            residualDelay = label.residualDelay + explorer.getDelayFromAlightEdge(edge, label.currentTime);
+        } else if (edgeType == GtfsStorage.EdgeType.BOARD) {
+            residualDelay = -explorer.getDelayFromBoardEdge(edge, label.currentTime);
+        } else {
+            residualDelay = label.residualDelay;
+        }
+        if (edgeType == GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK && residualDelay > 0) {
+            // the vehicle arrives late
+            nextTime += residualDelay;
+            residualDelay = 0;
+        }
+        return new Label(nextTime, edge.getEdge(), edge.getAdjNode(), nTransfers, 0, walkDistanceOnCurrentLeg,
+                firstPtDepartureTime, walkTime, residualDelay, false, label);
+    }
+
+    private void improve(Label label, int round) {
+        int node = label.adjNode;
+        nodeLabels.ensureCapacity(node);
+        Label best = getLabel(round, node);
+        if (best != null && best.currentTime <= label.currentTime)
+            return;
+
+        int index = labelsPerRound ? round : 0;
+        if (index == 0) {
+            nodeLabels.set(nodeLabels.labels, node, label);
+        } else {
+            ensureRounds(index);
+            roundLabels.get(index - 1).put(node, label);
+        }
+        // with more rounds the arrival can only be earlier, so the later rounds of a previous departure fall back
+        // to this label if they reach the node later
+        for (int r = index; r < roundLabels.size(); r++) {
+            GHIntObjectHashMap<Label> laterRoundLabels = roundLabels.get(r);
+            Label laterLabel = laterRoundLabels.get(node);
+            if (laterLabel != null && laterLabel.currentTime > label.currentTime)
+                laterRoundLabels.remove(node);
+        }
+        heap.insert_(label.currentTime - startTime, node);
+        Label egressLabel = egressLabels.get(node);
+        if (egressLabel != null) {
+            long arrivalTime = label.currentTime + egressStartTime - egressLabel.currentTime;
+            if (arrivalTime < getBestArrivalTime(round)) {
+                ensureRounds(index);
+                for (int r = index; r < bestArrivalTimes.length; r++) {
+                    bestArrivalTimes[r] = Math.min(bestArrivalTimes[r], arrivalTime);
+                }
+                roundSolution = label;
+            }
+        }
+    }
+
+    private void addTransferLabel(Label label) {
+        int node = label.adjNode;
+        nodeLabels.ensureCapacity(node);
+        Label existing = nodeLabels.transferLabels[node];
+        if (existing == null) {
+            transferNodes.add(node);
+            nodeLabels.set(nodeLabels.transferLabels, node, label);
+        } else if (label.currentTime < existing.currentTime) {
+            nodeLabels.transferLabels[node] = label;
+        }
+    }
+
+    /**
+     * @return the earliest label of the node in the specified round, which is the label of the highest round up
+     * to it that contains the node, or null
+     */
+    private Label getLabel(int round, int node) {
+        int index = labelsPerRound ? round : 0;
+        for (int r = Math.min(index, roundLabels.size()); r > 0; r--) {
+            Label label = roundLabels.get(r - 1).get(node);
+            if (label != null)
+                return label;
+        }
+        return nodeLabels.labels[node];
+    }
+
+    private long getBestArrivalTime(int round) {
+        int index = labelsPerRound ? round : 0;
+        // a round that was never reached has the best arrival of the round before
+        return bestArrivalTimes.length == 0 ? Long.MAX_VALUE : bestArrivalTimes[Math.min(index, bestArrivalTimes.length - 1)];
+    }
+
+    /**
+     * A new round starts without labels and falls back to the labels of the rounds before, as every journey with
+     * fewer transfers is also a journey with at most the number of transfers of the new round.
+     */
+    private void ensureRounds(int index) {
+        while (roundLabels.size() < index) {
+            roundLabels.add(new GHIntObjectHashMap<>());
+        }
+        if (bestArrivalTimes.length <= index) {
+            int oldLength = bestArrivalTimes.length;
+            bestArrivalTimes = Arrays.copyOf(bestArrivalTimes, index + 1);
+            Arrays.fill(bestArrivalTimes, oldLength, bestArrivalTimes.length, oldLength == 0 ? Long.MAX_VALUE : bestArrivalTimes[oldLength - 1]);
+        }
+    }
+
+    int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    /**
+     * The node indexed labels of round 0, the expanded labels and the labels after a transfer. They are kept per
+     * thread and reused for the next request like the arrays of DijkstraBidirectionNative, so a request does not
+     * allocate arrays as big as the graph. Only the entries of the nodes touched by the previous request are
+     * reset. Note that every thread that used the router keeps 3 references per node of the biggest graph it was
+     * used for and the labels of its last request.
+     */
+    private static final class NodeLabels {
+        private Label[] labels = new Label[0];
+        private Label[] expandedLabels = new Label[0];
+        private Label[] transferLabels = new Label[0];
+        private final IntArrayList touchedNodes = new IntArrayList();
+
+        NodeLabels reset(int nodes) {
+            for (int i = 0; i < touchedNodes.size(); i++) {
+                int node = touchedNodes.get(i);
+                labels[node] = null;
+                expandedLabels[node] = null;
+                transferLabels[node] = null;
+            }
+            touchedNodes.elementsCount = 0;
+            if (labels.length < nodes)
+                grow(nodes);
+            return this;
+        }
+
+        /**
+         * Sets the label of the node in one of the arrays and remembers the node for the reset
+         */
+        void set(Label[] array, int node, Label label) {
+            if (array[node] == null)
+                touchedNodes.add(node);
+            array[node] = label;
+        }
+
+        /**
+         * Nodes of additional realtime edges can be outside of the graph
+         */
+        void ensureCapacity(int node) {
+            if (node >= labels.length)
+                grow(Math.max(node + 1, labels.length * 2));
+        }
+
+        private void grow(int nodes) {
+            labels = Arrays.copyOf(labels, nodes);
+            expandedLabels = Arrays.copyOf(expandedLabels, nodes);
+            transferLabels = Arrays.copyOf(transferLabels, nodes);
+        }
+    }
+}
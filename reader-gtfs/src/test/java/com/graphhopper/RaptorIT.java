@@ -0,0 +1,234 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper;
+
+import com.graphhopper.reader.gtfs.GraphHopperGtfs;
+import com.graphhopper.reader.gtfs.GtfsStorage;
+import com.graphhopper.reader.gtfs.PtFlagEncoder;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FootFlagEncoder;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.Parameters;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.graphhopper.reader.gtfs.GtfsHelper.time;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RaptorIT {
+
+    private static final String GRAPH_LOC = "target/RaptorIT";
+    private static GraphHopperGtfs graphHopper;
+    private static final ZoneId zoneId = ZoneId.of("America/Los_Angeles");
+    private static GraphHopperStorage graphHopperStorage;
+    private static LocationIndex locationIndex;
+
+    // NADAV, NANAA, DADAN, STAGECOACH, BULLFROG, BEATTY_AIRPORT, AMV, FUR_CREEK_RES
+    private static final double[][] STOPS = {
+            {36.914893, -116.76821}, {36.914944, -116.761472}, {36.909489, -116.768242}, {36.915682, -116.751677},
+            {36.88108, -116.81797}, {36.868446, -116.784582}, {36.641496, -116.40094}, {36.425288, -117.133162}
+    };
+
+    @BeforeClass
+    public static void init() {
+        Helper.removeDir(new File(GRAPH_LOC));
+        final PtFlagEncoder ptFlagEncoder = new PtFlagEncoder();
+        EncodingManager encodingManager = new EncodingManager(Arrays.asList(new CarFlagEncoder(), new FootFlagEncoder(), ptFlagEncoder), 8);
+        GHDirectory directory = GraphHopperGtfs.createGHDirectory(GRAPH_LOC);
+        GtfsStorage gtfsStorage = GraphHopperGtfs.createGtfsStorage();
+        graphHopperStorage = GraphHopperGtfs.createOrLoad(directory, encodingManager, ptFlagEncoder, gtfsStorage, Collections.singleton("files/sample-feed.zip"), Collections.emptyList());
+        locationIndex = GraphHopperGtfs.createOrLoadIndex(directory, graphHopperStorage);
+        graphHopper = GraphHopperGtfs.createFactory(ptFlagEncoder, GraphHopperGtfs.createTranslationMap(), graphHopperStorage, locationIndex, gtfsStorage)
+                .createWithoutRealtimeFeed();
+    }
+
+    @AfterClass
+    public static void close() {
+        graphHopperStorage.close();
+        locationIndex.close();
+    }
+
+    @Test
+    public void testSameEarliestArrivalAsLabelSetting() {
+        for (int hour : new int[]{0, 7, 13, 23}) {
+            LocalDateTime departureTime = LocalDateTime.of(2007, 1, 1, hour, 0);
+            for (double[] from : STOPS) {
+                for (double[] to : STOPS) {
+                    if (from == to)
+                        continue;
+
+                    GHResponse expected = graphHopper.route(createRequest(from, to, departureTime, null));
+                    GHResponse actual = graphHopper.route(createRequest(from, to, departureTime, Parameters.Algorithms.RAPTOR));
+                    String message = Arrays.toString(from) + " -> " + Arrays.toString(to) + " at " + departureTime;
+                    assertEquals(message, expected.getAll().isEmpty(), actual.getAll().isEmpty());
+                    if (expected.getAll().isEmpty())
+                        continue;
+
+                    assertEquals(message, arrivalTime(expected.getBest()), arrivalTime(actual.getBest()));
+                    assertEquals(message, expected.getBest().getTime(), actual.getBest().getTime());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTransfer() {
+        // STAGECOACH -> BULLFROG
+        GHRequest request = createRequest(STOPS[3], STOPS[4], LocalDateTime.of(2007, 1, 1, 0, 0), Parameters.Algorithms.RAPTOR);
+        GHResponse response = graphHopper.route(request);
+
+        assertFalse(response.hasErrors());
+        assertEquals(time(8, 10), response.getBest().getTime(), 0.1);
+        assertEquals(Arrays.asList("STBA", "AB1"), tripIds(response.getBest()));
+        assertEquals(1, response.getBest().getNumChanges());
+    }
+
+    @Test
+    public void testParetoSolutions() {
+        // STAGECOACH -> BULLFROG without ignoring transfers returns one solution per number of transfers
+        GHRequest request = createRequest(STOPS[3], STOPS[4], LocalDateTime.of(2007, 1, 1, 0, 0), Parameters.Algorithms.RAPTOR);
+        request.getHints().put(Parameters.PT.IGNORE_TRANSFERS, false);
+        GHResponse response = graphHopper.route(request);
+
+        assertFalse(response.getAll().isEmpty());
+        for (int i = 1; i < response.getAll().size(); i++) {
+            PathWrapper earlier = response.getAll().get(i - 1);
+            PathWrapper later = response.getAll().get(i);
+            assertTrue(arrivalTime(earlier) < arrivalTime(later));
+            assertTrue(earlier.getNumChanges() > later.getNumChanges());
+        }
+    }
+
+    @Test
+    public void testBlockTrips() {
+        // BEATTY_AIRPORT -> FUR_CREEK_RES, the two trips of the block are one boarding
+        GHRequest request = createRequest(STOPS[5], STOPS[7], LocalDateTime.of(2007, 1, 1, 8, 0), Parameters.Algorithms.RAPTOR);
+        request.getHints().put(Parameters.PT.IGNORE_TRANSFERS, false);
+        GHResponse response = graphHopper.route(request);
+
+        assertEquals(1, response.getAll().size());
+        assertEquals(time(1, 20), response.getBest().getTime());
+        assertEquals(2, response.getBest().getLegs().size());
+        assertEquals(0, response.getBest().getNumChanges());
+    }
+
+    @Test
+    public void testNoRoute() {
+        // HASNOROUTES -> NADAV
+        GHResponse response = graphHopper.route(createRequest(new double[]{36.7, -116.5}, STOPS[0],
+                LocalDateTime.of(2007, 1, 1, 0, 0), Parameters.Algorithms.RAPTOR));
+        assertTrue(response.getAll().isEmpty());
+    }
+
+    @Test
+    public void testDepartureWindow() {
+        // STAGECOACH -> BEATTY_AIRPORT, the shuttle leaves every 30 minutes
+        LocalDateTime earliestDepartureTime = LocalDateTime.of(2007, 1, 1, 5, 55);
+        GHRequest request = createRequest(STOPS[3], STOPS[5], earliestDepartureTime, null);
+        request.getHints().put(Parameters.PT.LATEST_DEPARTURE_TIME, LocalDateTime.of(2007, 1, 1, 7, 59).atZone(zoneId).toInstant());
+        GHResponse response = graphHopper.route(request);
+
+        assertFalse(response.hasErrors());
+        assertEquals(4, response.getAll().size());
+        for (int i = 1; i < response.getAll().size(); i++) {
+            PathWrapper earlier = response.getAll().get(i - 1);
+            PathWrapper later = response.getAll().get(i);
+            assertTrue(departureTime(earlier) < departureTime(later));
+            assertTrue(arrivalTime(earlier) < arrivalTime(later));
+        }
+        // every journey of the window is the earliest arrival for its departure
+        for (PathWrapper path : response.getAll()) {
+            GHRequest single = createRequest(STOPS[3], STOPS[5], earliestDepartureTime, null);
+            single.getHints().put(Parameters.PT.EARLIEST_DEPARTURE_TIME, Instant.ofEpochMilli(departureTime(path)));
+            assertEquals(arrivalTime(graphHopper.route(single).getBest()), arrivalTime(path));
+        }
+    }
+
+    @Test
+    public void testDepartureWindowWithTransfers() {
+        // STAGECOACH -> BULLFROG, every solution is Pareto optimal in departure, arrival and transfers
+        GHRequest request = createRequest(STOPS[3], STOPS[4], LocalDateTime.of(2007, 1, 1, 6, 0), null);
+        request.getHints().put(Parameters.PT.IGNORE_TRANSFERS, false);
+        request.getHints().put(Parameters.PT.LATEST_DEPARTURE_TIME, LocalDateTime.of(2007, 1, 1, 10, 0).atZone(zoneId).toInstant());
+        GHResponse response = graphHopper.route(request);
+
+        assertFalse(response.getAll().isEmpty());
+        for (PathWrapper path : response.getAll()) {
+            for (PathWrapper other : response.getAll()) {
+                if (path != other)
+                    assertFalse(departureTime(other) >= departureTime(path) && arrivalTime(other) <= arrivalTime(path)
+                            && other.getNumChanges() <= path.getNumChanges());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDepartureWindowMustNotEndBeforeItStarts() {
+        GHRequest request = createRequest(STOPS[0], STOPS[1], LocalDateTime.of(2007, 1, 1, 6, 49), null);
+        request.getHints().put(Parameters.PT.LATEST_DEPARTURE_TIME, LocalDateTime.of(2007, 1, 1, 6, 0).atZone(zoneId).toInstant());
+        graphHopper.route(request);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testArriveByIsNotSupported() {
+        GHRequest request = createRequest(STOPS[0], STOPS[1], LocalDateTime.of(2007, 1, 1, 6, 49), Parameters.Algorithms.RAPTOR);
+        request.getHints().put(Parameters.PT.ARRIVE_BY, true);
+        graphHopper.route(request);
+    }
+
+    private GHRequest createRequest(double[] from, double[] to, LocalDateTime departureTime, String algorithm) {
+        GHRequest request = new GHRequest(from[0], from[1], to[0], to[1]);
+        request.getHints().put(Parameters.PT.EARLIEST_DEPARTURE_TIME, departureTime.atZone(zoneId).toInstant());
+        request.getHints().put(Parameters.PT.IGNORE_TRANSFERS, true);
+        if (algorithm != null)
+            request.setAlgorithm(algorithm);
+        return request;
+    }
+
+    private long departureTime(PathWrapper path) {
+        return path.getLegs().get(0).getDepartureTime().getTime();
+    }
+
+    private long arrivalTime(PathWrapper path) {
+        return path.getLegs().get(path.getLegs().size() - 1).getArrivalTime().getTime();
+    }
+
+    private List<String> tripIds(PathWrapper path) {
+        return path.getLegs().stream()
+                .filter(leg -> leg instanceof Trip.PtLeg)
+                .map(leg -> ((Trip.PtLeg) leg).trip_id)
+                .collect(Collectors.toList());
+    }
+}
@@ -21,7 +21,9 @@ package com.graphhopper;
 import com.google.transit.realtime.GtfsRealtime;
 import com.graphhopper.reader.gtfs.GraphHopperGtfs;
 import com.graphhopper.reader.gtfs.GtfsStorage;
+import com.graphhopper.reader.gtfs.IncrementalRealtimeFeed;
 import com.graphhopper.reader.gtfs.PtFlagEncoder;
+import com.graphhopper.reader.gtfs.RealtimeFeed;
 import com.graphhopper.routing.util.CarFlagEncoder;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FootFlagEncoder;
@@ -165,6 +167,57 @@ public class RealtimeIT {
         assertEquals("..which is very late today", LocalDateTime.parse("2007-01-01T07:49:00").atZone(zoneId).toInstant(), impossiblePtLeg.stops.get(impossiblePtLeg.stops.size()-1).predictedArrivalTime.toInstant());
     }
 
+    @Test
+    public void testIncrementalUpdates() {
+        final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
+        final double TO_LAT = 36.914944, TO_LON = -116.761472; // NANAA stop
+        GHRequest ghRequest = new GHRequest(
+                FROM_LAT, FROM_LON,
+                TO_LAT, TO_LON
+        );
+        ghRequest.getHints().put(Parameters.PT.EARLIEST_DEPARTURE_TIME, LocalDateTime.of(2007,1,1,6,46).atZone(zoneId).toInstant());
+        ghRequest.getHints().put(Parameters.PT.MAX_WALK_DISTANCE_PER_LEG, 30);
+
+        IncrementalRealtimeFeed realtimeFeed = graphHopperFactory.createIncrementalRealtimeFeed();
+        GraphHopperGtfs graphHopper = graphHopperFactory.createWith(realtimeFeed);
+        long scheduledTime = graphHopper.route(ghRequest).getBest().getTime();
+
+        final GtfsRealtime.FeedMessage.Builder feedMessageBuilder = GtfsRealtime.FeedMessage.newBuilder();
+        feedMessageBuilder.setHeader(GtfsRealtime.FeedHeader.newBuilder()
+                .setGtfsRealtimeVersion("1")
+                .setTimestamp(ZonedDateTime.of(LocalDate.of(2007,1,1), LocalTime.of(0,0), zoneId).toEpochSecond()));
+        feedMessageBuilder.addEntityBuilder()
+                .setId("1")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("CITY2").setStartTime("06:00:00"))
+                .addStopTimeUpdateBuilder()
+                .setScheduleRelationship(SCHEDULED)
+                .setStopSequence(3)
+                .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setDelay(120).build());
+        RealtimeFeed delayed = realtimeFeed.apply("gtfs_0", feedMessageBuilder.build());
+        assertEquals("The same GraphHopperGtfs uses the new snapshot", time(0, 5), graphHopper.route(ghRequest).getBest().getTime(), 0.1);
+
+        // the unchanged entity is not processed again
+        assertSame(delayed.getAdditionalEdges().get(0), realtimeFeed.apply("gtfs_0", feedMessageBuilder.build()).getAdditionalEdges().get(0));
+        assertEquals(time(0, 5), graphHopper.route(ghRequest).getBest().getTime(), 0.1);
+
+        final GtfsRealtime.FeedMessage.Builder deletion = GtfsRealtime.FeedMessage.newBuilder();
+        deletion.setHeader(GtfsRealtime.FeedHeader.newBuilder()
+                .setGtfsRealtimeVersion("1")
+                .setIncrementality(GtfsRealtime.FeedHeader.Incrementality.DIFFERENTIAL)
+                .setTimestamp(ZonedDateTime.of(LocalDate.of(2007,1,1), LocalTime.of(0,1), zoneId).toEpochSecond()));
+        deletion.addEntityBuilder()
+                .setId("1")
+                .setIsDeleted(true);
+        realtimeFeed.apply("gtfs_0", deletion.build());
+        assertEquals("The delay is gone", scheduledTime, graphHopper.route(ghRequest).getBest().getTime());
+        assertTrue(realtimeFeed.getSnapshot().getAdditionalEdges().isEmpty());
+
+        // a published snapshot does not change anymore
+        assertEquals(1, delayed.feedMessages.get("gtfs_0").getEntityCount());
+        assertFalse(delayed.getAdditionalEdges().isEmpty());
+    }
+
     @Test
     public void testCanUseDelayedTripWhenIAmLateToo() {
         final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
@@ -329,6 +382,50 @@ public class RealtimeIT {
         assertEquals("EXTRA0", ptLeg.trip_id);
     }
 
+    @Test
+    public void testExtraTripOfRouteWithoutPlatformAtStops() {
+        final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
+        final double TO_LAT = 36.914944, TO_LON = -116.761472; // NANAA stop
+        GHRequest ghRequest = new GHRequest(
+                FROM_LAT, FROM_LON,
+                TO_LAT, TO_LON
+        );
+        ghRequest.getHints().put(Parameters.PT.EARLIEST_DEPARTURE_TIME, LocalDateTime.of(2007,1,1,6,44).atZone(zoneId).toInstant());
+        ghRequest.getHints().put(Parameters.PT.IGNORE_TRANSFERS, true);
+        ghRequest.getHints().put(Parameters.PT.MAX_WALK_DISTANCE_PER_LEG, 30);
+
+        final GtfsRealtime.FeedMessage.Builder feedMessageBuilder = GtfsRealtime.FeedMessage.newBuilder();
+        feedMessageBuilder.setHeader(GtfsRealtime.FeedHeader.newBuilder()
+                .setGtfsRealtimeVersion("1")
+                .setTimestamp(ZonedDateTime.of(LocalDate.of(2007,1,1), LocalTime.of(0,0), zoneId).toEpochSecond()));
+
+        // Route AB does not stop at NADAV or NANAA, so the stops get new enter and exit nodes for it
+        final GtfsRealtime.TripUpdate.Builder extraTripUpdate = feedMessageBuilder.addEntityBuilder()
+                .setId("1")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setScheduleRelationship(ADDED).setTripId("EXTRA").setRouteId("AB").setStartTime("06:45:00"));
+        extraTripUpdate
+                .addStopTimeUpdateBuilder()
+                .setStopSequence(1)
+                .setStopId("NADAV")
+                .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setTime(LocalDateTime.of(2007,1,1,6,45).atZone(zoneId).toEpochSecond()))
+                .setDeparture(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setTime(LocalDateTime.of(2007,1,1,6,45).atZone(zoneId).toEpochSecond()));
+        extraTripUpdate
+                .addStopTimeUpdateBuilder()
+                .setStopSequence(2)
+                .setStopId("NANAA")
+                .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setTime(LocalDateTime.of(2007,1,1,6,46).atZone(zoneId).toEpochSecond()))
+                .setDeparture(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setTime(LocalDateTime.of(2007,1,1,6,46).atZone(zoneId).toEpochSecond()));
+
+        IncrementalRealtimeFeed realtimeFeed = graphHopperFactory.createIncrementalRealtimeFeed();
+        realtimeFeed.apply("gtfs_0", feedMessageBuilder.build());
+        GHResponse response = graphHopperFactory.createWith(realtimeFeed).route(ghRequest);
+
+        assertEquals(time(0, 2), response.getBest().getTime(), 0.1);
+        Trip.PtLeg ptLeg = ((Trip.PtLeg) response.getBest().getLegs().stream().filter(leg -> leg instanceof Trip.PtLeg).findFirst().get());
+        assertEquals("EXTRA", ptLeg.trip_id);
+    }
+
     @Test
     public void testExtraTripWorksOnlyOnSpecifiedDay() {
         final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
@@ -0,0 +1,176 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.reader.gtfs;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class FlatIntKeyMapTest {
+    private final String location = "./target/tmp/flat-int-key-map";
+
+    @Before
+    @After
+    public void removeDir() {
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    public void testPutAndGet() {
+        Directory dir = new RAMDirectory();
+        FlatIntKeyMap<String> map = FlatIntKeyMap.forStrings(dir.find("offsets"), dir.find("values")).create(100);
+        assertTrue(map.isEmpty());
+        assertNull(map.put(5, "route 5"));
+        assertNull(map.put(0, ""));
+        assertNull(map.put(1000, "Linie ö"));
+
+        assertEquals(3, map.size());
+        assertEquals("route 5", map.get(5));
+        assertEquals("", map.get(0));
+        assertEquals("Linie ö", map.get(1000));
+        assertNull(map.get(4));
+        assertNull(map.get(-1));
+        assertNull(map.get(1001));
+        assertNull(map.get("5"));
+        assertFalse(map.containsKey(999));
+        assertTrue(map.containsKey(0));
+        assertEquals("none", map.getOrDefault(6, "none"));
+
+        assertEquals("route 5", map.put(5, "route 6"));
+        assertEquals("route 6", map.get(5));
+        assertEquals(3, map.size());
+
+        Map<Integer, String> expected = new LinkedHashMap<>();
+        expected.put(0, "");
+        expected.put(5, "route 6");
+        expected.put(1000, "Linie ö");
+        assertEquals(expected, new LinkedHashMap<>(map));
+        assertEquals(expected.keySet(), map.keySet());
+    }
+
+    @Test
+    public void testManyValues() {
+        Directory dir = new RAMDirectory();
+        FlatIntKeyMap<byte[]> map = FlatIntKeyMap.forBytes(dir.find("offsets"), dir.find("values"));
+        map.create(100);
+        Random random = new Random(42);
+        Map<Integer, byte[]> expected = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            int key = random.nextInt(20_000);
+            byte[] value = new byte[random.nextInt(50)];
+            random.nextBytes(value);
+            expected.put(key, value);
+            map.put(key, value);
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Integer, byte[]> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testValuesInManySegments() {
+        Directory dir = new GHDirectory(location, DAType.RAM_STORE).create();
+        FlatIntKeyMap<byte[]> map = FlatIntKeyMap.forBytes(dir.find("offsets"), dir.find("values").setSegmentSize(128));
+        map.create(128);
+        Random random = new Random(42);
+        Map<Integer, byte[]> expected = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            // odd lengths, so without padding the length of a value would span two segments
+            byte[] value = new byte[2 * random.nextInt(20) + 1];
+            random.nextBytes(value);
+            expected.put(i, value);
+            map.put(i, value);
+        }
+        assertTrue(map.getCapacity() > 10 * 128);
+        for (Map.Entry<Integer, byte[]> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        map.flush();
+        map.close();
+
+        dir = new GHDirectory(location, DAType.RAM_STORE);
+        map = FlatIntKeyMap.forBytes(dir.find("offsets", DAType.MMAP_RO), dir.find("values", DAType.MMAP_RO));
+        assertTrue(map.loadExisting());
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Integer, byte[]> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        map.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeKey() {
+        Directory dir = new RAMDirectory();
+        FlatIntKeyMap.forStrings(dir.find("offsets"), dir.find("values")).create(100).put(-1, "a");
+    }
+
+    @Test
+    public void testFlushAndLoadReadOnly() {
+        Directory dir = new GHDirectory(location, DAType.RAM_STORE).create();
+        FlatIntKeyMap<byte[]> map = FlatIntKeyMap.forBytes(dir.find("offsets"), dir.find("values")).create(100);
+        map.put(3, new byte[]{1, 2, 3});
+        map.put(7, new byte[]{4});
+        map.flush();
+        map.close();
+
+        dir = new GHDirectory(location, DAType.RAM_STORE);
+        map = FlatIntKeyMap.forBytes(dir.find("offsets", DAType.MMAP_RO), dir.find("values", DAType.MMAP_RO));
+        assertTrue(map.loadExisting());
+        assertEquals(2, map.size());
+        assertArrayEquals(new byte[]{1, 2, 3}, map.get(3));
+        assertArrayEquals(new byte[]{4}, map.get(7));
+        assertNull(map.get(5));
+        map.close();
+    }
+
+    @Test
+    public void testIntValues() {
+        Directory dir = new GHDirectory(location, DAType.RAM_STORE).create();
+        FlatIntIntMap map = new FlatIntIntMap(dir.find("ints")).create(100);
+        assertNull(map.put(2, 0));
+        assertNull(map.put(10, 17));
+        assertEquals(Integer.valueOf(17), map.put(10, 18));
+        assertEquals(2, map.size());
+        assertNull(map.get(3));
+        assertEquals(Integer.valueOf(0), map.get(2));
+        assertEquals(Integer.valueOf(-1), map.getOrDefault(11, -1));
+        map.flush();
+        map.close();
+
+        dir = new GHDirectory(location, DAType.RAM_STORE);
+        map = new FlatIntIntMap(dir.find("ints", DAType.MMAP_RO));
+        assertTrue(map.loadExisting());
+        Map<Integer, Integer> expected = new HashMap<>();
+        expected.put(2, 0);
+        expected.put(10, 18);
+        assertEquals(expected, map);
+        map.close();
+    }
+}
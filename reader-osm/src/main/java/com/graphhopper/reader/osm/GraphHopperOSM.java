@@ -23,6 +23,7 @@ import com.graphhopper.reader.DataReader;
 import com.graphhopper.routing.lm.PrepareLandmarks;
 import com.graphhopper.routing.util.spatialrules.*;
 import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.CmdArgs;
 import com.graphhopper.util.shapes.Polygon;
 
 import java.util.List;
@@ -35,6 +36,8 @@ import java.util.List;
 public class GraphHopperOSM extends GraphHopper {
 
     private final JsonFeatureCollection landmarkSplittingFeatureCollection;
+    private boolean compactNodeMap = false;
+    private int wayFlagsThreads = 1;
 
     public GraphHopperOSM() {
         this(null);
@@ -45,9 +48,36 @@ public class GraphHopperOSM extends GraphHopper {
         this.landmarkSplittingFeatureCollection = landmarkSplittingFeatureCollection;
     }
 
+    @Override
+    public GraphHopper init(CmdArgs args) {
+        super.init(args);
+        compactNodeMap = args.getBool("datareader.compact_node_map", compactNodeMap);
+        wayFlagsThreads = args.getInt("datareader.way_flags_threads", wayFlagsThreads);
+        return this;
+    }
+
     @Override
     protected DataReader createReader(GraphHopperStorage ghStorage) {
-        return initDataReader(new OSMReader(ghStorage));
+        return initDataReader(new OSMReader(ghStorage).setCompactNodeMap(compactNodeMap).
+                setWayFlagsThreads(wayFlagsThreads));
+    }
+
+    /**
+     * Stores the mapping of the OSM node ids in a more compact structure while importing. Recommended for big
+     * imports like the planet as it reduces the memory requirements considerably.
+     */
+    public GraphHopperOSM setCompactNodeMap(boolean compactNodeMap) {
+        this.compactNodeMap = compactNodeMap;
+        return this;
+    }
+
+    /**
+     * Calculates the flags of the OSM ways with the specified number of threads while importing. This is only
+     * allowed if all flag encoders are thread-safe, see FlagEncoder. The default is 1, i.e. the reading thread.
+     */
+    public GraphHopperOSM setWayFlagsThreads(int wayFlagsThreads) {
+        this.wayFlagsThreads = wayFlagsThreads;
+        return this;
     }
 
     public String getOSMFile() {
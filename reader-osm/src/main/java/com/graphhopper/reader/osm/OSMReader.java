@@ -38,6 +38,7 @@ import javax.xml.stream.XMLStreamException;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static com.graphhopper.util.Helper.nf;
 
@@ -89,6 +90,7 @@ public class OSMReader implements DataReader {
     private long skippedLocations;
     private final EncodingManager encodingManager;
     private int workerThreads = 2;
+    private int wayFlagsThreads = 1;
     // Using the correct Map<Long, Integer> is hard. We need a memory efficient and fast solution for big data sets!
     //
     // very slow: new SparseLongLongArray
@@ -243,6 +245,9 @@ public class OSMReader implements DataReader {
      * Creates the graph with edges and nodes from the specified osm file.
      */
     private void writeOsm2Graph(File osmFile) {
+        // all nodes of the ways are known now, release the memory the block map reserved for further keys
+        if (getNodeMap() instanceof GHLongIntBlockMap)
+            getNodeMap().optimize();
         int tmp = (int) Math.max(getNodeMap().getSize() / 50, 100);
         LOGGER.info("creating graph. Found nodes (pillar+tower):" + nf(getNodeMap().getSize()) + ", " + Helper.getMemInfo());
         if (createStorage)
@@ -251,6 +256,10 @@ public class OSMReader implements DataReader {
         long wayStart = -1;
         long relationStart = -1;
         long counter = 1;
+        // the flags of the ways can be calculated in parallel but the edges are created in the order of the file
+        ExecutorService wayExecutor = wayFlagsThreads > 1 ? Executors.newFixedThreadPool(wayFlagsThreads) : null;
+        Deque<WayFlagsTask> pendingWays = new ArrayDeque<>();
+        int maxPendingWays = wayFlagsThreads * 1000;
         try (OSMInput in = openOsmInputFile(osmFile)) {
             LongIntMap nodeFilter = getNodeMap();
 
@@ -258,6 +267,7 @@ public class OSMReader implements DataReader {
             while ((item = in.getNext()) != null) {
                 switch (item.getType()) {
                     case ReaderElement.NODE:
+                        finishPendingWays(pendingWays, 0);
                         if (nodeFilter.get(item.getId()) != EMPTY_NODE) {
                             processNode((ReaderNode) item);
                         }
@@ -268,9 +278,15 @@ public class OSMReader implements DataReader {
                             LOGGER.info(nf(counter) + ", now parsing ways");
                             wayStart = counter;
                         }
-                        processWay((ReaderWay) item);
+                        if (wayExecutor == null) {
+                            processWay((ReaderWay) item);
+                        } else {
+                            submitWay((ReaderWay) item, wayExecutor, pendingWays);
+                            finishPendingWays(pendingWays, maxPendingWays);
+                        }
                         break;
                     case ReaderElement.RELATION:
+                        finishPendingWays(pendingWays, 0);
                         if (relationStart < 0) {
                             LOGGER.info(nf(counter) + ", now parsing relations");
                             relationStart = counter;
@@ -287,14 +303,22 @@ public class OSMReader implements DataReader {
                 }
             }
 
+            finishPendingWays(pendingWays, 0);
             if (in.getUnprocessedElements() > 0)
                 throw new IllegalStateException("Still unprocessed elements in reader queue " + in.getUnprocessedElements());
 
             // logger.info("storage nodes:" + storage.nodes() + " vs. graph nodes:" + storage.getGraph().nodes());
         } catch (Exception ex) {
             throw new RuntimeException("Couldn't process file " + osmFile + ", error: " + ex.getMessage(), ex);
+        } finally {
+            if (wayExecutor != null)
+                wayExecutor.shutdownNow();
         }
 
+        // all turn relations are read, now store the turn cost tables sorted
+        if (graph.getExtension() instanceof TurnCostExtension)
+            ((TurnCostExtension) graph.getExtension()).optimize();
+
         finishedReading();
         if (graph.getNodes() == 0)
             throw new RuntimeException("Graph after reading OSM must not be empty. Read " + counter + " items and " + locations + " locations");
@@ -308,36 +332,93 @@ public class OSMReader implements DataReader {
      * Process properties, encode flags and create edges for the way.
      */
     void processWay(ReaderWay way) {
-        if (way.getNodes().size() < 2)
+        if (!prepareWay(way))
             return;
 
-        // ignore multipolygon geometry
-        if (!way.hasTags())
+        long wayFlags = calcWayFlags(way, getRelFlagsMap().get(way.getId()));
+        if (wayFlags == 0)
             return;
 
-        long wayOsmId = way.getId();
+        addWayEdges(way, wayFlags);
+    }
 
-        long includeWay = encodingManager.acceptWay(way);
-        if (includeWay == 0)
+    /**
+     * Calculates the way flags in the specified executor. Ways that cannot be accepted are skipped already here: all
+     * nodes of accepted ways were added to the node map in the preprocessing, so this is the case if the first node
+     * is missing.
+     */
+    private void submitWay(ReaderWay way, ExecutorService executor, Deque<WayFlagsTask> pendingWays) {
+        if (way.getNodes().size() < 2 || getNodeMap().get(way.getNodes().get(0)) == EMPTY_NODE)
             return;
 
-        long relationFlags = getRelFlagsMap().get(way.getId());
+        if (!prepareWay(way))
+            return;
+
+        WayFlagsTask task = new WayFlagsTask(way, getRelFlagsMap().get(way.getId()));
+        executor.execute(task);
+        pendingWays.addLast(task);
+    }
+
+    /**
+     * Creates the edges of the oldest pending ways until not more than the specified number of ways are pending.
+     */
+    private void finishPendingWays(Deque<WayFlagsTask> pendingWays, int maxPendingWays) {
+        while (pendingWays.size() > maxPendingWays) {
+            WayFlagsTask task = pendingWays.removeFirst();
+            long wayFlags;
+            try {
+                wayFlags = task.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Thread was interrupted", ex);
+            } catch (ExecutionException ex) {
+                throw new RuntimeException("Problem while calculating the flags of way " + task.way.getId(), ex.getCause());
+            }
+            if (wayFlags != 0)
+                addWayEdges(task.way, wayFlags);
+        }
+    }
+
+    /**
+     * Adds the artificial tags that need the coordinates of the nodes. This must be called from the thread that
+     * creates the edges as pillar nodes can be converted into tower nodes meanwhile.
+     *
+     * @return false if the way has to be ignored
+     */
+    private boolean prepareWay(ReaderWay way) {
+        if (way.getNodes().size() < 2)
+            return false;
+
+        // ignore multipolygon geometry
+        if (!way.hasTags())
+            return false;
 
         // TODO move this after we have created the edge and know the coordinates => encodingManager.applyWayTags
         LongArrayList osmNodeIds = way.getNodes();
         // Estimate length of ways containing a route tag e.g. for ferry speed calculation
-        if (osmNodeIds.size() > 1) {
-            int first = getNodeMap().get(osmNodeIds.get(0));
-            int last = getNodeMap().get(osmNodeIds.get(osmNodeIds.size() - 1));
-            double firstLat = getTmpLatitude(first), firstLon = getTmpLongitude(first);
-            double lastLat = getTmpLatitude(last), lastLon = getTmpLongitude(last);
-            if (!Double.isNaN(firstLat) && !Double.isNaN(firstLon) && !Double.isNaN(lastLat) && !Double.isNaN(lastLon)) {
-                double estimatedDist = distCalc.calcDist(firstLat, firstLon, lastLat, lastLon);
-                // Add artificial tag for the estimated distance and center
-                way.setTag("estimated_distance", estimatedDist);
-                way.setTag("estimated_center", new GHPoint((firstLat + lastLat) / 2, (firstLon + lastLon) / 2));
-            }
+        int first = getNodeMap().get(osmNodeIds.get(0));
+        int last = getNodeMap().get(osmNodeIds.get(osmNodeIds.size() - 1));
+        double firstLat = getTmpLatitude(first), firstLon = getTmpLongitude(first);
+        double lastLat = getTmpLatitude(last), lastLon = getTmpLongitude(last);
+        if (!Double.isNaN(firstLat) && !Double.isNaN(firstLon) && !Double.isNaN(lastLat) && !Double.isNaN(lastLon)) {
+            double estimatedDist = distCalc.calcDist(firstLat, firstLon, lastLat, lastLon);
+            // Add artificial tag for the estimated distance and center
+            way.setTag("estimated_distance", estimatedDist);
+            way.setTag("estimated_center", new GHPoint((firstLat + lastLat) / 2, (firstLon + lastLon) / 2));
         }
+        return true;
+    }
+
+    /**
+     * Parses the tags and calculates the flags of the way. This method only reads the way and the EncodingManager
+     * and can be called from several threads.
+     *
+     * @return 0 if the way is not accepted by any encoder
+     */
+    private long calcWayFlags(ReaderWay way, long relationFlags) {
+        long includeWay = encodingManager.acceptWay(way);
+        if (includeWay == 0)
+            return 0;
 
         if (way.getTag("duration") != null) {
             try {
@@ -349,10 +430,29 @@ public class OSMReader implements DataReader {
             }
         }
 
-        long wayFlags = encodingManager.handleWayTags(way, includeWay, relationFlags);
-        if (wayFlags == 0)
-            return;
+        return encodingManager.handleWayTags(way, includeWay, relationFlags);
+    }
+
+    private class WayFlagsTask extends FutureTask<Long> {
+        private final ReaderWay way;
+
+        WayFlagsTask(final ReaderWay way, final long relationFlags) {
+            super(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return calcWayFlags(way, relationFlags);
+                }
+            });
+            this.way = way;
+        }
+    }
 
+    /**
+     * Creates the edges for the way and splits it at barriers.
+     */
+    private void addWayEdges(ReaderWay way, long wayFlags) {
+        long wayOsmId = way.getId();
+        LongArrayList osmNodeIds = way.getNodes();
         List<EdgeIteratorState> createdEdges = new ArrayList<>();
         // look for barriers along the way
         final int size = osmNodeIds.size();
@@ -887,12 +987,36 @@ public class OSMReader implements DataReader {
         return this;
     }
 
+    /**
+     * Use the GHLongIntBlockMap instead of the GHLongIntBTree to map the OSM node ids to the internal node ids.
+     * This reduces the memory needed for big imports considerably. Has to be called before reading the file.
+     */
+    public OSMReader setCompactNodeMap(boolean compactNodeMap) {
+        if (osmNodeIdToInternalNodeMap.getSize() > 0)
+            throw new IllegalStateException("Cannot change the node map after nodes were added");
+
+        osmNodeIdToInternalNodeMap = compactNodeMap ? new GHLongIntBlockMap(EMPTY_NODE) : new GHLongIntBTree(200);
+        return this;
+    }
+
     @Override
     public OSMReader setWorkerThreads(int numOfWorkers) {
         this.workerThreads = numOfWorkers;
         return this;
     }
 
+    /**
+     * Calculates the flags of the ways with the specified number of threads instead of the reading thread. Only use
+     * a value larger than 1 if all flag encoders are thread-safe, see FlagEncoder. The edges are still created in
+     * the order of the file.
+     */
+    public OSMReader setWayFlagsThreads(int wayFlagsThreads) {
+        if (wayFlagsThreads < 1)
+            throw new IllegalArgumentException("At least one thread is required to calculate the way flags but was " + wayFlagsThreads);
+        this.wayFlagsThreads = wayFlagsThreads;
+        return this;
+    }
+
     @Override
     public OSMReader setElevationProvider(ElevationProvider eleProvider) {
         if (eleProvider == null)
@@ -194,6 +194,50 @@ public class GraphHopperOSMTest {
         }
     }
 
+    @Test
+    public void testLoadUnpackedShortcuts() {
+        GraphHopper gh = new GraphHopperOSM().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("car")).
+                setGraphHopperLocation(ghLoc).
+                setDataReaderFile(testOsm);
+        gh.getCHFactoryDecorator().setUnpackedShortcuts(0.5);
+        gh.importOrLoad();
+        assertEquals(0.5, gh.getCHFactoryDecorator().getPreparations().get(0).getUnpackedShortcuts().getTopNodes(), 1e-9);
+        gh.close();
+
+        // the existing unpacked shortcuts are loaded without writing
+        gh = new GraphHopperOSM().setStoreOnFlush(true).setAllowWrites(false).
+                setEncodingManager(new EncodingManager("car"));
+        gh.getCHFactoryDecorator().setUnpackedShortcuts(0.5);
+        assertTrue(gh.load(ghLoc));
+        GHResponse rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.hasErrors());
+        assertEquals(3, rsp.getBest().getPoints().getSize());
+        gh.close();
+
+        // a different fraction needs the unpacked shortcuts to be created again
+        gh = new GraphHopperOSM().setStoreOnFlush(true).setAllowWrites(false).
+                setEncodingManager(new EncodingManager("car"));
+        gh.getCHFactoryDecorator().setUnpackedShortcuts(0.2);
+        try {
+            gh.load(ghLoc);
+            fail();
+        } catch (IllegalStateException ex) {
+            assertEquals("Writes are not allowed!", ex.getMessage());
+        }
+        gh.close();
+
+        gh = new GraphHopperOSM().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("car"));
+        gh.getCHFactoryDecorator().setUnpackedShortcuts(0.2);
+        assertTrue(gh.load(ghLoc));
+        assertEquals(0.2, gh.getCHFactoryDecorator().getPreparations().get(0).getUnpackedShortcuts().getTopNodes(), 1e-9);
+        rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.hasErrors());
+        assertEquals(3, rsp.getBest().getPoints().getSize());
+        gh.close();
+    }
+
     @Test
     public void testAllowMultipleReadingInstances() {
         GraphHopper instance1 = new GraphHopperOSM().setStoreOnFlush(true).
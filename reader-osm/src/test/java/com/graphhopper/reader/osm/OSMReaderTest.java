@@ -803,6 +803,47 @@ public class OSMReaderTest {
         assertFalse(ghRsp.getErrors().toString(), ghRsp.hasErrors());
     }
 
+    @Test
+    public void testParallelWayProcessingCreatesIdenticalGraph() {
+        for (String file : new String[]{file1, file7, fileBarriers, fileRoadAttributes}) {
+            List<String> sequentialEdges = importEdges(file, 1, false);
+            List<String> parallelEdges = importEdges(file, 4, false);
+            assertFalse(file, sequentialEdges.isEmpty());
+            // the edges must be created in the same order, i.e. they must have the same ids
+            assertEquals(file, sequentialEdges, parallelEdges);
+        }
+    }
+
+    @Test
+    public void testCompactNodeMapCreatesIdenticalGraph() {
+        for (String file : new String[]{file1, fileNegIds, fileBarriers, fileTurnRestrictions}) {
+            assertEquals(file, importEdges(file, 2, false), importEdges(file, 2, true));
+        }
+    }
+
+    private List<String> importEdges(String file, final int wayFlagsThreads, final boolean compactNodeMap) {
+        GraphHopper hopper = new GraphHopperFacade(file) {
+            @Override
+            protected DataReader createReader(GraphHopperStorage tmpGraph) {
+                return initDataReader(new OSMReader(tmpGraph).setCompactNodeMap(compactNodeMap).
+                        setWayFlagsThreads(wayFlagsThreads));
+            }
+        }.importOrLoad();
+        try {
+            List<String> edges = new ArrayList<>();
+            AllEdgesIterator iter = hopper.getGraphHopperStorage().getAllEdges();
+            while (iter.next()) {
+                edges.add(iter.getEdge() + ":" + iter.getBaseNode() + "-" + iter.getAdjNode() + ","
+                        + iter.getFlags() + "," + Helper.round2(iter.getDistance()) + "," + iter.getName()
+                        + "," + iter.fetchWayGeometry(3).size());
+            }
+            return edges;
+        } finally {
+            hopper.close();
+            Helper.removeDir(new File(dir));
+        }
+    }
+
     class GraphHopperFacade extends GraphHopperOSM {
         public GraphHopperFacade(String osmFile) {
             this(osmFile, false);
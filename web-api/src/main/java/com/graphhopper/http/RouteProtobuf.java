@@ -0,0 +1,513 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.graphhopper.GHResponse;
+import com.graphhopper.PathWrapper;
+import com.graphhopper.util.*;
+import com.graphhopper.util.details.PathDetail;
+import com.graphhopper.util.shapes.BBox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.NumberFormat;
+import java.util.*;
+
+/**
+ * Writes and reads the route response in the protocol buffers format of docs/web/route.proto. It contains the same
+ * information as the JSON of the route end point, but the points are written as delta encoded varints instead of an
+ * encoded polyline, which is cheaper to create and to parse for clients which do not need JSON.
+ */
+public class RouteProtobuf {
+    public static final String MEDIA_TYPE = "application/x-protobuf";
+    public static final String TYPE = "protobuf";
+    private static final double PRECISION = 1e6;
+    private static final double ELE_PRECISION = 100;
+    private static final int LENGTH_DELIMITED = 2;
+
+    // the field numbers of route.proto
+    static final int RSP_PATHS = 1, RSP_TOOK = 2, RSP_COPYRIGHTS = 3, RSP_HINTS = 4;
+    static final int HINT_KEY = 1, HINT_VALUE = 2;
+    static final int PATH_DISTANCE = 1, PATH_WEIGHT = 2, PATH_TIME = 3, PATH_TRANSFERS = 4, PATH_DESCRIPTION = 5,
+            PATH_BBOX = 6, PATH_POINTS = 7, PATH_INSTRUCTIONS = 8, PATH_DETAILS = 9, PATH_ASCEND = 10, PATH_DESCEND = 11,
+            PATH_SNAPPED_WAYPOINTS = 12, PATH_FARE = 13;
+    static final int POINTS_IS_3D = 1, POINTS_COORDINATES = 2;
+    static final int INSTR_SIGN = 1, INSTR_TEXT = 2, INSTR_STREET_NAME = 3, INSTR_DISTANCE = 4, INSTR_TIME = 5,
+            INSTR_FIRST = 6, INSTR_LAST = 7, INSTR_ANNOTATION_TEXT = 8, INSTR_ANNOTATION_IMPORTANCE = 9,
+            INSTR_EXIT_NUMBER = 10, INSTR_EXITED = 11, INSTR_TURN_ANGLE = 12, INSTR_HEADING = 13, INSTR_LAST_HEADING = 14;
+    static final int DETAILS_NAME = 1, DETAILS_VALUES = 2;
+    static final int DETAIL_FIRST = 1, DETAIL_LAST = 2, DETAIL_DOUBLE = 3, DETAIL_LONG = 4, DETAIL_BOOL = 5,
+            DETAIL_STRING = 6;
+
+    public static void write(GHResponse ghRsp, boolean enableInstructions, boolean calcPoints, boolean enableElevation,
+                             float took, OutputStream stream) throws IOException {
+        CodedOutputStream out = CodedOutputStream.newInstance(stream);
+        // the buffers of the nested messages, their length has to be written before them
+        Message path = new Message(), child = new Message(), grandchild = new Message();
+        for (PathWrapper ar : ghRsp.getAll()) {
+            writePath(path.out, ar, enableInstructions, calcPoints, enableElevation, child, grandchild);
+            path.writeTo(out, RSP_PATHS);
+        }
+        out.writeInt64(RSP_TOOK, Math.round(took * 1000));
+        out.writeString(RSP_COPYRIGHTS, "GraphHopper");
+        out.writeString(RSP_COPYRIGHTS, "OpenStreetMap contributors");
+        for (Map.Entry<String, String> hint : ghRsp.getHints().toMap().entrySet()) {
+            writeString(child.out, HINT_KEY, hint.getKey());
+            writeString(child.out, HINT_VALUE, hint.getValue());
+            child.writeTo(out, RSP_HINTS);
+        }
+        out.flush();
+    }
+
+    private static void writePath(CodedOutputStream out, PathWrapper ar, boolean enableInstructions, boolean calcPoints,
+                                  boolean enableElevation, Message child, Message grandchild) throws IOException {
+        out.writeDouble(PATH_DISTANCE, Helper.round(ar.getDistance(), 3));
+        out.writeDouble(PATH_WEIGHT, Helper.round6(ar.getRouteWeight()));
+        out.writeInt64(PATH_TIME, ar.getTime());
+        out.writeInt32(PATH_TRANSFERS, ar.getNumChanges());
+        for (String description : ar.getDescription()) {
+            out.writeString(PATH_DESCRIPTION, description);
+        }
+        if (calcPoints) {
+            if (ar.getPoints().getSize() >= 2) {
+                BBox bbox = ar.calcBBox2D();
+                out.writeTag(PATH_BBOX, LENGTH_DELIMITED);
+                out.writeRawVarint32(4 * 8);
+                out.writeDoubleNoTag(bbox.minLon);
+                out.writeDoubleNoTag(bbox.minLat);
+                out.writeDoubleNoTag(bbox.maxLon);
+                out.writeDoubleNoTag(bbox.maxLat);
+            }
+            writePoints(child.out, ar.getPoints(), enableElevation);
+            child.writeTo(out, PATH_POINTS);
+            if (enableInstructions) {
+                for (Map<String, Object> instruction : ar.getInstructions().createJson()) {
+                    writeInstruction(child.out, instruction);
+                    child.writeTo(out, PATH_INSTRUCTIONS);
+                }
+            }
+            for (Map.Entry<String, List<PathDetail>> details : ar.getPathDetails().entrySet()) {
+                child.out.writeString(DETAILS_NAME, details.getKey());
+                for (PathDetail detail : details.getValue()) {
+                    writeDetail(grandchild.out, detail);
+                    grandchild.writeTo(child.out, DETAILS_VALUES);
+                }
+                child.writeTo(out, PATH_DETAILS);
+            }
+            out.writeDouble(PATH_ASCEND, ar.getAscend());
+            out.writeDouble(PATH_DESCEND, ar.getDescend());
+        }
+        writePoints(child.out, ar.getWaypoints(), enableElevation);
+        child.writeTo(out, PATH_SNAPPED_WAYPOINTS);
+        if (ar.getFare() != null) {
+            out.writeString(PATH_FARE, NumberFormat.getCurrencyInstance(Locale.ROOT).format(ar.getFare()));
+        }
+    }
+
+    private static void writePoints(CodedOutputStream out, PointList points, boolean enableElevation) throws IOException {
+        boolean is3D = enableElevation && points.is3D();
+        out.writeBool(POINTS_IS_3D, is3D);
+        if (points.isEmpty())
+            return;
+
+        int[] deltas = new int[points.getSize() * (is3D ? 3 : 2)];
+        int prevLat = 0, prevLon = 0, prevEle = 0, index = 0, bytes = 0;
+        for (int i = 0; i < points.getSize(); i++) {
+            int lat = (int) Math.round(points.getLatitude(i) * PRECISION);
+            int lon = (int) Math.round(points.getLongitude(i) * PRECISION);
+            deltas[index++] = lat - prevLat;
+            deltas[index++] = lon - prevLon;
+            prevLat = lat;
+            prevLon = lon;
+            if (is3D) {
+                int ele = (int) Math.round(points.getElevation(i) * ELE_PRECISION);
+                deltas[index++] = ele - prevEle;
+                prevEle = ele;
+            }
+        }
+        for (int delta : deltas) {
+            bytes += CodedOutputStream.computeSInt32SizeNoTag(delta);
+        }
+        out.writeTag(POINTS_COORDINATES, LENGTH_DELIMITED);
+        out.writeRawVarint32(bytes);
+        for (int delta : deltas) {
+            out.writeSInt32NoTag(delta);
+        }
+    }
+
+    /**
+     * Writes the instruction from its JSON representation, so the text and the rounding are the same as for JSON.
+     */
+    private static void writeInstruction(CodedOutputStream out, Map<String, Object> json) throws IOException {
+        out.writeSInt32(INSTR_SIGN, ((Number) json.get("sign")).intValue());
+        writeString(out, INSTR_TEXT, json.get("text"));
+        writeString(out, INSTR_STREET_NAME, json.get("street_name"));
+        out.writeDouble(INSTR_DISTANCE, ((Number) json.get("distance")).doubleValue());
+        out.writeInt64(INSTR_TIME, ((Number) json.get("time")).longValue());
+        List<?> interval = (List<?>) json.get("interval");
+        out.writeInt32(INSTR_FIRST, ((Number) interval.get(0)).intValue());
+        out.writeInt32(INSTR_LAST, ((Number) interval.get(1)).intValue());
+        if (json.containsKey("annotation_text")) {
+            writeString(out, INSTR_ANNOTATION_TEXT, json.get("annotation_text"));
+            out.writeInt32(INSTR_ANNOTATION_IMPORTANCE, ((Number) json.get("annotation_importance")).intValue());
+        }
+        if (json.containsKey("exit_number"))
+            out.writeInt32(INSTR_EXIT_NUMBER, ((Number) json.get("exit_number")).intValue());
+        if (json.containsKey("exited"))
+            out.writeBool(INSTR_EXITED, (Boolean) json.get("exited"));
+        if (json.containsKey("turn_angle"))
+            out.writeDouble(INSTR_TURN_ANGLE, ((Number) json.get("turn_angle")).doubleValue());
+        if (json.containsKey("heading"))
+            out.writeDouble(INSTR_HEADING, ((Number) json.get("heading")).doubleValue());
+        if (json.containsKey("last_heading"))
+            out.writeDouble(INSTR_LAST_HEADING, ((Number) json.get("last_heading")).doubleValue());
+    }
+
+    private static void writeDetail(CodedOutputStream out, PathDetail detail) throws IOException {
+        out.writeInt32(DETAIL_FIRST, detail.getFirst());
+        out.writeInt32(DETAIL_LAST, detail.getLast());
+        Object value = detail.getValue();
+        if (value instanceof Double)
+            out.writeDouble(DETAIL_DOUBLE, (Double) value);
+        else if (value instanceof Long || value instanceof Integer)
+            out.writeSInt64(DETAIL_LONG, ((Number) value).longValue());
+        else if (value instanceof Boolean)
+            out.writeBool(DETAIL_BOOL, (Boolean) value);
+        else if (value instanceof String)
+            out.writeString(DETAIL_STRING, (String) value);
+        else
+            throw new IllegalArgumentException("Unsupported type for PathDetail.value " + value.getClass());
+    }
+
+    private static void writeString(CodedOutputStream out, int field, Object value) throws IOException {
+        if (value != null)
+            out.writeString(field, value.toString());
+    }
+
+    /**
+     * Reads a response written by {@link #write}.
+     *
+     * @param turnDescription if true the text of the instructions is the turn description of the server, otherwise
+     *                        the street name
+     */
+    public static GHResponse read(InputStream stream, boolean turnDescription) throws IOException {
+        CodedInputStream in = CodedInputStream.newInstance(stream);
+        // the default limit of 64MB is too small for long routes
+        in.setSizeLimit(Integer.MAX_VALUE);
+        GHResponse rsp = new GHResponse();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (tag >>> 3) {
+                case RSP_PATHS:
+                    int limit = in.pushLimit(in.readRawVarint32());
+                    rsp.add(readPath(in, turnDescription));
+                    in.popLimit(limit);
+                    break;
+                case RSP_HINTS:
+                    limit = in.pushLimit(in.readRawVarint32());
+                    String key = null, value = null;
+                    while ((tag = in.readTag()) != 0) {
+                        if (tag >>> 3 == HINT_KEY)
+                            key = in.readString();
+                        else if (tag >>> 3 == HINT_VALUE)
+                            value = in.readString();
+                        else
+                            in.skipField(tag);
+                    }
+                    if (key != null)
+                        rsp.getHints().put(key, value);
+                    in.popLimit(limit);
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+        return rsp;
+    }
+
+    private static PathWrapper readPath(CodedInputStream in, boolean turnDescription) throws IOException {
+        PathWrapper path = new PathWrapper();
+        List<String> description = new ArrayList<>();
+        // the instructions need the points, which could be after them
+        List<ByteString> instructions = new ArrayList<>();
+        Map<String, List<PathDetail>> details = new HashMap<>();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (tag >>> 3) {
+                case PATH_DISTANCE:
+                    path.setDistance(in.readDouble());
+                    break;
+                case PATH_WEIGHT:
+                    path.setRouteWeight(in.readDouble());
+                    break;
+                case PATH_TIME:
+                    path.setTime(in.readInt64());
+                    break;
+                case PATH_TRANSFERS:
+                    path.setNumChanges(in.readInt32());
+                    break;
+                case PATH_DESCRIPTION:
+                    description.add(in.readString());
+                    break;
+                case PATH_POINTS:
+                    path.setPoints(readPoints(in));
+                    break;
+                case PATH_INSTRUCTIONS:
+                    instructions.add(in.readBytes());
+                    break;
+                case PATH_DETAILS:
+                    readDetails(in, details);
+                    break;
+                case PATH_ASCEND:
+                    path.setAscend(in.readDouble());
+                    break;
+                case PATH_DESCEND:
+                    path.setDescend(in.readDouble());
+                    break;
+                case PATH_SNAPPED_WAYPOINTS:
+                    path.setWaypoints(readPoints(in));
+                    break;
+                default:
+                    // the bounding box and the fare are not part of the PathWrapper
+                    in.skipField(tag);
+            }
+        }
+        if (!description.isEmpty())
+            path.setDescription(description);
+        if (!instructions.isEmpty())
+            path.setInstructions(readInstructions(instructions, path.getPoints(), turnDescription));
+        if (!details.isEmpty())
+            path.addPathDetails(details);
+        return path;
+    }
+
+    private static PointList readPoints(CodedInputStream in) throws IOException {
+        int limit = in.pushLimit(in.readRawVarint32());
+        boolean is3D = false;
+        PointList points = null;
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (tag >>> 3) {
+                case POINTS_IS_3D:
+                    is3D = in.readBool();
+                    break;
+                case POINTS_COORDINATES:
+                    // the fields are written in the order of their numbers, so is_3d is already known
+                    int length = in.readRawVarint32();
+                    int coordinatesLimit = in.pushLimit(length);
+                    points = new PointList(length / (is3D ? 3 : 2), is3D);
+                    int lat = 0, lon = 0, ele = 0;
+                    while (in.getBytesUntilLimit() > 0) {
+                        lat += in.readSInt32();
+                        lon += in.readSInt32();
+                        if (is3D) {
+                            ele += in.readSInt32();
+                            points.add(lat / PRECISION, lon / PRECISION, ele / ELE_PRECISION);
+                        } else {
+                            points.add(lat / PRECISION, lon / PRECISION);
+                        }
+                    }
+                    in.popLimit(coordinatesLimit);
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+        in.popLimit(limit);
+        return points == null ? new PointList(0, is3D) : points;
+    }
+
+    private static InstructionList readInstructions(List<ByteString> instructions, PointList points, boolean turnDescription) throws IOException {
+        InstructionList il = new InstructionList(instructions.size(), null);
+        int viaCount = 1;
+        for (ByteString bytes : instructions) {
+            CodedInputStream in = bytes.newCodedInput();
+            int sign = 0, first = 0, last = 0, annotationImportance = 0, exitNumber = 0;
+            String text = "", streetName = "", annotationText = null;
+            double distance = 0, turnAngle = Double.NaN, heading = Double.NaN, lastHeading = Double.NaN;
+            long time = 0;
+            boolean exited = false;
+            int tag;
+            while ((tag = in.readTag()) != 0) {
+                switch (tag >>> 3) {
+                    case INSTR_SIGN:
+                        sign = in.readSInt32();
+                        break;
+                    case INSTR_TEXT:
+                        text = in.readString();
+                        break;
+                    case INSTR_STREET_NAME:
+                        streetName = in.readString();
+                        break;
+                    case INSTR_DISTANCE:
+                        distance = in.readDouble();
+                        break;
+                    case INSTR_TIME:
+                        time = in.readInt64();
+                        break;
+                    case INSTR_FIRST:
+                        first = in.readInt32();
+                        break;
+                    case INSTR_LAST:
+                        last = in.readInt32();
+                        break;
+                    case INSTR_ANNOTATION_TEXT:
+                        annotationText = in.readString();
+                        break;
+                    case INSTR_ANNOTATION_IMPORTANCE:
+                        annotationImportance = in.readInt32();
+                        break;
+                    case INSTR_EXIT_NUMBER:
+                        exitNumber = in.readInt32();
+                        break;
+                    case INSTR_EXITED:
+                        exited = in.readBool();
+                        break;
+                    case INSTR_TURN_ANGLE:
+                        turnAngle = in.readDouble();
+                        break;
+                    case INSTR_HEADING:
+                        heading = in.readDouble();
+                        break;
+                    case INSTR_LAST_HEADING:
+                        lastHeading = in.readDouble();
+                        break;
+                    default:
+                        in.skipField(tag);
+                }
+            }
+
+            PointList instPL = new PointList(last - first + 1, points.is3D());
+            for (int j = first; j <= last; j++) {
+                instPL.add(points, j);
+            }
+            InstructionAnnotation ia = annotationText == null ? InstructionAnnotation.EMPTY : new InstructionAnnotation(annotationImportance, annotationText);
+            String name = turnDescription ? text : streetName;
+            Instruction instr;
+            if (sign == Instruction.USE_ROUNDABOUT || sign == Instruction.LEAVE_ROUNDABOUT) {
+                RoundaboutInstruction ri = new RoundaboutInstruction(sign, name, ia, instPL);
+                ri.setExitNumber(exitNumber);
+                if (exited)
+                    ri.setExited();
+                if (!Double.isNaN(turnAngle)) {
+                    ri.setDirOfRotation(turnAngle);
+                    ri.setRadian((turnAngle < 0 ? -Math.PI : Math.PI) - turnAngle);
+                }
+                instr = ri;
+            } else if (sign == Instruction.REACHED_VIA) {
+                ViaInstruction tmpInstr = new ViaInstruction(name, ia, instPL);
+                tmpInstr.setViaCount(viaCount);
+                viaCount++;
+                instr = tmpInstr;
+            } else if (sign == Instruction.FINISH) {
+                instr = new FinishInstruction(name, instPL, 0);
+            } else {
+                instr = new Instruction(sign, name, ia, instPL);
+            }
+            if (!Double.isNaN(heading))
+                instr.setExtraInfo("heading", heading);
+            if (!Double.isNaN(lastHeading))
+                instr.setExtraInfo("last_heading", lastHeading);
+
+            // like for JSON the server already created the turn description
+            if (turnDescription)
+                instr.setUseRawName();
+
+            instr.setDistance(distance).setTime(time);
+            il.add(instr);
+        }
+        return il;
+    }
+
+    private static void readDetails(CodedInputStream in, Map<String, List<PathDetail>> details) throws IOException {
+        int limit = in.pushLimit(in.readRawVarint32());
+        String name = "";
+        List<PathDetail> values = new ArrayList<>();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            if (tag >>> 3 == DETAILS_NAME) {
+                name = in.readString();
+            } else if (tag >>> 3 == DETAILS_VALUES) {
+                int valueLimit = in.pushLimit(in.readRawVarint32());
+                values.add(readDetail(in));
+                in.popLimit(valueLimit);
+            } else {
+                in.skipField(tag);
+            }
+        }
+        details.put(name, values);
+        in.popLimit(limit);
+    }
+
+    private static PathDetail readDetail(CodedInputStream in) throws IOException {
+        int first = 0, last = 0;
+        PathDetail detail = null;
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (tag >>> 3) {
+                case DETAIL_FIRST:
+                    first = in.readInt32();
+                    break;
+                case DETAIL_LAST:
+                    last = in.readInt32();
+                    break;
+                case DETAIL_DOUBLE:
+                    detail = new PathDetail(in.readDouble());
+                    break;
+                case DETAIL_LONG:
+                    detail = new PathDetail(in.readSInt64());
+                    break;
+                case DETAIL_BOOL:
+                    detail = new PathDetail(in.readBool());
+                    break;
+                case DETAIL_STRING:
+                    detail = new PathDetail(in.readString());
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+        if (detail == null)
+            throw new IllegalStateException("PathDetail without value");
+
+        detail.setFirst(first);
+        detail.setLast(last);
+        return detail;
+    }
+
+    /**
+     * The buffer of a nested message, which is reused for the next message after it was written.
+     */
+    private static class Message {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+
+        void writeTo(CodedOutputStream parent, int field) throws IOException {
+            out.flush();
+            parent.writeTag(field, LENGTH_DELIMITED);
+            parent.writeRawVarint32(bytes.size());
+            parent.writeRawBytes(bytes.toByteArray());
+            bytes.reset();
+        }
+    }
+}
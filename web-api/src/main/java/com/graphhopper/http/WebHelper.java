@@ -17,6 +17,10 @@
  */
 package com.graphhopper.http;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -25,6 +29,7 @@ import com.graphhopper.PathWrapper;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointList;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.text.NumberFormat;
@@ -184,4 +189,70 @@ public class WebHelper {
         return json;
     }
 
+    /**
+     * Creates the same JSON as {@link #jsonObject} but writes the response directly to the generator when it is
+     * serialized instead of building the tree first, which avoids allocating a node for every value of large
+     * responses.
+     */
+    public static JsonSerializable jsonSerializable(final GHResponse ghRsp, final boolean enableInstructions, final boolean calcPoints,
+                                                    final boolean enableElevation, final boolean pointsEncoded, final float took) {
+        return new JsonSerializable.Base() {
+            @Override
+            public void serialize(JsonGenerator gen, SerializerProvider provider) throws IOException {
+                writeJson(gen, provider, ghRsp, enableInstructions, calcPoints, enableElevation, pointsEncoded, took);
+            }
+
+            @Override
+            public void serializeWithType(JsonGenerator gen, SerializerProvider provider, TypeSerializer typeSer) throws IOException {
+                serialize(gen, provider);
+            }
+        };
+    }
+
+    // keep the fields and number types in sync with jsonObject, the output has to be identical
+    private static void writeJson(JsonGenerator gen, SerializerProvider provider, GHResponse ghRsp, boolean enableInstructions,
+                                  boolean calcPoints, boolean enableElevation, boolean pointsEncoded, float took) throws IOException {
+        gen.writeStartObject();
+        provider.defaultSerializeField("hints", ghRsp.getHints().toMap(), gen);
+        gen.writeObjectFieldStart("info");
+        gen.writeArrayFieldStart("copyrights");
+        gen.writeString("GraphHopper");
+        gen.writeString("OpenStreetMap contributors");
+        gen.writeEndArray();
+        gen.writeNumberField("took", Math.round(took * 1000));
+        gen.writeEndObject();
+        gen.writeArrayFieldStart("paths");
+        for (PathWrapper ar : ghRsp.getAll()) {
+            gen.writeStartObject();
+            gen.writeNumberField("distance", Helper.round(ar.getDistance(), 3));
+            gen.writeNumberField("weight", Helper.round6(ar.getRouteWeight()));
+            gen.writeNumberField("time", ar.getTime());
+            gen.writeNumberField("transfers", ar.getNumChanges());
+            if (!ar.getDescription().isEmpty()) {
+                provider.defaultSerializeField("description", ar.getDescription(), gen);
+            }
+            if (calcPoints) {
+                gen.writeBooleanField("points_encoded", pointsEncoded);
+                if (ar.getPoints().getSize() >= 2) {
+                    provider.defaultSerializeField("bbox", ar.calcBBox2D(), gen);
+                }
+                provider.defaultSerializeField("points", pointsEncoded ? encodePolyline(ar.getPoints(), enableElevation) : ar.getPoints().toLineString(enableElevation), gen);
+                if (enableInstructions) {
+                    provider.defaultSerializeField("instructions", ar.getInstructions(), gen);
+                }
+                provider.defaultSerializeField("legs", ar.getLegs(), gen);
+                provider.defaultSerializeField("details", ar.getPathDetails(), gen);
+                gen.writeNumberField("ascend", ar.getAscend());
+                gen.writeNumberField("descend", ar.getDescend());
+            }
+            provider.defaultSerializeField("snapped_waypoints", pointsEncoded ? encodePolyline(ar.getWaypoints(), enableElevation) : ar.getWaypoints().toLineString(enableElevation), gen);
+            if (ar.getFare() != null) {
+                gen.writeStringField("fare", NumberFormat.getCurrencyInstance(Locale.ROOT).format(ar.getFare()));
+            }
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
 }
@@ -0,0 +1,203 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.PathWrapper;
+import com.graphhopper.util.*;
+import com.graphhopper.util.details.PathDetail;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class RouteProtobufTest {
+
+    private GHResponse createResponse() {
+        PointList points = Helper.createPointList3D(52.51234, 13.41234, 35.5, 52.515, 13.42, 37, 52.52, 13.43, 40, 52.5, 13.4, 38.25);
+        Instruction continueOn = new Instruction(Instruction.CONTINUE_ON_STREET, "Main Street", InstructionAnnotation.EMPTY,
+                Helper.createPointList3D(52.51234, 13.41234, 35.5, 52.515, 13.42, 37));
+        continueOn.setExtraInfo("heading", 12.5);
+        continueOn.setDistance(1200.123).setTime(60000);
+        RoundaboutInstruction roundabout = new RoundaboutInstruction(Instruction.USE_ROUNDABOUT, "Circle",
+                new InstructionAnnotation(1, "toll"), Helper.createPointList3D(52.52, 13.43, 40));
+        roundabout.setExitNumber(2).setExited();
+        roundabout.setDistance(300).setTime(20000);
+        FinishInstruction finish = new FinishInstruction("Finish", 52.5, 13.4, 38.25);
+        InstructionList instructions = new InstructionList(null);
+        for (Instruction instruction : Arrays.asList(continueOn, roundabout, finish)) {
+            instruction.setUseRawName();
+            instructions.add(instruction);
+        }
+
+        PathWrapper path = new PathWrapper().setPoints(points).setDistance(1500.1234).setRouteWeight(100.5).setTime(80000).
+                setAscend(4.5).setDescend(2.25).setDescription(Arrays.asList("Main Street", "Circle"));
+        path.setWaypoints(Helper.createPointList3D(52.51234, 13.41234, 35.5, 52.5, 13.4, 38.25));
+        path.setInstructions(instructions);
+        PathDetail speed = new PathDetail(50.0);
+        speed.setFirst(0);
+        speed.setLast(2);
+        PathDetail name = new PathDetail("Main Street");
+        name.setFirst(0);
+        name.setLast(1);
+        Map<String, List<PathDetail>> details = new HashMap<>();
+        details.put("average_speed", Collections.singletonList(speed));
+        details.put("street_name", Collections.singletonList(name));
+        path.addPathDetails(details);
+
+        GHResponse rsp = new GHResponse();
+        rsp.add(path);
+        rsp.getHints().put("visited_nodes.sum", 42);
+        return rsp;
+    }
+
+    private GHResponse writeAndRead(GHResponse rsp, boolean instructions, boolean calcPoints, boolean elevation) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RouteProtobuf.write(rsp, instructions, calcPoints, elevation, 0.012f, out);
+        return RouteProtobuf.read(new ByteArrayInputStream(out.toByteArray()), true);
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        GHResponse rsp = createResponse();
+        PathWrapper expected = rsp.getBest();
+        GHResponse read = writeAndRead(rsp, true, true, true);
+        assertEquals(1, read.getAll().size());
+        assertEquals("42", read.getHints().get("visited_nodes.sum", ""));
+
+        PathWrapper path = read.getBest();
+        assertEquals(1500.123, path.getDistance(), 1e-9);
+        assertEquals(100.5, path.getRouteWeight(), 1e-9);
+        assertEquals(80000, path.getTime());
+        assertEquals(4.5, path.getAscend(), 1e-9);
+        assertEquals(2.25, path.getDescend(), 1e-9);
+        assertEquals(expected.getDescription(), path.getDescription());
+        assertEquals(expected.getPoints(), path.getPoints());
+        assertTrue(path.getPoints().is3D());
+        assertEquals(expected.getWaypoints(), path.getWaypoints());
+
+        InstructionList instructions = path.getInstructions();
+        assertEquals(3, instructions.size());
+        assertEquals(Instruction.CONTINUE_ON_STREET, instructions.get(0).getSign());
+        assertEquals("Main Street", instructions.get(0).getName());
+        assertEquals(1200.123, instructions.get(0).getDistance(), 1e-9);
+        assertEquals(60000, instructions.get(0).getTime());
+        assertEquals(12.5, instructions.get(0).getExtraInfoJSON().get("heading"));
+        RoundaboutInstruction roundabout = (RoundaboutInstruction) instructions.get(1);
+        assertEquals(2, roundabout.getExitNumber());
+        assertTrue(roundabout.isExited());
+        assertEquals("toll", roundabout.getAnnotation().getMessage());
+        assertEquals(52.52, roundabout.getPoints().getLatitude(0), 1e-9);
+        assertEquals(Instruction.FINISH, instructions.get(2).getSign());
+        assertEquals(13.4, instructions.get(2).getPoints().getLongitude(0), 1e-9);
+
+        assertEquals(2, path.getPathDetails().size());
+        PathDetail speed = path.getPathDetails().get("average_speed").get(0);
+        assertEquals(50.0, speed.getValue());
+        assertEquals(0, speed.getFirst());
+        assertEquals(2, speed.getLast());
+        assertEquals("Main Street", path.getPathDetails().get("street_name").get(0).getValue());
+    }
+
+    @Test
+    public void testWithoutPointsAndElevation() throws Exception {
+        PathWrapper path = writeAndRead(createResponse(), false, true, false).getBest();
+        assertFalse(path.getPoints().is3D());
+        assertEquals(4, path.getPoints().size());
+        assertEquals(13.42, path.getPoints().getLongitude(1), 1e-9);
+        assertFalse(path.getWaypoints().is3D());
+
+        path = writeAndRead(createResponse(), false, false, false).getBest();
+        assertTrue(path.getPoints().isEmpty());
+        assertTrue(path.getPathDetails().isEmpty());
+        assertEquals(2, path.getWaypoints().size());
+        assertEquals(80000, path.getTime());
+    }
+
+    @Test
+    public void testFieldNumbersOfProtoFile() throws Exception {
+        Pattern messagePattern = Pattern.compile("^message (\\w+) \\{");
+        Pattern fieldPattern = Pattern.compile("^(?:optional |repeated )?\\w+ (\\w+) = (\\d+)");
+        Map<String, Integer> protoFields = new HashMap<>();
+        String message = null;
+        for (String line : Files.readAllLines(Paths.get("../docs/web/route.proto"), Helper.UTF_CS)) {
+            Matcher matcher = messagePattern.matcher(line.trim());
+            if (matcher.find()) {
+                message = matcher.group(1);
+                continue;
+            }
+            matcher = fieldPattern.matcher(line.trim());
+            if (matcher.find())
+                protoFields.put(message + "." + matcher.group(1), Integer.parseInt(matcher.group(2)));
+        }
+
+        Map<String, Integer> fields = new HashMap<>();
+        fields.put("RouteResponse.paths", RouteProtobuf.RSP_PATHS);
+        fields.put("RouteResponse.took", RouteProtobuf.RSP_TOOK);
+        fields.put("RouteResponse.copyrights", RouteProtobuf.RSP_COPYRIGHTS);
+        fields.put("RouteResponse.hints", RouteProtobuf.RSP_HINTS);
+        fields.put("Hint.key", RouteProtobuf.HINT_KEY);
+        fields.put("Hint.value", RouteProtobuf.HINT_VALUE);
+        fields.put("Path.distance", RouteProtobuf.PATH_DISTANCE);
+        fields.put("Path.weight", RouteProtobuf.PATH_WEIGHT);
+        fields.put("Path.time", RouteProtobuf.PATH_TIME);
+        fields.put("Path.transfers", RouteProtobuf.PATH_TRANSFERS);
+        fields.put("Path.description", RouteProtobuf.PATH_DESCRIPTION);
+        fields.put("Path.bbox", RouteProtobuf.PATH_BBOX);
+        fields.put("Path.points", RouteProtobuf.PATH_POINTS);
+        fields.put("Path.instructions", RouteProtobuf.PATH_INSTRUCTIONS);
+        fields.put("Path.details", RouteProtobuf.PATH_DETAILS);
+        fields.put("Path.ascend", RouteProtobuf.PATH_ASCEND);
+        fields.put("Path.descend", RouteProtobuf.PATH_DESCEND);
+        fields.put("Path.snapped_waypoints", RouteProtobuf.PATH_SNAPPED_WAYPOINTS);
+        fields.put("Path.fare", RouteProtobuf.PATH_FARE);
+        fields.put("PointList.is_3d", RouteProtobuf.POINTS_IS_3D);
+        fields.put("PointList.coordinates", RouteProtobuf.POINTS_COORDINATES);
+        fields.put("Instruction.sign", RouteProtobuf.INSTR_SIGN);
+        fields.put("Instruction.text", RouteProtobuf.INSTR_TEXT);
+        fields.put("Instruction.street_name", RouteProtobuf.INSTR_STREET_NAME);
+        fields.put("Instruction.distance", RouteProtobuf.INSTR_DISTANCE);
+        fields.put("Instruction.time", RouteProtobuf.INSTR_TIME);
+        fields.put("Instruction.first", RouteProtobuf.INSTR_FIRST);
+        fields.put("Instruction.last", RouteProtobuf.INSTR_LAST);
+        fields.put("Instruction.annotation_text", RouteProtobuf.INSTR_ANNOTATION_TEXT);
+        fields.put("Instruction.annotation_importance", RouteProtobuf.INSTR_ANNOTATION_IMPORTANCE);
+        fields.put("Instruction.exit_number", RouteProtobuf.INSTR_EXIT_NUMBER);
+        fields.put("Instruction.exited", RouteProtobuf.INSTR_EXITED);
+        fields.put("Instruction.turn_angle", RouteProtobuf.INSTR_TURN_ANGLE);
+        fields.put("Instruction.heading", RouteProtobuf.INSTR_HEADING);
+        fields.put("Instruction.last_heading", RouteProtobuf.INSTR_LAST_HEADING);
+        fields.put("PathDetails.name", RouteProtobuf.DETAILS_NAME);
+        fields.put("PathDetails.values", RouteProtobuf.DETAILS_VALUES);
+        fields.put("PathDetail.first", RouteProtobuf.DETAIL_FIRST);
+        fields.put("PathDetail.last", RouteProtobuf.DETAIL_LAST);
+        fields.put("PathDetail.double_value", RouteProtobuf.DETAIL_DOUBLE);
+        fields.put("PathDetail.long_value", RouteProtobuf.DETAIL_LONG);
+        fields.put("PathDetail.bool_value", RouteProtobuf.DETAIL_BOOL);
+        fields.put("PathDetail.string_value", RouteProtobuf.DETAIL_STRING);
+        // every field of the proto file has to be written and read with the same number
+        assertEquals(protoFields, fields);
+    }
+}
@@ -17,11 +17,18 @@
  */
 package com.graphhopper.http;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.GHResponse;
+import com.graphhopper.PathWrapper;
+import com.graphhopper.jackson.Jackson;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointList;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.math.BigDecimal;
+import java.util.Arrays;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -79,4 +86,29 @@ public class WebHelperTest {
     public void testEncode1e6() throws Exception {
         assertEquals("ohdfzAgt}bVoEL", WebHelper.encodePolyline(Helper.createPointList(47.827608, 12.123476, 47.827712, 12.123469), false, 1e6));
     }
+
+    @Test
+    public void testJsonSerializableEqualsJsonObject() throws Exception {
+        GHResponse rsp = new GHResponse();
+        rsp.getHints().put("visited_nodes.sum", 12);
+        PathWrapper path = new PathWrapper().setPoints(Helper.createPointList3D(38.5, -120.2, 10, 40.7, -120.95, 1234)).
+                setDistance(1234.56789).setRouteWeight(1.23456789).setTime(98765).setAscend(1224).setDescend(0);
+        path.setWaypoints(Helper.createPointList3D(38.5, -120.2, 10, 40.7, -120.95, 1234));
+        path.setDescription(Arrays.asList("Main Street"));
+        path.setFare(new BigDecimal("2.5"));
+        rsp.add(path);
+        PathWrapper alternative = new PathWrapper().setPoints(Helper.createPointList3D(38.5, -120.2, 10));
+        alternative.setWaypoints(Helper.createPointList3D(38.5, -120.2, 10));
+        rsp.add(alternative);
+
+        ObjectMapper objectMapper = Jackson.newObjectMapper();
+        for (boolean calcPoints : new boolean[]{true, false}) {
+            for (boolean pointsEncoded : new boolean[]{true, false}) {
+                for (boolean elevation : new boolean[]{true, false}) {
+                    String expected = objectMapper.writeValueAsString(WebHelper.jsonObject(rsp, false, calcPoints, elevation, pointsEncoded, 0.0123f));
+                    assertEquals(expected, objectMapper.writeValueAsString(WebHelper.jsonSerializable(rsp, false, calcPoints, elevation, pointsEncoded, 0.0123f)));
+                }
+            }
+        }
+    }
 }
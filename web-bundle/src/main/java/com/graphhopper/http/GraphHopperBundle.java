@@ -19,9 +19,12 @@
 package com.graphhopper.http;
 
 import com.bedatadriven.jackson.datatype.jts.JtsModule;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationConfig;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
@@ -39,6 +42,7 @@ import com.graphhopper.reader.gtfs.GtfsStorage;
 import com.graphhopper.reader.gtfs.PtFlagEncoder;
 import com.graphhopper.reader.gtfs.RealtimeFeed;
 import com.graphhopper.resources.*;
+import com.graphhopper.routing.RouteCache;
 import com.graphhopper.routing.util.CarFlagEncoder;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FootFlagEncoder;
@@ -272,8 +276,11 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
                 bind(graphHopperManaged).to(GraphHopperManaged.class);
                 bind(graphHopperManaged.getGraphHopper()).to(GraphHopper.class);
                 bind(graphHopperManaged.getGraphHopper()).to(GraphHopperAPI.class);
+                bind(environment.getObjectMapper()).to(ObjectMapper.class);
 
                 bindFactory(HasElevation.class).to(Boolean.class).named("hasElevation");
+                bind(configuration.getInt("routing.matrix.max_entries", MatrixResource.DEFAULT_MAX_ENTRIES)).to(Integer.class).named("matrixMaxEntries");
+                bind(configuration.getInt("routing.batch.max_routes", RouteBatchResource.DEFAULT_MAX_ROUTES)).to(Integer.class).named("batchMaxRoutes");
                 bindFactory(LocationIndexFactory.class).to(LocationIndex.class);
                 bindFactory(TranslationMapFactory.class).to(TranslationMap.class);
                 bindFactory(EncodingManagerFactory.class).to(EncodingManager.class);
@@ -287,10 +294,21 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         }
         environment.jersey().register(NearestResource.class);
         environment.jersey().register(RouteResource.class);
+        environment.jersey().register(RouteBatchResource.class);
         environment.jersey().register(IsochroneResource.class);
+        environment.jersey().register(MatrixResource.class);
+        environment.jersey().register(SPTResource.class);
         environment.jersey().register(I18NResource.class);
         environment.jersey().register(InfoResource.class);
         environment.healthChecks().register("graphhopper", new GraphHopperHealthCheck(graphHopperManaged.getGraphHopper()));
+
+        RouteCache routeCache = graphHopperManaged.getGraphHopper().getRouteCache();
+        if (routeCache != null) {
+            environment.metrics().register(MetricRegistry.name(RouteCache.class, "hits"), (Gauge<Long>) routeCache::getHits);
+            environment.metrics().register(MetricRegistry.name(RouteCache.class, "misses"), (Gauge<Long>) routeCache::getMisses);
+            environment.metrics().register(MetricRegistry.name(RouteCache.class, "evictions"), (Gauge<Long>) routeCache::getEvictions);
+            environment.metrics().register(MetricRegistry.name(RouteCache.class, "size"), (Gauge<Integer>) routeCache::getSize);
+        }
     }
 
 }
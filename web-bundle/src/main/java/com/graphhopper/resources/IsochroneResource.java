@@ -12,6 +12,7 @@ import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.QueryResult;
 import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,7 +53,8 @@ public class IsochroneResource {
             @QueryParam("vehicle") @DefaultValue("car") String vehicle,
             @QueryParam("buckets") @DefaultValue("1") int buckets,
             @QueryParam("reverse_flow") @DefaultValue("false") boolean reverseFlow,
-            @QueryParam("point") GHPoint point,
+            @QueryParam("point") List<GHPoint> points,
+            @QueryParam("partition") @DefaultValue("false") boolean partition,
             @QueryParam("result") @DefaultValue("polygon") String resultStr,
             @QueryParam("time_limit") @DefaultValue("600") long timeLimitInSeconds,
             @QueryParam("distance_limit") @DefaultValue("-1") double distanceInMeter) {
@@ -60,7 +62,7 @@ public class IsochroneResource {
         if (buckets > 20 || buckets < 1)
             throw new IllegalArgumentException("Number of buckets has to be in the range [1, 20]");
 
-        if (point == null)
+        if (points == null || points.isEmpty())
             throw new IllegalArgumentException("point parameter cannot be null");
 
         StopWatch sw = new StopWatch().start();
@@ -71,13 +73,22 @@ public class IsochroneResource {
         FlagEncoder encoder = encodingManager.getEncoder(vehicle);
         EdgeFilter edgeFilter = DefaultEdgeFilter.allEdges(encoder);
         LocationIndex locationIndex = graphHopper.getLocationIndex();
-        QueryResult qr = locationIndex.findClosest(point.lat, point.lon, edgeFilter);
-        if (!qr.isValid())
-            throw new IllegalArgumentException("Point not found:" + point);
+        List<QueryResult> qResults = new ArrayList<>(points.size());
+        for (GHPoint point : points) {
+            QueryResult qr = locationIndex.findClosest(point.lat, point.lon, edgeFilter);
+            if (!qr.isValid())
+                throw new IllegalArgumentException("Point not found:" + point);
+            qResults.add(qr);
+        }
 
         Graph graph = graphHopper.getGraphHopperStorage();
         QueryGraph queryGraph = new QueryGraph(graph);
-        queryGraph.lookup(Collections.singletonList(qr));
+        queryGraph.lookup(qResults);
+        // all points are explored in one search, every node belongs to the point it is nearest to
+        int[] from = new int[qResults.size()];
+        for (int i = 0; i < from.length; i++) {
+            from[i] = qResults.get(i).getClosestNode();
+        }
 
         HintsMap hintsMap = new HintsMap();
         RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
@@ -104,44 +115,88 @@ public class IsochroneResource {
             isochrone.setTimeLimit(timeLimitInSeconds);
         }
 
-        List<List<Double[]>> list = isochrone.searchGPS(qr.getClosestNode(), buckets);
+        List<List<List<Double[]>>> listBySource;
+        if (partition) {
+            listBySource = isochrone.searchGPSBySource(from, buckets);
+        } else {
+            listBySource = Collections.singletonList(isochrone.searchGPS(from, buckets));
+        }
         if (isochrone.getVisitedNodes() > graphHopper.getMaxVisitedNodes() / 5) {
             throw new IllegalArgumentException("Server side reset: too many junction nodes would have to explored (" + isochrone.getVisitedNodes() + "). Let us know if you need this increased.");
         }
 
-        int counter = 0;
-        for (List<Double[]> tmp : list) {
-            if (tmp.size() < 2) {
-                throw new IllegalArgumentException("Too few points found for bucket " + counter + ". "
-                        + "Please try a different 'point', a smaller 'buckets' count or a larger 'time_limit'. "
-                        + "And let us know if you think this is a bug!");
+        // with partition a point can be left with too few points, e.g. if the other points are nearer to all
+        // surrounding roads or if it snaps to the same node as another point, it gets empty polygons instead
+        if (!partition) {
+            int counter = 0;
+            for (List<Double[]> tmp : listBySource.get(0)) {
+                if (tmp.size() < 2) {
+                    throw new IllegalArgumentException("Too few points found for bucket " + counter + ". "
+                            + "Please try a different 'point', a smaller 'buckets' count or a larger 'time_limit'. "
+                            + "And let us know if you think this is a bug!");
+                }
+                counter++;
             }
-            counter++;
         }
 
         Object calcRes;
         if ("pointlist".equalsIgnoreCase(resultStr)) {
-            calcRes = list;
+            calcRes = partition ? listBySource : listBySource.get(0);
 
         } else if ("polygon".equalsIgnoreCase(resultStr)) {
-            list = rasterHullBuilder.calcList(list, list.size() - 1);
-
             ArrayList polyList = new ArrayList();
-            int index = 0;
-            for (List<Double[]> polygon : list) {
-                HashMap<String, Object> geoJsonMap = new HashMap<>();
-                HashMap<String, Object> propMap = new HashMap<>();
-                HashMap<String, Object> geometryMap = new HashMap<>();
-                polyList.add(geoJsonMap);
-                geoJsonMap.put("type", "Feature");
-                geoJsonMap.put("properties", propMap);
-                geoJsonMap.put("geometry", geometryMap);
-
-                propMap.put("bucket", index);
-                geometryMap.put("type", "Polygon");
-                // we have no holes => embed in yet another list
-                geometryMap.put("coordinates", Collections.singletonList(polygon));
-                index++;
+            for (int source = 0; source < listBySource.size(); source++) {
+                List<List<Double[]>> list = listBySource.get(source);
+                if (partition) {
+                    // the points of the other sources bound the polygons of this source
+                    list = new ArrayList<>(list);
+                    BBox bbox = BBox.createInverse(false);
+                    for (List<Double[]> bucketPoints : list) {
+                        for (Double[] point : bucketPoints) {
+                            bbox.update(point[1], point[0]);
+                        }
+                    }
+                    List<Double[]> outside = new ArrayList<>(list.get(list.size() - 1));
+                    for (int other = 0; other < listBySource.size(); other++) {
+                        if (other == source)
+                            continue;
+                        for (List<Double[]> otherPoints : listBySource.get(other)) {
+                            for (Double[] point : otherPoints) {
+                                if (bbox.contains(point[1], point[0]))
+                                    outside.add(point);
+                            }
+                        }
+                    }
+                    list.set(list.size() - 1, outside);
+                }
+                if (hasTooFewPoints(list)) {
+                    List<List<Double[]>> emptyPolygons = new ArrayList<>();
+                    for (int bucket = 0; bucket < list.size() - 1; bucket++) {
+                        emptyPolygons.add(Collections.<Double[]>emptyList());
+                    }
+                    list = emptyPolygons;
+                } else {
+                    list = rasterHullBuilder.calcList(list, list.size() - 1);
+                }
+
+                int index = 0;
+                for (List<Double[]> polygon : list) {
+                    HashMap<String, Object> geoJsonMap = new HashMap<>();
+                    HashMap<String, Object> propMap = new HashMap<>();
+                    HashMap<String, Object> geometryMap = new HashMap<>();
+                    polyList.add(geoJsonMap);
+                    geoJsonMap.put("type", "Feature");
+                    geoJsonMap.put("properties", propMap);
+                    geoJsonMap.put("geometry", geometryMap);
+
+                    propMap.put("bucket", index);
+                    if (partition)
+                        propMap.put("source", source);
+                    geometryMap.put("type", "Polygon");
+                    // we have no holes => embed in yet another list
+                    geometryMap.put("coordinates", Collections.singletonList(polygon));
+                    index++;
+                }
             }
             calcRes = polyList;
         } else {
@@ -154,6 +209,14 @@ public class IsochroneResource {
                 .build();
     }
 
+    private static boolean hasTooFewPoints(List<List<Double[]>> buckets) {
+        for (List<Double[]> bucketPoints : buckets) {
+            if (bucketPoints.size() < 2)
+                return true;
+        }
+        return false;
+    }
+
     private Response jsonSuccessResponse(Object result, float took) {
         ObjectNode json = JsonNodeFactory.instance.objectNode();
         json.putPOJO("polygons", result);
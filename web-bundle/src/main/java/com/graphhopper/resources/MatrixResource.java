@@ -0,0 +1,220 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
+import com.graphhopper.routing.ch.ManyToManyCH;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.lm.LMAlgoFactoryDecorator;
+import com.graphhopper.routing.util.*;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Calculates the weights, times and distances from every point to every other point or from every from_point to
+ * every to_point. The response is the JSON format read by the GHMatrixSyncRequester of the client-hc module, i.e.
+ * the times are in seconds and the distances in meter. Unreachable entries are null. This needs CH to be enabled
+ * for the requested vehicle and weighting.
+ */
+@Path("matrix")
+public class MatrixResource {
+
+    private static final Logger logger = LoggerFactory.getLogger(MatrixResource.class);
+    public static final int DEFAULT_MAX_ENTRIES = 500 * 500;
+
+    private final GraphHopper graphHopper;
+    private final EncodingManager encodingManager;
+    private final int maxEntries;
+
+    @Inject
+    public MatrixResource(GraphHopper graphHopper, EncodingManager encodingManager, @Named("matrixMaxEntries") Integer maxEntries) {
+        this.graphHopper = graphHopper;
+        this.encodingManager = encodingManager;
+        this.maxEntries = maxEntries;
+    }
+
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    public Response doGet(
+            @Context UriInfo uriInfo,
+            @QueryParam("point") List<GHPoint> points,
+            @QueryParam("from_point") List<GHPoint> fromPoints,
+            @QueryParam("to_point") List<GHPoint> toPoints,
+            @QueryParam("out_array") List<String> outArrays,
+            @QueryParam("vehicle") @DefaultValue("car") String vehicle) {
+
+        boolean identicalLists = !points.isEmpty();
+        if (identicalLists) {
+            if (!fromPoints.isEmpty() || !toPoints.isEmpty())
+                throw new IllegalArgumentException("Either specify point or from_point and to_point but not both");
+            fromPoints = points;
+            toPoints = points;
+        }
+        if (fromPoints.isEmpty() || toPoints.isEmpty())
+            throw new IllegalArgumentException("Specify at least one from_point and one to_point or at least one point");
+        if ((long) fromPoints.size() * toPoints.size() > maxEntries)
+            throw new IllegalArgumentException("Matrix too big. Specify at most " + maxEntries + " entries but was "
+                    + fromPoints.size() + "x" + toPoints.size());
+
+        if (outArrays.isEmpty())
+            outArrays = Collections.singletonList("weights");
+        for (String outArray : outArrays) {
+            if (!"weights".equals(outArray) && !"times".equals(outArray) && !"distances".equals(outArray))
+                throw new IllegalArgumentException("out_array not supported: " + outArray);
+        }
+
+        StopWatch sw = new StopWatch().start();
+
+        if (!encodingManager.supports(vehicle))
+            throw new IllegalArgumentException("vehicle not supported:" + vehicle);
+        if (!graphHopper.getCHFactoryDecorator().isEnabled())
+            throw new IllegalArgumentException("The matrix requires Contraction Hierarchies to be enabled");
+
+        HintsMap hintsMap = new HintsMap();
+        RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
+        hintsMap.setVehicle(vehicle);
+
+        // if LM is enabled we have the LMFactory with the CH algo!
+        RoutingAlgorithmFactory algoFactory = graphHopper.getAlgorithmFactory(hintsMap);
+        if (algoFactory instanceof LMAlgoFactoryDecorator.LMRAFactory)
+            algoFactory = ((LMAlgoFactoryDecorator.LMRAFactory) algoFactory).getDefaultAlgoFactory();
+        if (!(algoFactory instanceof PrepareContractionHierarchies))
+            throw new IllegalArgumentException("The matrix cannot be calculated without Contraction Hierarchies");
+        PrepareContractionHierarchies pch = (PrepareContractionHierarchies) algoFactory;
+
+        FlagEncoder encoder = encodingManager.getEncoder(vehicle);
+        EdgeFilter edgeFilter = DefaultEdgeFilter.allEdges(encoder);
+        List<QueryResult> fromResults = lookup(fromPoints, edgeFilter, identicalLists ? "points" : "from_points");
+        List<QueryResult> toResults = identicalLists ? fromResults : lookup(toPoints, edgeFilter, "to_points");
+
+        QueryGraph queryGraph = new QueryGraph(graphHopper.getGraphHopperStorage().getGraph(CHGraph.class, pch.getWeighting()));
+        List<QueryResult> allResults = new ArrayList<>(fromResults);
+        if (!identicalLists)
+            allResults.addAll(toResults);
+        queryGraph.lookup(allResults);
+
+        ManyToManyCH manyToMany = pch.createManyToMany(queryGraph).
+                calcMatrix(getNodes(fromResults), getNodes(toResults));
+
+        float took = sw.stop().getSeconds();
+        logger.info("took: " + took + ", visited nodes:" + manyToMany.getVisitedNodes() + ", "
+                + fromPoints.size() + "x" + toPoints.size() + ", " + vehicle);
+        return Response.ok(jsonSuccessResponse(manyToMany, outArrays, took)).
+                header("X-GH-Took", "" + Math.round(took * 1000)).
+                build();
+    }
+
+    private List<QueryResult> lookup(List<GHPoint> points, EdgeFilter edgeFilter, String name) {
+        LocationIndex locationIndex = graphHopper.getLocationIndex();
+        List<QueryResult> results = new ArrayList<>(points.size());
+        StringBuilder notFound = new StringBuilder();
+        for (int i = 0; i < points.size(); i++) {
+            GHPoint point = points.get(i);
+            QueryResult qr = locationIndex.findClosest(point.lat, point.lon, edgeFilter);
+            if (!qr.isValid()) {
+                if (notFound.length() > 0)
+                    notFound.append(", ");
+                notFound.append(i);
+            }
+            results.add(qr);
+        }
+        if (notFound.length() > 0)
+            throw new IllegalArgumentException("Cannot find " + name + ": " + notFound);
+        return results;
+    }
+
+    private static int[] getNodes(List<QueryResult> results) {
+        int[] nodes = new int[results.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = results.get(i).getClosestNode();
+        }
+        return nodes;
+    }
+
+    private ObjectNode jsonSuccessResponse(ManyToManyCH manyToMany, List<String> outArrays, float took) {
+        ObjectNode json = JsonNodeFactory.instance.objectNode();
+        double[][] weights = manyToMany.getWeights();
+        if (outArrays.contains("weights")) {
+            ArrayNode weightsJson = json.putArray("weights");
+            for (double[] row : weights) {
+                ArrayNode rowJson = weightsJson.addArray();
+                for (double weight : row) {
+                    if (Double.isInfinite(weight))
+                        rowJson.addNull();
+                    else
+                        rowJson.add(Math.round(weight * 1000) / 1000d);
+                }
+            }
+        }
+        if (outArrays.contains("times")) {
+            ArrayNode timesJson = json.putArray("times");
+            long[][] times = manyToMany.getTimes();
+            for (int from = 0; from < times.length; from++) {
+                ArrayNode rowJson = timesJson.addArray();
+                for (int to = 0; to < times[from].length; to++) {
+                    if (Double.isInfinite(weights[from][to]))
+                        rowJson.addNull();
+                    else
+                        rowJson.add(Math.round(times[from][to] / 1000d));
+                }
+            }
+        }
+        if (outArrays.contains("distances")) {
+            ArrayNode distancesJson = json.putArray("distances");
+            double[][] distances = manyToMany.getDistances();
+            for (int from = 0; from < distances.length; from++) {
+                ArrayNode rowJson = distancesJson.addArray();
+                for (int to = 0; to < distances[from].length; to++) {
+                    if (Double.isInfinite(weights[from][to]))
+                        rowJson.addNull();
+                    else
+                        rowJson.add(Math.round(distances[from][to]));
+                }
+            }
+        }
+        // If you replace GraphHopper with your own brand name, this is fine.
+        // Still it would be highly appreciated if you mention us in your about page!
+        final ObjectNode info = json.putObject("info");
+        info.putArray("copyrights")
+                .add("GraphHopper")
+                .add("OpenStreetMap contributors");
+        info.put("took", Math.round(took * 1000));
+        return json;
+    }
+}
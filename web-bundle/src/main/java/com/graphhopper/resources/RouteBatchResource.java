@@ -0,0 +1,182 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.MultiException;
+import com.graphhopper.http.WebHelper;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.*;
+import javax.ws.rs.core.*;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.graphhopper.util.Parameters.Routing.*;
+
+/**
+ * Calculates the routes of many pairs of points with one request. The body is a JSON object with the arrays
+ * from_points and to_points of [longitude,latitude] points, the route from every from_point goes to the to_point
+ * with the same index. The other parameters are the query parameters of the route end point and apply to all
+ * routes.
+ * <p>
+ * The response is newline delimited JSON with one line per route in the order the routes are finished. Every
+ * line has the index of the route and either the paths or the errors, like the JSON of the route end point.
+ */
+@Path("route/batch")
+public class RouteBatchResource {
+
+    private static final Logger logger = LoggerFactory.getLogger(RouteBatchResource.class);
+    public static final int DEFAULT_MAX_ROUTES = 10_000;
+
+    private final GraphHopper graphHopper;
+    private final ObjectMapper objectMapper;
+    private final Boolean hasElevation;
+    private final int maxRoutes;
+
+    @Inject
+    public RouteBatchResource(GraphHopper graphHopper, ObjectMapper objectMapper, @Named("hasElevation") Boolean hasElevation,
+                              @Named("batchMaxRoutes") Integer maxRoutes) {
+        this.graphHopper = graphHopper;
+        this.objectMapper = objectMapper;
+        this.hasElevation = hasElevation;
+        this.maxRoutes = maxRoutes;
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces("application/x-ndjson")
+    public Response doPost(
+            JsonNode body,
+            @Context UriInfo uriInfo,
+            @QueryParam(INSTRUCTIONS) @DefaultValue("true") final boolean instructions,
+            @QueryParam(CALC_POINTS) @DefaultValue("true") final boolean calcPoints,
+            @QueryParam("elevation") @DefaultValue("false") final boolean enableElevation,
+            @QueryParam("points_encoded") @DefaultValue("true") final boolean pointsEncoded,
+            @QueryParam("vehicle") @DefaultValue("car") final String vehicleStr,
+            @QueryParam("weighting") @DefaultValue("fastest") final String weighting,
+            @QueryParam("algorithm") @DefaultValue("") final String algoStr,
+            @QueryParam("locale") @DefaultValue("en") final String localeStr,
+            @QueryParam(POINT_HINT) List<String> pointHints,
+            @QueryParam("heading") List<Double> favoredHeadings,
+            @QueryParam(Parameters.DETAILS.PATH_DETAILS) List<String> pathDetails) {
+
+        if (body == null)
+            throw new IllegalArgumentException("The body has to be a JSON object with from_points and to_points");
+        final List<GHPoint> fromPoints = readPoints(body, "from_points");
+        final List<GHPoint> toPoints = readPoints(body, "to_points");
+        if (fromPoints.isEmpty())
+            throw new IllegalArgumentException("Specify at least one from_point and one to_point");
+        if (fromPoints.size() != toPoints.size())
+            throw new IllegalArgumentException("The number of from_points " + fromPoints.size()
+                    + " has to be equal to the number of to_points " + toPoints.size());
+        if (fromPoints.size() > maxRoutes)
+            throw new IllegalArgumentException("Too many routes. Specify at most " + maxRoutes + " routes but was " + fromPoints.size());
+        if (enableElevation && !hasElevation)
+            throw new IllegalArgumentException("Elevation not supported!");
+        if (!favoredHeadings.isEmpty() || !pointHints.isEmpty())
+            throw new IllegalArgumentException("heading and " + POINT_HINT + " are not supported for a batch");
+        if (!graphHopper.getEncodingManager().supports(vehicleStr))
+            throw new IllegalArgumentException("Vehicle not supported: " + vehicleStr);
+
+        final GHRequest request = new GHRequest();
+        RouteResource.initHints(request.getHints(), uriInfo.getQueryParameters());
+        request.setVehicle(vehicleStr).
+                setWeighting(weighting).
+                setAlgorithm(algoStr).
+                setLocale(localeStr).
+                setPathDetails(pathDetails).
+                getHints().
+                put(CALC_POINTS, calcPoints).
+                put(INSTRUCTIONS, instructions);
+
+        final StopWatch sw = new StopWatch().start();
+        StreamingOutput out = new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException {
+                final Writer writer = new BufferedWriter(new OutputStreamWriter(output, Helper.UTF_CS));
+                final AtomicInteger failedRoutes = new AtomicInteger();
+                try {
+                    graphHopper.routeBatch(request, fromPoints, toPoints, new GraphHopper.BatchCallback() {
+                        @Override
+                        public void onResponse(int index, GHResponse ghResponse) {
+                            ObjectNode line = objectMapper.createObjectNode();
+                            line.put("index", index);
+                            if (ghResponse.hasErrors()) {
+                                failedRoutes.incrementAndGet();
+                                line.setAll((ObjectNode) objectMapper.valueToTree(new MultiException(ghResponse.getErrors())));
+                            } else {
+                                line.setAll(WebHelper.jsonObject(ghResponse, instructions, calcPoints, enableElevation, pointsEncoded, 0));
+                                // the routes are calculated concurrently, so there is no time for a single route
+                                ((ObjectNode) line.get("info")).remove("took");
+                            }
+                            try {
+                                String str = objectMapper.writeValueAsString(line);
+                                // the routes are finished by several threads
+                                synchronized (writer) {
+                                    writer.write(str);
+                                    writer.write('\n');
+                                    writer.flush();
+                                }
+                            } catch (IOException ex) {
+                                // the client closed the connection, stop the batch
+                                throw new RuntimeException(ex);
+                            }
+                        }
+                    });
+                } finally {
+                    synchronized (writer) {
+                        writer.flush();
+                    }
+                }
+                logger.info("took: " + sw.stop().getSeconds() + ", routes: " + fromPoints.size()
+                        + ", failed: " + failedRoutes.get() + ", " + algoStr + ", " + weighting + ", " + vehicleStr);
+            }
+        };
+        // the size is unknown in advance, so the response is sent in chunks
+        return Response.ok(out, "application/x-ndjson").build();
+    }
+
+    private static List<GHPoint> readPoints(JsonNode body, String name) {
+        JsonNode array = body.get(name);
+        if (array == null || !array.isArray())
+            throw new IllegalArgumentException(name + " has to be an array of [longitude,latitude] points");
+
+        List<GHPoint> points = new ArrayList<>(array.size());
+        for (JsonNode point : array) {
+            if (!point.isArray() || point.size() < 2 || !point.get(0).isNumber() || !point.get(1).isNumber())
+                throw new IllegalArgumentException("Cannot parse point " + point + " of " + name + ", use [longitude,latitude]");
+            points.add(new GHPoint(point.get(1).asDouble(), point.get(0).asDouble()));
+        }
+        return points;
+    }
+}
@@ -21,6 +21,7 @@ import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopperAPI;
 import com.graphhopper.MultiException;
+import com.graphhopper.http.RouteProtobuf;
 import com.graphhopper.http.WebHelper;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.HintsMap;
@@ -67,7 +68,7 @@ public class RouteResource {
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, "application/gpx+xml"})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, "application/gpx+xml", RouteProtobuf.MEDIA_TYPE})
     public Response doGet(
             @Context HttpServletRequest httpReq,
             @Context UriInfo uriInfo,
@@ -92,6 +93,7 @@ public class RouteResource {
             @QueryParam("gpx.trackname") @DefaultValue("GraphHopper Track") String trackName,
             @QueryParam("gpx.millis") String timeString) {
         boolean writeGPX = "gpx".equalsIgnoreCase(type);
+        boolean writeProtobuf = RouteProtobuf.TYPE.equalsIgnoreCase(type);
         instructions = writeGPX || instructions;
 
         StopWatch sw = new StopWatch().start();
@@ -150,12 +152,19 @@ public class RouteResource {
                     + ", time0: " + Math.round(ghResponse.getBest().getTime() / 60000f) + "min"
                     + ", points0: " + ghResponse.getBest().getPoints().getSize()
                     + ", debugInfo: " + ghResponse.getDebugInfo());
+            if (writeProtobuf) {
+                final boolean enableInstructions = instructions;
+                StreamingOutput protobuf = output -> RouteProtobuf.write(ghResponse, enableInstructions, calcPoints, enableElevation, took, output);
+                return Response.ok(protobuf, RouteProtobuf.MEDIA_TYPE).
+                        header("X-GH-Took", "" + Math.round(took * 1000)).
+                        build();
+            }
             return writeGPX ?
                     gpxSuccessResponseBuilder(ghResponse, timeString, trackName, enableElevation, withRoute, withTrack, withWayPoints, Constants.VERSION).
                             header("X-GH-Took", "" + Math.round(took * 1000)).
                             build()
                     :
-                    Response.ok(WebHelper.jsonObject(ghResponse, instructions, calcPoints, enableElevation, pointsEncoded, took)).
+                    Response.ok(WebHelper.jsonSerializable(ghResponse, instructions, calcPoints, enableElevation, pointsEncoded, took)).
                             header("X-GH-Took", "" + Math.round(took * 1000)).
                             build();
         }
@@ -0,0 +1,191 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.isochrone.algorithm.Isochrone;
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.util.*;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import java.io.*;
+import java.util.Collections;
+
+/**
+ * Exports the full shortest path tree from or to the specified point as CSV or as newline delimited JSON. Every
+ * line contains the node id, latitude, longitude, time in milliseconds, distance in meter and the previous node
+ * of the tree. The lines are written while the search is still running, so the tree is never held in memory.
+ * <p>
+ * If the point is snapped onto an edge the search starts at a temporary node which has no id in the graph. This
+ * node is not exported and the nodes reached from it have the previous node -1 like the start node.
+ */
+@Path("spt")
+public class SPTResource {
+
+    private static final Logger logger = LoggerFactory.getLogger(SPTResource.class);
+
+    private final GraphHopper graphHopper;
+    private final EncodingManager encodingManager;
+    private final ObjectMapper objectMapper;
+
+    @Inject
+    public SPTResource(GraphHopper graphHopper, EncodingManager encodingManager, ObjectMapper objectMapper) {
+        this.graphHopper = graphHopper;
+        this.encodingManager = encodingManager;
+        this.objectMapper = objectMapper;
+    }
+
+    @GET
+    @Produces({"text/csv", "application/x-ndjson"})
+    public Response doGet(
+            @Context UriInfo uriInfo,
+            @QueryParam("vehicle") @DefaultValue("car") String vehicle,
+            @QueryParam("reverse_flow") @DefaultValue("false") boolean reverseFlow,
+            @QueryParam("point") GHPoint point,
+            @QueryParam("type") @DefaultValue("csv") String type,
+            @QueryParam("time_limit") @DefaultValue("600") long timeLimitInSeconds,
+            @QueryParam("distance_limit") @DefaultValue("-1") double distanceInMeter) {
+
+        if (point == null)
+            throw new IllegalArgumentException("point parameter cannot be null");
+
+        final boolean ndjson;
+        if ("ndjson".equalsIgnoreCase(type))
+            ndjson = true;
+        else if ("csv".equalsIgnoreCase(type))
+            ndjson = false;
+        else
+            throw new IllegalArgumentException("type not supported:" + type);
+
+        final StopWatch sw = new StopWatch().start();
+
+        if (!encodingManager.supports(vehicle))
+            throw new IllegalArgumentException("vehicle not supported:" + vehicle);
+
+        FlagEncoder encoder = encodingManager.getEncoder(vehicle);
+        EdgeFilter edgeFilter = DefaultEdgeFilter.allEdges(encoder);
+        LocationIndex locationIndex = graphHopper.getLocationIndex();
+        final QueryResult qr = locationIndex.findClosest(point.lat, point.lon, edgeFilter);
+        if (!qr.isValid())
+            throw new IllegalArgumentException("Point not found:" + point);
+
+        Graph graph = graphHopper.getGraphHopperStorage();
+        final QueryGraph queryGraph = new QueryGraph(graph);
+        queryGraph.lookup(Collections.singletonList(qr));
+
+        HintsMap hintsMap = new HintsMap();
+        RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
+
+        Weighting weighting = graphHopper.createWeighting(hintsMap, encoder, graph);
+        final Isochrone isochrone = new Isochrone(queryGraph, weighting, reverseFlow);
+
+        if (distanceInMeter > 0) {
+            double maxMeter = 500 * 1000;
+            if (distanceInMeter > maxMeter)
+                throw new IllegalArgumentException("Specify a limit of less than " + maxMeter / 1000f + "km");
+
+            isochrone.setDistanceLimit(distanceInMeter);
+        } else {
+            long maxSeconds = 5 * 60 * 60;
+            if (timeLimitInSeconds > maxSeconds)
+                throw new IllegalArgumentException("Specify a limit of less than " + maxSeconds + " seconds");
+
+            isochrone.setTimeLimit(timeLimitInSeconds);
+        }
+
+        // the nodes of the query graph starting from this id are virtual
+        final int graphNodes = graph.getNodes();
+        StreamingOutput out = new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException {
+                final Writer writer = new BufferedWriter(new OutputStreamWriter(output, Helper.UTF_CS));
+                final JsonGenerator generator = ndjson ? objectMapper.getFactory().createGenerator(writer) : null;
+                if (ndjson)
+                    // every object is followed by a line break instead of the default separator
+                    generator.setRootValueSeparator(null);
+                else
+                    writer.write("node,lat,lon,time,distance,prev_node\n");
+
+                final NodeAccess na = queryGraph.getNodeAccess();
+                try {
+                    isochrone.search(qr.getClosestNode(), new Isochrone.SPTCallback() {
+                        @Override
+                        public void add(int node, int prevNode, long time, double distance) {
+                            if (node >= graphNodes)
+                                return;
+                            if (prevNode >= graphNodes)
+                                prevNode = -1;
+
+                            double lat = Helper.round6(na.getLatitude(node));
+                            double lon = Helper.round6(na.getLongitude(node));
+                            long roundedDistance = Math.round(distance);
+                            try {
+                                if (ndjson) {
+                                    generator.writeStartObject();
+                                    generator.writeNumberField("node", node);
+                                    generator.writeNumberField("lat", lat);
+                                    generator.writeNumberField("lon", lon);
+                                    generator.writeNumberField("time", time);
+                                    generator.writeNumberField("distance", roundedDistance);
+                                    generator.writeNumberField("prev_node", prevNode);
+                                    generator.writeEndObject();
+                                    generator.writeRaw('\n');
+                                } else {
+                                    writer.write(node + "," + lat + "," + lon + "," + time + ","
+                                            + roundedDistance + "," + prevNode + "\n");
+                                }
+                            } catch (IOException ex) {
+                                // stops the search
+                                throw new UncheckedIOException(ex);
+                            }
+                        }
+                    });
+                    if (ndjson)
+                        generator.flush();
+                    writer.flush();
+                } catch (UncheckedIOException ex) {
+                    // the client closed the connection, there is nobody left to receive an error
+                    logger.info("client closed the connection after: " + sw.stop().getSeconds() + ", visited nodes:"
+                            + isochrone.getVisitedNodes() + ", " + uriInfo.getQueryParameters() + ", " + ex.getCause());
+                    return;
+                }
+                logger.info("took: " + sw.stop().getSeconds() + ", visited nodes:" + isochrone.getVisitedNodes()
+                        + ", " + uriInfo.getQueryParameters());
+            }
+        };
+        // the size is unknown in advance, so the response is sent in chunks
+        return Response.ok(out, ndjson ? "application/x-ndjson" : "text/csv").build();
+    }
+}
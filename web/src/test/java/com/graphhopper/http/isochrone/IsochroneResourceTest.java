@@ -1,5 +1,6 @@
 package com.graphhopper.http.isochrone;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.graphhopper.directions.api.client.ApiClient;
 import com.graphhopper.directions.api.client.api.IsochroneApi;
 import com.graphhopper.directions.api.client.model.IsochroneResponse;
@@ -92,6 +93,41 @@ public class IsochroneResourceTest {
         assertFalse(contains(polygon1, 42.53841, 1.635246));
     }
 
+    @Test
+    public void requestMultiplePoints() {
+        JsonNode json = app.client().target("http://localhost:8080/isochrone?point=42.531073,1.573792&point=42.509644,1.540554"
+                + "&time_limit=300&buckets=1&partition=true").request().get(JsonNode.class);
+        JsonNode polygons = json.get("polygons");
+        assertEquals(2, polygons.size());
+        assertEquals(0, polygons.get(0).get("properties").get("source").asInt());
+        assertEquals(1, polygons.get(1).get("properties").get("source").asInt());
+
+        json = app.client().target("http://localhost:8080/isochrone?point=42.531073,1.573792&point=42.509644,1.540554"
+                + "&time_limit=300&buckets=1").request().get(JsonNode.class);
+        polygons = json.get("polygons");
+        assertEquals(1, polygons.size());
+        assertFalse(polygons.get(0).get("properties").has("source"));
+    }
+
+    @Test
+    public void requestMultiplePointsWithDuplicate() {
+        // the second point snaps to the same node as the first one and gets no roads of its own
+        JsonNode json = app.client().target("http://localhost:8080/isochrone?point=42.531073,1.573792&point=42.531073,1.573792"
+                + "&point=42.509644,1.540554&time_limit=300&buckets=2&partition=true").request().get(JsonNode.class);
+        JsonNode polygons = json.get("polygons");
+        assertEquals(6, polygons.size());
+        for (int i = 0; i < polygons.size(); i++) {
+            JsonNode polygon = polygons.get(i);
+            assertEquals(i / 2, polygon.get("properties").get("source").asInt());
+            assertEquals(i % 2, polygon.get("properties").get("bucket").asInt());
+            int coordinates = polygon.get("geometry").get("coordinates").get(0).size();
+            if (i / 2 == 1)
+                assertEquals(0, coordinates);
+            else
+                assertTrue(coordinates > 2);
+        }
+    }
+
     @Test
     public void requestBadRequest() {
         Response response = app.client().target("http://localhost:8080/route?point=-1.816719,51.557148").request().buildGet().invoke();
@@ -0,0 +1,112 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.http.GraphHopperApplication;
+import com.graphhopper.http.GraphHopperServerConfiguration;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit.DropwizardAppRule;
+import org.junit.AfterClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RouteBatchResourceTest {
+    private static final String DIR = "./target/andorra-gh-batch/";
+
+    private static final GraphHopperServerConfiguration config = new GraphHopperServerConfiguration();
+
+    static {
+        config.getGraphHopperConfiguration().merge(new CmdArgs().
+                put("graph.flag_encoders", "car").
+                put("prepare.ch.weightings", "fastest").
+                put("prepare.min_network_size", "0").
+                put("prepare.min_one_way_network_size", "0").
+                put("routing.batch_threads", "2").
+                put("routing.batch.max_routes", "3").
+                put("datareader.file", "../core/files/andorra.osm.pbf").
+                put("graph.location", DIR));
+    }
+
+    @ClassRule
+    public static final DropwizardAppRule<GraphHopperServerConfiguration> app = new DropwizardAppRule(
+            GraphHopperApplication.class, config);
+
+    @AfterClass
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testBatch() throws IOException {
+        String body = "{\"from_points\": [[1.536198, 42.554851], [1.548128, 42.510071], [1.536198, 42.554851]],"
+                + " \"to_points\": [[1.548128, 42.510071], [1.536198, 42.554851], [-10, 10]]}";
+        final Response response = app.client().target("http://localhost:8080/route/batch?calc_points=false").
+                request().post(Entity.json(body));
+        assertEquals(200, response.getStatus());
+
+        Map<Integer, JsonNode> lines = new HashMap<>();
+        ObjectMapper objectMapper = new ObjectMapper();
+        for (String line : response.readEntity(String.class).split("\n")) {
+            JsonNode json = objectMapper.readTree(line);
+            assertNull(lines.put(json.get("index").asInt(), json));
+        }
+        assertEquals(3, lines.size());
+
+        double distance = lines.get(0).get("paths").get(0).get("distance").asDouble();
+        assertTrue("distance wasn't correct:" + distance, distance > 9000);
+        assertTrue("distance wasn't correct:" + distance, distance < 9500);
+        assertFalse(lines.get(0).get("paths").get(0).has("points"));
+        assertTrue(lines.get(1).has("paths"));
+
+        assertFalse(lines.get(2).has("paths"));
+        assertTrue(lines.get(2).get("message").asText(), lines.get(2).get("message").asText().startsWith("Point 1 is out of bounds"));
+    }
+
+    @Test
+    public void testDifferentNumberOfPoints() {
+        String body = "{\"from_points\": [[1.536198, 42.554851], [1.548128, 42.510071]], \"to_points\": [[1.548128, 42.510071]]}";
+        final Response response = app.client().target("http://localhost:8080/route/batch").
+                request().post(Entity.json(body));
+        assertEquals(400, response.getStatus());
+        JsonNode json = response.readEntity(JsonNode.class);
+        assertTrue(json.get("message").asText(), json.get("message").asText().startsWith("The number of from_points 2"));
+    }
+
+    @Test
+    public void testMaxRoutes() {
+        String body = "{\"from_points\": [[1.536198, 42.554851], [1.548128, 42.510071], [1.536198, 42.554851], [1.55, 42.51]],"
+                + " \"to_points\": [[1.548128, 42.510071], [1.536198, 42.554851], [1.55, 42.51], [1.536198, 42.554851]]}";
+        final Response response = app.client().target("http://localhost:8080/route/batch").
+                request().post(Entity.json(body));
+        assertEquals(400, response.getStatus());
+        JsonNode json = response.readEntity(JsonNode.class);
+        assertEquals("Too many routes. Specify at most 3 routes but was 4", json.get("message").asText());
+    }
+}